@@ -1,20 +1,31 @@
 package com.korovko.arm_controller.client;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.korovko.arm_controller.model.ChangeConnectionPoolRequest;
+import com.korovko.arm_controller.model.ChangeOutlierDetectionRequest;
 import com.korovko.arm_controller.model.ChangeRetryRequest;
 import com.korovko.arm_controller.model.ChangeTimeoutRequest;
+import com.korovko.arm_controller.model.ConnectionPoolStats;
+import com.korovko.arm_controller.model.DesiredVersion;
+import com.korovko.arm_controller.model.RetryEffectiveness;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 public class ApiGatewayClient {
 
   private final RestClient apiGatewayRestClient;
+  private final AsyncHttpClient apiGatewayAsyncHttpClient;
 
-  public ApiGatewayClient(RestClient apiGatewayRestClient) {
+  public ApiGatewayClient(RestClient apiGatewayRestClient, AsyncHttpClient apiGatewayAsyncHttpClient) {
     this.apiGatewayRestClient = apiGatewayRestClient;
+    this.apiGatewayAsyncHttpClient = apiGatewayAsyncHttpClient;
   }
 
   public Map<String, Integer> getLatencies() {
@@ -32,6 +43,19 @@ public class ApiGatewayClient {
         .toBodilessEntity();
   }
 
+  /**
+   * Pushes a timeout decision; {@code desiredVersion} lets the gateway replicas order it against the
+   * desired-state document, null sends it as a manual change.
+   */
+  public CompletableFuture<Void> changeTimeoutAsync(final ChangeTimeoutRequest request,
+                                                    final DesiredVersion desiredVersion) {
+    URI uri = stamped(UriComponentsBuilder.fromPath("/dynamic-timeouts"), desiredVersion)
+        .build()
+        .encode()
+        .toUri();
+    return apiGatewayAsyncHttpClient.post(uri, request);
+  }
+
   public void changeRetry(final String routeId, final ChangeRetryRequest request) {
     apiGatewayRestClient.post()
         .uri("/internal/resilience/retry/{routeId}", routeId)
@@ -40,4 +64,63 @@ public class ApiGatewayClient {
         .toBodilessEntity();
   }
 
+  public CompletableFuture<Void> changeRetryAsync(final String routeId, final ChangeRetryRequest request,
+                                                  final DesiredVersion desiredVersion) {
+    URI uri = stamped(UriComponentsBuilder.fromPath("/internal/resilience/retry/{routeId}"), desiredVersion)
+        .buildAndExpand(routeId)
+        .encode()
+        .toUri();
+    return apiGatewayAsyncHttpClient.post(uri, request);
+  }
+
+  public CompletableFuture<Map<String, RetryEffectiveness>> getRetryEffectivenessAsync() {
+    return apiGatewayAsyncHttpClient.get(URI.create("/internal/resilience/retry-effectiveness"),
+        new TypeReference<>() {});
+  }
+
+  public ChangeOutlierDetectionRequest getOutlierDetection() {
+    return apiGatewayRestClient.get()
+        .uri("/internal/resilience/outlier-detection")
+        .retrieve()
+        .body(ChangeOutlierDetectionRequest.class);
+  }
+
+  public void changeOutlierDetection(final ChangeOutlierDetectionRequest request) {
+    apiGatewayRestClient.post()
+        .uri("/internal/resilience/outlier-detection")
+        .body(request)
+        .retrieve()
+        .toBodilessEntity();
+  }
+
+  public Map<String, ConnectionPoolStats> getConnectionPools() {
+    return apiGatewayRestClient.get()
+        .uri("/internal/resilience/connection-pools")
+        .retrieve()
+        .body(new ParameterizedTypeReference<>() {});
+  }
+
+  public ChangeConnectionPoolRequest getConnectionPoolDefaults() {
+    return apiGatewayRestClient.get()
+        .uri("/internal/resilience/connection-pools/defaults")
+        .retrieve()
+        .body(ChangeConnectionPoolRequest.class);
+  }
+
+  public void changeConnectionPool(final String routeId, final ChangeConnectionPoolRequest request) {
+    apiGatewayRestClient.post()
+        .uri("/internal/resilience/connection-pools/{routeId}", routeId)
+        .body(request)
+        .retrieve()
+        .toBodilessEntity();
+  }
+
+  private static UriComponentsBuilder stamped(final UriComponentsBuilder uri, final DesiredVersion desiredVersion) {
+    if (desiredVersion == null) {
+      return uri;
+    }
+    return uri.queryParam("epoch", desiredVersion.epoch())
+        .queryParam("version", desiredVersion.version());
+  }
+
 }
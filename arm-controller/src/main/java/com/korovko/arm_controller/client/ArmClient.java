@@ -1,32 +1,53 @@
 package com.korovko.arm_controller.client;
 
-import com.korovko.arm_controller.model.PrometheusQueryResponse;
-import org.springframework.core.ParameterizedTypeReference;
+import com.korovko.arm_controller.metrics.CounterSamples;
+import com.korovko.arm_controller.metrics.PrometheusRange;
+import com.korovko.arm_controller.metrics.PrometheusRangeReader;
+import com.korovko.arm_controller.metrics.PrometheusSnapshotReader;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
-import java.util.Optional;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 public class ArmClient {
 
   private static final String QUERY_PATH = "/api/v1/query";
+  private static final String QUERY_RANGE_PATH = "/api/v1/query_range";
   private static final String QUERY_PARAM = "query";
 
-  private final RestClient armRestClient;
+  private final AsyncHttpClient armAsyncHttpClient;
 
-  public ArmClient(RestClient armRestClient) {
-    this.armRestClient = armRestClient;
+  public ArmClient(AsyncHttpClient armAsyncHttpClient) {
+    this.armAsyncHttpClient = armAsyncHttpClient;
   }
 
-  public Optional<PrometheusQueryResponse> getPrometheusQuery(final String query) {
-    URI uri = this.buildQueryUri(query);
-    return armRestClient.get()
-        .uri(uri)
-        .retrieve()
-        .body(new ParameterizedTypeReference<>() {});
+  /**
+   * Runs an instant counter query without holding the calling thread and decodes the samples while they
+   * are read; the future fails with a {@code RestClientException}.
+   */
+  public CompletableFuture<CounterSamples> getCounterSamplesAsync(final String query) {
+    return armAsyncHttpClient.get(buildQueryUri(query), PrometheusSnapshotReader::read);
+  }
+
+  /**
+   * Runs a range query over {@code [start, end]} sampled every {@code step}, decoding the series into
+   * primitive arrays while the response is read.
+   */
+  public CompletableFuture<PrometheusRange> getPrometheusRangeAsync(final String query, final Instant start,
+                                                                    final Instant end, final Duration step) {
+    URI uri = UriComponentsBuilder
+        .fromPath(QUERY_RANGE_PATH)
+        .queryParam(QUERY_PARAM, query)
+        .queryParam("start", start.getEpochSecond())
+        .queryParam("end", end.getEpochSecond())
+        .queryParam("step", Math.max(1, step.toSeconds()) + "s")
+        .build()
+        .toUri();
+    return armAsyncHttpClient.get(uri, PrometheusRangeReader::read);
   }
 
   private URI buildQueryUri(final String query) {
@@ -0,0 +1,220 @@
+package com.korovko.arm_controller.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Non-blocking JSON calls on top of the JDK {@link HttpClient}: responses arrive as futures and are requested
+ * gzip-compressed. The read timeout bounds the whole exchange, body included, since the request timeout
+ * stops applying once the headers arrive. Bodies are read on a dedicated pool, so a stalled one never
+ * blocks the HTTP client's threads. Errors complete the future with the same {@link RestClientException}
+ * types the blocking {@code RestClient} throws.
+ */
+public class AsyncHttpClient {
+
+  private final HttpClient httpClient;
+  private final URI baseUri;
+  private final ObjectMapper objectMapper;
+  private final Duration readTimeout;
+  private final ExecutorService bodyReaders;
+
+  public AsyncHttpClient(HttpClient httpClient, String baseUrl, ObjectMapper objectMapper, Duration readTimeout) {
+    this.httpClient = httpClient;
+    this.baseUri = URI.create(baseUrl);
+    this.objectMapper = objectMapper;
+    this.readTimeout = readTimeout;
+    this.bodyReaders = Executors.newCachedThreadPool(daemon("arm-http-body-"));
+  }
+
+  /**
+   * Reads a body token by token instead of binding it, for large responses that only need a few fields.
+   */
+  @FunctionalInterface
+  public interface BodyReader<T> {
+
+    T read(JsonParser parser) throws IOException;
+
+  }
+
+  public <T> CompletableFuture<T> get(URI uri, TypeReference<T> type) {
+    return exchange(getRequest(uri), response -> read(response, type));
+  }
+
+  public <T> CompletableFuture<T> get(URI uri, BodyReader<T> reader) {
+    return exchange(getRequest(uri), response -> read(response, reader));
+  }
+
+  public CompletableFuture<Void> post(URI uri, Object body) {
+    HttpRequest request = request(uri)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(write(body)))
+        .build();
+    return exchange(request, AsyncHttpClient::discard);
+  }
+
+  /**
+   * Sends the request and reads its body on the body pool, failing with {@link ResourceAccessException} when
+   * both together take longer than the read timeout. A timed out body is closed, which ends the blocked read.
+   */
+  private <T> CompletableFuture<T> exchange(HttpRequest request, Function<HttpResponse<InputStream>, T> body) {
+    CompletableFuture<HttpResponse<InputStream>> sent = send(request);
+    return sent.thenApplyAsync(body, bodyReaders)
+        .orTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+        .handle((result, error) -> {
+          if (error == null) {
+            return result;
+          }
+          Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+          if (!(cause instanceof TimeoutException)) {
+            throw error instanceof CompletionException completion ? completion : new CompletionException(cause);
+          }
+          sent.cancel(true);
+          sent.thenAccept(response -> close(response.body()));
+          throw new ResourceAccessException("I/O error on " + request.method() + " " + request.uri()
+              + ": read timed out after " + readTimeout.toMillis() + "ms",
+              new HttpTimeoutException("read timed out"));
+        });
+  }
+
+  private HttpRequest getRequest(URI uri) {
+    return request(uri)
+        .header("Accept", "application/json")
+        .GET()
+        .build();
+  }
+
+  private HttpRequest.Builder request(URI uri) {
+    return HttpRequest.newBuilder(baseUri.resolve(uri))
+        .timeout(readTimeout)
+        .header("Accept-Encoding", "gzip");
+  }
+
+  private CompletableFuture<HttpResponse<InputStream>> send(HttpRequest request) {
+    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+        .handle((response, error) -> {
+          if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            String reason = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+            throw new ResourceAccessException("I/O error on " + request.method() + " " + request.uri()
+                + ": " + reason, cause instanceof IOException io ? io : new IOException(cause));
+          }
+          if (response.statusCode() >= 400) {
+            throw new RestClientResponseException(response.statusCode() + " on " + request.method() + " "
+                + request.uri(), HttpStatusCode.valueOf(response.statusCode()), "", null, errorBody(response),
+                StandardCharsets.UTF_8);
+          }
+          return response;
+        });
+  }
+
+  /**
+   * The body as it arrives from the connection, inflated on the fly when compressed; null when it is empty.
+   * The body is never buffered in full, so a large response costs only the parser's buffers.
+   */
+  private static InputStream open(HttpResponse<InputStream> response) throws IOException {
+    PushbackInputStream body = new PushbackInputStream(response.body());
+    try {
+      int first = body.read();
+      if (first < 0) {
+        body.close();
+        return null;
+      }
+      body.unread(first);
+      boolean gzip = response.headers().firstValue("Content-Encoding")
+          .map("gzip"::equalsIgnoreCase)
+          .orElse(false);
+      return gzip ? new GZIPInputStream(body) : body;
+    } catch (IOException e) {
+      body.close();
+      throw e;
+    }
+  }
+
+  // Drains the body so the connection can be reused; a body that cannot be read just closes it
+  private static Void discard(HttpResponse<InputStream> response) {
+    try (InputStream in = response.body()) {
+      in.transferTo(OutputStream.nullOutputStream());
+    } catch (IOException e) {
+      // The connection is closed instead of reused
+    }
+    return null;
+  }
+
+  private static void close(InputStream body) {
+    try {
+      body.close();
+    } catch (IOException e) {
+      // Nothing left to release
+    }
+  }
+
+  private static byte[] errorBody(HttpResponse<InputStream> response) {
+    try (InputStream in = open(response)) {
+      return in == null ? new byte[0] : in.readAllBytes();
+    } catch (IOException e) {
+      return new byte[0];
+    }
+  }
+
+  private <T> T read(HttpResponse<InputStream> response, TypeReference<T> type) {
+    try (InputStream in = open(response)) {
+      return in == null ? null : objectMapper.readValue(in, type);
+    } catch (IOException e) {
+      throw new RestClientException("Failed to read response: " + e.getMessage(), e);
+    }
+  }
+
+  private <T> T read(HttpResponse<InputStream> response, BodyReader<T> reader) {
+    try (InputStream in = open(response);
+         JsonParser parser = objectMapper.getFactory().createParser(in == null ? InputStream.nullInputStream() : in)) {
+      return reader.read(parser);
+    } catch (IOException e) {
+      throw new RestClientException("Failed to read response: " + e.getMessage(), e);
+    }
+  }
+
+  private static ThreadFactory daemon(String prefix) {
+    AtomicInteger counter = new AtomicInteger();
+    return task -> {
+      Thread thread = new Thread(task, prefix + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private byte[] write(Object body) {
+    try {
+      return objectMapper.writeValueAsBytes(body);
+    } catch (IOException e) {
+      throw new RestClientException("Failed to write request: " + e.getMessage(), e);
+    }
+  }
+
+}
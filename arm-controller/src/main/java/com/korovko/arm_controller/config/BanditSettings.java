@@ -0,0 +1,110 @@
+package com.korovko.arm_controller.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thompson-sampling exploration of retry configurations, nested under {@code dynamic.retry} as
+ * {@code bandit}. The arms are every attempt count from minAttempts to maxAttempts combined with every
+ * first backoff listed here.
+ */
+public class BanditSettings {
+
+  /**
+   * Routes whose retry configuration is chosen by the bandit instead of the error band. These routes get no
+   * panic increase and no fast-burn handling; the bandit only reacts at its decision interval.
+   */
+  private List<String> routes = new ArrayList<>();
+  private List<Integer> firstBackoffsMs = new ArrayList<>(List.of(50, 100, 200));
+  /**
+   * Minutes an arm is played before its outcome is credited and the next one is drawn.
+   */
+  private int decisionIntervalMins = 5;
+  /**
+   * Upstream requests an arm needs within its interval for the outcome to count.
+   */
+  private long minUpstreamRequests = 200;
+  /**
+   * Successes one retry costs in an arm's reward: an arm scores its successful client requests minus this
+   * much per upstream request beyond the first attempt, per client request.
+   */
+  private double retryCost = 0.5;
+  /**
+   * Trials one decision credits to the arm played, however many requests it saw; a decision is one noisy
+   * observation, and crediting every request would leave the posteriors too sharp to keep exploring.
+   */
+  private int trialsPerDecision = 10;
+  /**
+   * Weight the existing evidence of a route keeps at each decision, so the bandit follows drift.
+   */
+  private double decay = 0.9;
+  /**
+   * Attempts the bandit may add in one decision; fewer attempts are always allowed.
+   */
+  private int maxStepUp = 1;
+
+  public List<String> getRoutes() {
+    return routes;
+  }
+
+  public void setRoutes(List<String> routes) {
+    this.routes = routes;
+  }
+
+  public List<Integer> getFirstBackoffsMs() {
+    return firstBackoffsMs;
+  }
+
+  public void setFirstBackoffsMs(List<Integer> firstBackoffsMs) {
+    this.firstBackoffsMs = firstBackoffsMs;
+  }
+
+  public int getDecisionIntervalMins() {
+    return decisionIntervalMins;
+  }
+
+  public void setDecisionIntervalMins(int decisionIntervalMins) {
+    this.decisionIntervalMins = decisionIntervalMins;
+  }
+
+  public long getMinUpstreamRequests() {
+    return minUpstreamRequests;
+  }
+
+  public void setMinUpstreamRequests(long minUpstreamRequests) {
+    this.minUpstreamRequests = minUpstreamRequests;
+  }
+
+  public double getRetryCost() {
+    return retryCost;
+  }
+
+  public void setRetryCost(double retryCost) {
+    this.retryCost = retryCost;
+  }
+
+  public int getTrialsPerDecision() {
+    return trialsPerDecision;
+  }
+
+  public void setTrialsPerDecision(int trialsPerDecision) {
+    this.trialsPerDecision = trialsPerDecision;
+  }
+
+  public double getDecay() {
+    return decay;
+  }
+
+  public void setDecay(double decay) {
+    this.decay = decay;
+  }
+
+  public int getMaxStepUp() {
+    return maxStepUp;
+  }
+
+  public void setMaxStepUp(int maxStepUp) {
+    this.maxStepUp = maxStepUp;
+  }
+
+}
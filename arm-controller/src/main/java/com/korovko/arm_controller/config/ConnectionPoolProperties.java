@@ -0,0 +1,125 @@
+package com.korovko.arm_controller.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "dynamic.pool")
+public class ConnectionPoolProperties {
+
+  private boolean enabled = false;
+  private List<String> routes = List.of("customers_route", "vets_route", "visits_route");
+  /**
+   * Connections a route's pool starts with. This and the other seed settings below fall back to the
+   * gateway's shared client setting when 0, so a route keeps the capacity it had before it got its own pool.
+   */
+  private int minConnections = 0;
+  private int maxConnections = 500;
+  private int stepSize = 50;
+  private int pendingThreshold = 1;
+  private int minIncreaseWindowMins = 1;
+  private int pendingAcquireMaxCount = 0;
+  private long pendingAcquireTimeoutMs = 0;
+  private long maxIdleMs = 0;
+  private long connectTimeoutMs = 0;
+  private long responseTimeoutMs = 0;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public List<String> getRoutes() {
+    return routes;
+  }
+
+  public void setRoutes(List<String> routes) {
+    this.routes = routes;
+  }
+
+  public int getMinConnections() {
+    return minConnections;
+  }
+
+  public void setMinConnections(int minConnections) {
+    this.minConnections = minConnections;
+  }
+
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  public void setMaxConnections(int maxConnections) {
+    this.maxConnections = maxConnections;
+  }
+
+  public int getStepSize() {
+    return stepSize;
+  }
+
+  public void setStepSize(int stepSize) {
+    this.stepSize = stepSize;
+  }
+
+  public int getPendingThreshold() {
+    return pendingThreshold;
+  }
+
+  public void setPendingThreshold(int pendingThreshold) {
+    this.pendingThreshold = pendingThreshold;
+  }
+
+  public int getMinIncreaseWindowMins() {
+    return minIncreaseWindowMins;
+  }
+
+  public void setMinIncreaseWindowMins(int minIncreaseWindowMins) {
+    this.minIncreaseWindowMins = minIncreaseWindowMins;
+  }
+
+  public int getPendingAcquireMaxCount() {
+    return pendingAcquireMaxCount;
+  }
+
+  public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+    this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+  }
+
+  public long getPendingAcquireTimeoutMs() {
+    return pendingAcquireTimeoutMs;
+  }
+
+  public void setPendingAcquireTimeoutMs(long pendingAcquireTimeoutMs) {
+    this.pendingAcquireTimeoutMs = pendingAcquireTimeoutMs;
+  }
+
+  public long getMaxIdleMs() {
+    return maxIdleMs;
+  }
+
+  public void setMaxIdleMs(long maxIdleMs) {
+    this.maxIdleMs = maxIdleMs;
+  }
+
+  public long getConnectTimeoutMs() {
+    return connectTimeoutMs;
+  }
+
+  public void setConnectTimeoutMs(long connectTimeoutMs) {
+    this.connectTimeoutMs = connectTimeoutMs;
+  }
+
+  public long getResponseTimeoutMs() {
+    return responseTimeoutMs;
+  }
+
+  public void setResponseTimeoutMs(long responseTimeoutMs) {
+    this.responseTimeoutMs = responseTimeoutMs;
+  }
+
+}
@@ -0,0 +1,76 @@
+package com.korovko.arm_controller.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Which control law a loop applies to its routes, nested under the loop's own properties as
+ * {@code control}. Gains are in units of the loop's value per percentage point of error share.
+ */
+public class ControlLawSettings {
+
+  /**
+   * Law for routes without an override: {@code deadband}, {@code pid} or {@code aimd}.
+   */
+  private String law = "deadband";
+  /**
+   * Per-route overrides of {@code law}, keyed by routeId.
+   */
+  private Map<String, String> routes = new HashMap<>();
+  private double kp = 1.0;
+  private double ki = 0.5;
+  private double kd = 0.0;
+  /**
+   * Multiplier the AIMD law applies on errors above the band.
+   */
+  private double aimdFactor = 2.0;
+
+  public String getLaw() {
+    return law;
+  }
+
+  public void setLaw(String law) {
+    this.law = law;
+  }
+
+  public Map<String, String> getRoutes() {
+    return routes;
+  }
+
+  public void setRoutes(Map<String, String> routes) {
+    this.routes = routes;
+  }
+
+  public double getKp() {
+    return kp;
+  }
+
+  public void setKp(double kp) {
+    this.kp = kp;
+  }
+
+  public double getKi() {
+    return ki;
+  }
+
+  public void setKi(double ki) {
+    this.ki = ki;
+  }
+
+  public double getKd() {
+    return kd;
+  }
+
+  public void setKd(double kd) {
+    this.kd = kd;
+  }
+
+  public double getAimdFactor() {
+    return aimdFactor;
+  }
+
+  public void setAimdFactor(double aimdFactor) {
+    this.aimdFactor = aimdFactor;
+  }
+
+}
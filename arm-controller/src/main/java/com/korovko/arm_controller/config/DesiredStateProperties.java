@@ -0,0 +1,29 @@
+package com.korovko.arm_controller.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "dynamic.state")
+public class DesiredStateProperties {
+
+  private boolean pushEnabled = false;
+  private long longPollTimeoutMs = 30_000;
+
+  public boolean isPushEnabled() {
+    return pushEnabled;
+  }
+
+  public void setPushEnabled(boolean pushEnabled) {
+    this.pushEnabled = pushEnabled;
+  }
+
+  public long getLongPollTimeoutMs() {
+    return longPollTimeoutMs;
+  }
+
+  public void setLongPollTimeoutMs(long longPollTimeoutMs) {
+    this.longPollTimeoutMs = longPollTimeoutMs;
+  }
+
+}
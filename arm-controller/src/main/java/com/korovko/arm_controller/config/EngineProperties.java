@@ -0,0 +1,47 @@
+package com.korovko.arm_controller.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "dynamic.engine")
+public class EngineProperties {
+
+  /**
+   * Threads evaluating route decisions; 0 means one per available processor.
+   */
+  private int parallelism = 0;
+  /**
+   * Gateway calls in flight at once across all routes.
+   */
+  private int applyConcurrency = 16;
+  /**
+   * How long a tick waits for its gateway calls before moving on.
+   */
+  private long applyTimeoutMs = 10_000;
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  public int getApplyConcurrency() {
+    return applyConcurrency;
+  }
+
+  public void setApplyConcurrency(int applyConcurrency) {
+    this.applyConcurrency = applyConcurrency;
+  }
+
+  public long getApplyTimeoutMs() {
+    return applyTimeoutMs;
+  }
+
+  public void setApplyTimeoutMs(long applyTimeoutMs) {
+    this.applyTimeoutMs = applyTimeoutMs;
+  }
+
+}
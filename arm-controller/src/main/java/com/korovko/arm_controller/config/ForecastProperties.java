@@ -0,0 +1,128 @@
+package com.korovko.arm_controller.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "dynamic.forecast")
+public class ForecastProperties {
+
+  private boolean enabled = false;
+  /**
+   * Width of one bucket of the seasonal model.
+   */
+  private int bucketMinutes = 5;
+  /**
+   * Buckets per season: 288 five-minute buckets make a daily season, 2016 a weekly one.
+   */
+  private int seasonBuckets = 288;
+  private double alpha = 0.2;
+  private double beta = 0.01;
+  private double gamma = 0.3;
+  /**
+   * How far ahead of a forecast peak timeouts are raised.
+   */
+  private int leadMinutes = 10;
+  /**
+   * Forecast traffic at the lead time over forecast traffic now that counts as a peak.
+   */
+  private double peakRatio = 1.5;
+  /**
+   * Timeout steps added once ahead of a peak; decreases are held until the peak has passed.
+   */
+  private int preAdjustSteps = 2;
+  /**
+   * Where the model is kept across restarts; empty keeps it in memory only.
+   */
+  private String stateFile = "forecast-state.bin";
+  private long persistIntervalMs = 300_000;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getBucketMinutes() {
+    return bucketMinutes;
+  }
+
+  public void setBucketMinutes(int bucketMinutes) {
+    this.bucketMinutes = bucketMinutes;
+  }
+
+  public int getSeasonBuckets() {
+    return seasonBuckets;
+  }
+
+  public void setSeasonBuckets(int seasonBuckets) {
+    this.seasonBuckets = seasonBuckets;
+  }
+
+  public double getAlpha() {
+    return alpha;
+  }
+
+  public void setAlpha(double alpha) {
+    this.alpha = alpha;
+  }
+
+  public double getBeta() {
+    return beta;
+  }
+
+  public void setBeta(double beta) {
+    this.beta = beta;
+  }
+
+  public double getGamma() {
+    return gamma;
+  }
+
+  public void setGamma(double gamma) {
+    this.gamma = gamma;
+  }
+
+  public int getLeadMinutes() {
+    return leadMinutes;
+  }
+
+  public void setLeadMinutes(int leadMinutes) {
+    this.leadMinutes = leadMinutes;
+  }
+
+  public double getPeakRatio() {
+    return peakRatio;
+  }
+
+  public void setPeakRatio(double peakRatio) {
+    this.peakRatio = peakRatio;
+  }
+
+  public int getPreAdjustSteps() {
+    return preAdjustSteps;
+  }
+
+  public void setPreAdjustSteps(int preAdjustSteps) {
+    this.preAdjustSteps = preAdjustSteps;
+  }
+
+  public String getStateFile() {
+    return stateFile;
+  }
+
+  public void setStateFile(String stateFile) {
+    this.stateFile = stateFile;
+  }
+
+  public long getPersistIntervalMs() {
+    return persistIntervalMs;
+  }
+
+  public void setPersistIntervalMs(long persistIntervalMs) {
+    this.persistIntervalMs = persistIntervalMs;
+  }
+
+}
@@ -0,0 +1,106 @@
+package com.korovko.arm_controller.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "dynamic.joint")
+public class JointConfigProperties {
+
+  /**
+   * Routes whose timeout and retry are chosen together; the separate timeout and retry loops skip them.
+   * Timeouts range over {@code dynamic.timeout} min..max by stepSize, attempts over {@code dynamic.retry}
+   * minAttempts..maxAttempts. Needs {@code dynamic.metrics.histogram}; without it the routes stay with the
+   * separate loops.
+   */
+  private List<String> routes = new ArrayList<>();
+  /**
+   * Worst-case time a client waits, all attempts and backoffs included.
+   */
+  private long latencyBudgetMs = 2_500;
+  /**
+   * Per-route overrides of latencyBudgetMs, keyed by routeId.
+   */
+  private Map<String, Long> latencyBudgetsMs = new HashMap<>();
+  /**
+   * Upper bound on expected upstream requests per client request.
+   */
+  private double maxAmplification = 1.5;
+  private List<Integer> firstBackoffsMs = new ArrayList<>(List.of(50, 100, 200));
+  private long minRequests = 50;
+  /**
+   * Expected success has to improve by this many percentage points to switch combinations.
+   */
+  private double minGainPct = 0.1;
+  private int minChangeIntervalMins = 1;
+
+  public List<String> getRoutes() {
+    return routes;
+  }
+
+  public void setRoutes(List<String> routes) {
+    this.routes = routes;
+  }
+
+  public long getLatencyBudgetMs() {
+    return latencyBudgetMs;
+  }
+
+  public void setLatencyBudgetMs(long latencyBudgetMs) {
+    this.latencyBudgetMs = latencyBudgetMs;
+  }
+
+  public Map<String, Long> getLatencyBudgetsMs() {
+    return latencyBudgetsMs;
+  }
+
+  public void setLatencyBudgetsMs(Map<String, Long> latencyBudgetsMs) {
+    this.latencyBudgetsMs = latencyBudgetsMs;
+  }
+
+  public double getMaxAmplification() {
+    return maxAmplification;
+  }
+
+  public void setMaxAmplification(double maxAmplification) {
+    this.maxAmplification = maxAmplification;
+  }
+
+  public List<Integer> getFirstBackoffsMs() {
+    return firstBackoffsMs;
+  }
+
+  public void setFirstBackoffsMs(List<Integer> firstBackoffsMs) {
+    this.firstBackoffsMs = firstBackoffsMs;
+  }
+
+  public long getMinRequests() {
+    return minRequests;
+  }
+
+  public void setMinRequests(long minRequests) {
+    this.minRequests = minRequests;
+  }
+
+  public double getMinGainPct() {
+    return minGainPct;
+  }
+
+  public void setMinGainPct(double minGainPct) {
+    this.minGainPct = minGainPct;
+  }
+
+  public int getMinChangeIntervalMins() {
+    return minChangeIntervalMins;
+  }
+
+  public void setMinChangeIntervalMins(int minChangeIntervalMins) {
+    this.minChangeIntervalMins = minChangeIntervalMins;
+  }
+
+}
@@ -0,0 +1,124 @@
+package com.korovko.arm_controller.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "dynamic.metrics")
+public class MetricsProperties {
+
+  /**
+   * How often raw request counters are fetched from Prometheus.
+   */
+  private long sampleIntervalMs = 10_000;
+  /**
+   * Counter samples kept per route and status; must cover the longest window.
+   */
+  private int historySize = 64;
+  /**
+   * Window the control loops decide on.
+   */
+  private long windowMs = 60_000;
+  /**
+   * Additional windows every tick's snapshot carries.
+   */
+  private List<Long> windowsMs = new ArrayList<>(List.of(10_000L, 60_000L, 300_000L));
+  /**
+   * Sample intervals of per-step history the control loops fit a trend over; 0 disables it.
+   */
+  private int trendSteps = 6;
+  /**
+   * Fill the counter history from query_range on the first sample instead of waiting for it to build up.
+   */
+  private boolean backfill = true;
+  /**
+   * Also sample the gateway's latency histogram buckets, needed for quantile-based timeout sizing and the
+   * joint optimizer. The gateway has to publish percentile histogram buckets for
+   * {@code spring.cloud.gateway.requests}; the starter does unless {@code arm.metrics.request-histogram=false}.
+   */
+  private boolean histogram = false;
+  /**
+   * Spacing of the coarse counter history that serves windows longer than the regular one covers.
+   */
+  private long longHistoryIntervalMs = 60_000;
+  /**
+   * Coarse samples kept per route and status; fewer than 2 disables the coarse history.
+   */
+  private int longHistorySize = 0;
+
+  public long getSampleIntervalMs() {
+    return sampleIntervalMs;
+  }
+
+  public void setSampleIntervalMs(long sampleIntervalMs) {
+    this.sampleIntervalMs = sampleIntervalMs;
+  }
+
+  public int getHistorySize() {
+    return historySize;
+  }
+
+  public void setHistorySize(int historySize) {
+    this.historySize = historySize;
+  }
+
+  public long getWindowMs() {
+    return windowMs;
+  }
+
+  public void setWindowMs(long windowMs) {
+    this.windowMs = windowMs;
+  }
+
+  public List<Long> getWindowsMs() {
+    return windowsMs;
+  }
+
+  public void setWindowsMs(List<Long> windowsMs) {
+    this.windowsMs = windowsMs;
+  }
+
+  public int getTrendSteps() {
+    return trendSteps;
+  }
+
+  public void setTrendSteps(int trendSteps) {
+    this.trendSteps = trendSteps;
+  }
+
+  public boolean isBackfill() {
+    return backfill;
+  }
+
+  public void setBackfill(boolean backfill) {
+    this.backfill = backfill;
+  }
+
+  public boolean isHistogram() {
+    return histogram;
+  }
+
+  public void setHistogram(boolean histogram) {
+    this.histogram = histogram;
+  }
+
+  public long getLongHistoryIntervalMs() {
+    return longHistoryIntervalMs;
+  }
+
+  public void setLongHistoryIntervalMs(long longHistoryIntervalMs) {
+    this.longHistoryIntervalMs = longHistoryIntervalMs;
+  }
+
+  public int getLongHistorySize() {
+    return longHistorySize;
+  }
+
+  public void setLongHistorySize(int longHistorySize) {
+    this.longHistorySize = longHistorySize;
+  }
+
+}
@@ -0,0 +1,74 @@
+package com.korovko.arm_controller.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "dynamic.outlier")
+public class OutlierDetectionProperties {
+
+  private boolean enabled = true;
+  private int consecutiveFailures = 5;
+  private long baseEjectionMs = 30_000;
+  private long maxEjectionMs = 300_000;
+  private double latencyFactor = 3.0;
+  private long minSamples = 20;
+  private int maxEjectionPercent = 50;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getConsecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  public void setConsecutiveFailures(int consecutiveFailures) {
+    this.consecutiveFailures = consecutiveFailures;
+  }
+
+  public long getBaseEjectionMs() {
+    return baseEjectionMs;
+  }
+
+  public void setBaseEjectionMs(long baseEjectionMs) {
+    this.baseEjectionMs = baseEjectionMs;
+  }
+
+  public long getMaxEjectionMs() {
+    return maxEjectionMs;
+  }
+
+  public void setMaxEjectionMs(long maxEjectionMs) {
+    this.maxEjectionMs = maxEjectionMs;
+  }
+
+  public double getLatencyFactor() {
+    return latencyFactor;
+  }
+
+  public void setLatencyFactor(double latencyFactor) {
+    this.latencyFactor = latencyFactor;
+  }
+
+  public long getMinSamples() {
+    return minSamples;
+  }
+
+  public void setMinSamples(long minSamples) {
+    this.minSamples = minSamples;
+  }
+
+  public int getMaxEjectionPercent() {
+    return maxEjectionPercent;
+  }
+
+  public void setMaxEjectionPercent(int maxEjectionPercent) {
+    this.maxEjectionPercent = maxEjectionPercent;
+  }
+
+}
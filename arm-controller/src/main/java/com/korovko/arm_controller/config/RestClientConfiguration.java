@@ -1,10 +1,16 @@
 package com.korovko.arm_controller.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.korovko.arm_controller.client.AsyncHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class RestClientConfiguration {
 
@@ -12,19 +18,47 @@ public class RestClientConfiguration {
   private String armUrl;
   @Value("${rest-client.apiGatewayUrl}")
   private String apiGatewayUrl;
+  @Value("${rest-client.connectTimeoutMs:1000}")
+  private long connectTimeoutMs;
+  @Value("${rest-client.readTimeoutMs:5000}")
+  private long readTimeoutMs;
+  @Value("${rest-client.http2:true}")
+  private boolean http2;
 
+  /**
+   * One JDK client for both upstreams: it keeps connections alive and pools them per host, and negotiates
+   * HTTP/2 where the server supports it.
+   */
   @Bean
-  public RestClient armRestClient() {
-    return RestClient.builder()
-        .baseUrl(armUrl)
+  public HttpClient controllerHttpClient() {
+    return HttpClient.newBuilder()
+        .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofMillis(connectTimeoutMs))
         .build();
   }
 
   @Bean
-  public RestClient apiGatewayRestClient() {
+  public RestClient apiGatewayRestClient(HttpClient controllerHttpClient) {
     return RestClient.builder()
         .baseUrl(apiGatewayUrl)
+        .requestFactory(requestFactory(controllerHttpClient))
         .build();
   }
 
+  @Bean
+  public AsyncHttpClient armAsyncHttpClient(HttpClient controllerHttpClient, ObjectMapper objectMapper) {
+    return new AsyncHttpClient(controllerHttpClient, armUrl, objectMapper, Duration.ofMillis(readTimeoutMs));
+  }
+
+  @Bean
+  public AsyncHttpClient apiGatewayAsyncHttpClient(HttpClient controllerHttpClient, ObjectMapper objectMapper) {
+    return new AsyncHttpClient(controllerHttpClient, apiGatewayUrl, objectMapper, Duration.ofMillis(readTimeoutMs));
+  }
+
+  private JdkClientHttpRequestFactory requestFactory(HttpClient httpClient) {
+    JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+    factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+    return factory;
+  }
+
 }
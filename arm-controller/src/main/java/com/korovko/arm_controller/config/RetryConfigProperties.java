@@ -19,6 +19,30 @@ public class RetryConfigProperties {
   private int firstBackoffMs = 50;
   private int maxBackoffMs = 250;
   private int factor = 2;
+  private double jitter = 1.0;
+  private boolean honorRetryAfter = true;
+  private double minAttemptSuccessPct = 5.0;
+  private long minAttemptSamples = 100;
+  /**
+   * Routes with fewer requests in the decision window are left alone.
+   */
+  private long minRequests = 50;
+  /**
+   * Normal quantile of the confidence interval around the error share; 0 decides on the share alone.
+   */
+  private double confidenceZ = 1.96;
+  /**
+   * Conditioning of the error share before it is compared against the band.
+   */
+  private SignalFilterSettings filter = new SignalFilterSettings();
+  /**
+   * Law turning the conditioned share into the next value.
+   */
+  private ControlLawSettings control = new ControlLawSettings();
+  /**
+   * Routes whose retry configuration is explored and chosen by a bandit.
+   */
+  private BanditSettings bandit = new BanditSettings();
 
   public int getMinAttempts() {
     return minAttempts;
@@ -116,4 +140,76 @@ public class RetryConfigProperties {
     this.factor = factor;
   }
 
+  public double getJitter() {
+    return jitter;
+  }
+
+  public void setJitter(double jitter) {
+    this.jitter = jitter;
+  }
+
+  public boolean isHonorRetryAfter() {
+    return honorRetryAfter;
+  }
+
+  public void setHonorRetryAfter(boolean honorRetryAfter) {
+    this.honorRetryAfter = honorRetryAfter;
+  }
+
+  public double getMinAttemptSuccessPct() {
+    return minAttemptSuccessPct;
+  }
+
+  public void setMinAttemptSuccessPct(double minAttemptSuccessPct) {
+    this.minAttemptSuccessPct = minAttemptSuccessPct;
+  }
+
+  public long getMinAttemptSamples() {
+    return minAttemptSamples;
+  }
+
+  public void setMinAttemptSamples(long minAttemptSamples) {
+    this.minAttemptSamples = minAttemptSamples;
+  }
+
+  public long getMinRequests() {
+    return minRequests;
+  }
+
+  public void setMinRequests(long minRequests) {
+    this.minRequests = minRequests;
+  }
+
+  public double getConfidenceZ() {
+    return confidenceZ;
+  }
+
+  public void setConfidenceZ(double confidenceZ) {
+    this.confidenceZ = confidenceZ;
+  }
+
+  public SignalFilterSettings getFilter() {
+    return filter;
+  }
+
+  public void setFilter(SignalFilterSettings filter) {
+    this.filter = filter;
+  }
+
+  public ControlLawSettings getControl() {
+    return control;
+  }
+
+  public void setControl(ControlLawSettings control) {
+    this.control = control;
+  }
+
+  public BanditSettings getBandit() {
+    return bandit;
+  }
+
+  public void setBandit(BanditSettings bandit) {
+    this.bandit = bandit;
+  }
+
 }
@@ -0,0 +1,65 @@
+package com.korovko.arm_controller.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conditioning of a control loop's error signal before the deadband comparison, nested under the loop's
+ * own properties as {@code filter}.
+ */
+public class SignalFilterSettings {
+
+  /**
+   * Filters in the order they are applied: {@code hampel}, {@code median}, {@code ewma}. Empty disables
+   * conditioning.
+   */
+  private List<String> chain = new ArrayList<>();
+  private double ewmaAlpha = 0.3;
+  private int medianWindow = 5;
+  private int hampelWindow = 7;
+  /**
+   * Scaled MADs from the window median beyond which a value counts as an outlier.
+   */
+  private double hampelThreshold = 3.0;
+
+  public List<String> getChain() {
+    return chain;
+  }
+
+  public void setChain(List<String> chain) {
+    this.chain = chain;
+  }
+
+  public double getEwmaAlpha() {
+    return ewmaAlpha;
+  }
+
+  public void setEwmaAlpha(double ewmaAlpha) {
+    this.ewmaAlpha = ewmaAlpha;
+  }
+
+  public int getMedianWindow() {
+    return medianWindow;
+  }
+
+  public void setMedianWindow(int medianWindow) {
+    this.medianWindow = medianWindow;
+  }
+
+  public int getHampelWindow() {
+    return hampelWindow;
+  }
+
+  public void setHampelWindow(int hampelWindow) {
+    this.hampelWindow = hampelWindow;
+  }
+
+  public double getHampelThreshold() {
+    return hampelThreshold;
+  }
+
+  public void setHampelThreshold(double hampelThreshold) {
+    this.hampelThreshold = hampelThreshold;
+  }
+
+}
@@ -0,0 +1,96 @@
+package com.korovko.arm_controller.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "dynamic.slo")
+public class SloProperties {
+
+  /**
+   * Let error-budget burn rates drive panic and hold decreases in the timeout and retry loops.
+   */
+  private boolean enabled = false;
+  /**
+   * Share of requests that must not fail, in percent; the rest is the error budget.
+   */
+  private double objectivePct = 99.0;
+  /**
+   * Per-route overrides of objectivePct, keyed by routeId.
+   */
+  private Map<String, Double> objectivesPct = new HashMap<>();
+  /**
+   * Windows that all have to burn at fastBurn or faster to panic; each must be one of
+   * {@code dynamic.metrics.windowsMs}.
+   */
+  private List<Long> fastWindowsMs = new ArrayList<>(List.of(60_000L, 300_000L));
+  private double fastBurn = 10.0;
+  /**
+   * Windows that all have to burn no faster than slowBurn before a loop may decrease; each must be one of
+   * {@code dynamic.metrics.windowsMs}.
+   */
+  private List<Long> slowWindowsMs = new ArrayList<>(List.of(1_800_000L, 21_600_000L));
+  private double slowBurn = 1.0;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public double getObjectivePct() {
+    return objectivePct;
+  }
+
+  public void setObjectivePct(double objectivePct) {
+    this.objectivePct = objectivePct;
+  }
+
+  public Map<String, Double> getObjectivesPct() {
+    return objectivesPct;
+  }
+
+  public void setObjectivesPct(Map<String, Double> objectivesPct) {
+    this.objectivesPct = objectivesPct;
+  }
+
+  public List<Long> getFastWindowsMs() {
+    return fastWindowsMs;
+  }
+
+  public void setFastWindowsMs(List<Long> fastWindowsMs) {
+    this.fastWindowsMs = fastWindowsMs;
+  }
+
+  public double getFastBurn() {
+    return fastBurn;
+  }
+
+  public void setFastBurn(double fastBurn) {
+    this.fastBurn = fastBurn;
+  }
+
+  public List<Long> getSlowWindowsMs() {
+    return slowWindowsMs;
+  }
+
+  public void setSlowWindowsMs(List<Long> slowWindowsMs) {
+    this.slowWindowsMs = slowWindowsMs;
+  }
+
+  public double getSlowBurn() {
+    return slowBurn;
+  }
+
+  public void setSlowBurn(double slowBurn) {
+    this.slowBurn = slowBurn;
+  }
+
+}
@@ -16,6 +16,32 @@ public class TimeoutConfigProperties {
   private Double deadbandPct = 0.75;
   private Integer decreaseStablePeriods = 1;
   private Double panicMultiplier = 2.0;
+  /**
+   * Routes with fewer requests in the decision window are left alone.
+   */
+  private Integer minRequests = 50;
+  /**
+   * Normal quantile of the confidence interval around the error share; 0 decides on the share alone.
+   */
+  private Double confidenceZ = 1.96;
+  /**
+   * Size the timeout from a latency quantile of the gateway histogram in one move instead of stepping on
+   * the 504 share; needs {@code dynamic.metrics.histogram}. Routes without histogram data keep stepping.
+   */
+  private Boolean quantileSizing = false;
+  private Double quantile = 0.99;
+  /**
+   * Timeout as a multiple of the quantile, clamped to {@code min}/{@code max}.
+   */
+  private Double quantileMultiplier = 1.5;
+  /**
+   * Conditioning of the error share before it is compared against the band.
+   */
+  private SignalFilterSettings filter = new SignalFilterSettings();
+  /**
+   * Law turning the conditioned share into the next value.
+   */
+  private ControlLawSettings control = new ControlLawSettings();
 
   public Integer getMax() {
     return max;
@@ -89,4 +115,60 @@ public class TimeoutConfigProperties {
     this.panicMultiplier = panicMultiplier;
   }
 
+  public Integer getMinRequests() {
+    return minRequests;
+  }
+
+  public void setMinRequests(Integer minRequests) {
+    this.minRequests = minRequests;
+  }
+
+  public Double getConfidenceZ() {
+    return confidenceZ;
+  }
+
+  public void setConfidenceZ(Double confidenceZ) {
+    this.confidenceZ = confidenceZ;
+  }
+
+  public Boolean getQuantileSizing() {
+    return quantileSizing;
+  }
+
+  public void setQuantileSizing(Boolean quantileSizing) {
+    this.quantileSizing = quantileSizing;
+  }
+
+  public Double getQuantile() {
+    return quantile;
+  }
+
+  public void setQuantile(Double quantile) {
+    this.quantile = quantile;
+  }
+
+  public Double getQuantileMultiplier() {
+    return quantileMultiplier;
+  }
+
+  public void setQuantileMultiplier(Double quantileMultiplier) {
+    this.quantileMultiplier = quantileMultiplier;
+  }
+
+  public SignalFilterSettings getFilter() {
+    return filter;
+  }
+
+  public void setFilter(SignalFilterSettings filter) {
+    this.filter = filter;
+  }
+
+  public ControlLawSettings getControl() {
+    return control;
+  }
+
+  public void setControl(ControlLawSettings control) {
+    this.control = control;
+  }
+
 }
@@ -0,0 +1,48 @@
+package com.korovko.arm_controller.control;
+
+import com.korovko.arm_controller.state.RouteStateTable;
+
+/**
+ * AIMD with the directions of a protective setting: errors above the band multiply the value by
+ * {@code factor} at once, and the value gives back one step at a time after the configured number of
+ * ticks below the band. It backs off hard on trouble and probes for the cheaper setting slowly, like
+ * TCP congestion control does in reverse.
+ */
+public class AimdLaw implements ControlLaw {
+
+  private final double factor;
+
+  public AimdLaw(double factor) {
+    if (!(factor > 1.0)) {
+      throw new IllegalArgumentException("AIMD factor must be > 1, got " + factor);
+    }
+    this.factor = factor;
+  }
+
+  @Override
+  public int next(RouteStateTable routes, int idx, ControlSignal signal, ControlLimits limits) {
+    int current = routes.value(idx);
+
+    if (signal.panic() || signal.above()) {
+      routes.resetStableGoodCount(idx);
+      if (!limits.increaseAllowed()) {
+        return current;
+      }
+      long grown = (long) Math.ceil(Math.max(1, current) * factor);
+      return limits.move(current, Math.max(grown - current, 1));
+    }
+
+    if (!signal.below()) {
+      routes.resetStableGoodCount(idx);
+      return current;
+    }
+
+    int good = routes.incrementStableGoodCount(idx);
+    if (good < limits.stablePeriods() || !limits.decreaseAllowed()) {
+      return current;
+    }
+    routes.resetStableGoodCount(idx);
+    return limits.move(current, -limits.step());
+  }
+
+}
@@ -0,0 +1,20 @@
+package com.korovko.arm_controller.control;
+
+import com.korovko.arm_controller.state.RouteStateTable;
+
+/**
+ * Turns a route's signal into its next value. In both control loops a higher error share calls for a
+ * higher value (a longer timeout, more attempts), so laws work in that one direction.
+ * <p>
+ * Laws may keep their own primitive state per route index and use the stable-period counter of the
+ * route table. A route is evaluated by one thread at a time, so neither needs locking.
+ */
+public interface ControlLaw {
+
+  /**
+   * Next value of the route at {@code idx}; the current value means no change. The result respects the
+   * cooldowns and bounds in {@code limits}.
+   */
+  int next(RouteStateTable routes, int idx, ControlSignal signal, ControlLimits limits);
+
+}
@@ -0,0 +1,57 @@
+package com.korovko.arm_controller.control;
+
+import com.korovko.arm_controller.config.ControlLawSettings;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The laws a loop is configured with, one instance per law name shared by all routes that use it.
+ */
+public class ControlLaws {
+
+  private final ControlLaw defaultLaw;
+  private final Map<String, ControlLaw> byRoute;
+
+  private ControlLaws(ControlLaw defaultLaw, Map<String, ControlLaw> byRoute) {
+    this.defaultLaw = defaultLaw;
+    this.byRoute = byRoute;
+  }
+
+  /**
+   * Builds the laws named in {@code settings} for route indexes below {@code capacity}; no settings means
+   * the deadband step law everywhere.
+   */
+  public static ControlLaws of(ControlLawSettings settings, int capacity) {
+    if (settings == null) {
+      return new ControlLaws(new DeadbandStepLaw(), Map.of());
+    }
+    Map<String, ControlLaw> instances = new HashMap<>();
+    ControlLaw defaultLaw = instances.computeIfAbsent(name(settings.getLaw()), name -> create(name, settings, capacity));
+    Map<String, ControlLaw> byRoute = new HashMap<>();
+    if (settings.getRoutes() != null) {
+      settings.getRoutes().forEach((routeId, law) ->
+          byRoute.put(routeId, instances.computeIfAbsent(name(law), name -> create(name, settings, capacity))));
+    }
+    return new ControlLaws(defaultLaw, Map.copyOf(byRoute));
+  }
+
+  public ControlLaw forRoute(String routeId) {
+    return byRoute.getOrDefault(routeId, defaultLaw);
+  }
+
+  private static String name(String law) {
+    return law == null ? "deadband" : law.trim().toLowerCase(Locale.ROOT);
+  }
+
+  private static ControlLaw create(String name, ControlLawSettings settings, int capacity) {
+    return switch (name) {
+      case "deadband" -> new DeadbandStepLaw();
+      case "pid" -> new PidLaw(settings.getKp(), settings.getKi(), settings.getKd(), capacity);
+      case "aimd" -> new AimdLaw(settings.getAimdFactor());
+      default -> throw new IllegalArgumentException("Unknown control law: " + name);
+    };
+  }
+
+}
@@ -0,0 +1,27 @@
+package com.korovko.arm_controller.control;
+
+/**
+ * What a law may do to a route's value this tick.
+ *
+ * @param min              lowest value
+ * @param max              highest value an increase may reach this tick
+ * @param step             configured step size
+ * @param stablePeriods    ticks below the band before a step-wise decrease
+ * @param increaseAllowed  the increase cooldown has passed
+ * @param decreaseAllowed  the decrease cooldown has passed
+ */
+public record ControlLimits(int min, int max, int step, int stablePeriods, boolean increaseAllowed,
+                            boolean decreaseAllowed) {
+
+  /**
+   * {@code current} moved by {@code delta}, stopping at the bound in the direction of the move. A value
+   * already beyond that bound stays where it is.
+   */
+  int move(int current, long delta) {
+    if (delta > 0) {
+      return (int) Math.max(current, Math.min(max, current + delta));
+    }
+    return (int) Math.min(current, Math.max(min, current + delta));
+  }
+
+}
@@ -0,0 +1,31 @@
+package com.korovko.arm_controller.control;
+
+/**
+ * What a control loop measured for one route this tick, in percent of requests.
+ *
+ * @param value  conditioned error share the law steers on
+ * @param low    lowest value the share plausibly has, given the traffic behind it
+ * @param high   highest value the share plausibly has
+ * @param target share the loop aims for
+ * @param lower  lower edge of the band around the target
+ * @param upper  upper edge of the band around the target
+ * @param panic  the raw share is far enough above target to act immediately
+ */
+public record ControlSignal(double value, double low, double high, double target, double lower, double upper,
+                            boolean panic) {
+
+  /**
+   * The share is above the band even at its plausible lowest.
+   */
+  public boolean above() {
+    return low > upper;
+  }
+
+  /**
+   * The share is below the band even at its plausible highest.
+   */
+  public boolean below() {
+    return high < lower;
+  }
+
+}
@@ -0,0 +1,36 @@
+package com.korovko.arm_controller.control;
+
+import com.korovko.arm_controller.state.RouteStateTable;
+
+/**
+ * One fixed step up as soon as the share is above the band or panicking, one step down after the
+ * configured number of ticks below it. Nothing moves inside the band.
+ */
+public class DeadbandStepLaw implements ControlLaw {
+
+  @Override
+  public int next(RouteStateTable routes, int idx, ControlSignal signal, ControlLimits limits) {
+    int current = routes.value(idx);
+
+    if (signal.panic() || signal.above()) {
+      routes.resetStableGoodCount(idx);
+      if (!limits.increaseAllowed()) {
+        return current;
+      }
+      return limits.move(current, limits.step());
+    }
+
+    if (!signal.below()) {
+      routes.resetStableGoodCount(idx);
+      return current;
+    }
+
+    int good = routes.incrementStableGoodCount(idx);
+    if (good < limits.stablePeriods() || !limits.decreaseAllowed()) {
+      return current;
+    }
+    routes.resetStableGoodCount(idx);
+    return limits.move(current, -limits.step());
+  }
+
+}
@@ -0,0 +1,62 @@
+package com.korovko.arm_controller.control;
+
+import com.korovko.arm_controller.state.RouteStateTable;
+
+/**
+ * PID in velocity form: every tick moves the value by
+ * {@code kp * (e - e1) + ki * e + kd * (e - 2 * e1 + e2)}, where {@code e} is the distance of the share
+ * from the target in percentage points and {@code e1}, {@code e2} are the previous two. Inside the band,
+ * or when the traffic cannot tell, the error counts as zero. Steps are proportional to the error, so a
+ * large miss is corrected in a few ticks instead of one fixed step at a time.
+ * <p>
+ * Fractions of a unit, and moves a cooldown held back, are carried over to the next tick. Panic moves up
+ * by at least one configured step.
+ */
+public class PidLaw implements ControlLaw {
+
+  // Per route: e1, e2, carried-over move
+  private static final int STRIDE = 3;
+
+  private final double kp;
+  private final double ki;
+  private final double kd;
+  private final double[] state;
+
+  public PidLaw(double kp, double ki, double kd, int capacity) {
+    this.kp = kp;
+    this.ki = ki;
+    this.kd = kd;
+    this.state = new double[capacity * STRIDE];
+  }
+
+  @Override
+  public int next(RouteStateTable routes, int idx, ControlSignal signal, ControlLimits limits) {
+    int current = routes.value(idx);
+    int base = idx * STRIDE;
+    double e = signal.panic() || signal.above() || signal.below() ? signal.value() - signal.target() : 0.0;
+    double e1 = state[base];
+    double e2 = state[base + 1];
+    state[base + 1] = e1;
+    state[base] = e;
+
+    double move = state[base + 2] + kp * (e - e1) + ki * e + kd * (e - 2.0 * e1 + e2);
+    if (signal.panic()) {
+      move = Math.max(move, limits.step());
+    }
+    // Nothing to carry once the value sits at the bound it is pushed against
+    if (move > 0 && current >= limits.max() || move < 0 && current <= limits.min()) {
+      state[base + 2] = 0.0;
+      return current;
+    }
+    if (move > 0 && !limits.increaseAllowed() || move < 0 && !limits.decreaseAllowed()) {
+      state[base + 2] = move;
+      return current;
+    }
+
+    long whole = (long) move;
+    int next = limits.move(current, whole);
+    state[base + 2] = next == current + whole ? move - whole : 0.0;
+    return next;
+  }
+
+}
@@ -0,0 +1,105 @@
+package com.korovko.arm_controller.control;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.random.RandomGenerator;
+
+/**
+ * Independent Bernoulli bandits per route, solved by Thompson sampling. Each arm's success probability
+ * has a Beta posterior whose two parameters live in flat {@code double} arrays indexed by
+ * {@code route * arms + arm}, so thousands of routes cost two arrays and no objects. Evidence decays
+ * towards the uniform prior on every update, which bounds how sure a posterior gets and keeps the bandit
+ * exploring when the best arm changes.
+ * <p>
+ * Not thread-safe per route; callers keep a route on one thread at a time.
+ */
+public class ThompsonBandit {
+
+  private final int arms;
+  private final double[] alpha;
+  private final double[] beta;
+
+  public ThompsonBandit(int arms, int capacity) {
+    if (arms < 1) {
+      throw new IllegalArgumentException("A bandit needs at least one arm, got " + arms);
+    }
+    this.arms = arms;
+    this.alpha = new double[arms * capacity];
+    this.beta = new double[arms * capacity];
+    Arrays.fill(alpha, 1.0);
+    Arrays.fill(beta, 1.0);
+  }
+
+  public int arms() {
+    return arms;
+  }
+
+  /**
+   * Credits {@code successes} out of {@code trials} to the arm after discounting all of the route's
+   * evidence by {@code decay}.
+   */
+  public void update(int route, int arm, double successes, double trials, double decay) {
+    int base = route * arms;
+    for (int i = base; i < base + arms; i++) {
+      alpha[i] = 1.0 + decay * (alpha[i] - 1.0);
+      beta[i] = 1.0 + decay * (beta[i] - 1.0);
+    }
+    double s = Math.max(0.0, Math.min(successes, trials));
+    alpha[base + arm] += s;
+    beta[base + arm] += Math.max(0.0, trials - s);
+  }
+
+  /**
+   * Draws from every allowed arm's posterior and returns the arm with the highest draw, -1 when none
+   * is allowed.
+   */
+  public int sample(int route, IntPredicate allowed, RandomGenerator random) {
+    int base = route * arms;
+    int best = -1;
+    double bestDraw = Double.NEGATIVE_INFINITY;
+    for (int arm = 0; arm < arms; arm++) {
+      if (!allowed.test(arm)) {
+        continue;
+      }
+      double draw = beta(alpha[base + arm], beta[base + arm], random);
+      if (draw > bestDraw) {
+        bestDraw = draw;
+        best = arm;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Posterior mean of the arm's success probability.
+   */
+  public double mean(int route, int arm) {
+    int i = route * arms + arm;
+    return alpha[i] / (alpha[i] + beta[i]);
+  }
+
+  private static double beta(double a, double b, RandomGenerator random) {
+    double x = gamma(a, random);
+    double y = gamma(b, random);
+    return x / (x + y);
+  }
+
+  // Marsaglia-Tsang; both parameters stay at or above the prior's 1, where it needs no boosting
+  private static double gamma(double shape, RandomGenerator random) {
+    double d = shape - 1.0 / 3.0;
+    double c = 1.0 / Math.sqrt(9.0 * d);
+    while (true) {
+      double x = random.nextGaussian();
+      double v = 1.0 + c * x;
+      if (v <= 0.0) {
+        continue;
+      }
+      v = v * v * v;
+      double u = random.nextDouble();
+      if (Math.log(u) < 0.5 * x * x + d - d * v + d * Math.log(v)) {
+        return d * v;
+      }
+    }
+  }
+
+}
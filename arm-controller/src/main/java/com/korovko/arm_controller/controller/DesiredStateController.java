@@ -0,0 +1,29 @@
+package com.korovko.arm_controller.controller;
+
+import com.korovko.arm_controller.model.DesiredState;
+import com.korovko.arm_controller.service.DesiredStateService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+@RestController
+@RequestMapping("/internal/desired-state")
+public class DesiredStateController {
+
+  private final DesiredStateService desiredStateService;
+
+  public DesiredStateController(final DesiredStateService desiredStateService) {
+    this.desiredStateService = desiredStateService;
+  }
+
+  @GetMapping
+  public DeferredResult<ResponseEntity<DesiredState>> poll(
+      @RequestParam(defaultValue = "") final String epoch,
+      @RequestParam(defaultValue = "0") final long sinceVersion) {
+    return desiredStateService.poll(epoch, sinceVersion);
+  }
+
+}
@@ -0,0 +1,179 @@
+package com.korovko.arm_controller.engine;
+
+import com.korovko.arm_controller.config.EngineProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs one controller tick: route decisions are computed in parallel, partitioned so that a route is always
+ * evaluated by a single thread, and the resulting gateway calls are fanned out with bounded concurrency.
+ * Calls for the same route start one after another in submission order, calls for different routes overlap,
+ * so a tick costs about one gateway round-trip instead of one per changed route. Calls are asynchronous,
+ * so no thread is held while a request is in flight.
+ */
+@Slf4j
+@Component
+public class RouteEvaluationEngine {
+
+  private final int parallelism;
+  private final long applyTimeoutMs;
+  private final ExecutorService evaluators;
+  private final Semaphore permits;
+  private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+  private final Map<String, CompletableFuture<Void>> lanes = new ConcurrentHashMap<>();
+
+  public RouteEvaluationEngine(EngineProperties props) {
+    this.parallelism = props.getParallelism() > 0
+        ? props.getParallelism()
+        : Runtime.getRuntime().availableProcessors();
+    this.applyTimeoutMs = props.getApplyTimeoutMs();
+    this.evaluators = Executors.newFixedThreadPool(parallelism, daemon("arm-eval-"));
+    this.permits = new Semaphore(Math.max(1, props.getApplyConcurrency()));
+  }
+
+  /**
+   * Evaluates every item and returns once all are done. Items of one route land in the same partition,
+   * so per-route state is only ever touched by one thread within a tick.
+   */
+  public <T> void evaluate(List<T> items, Function<T, String> routeOf, Consumer<T> decision) {
+    if (items.size() < 2 || parallelism == 1) {
+      items.forEach(item -> decide(item, decision));
+      return;
+    }
+    int partitions = Math.min(parallelism, items.size());
+    List<List<T>> buckets = new ArrayList<>(partitions);
+    for (int i = 0; i < partitions; i++) {
+      buckets.add(new ArrayList<>());
+    }
+    for (T item : items) {
+      String routeId = routeOf.apply(item);
+      int bucket = routeId == null ? 0 : Math.floorMod(routeId.hashCode(), partitions);
+      buckets.get(bucket).add(item);
+    }
+
+    List<CompletableFuture<Void>> running = new ArrayList<>(partitions);
+    for (List<T> bucket : buckets) {
+      if (!bucket.isEmpty()) {
+        running.add(CompletableFuture.runAsync(() -> bucket.forEach(item -> decide(item, decision)), evaluators));
+      }
+    }
+    CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+  }
+
+  /**
+   * Queues a gateway call behind any earlier call for the same route. A failed call does not block the lane.
+   */
+  public CompletableFuture<Void> submit(String routeId, Supplier<CompletableFuture<Void>> call) {
+    CompletableFuture<Void> ready = new CompletableFuture<>();
+    CompletableFuture<Void> next = ready.thenCompose(ignored -> limited(routeId, call));
+    CompletableFuture<Void> previous = lanes.put(routeId, next);
+    if (previous == null) {
+      ready.complete(null);
+    } else {
+      previous.whenComplete((ignored, error) -> ready.complete(null));
+    }
+    next.whenComplete((ignored, error) -> lanes.remove(routeId, next));
+    return next;
+  }
+
+  /**
+   * Completes once all given calls are done, or after the configured timeout. Failures are already logged
+   * per call, so the returned future never fails.
+   */
+  public CompletableFuture<Void> whenAll(Collection<CompletableFuture<Void>> calls) {
+    if (calls.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new))
+        .orTimeout(applyTimeoutMs, TimeUnit.MILLISECONDS)
+        .handle((ignored, error) -> {
+          if (error instanceof TimeoutException) {
+            log.warn("Gateway calls still running after {}ms, continuing", applyTimeoutMs);
+          }
+          return null;
+        });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    evaluators.shutdownNow();
+  }
+
+  private CompletableFuture<Void> limited(String routeId, Supplier<CompletableFuture<Void>> call) {
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    waiting.add(() -> start(routeId, call, result));
+    drain();
+    return result;
+  }
+
+  // A call takes a permit when it starts and gives it back when its future completes
+  private void drain() {
+    while (!waiting.isEmpty() && permits.tryAcquire()) {
+      Runnable next = waiting.poll();
+      if (next == null) {
+        permits.release();
+        return;
+      }
+      next.run();
+    }
+  }
+
+  private void start(String routeId, Supplier<CompletableFuture<Void>> call, CompletableFuture<Void> result) {
+    CompletableFuture<Void> running;
+    try {
+      running = call.get();
+    } catch (RuntimeException e) {
+      running = CompletableFuture.failedFuture(e);
+    }
+    running.whenComplete((ignored, error) -> {
+      permits.release();
+      if (error != null) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        log.warn("Gateway call for {} failed: {}", routeId, cause.getMessage());
+        result.completeExceptionally(cause);
+      } else {
+        result.complete(null);
+      }
+      drain();
+    });
+  }
+
+  private static <T> void decide(T item, Consumer<T> decision) {
+    try {
+      decision.accept(item);
+    } catch (RuntimeException e) {
+      log.warn("Route evaluation failed: {}", e.getMessage());
+    }
+  }
+
+  private static ThreadFactory daemon(String prefix) {
+    AtomicInteger counter = new AtomicInteger();
+    return task -> {
+      Thread thread = new Thread(task, prefix + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+}
@@ -0,0 +1,216 @@
+package com.korovko.arm_controller.forecast;
+
+import com.korovko.arm_controller.state.RouteStateTable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Additive Holt-Winters model of per-route traffic over fixed time buckets. Observations within a bucket
+ * are averaged; when a route moves on to a later bucket the finished one updates level, trend and its
+ * seasonal slot once, so the cost per observation does not depend on the season length. State lives in
+ * primitive arrays indexed by route, the seasonal profile as {@code float}s allocated on a route's first
+ * observation.
+ * <p>
+ * The first season only collects the bucket averages. Once it is complete, level starts at their mean and
+ * the profile at each bucket's deviation from it, so the first forecasts already carry the seasonal shape
+ * instead of growing it from zero at {@code gamma} per season.
+ * <p>
+ * There is one season per model. A weekly season also learns the daily shape, but only once a week per
+ * bucket; a daily one treats weekends like weekdays.
+ * <p>
+ * Not thread-safe; the owner serializes updates.
+ */
+public final class SeasonalModel {
+
+  private static final int MAGIC = 0x48574632;
+
+  private final int seasonBuckets;
+  private final double alpha;
+  private final double beta;
+  private final double gamma;
+
+  private final RouteStateTable routes;
+  private final double[] level;
+  private final double[] trend;
+  private final long[] folded;
+  private final long[] current;
+  private final double[] sum;
+  private final int[] samples;
+  private final int[] observed;
+  private final float[][] season;
+
+  public SeasonalModel(int seasonBuckets, double alpha, double beta, double gamma, int capacity) {
+    if (seasonBuckets < 2) {
+      throw new IllegalArgumentException("Season must have at least 2 buckets, got " + seasonBuckets);
+    }
+    this.seasonBuckets = seasonBuckets;
+    this.alpha = alpha;
+    this.beta = beta;
+    this.gamma = gamma;
+    this.routes = new RouteStateTable(capacity);
+    this.level = new double[capacity];
+    this.trend = new double[capacity];
+    this.folded = new long[capacity];
+    this.current = new long[capacity];
+    this.sum = new double[capacity];
+    this.samples = new int[capacity];
+    this.observed = new int[capacity];
+    this.season = new float[capacity][];
+  }
+
+  /**
+   * Adds an observation of the route in the given bucket; observations of buckets already left behind
+   * are ignored.
+   */
+  public void observe(String routeId, long bucket, double value) {
+    if (!Double.isFinite(value)) {
+      return;
+    }
+    int idx = routes.intern(routeId);
+    if (samples[idx] > 0 && bucket != current[idx]) {
+      if (bucket < current[idx]) {
+        return;
+      }
+      fold(idx, current[idx], sum[idx] / samples[idx]);
+      sum[idx] = 0.0;
+      samples[idx] = 0;
+    }
+    current[idx] = bucket;
+    sum[idx] += value;
+    samples[idx]++;
+  }
+
+  /**
+   * Forecast of the route's value in the given bucket; NaN until a whole season has been observed.
+   */
+  public double forecast(String routeId, long bucket) {
+    int idx = routes.indexOf(routeId);
+    if (idx < 0 || observed[idx] < seasonBuckets) {
+      return Double.NaN;
+    }
+    long ahead = bucket - folded[idx];
+    return level[idx] + ahead * trend[idx] + season[idx][slot(bucket)];
+  }
+
+  public int size() {
+    return routes.size();
+  }
+
+  private void fold(int idx, long bucket, double value) {
+    float[] profile = season[idx];
+    if (profile == null) {
+      profile = new float[seasonBuckets];
+      Arrays.fill(profile, Float.NaN);
+      profile[slot(bucket)] = (float) value;
+      season[idx] = profile;
+      folded[idx] = bucket;
+      observed[idx] = 1;
+      return;
+    }
+    long gap = Math.max(1, bucket - folded[idx]);
+    if (observed[idx] < seasonBuckets) {
+      if (observed[idx] + gap <= seasonBuckets) {
+        profile[slot(bucket)] = (float) value;
+        folded[idx] = bucket;
+        observed[idx] += (int) gap;
+        if (observed[idx] == seasonBuckets) {
+          initialize(idx, profile);
+        }
+        return;
+      }
+      // The first season ended in a gap: start from what it saw, then update with this bucket as usual
+      initialize(idx, profile);
+    }
+    int slot = slot(bucket);
+    double previous = level[idx];
+    level[idx] = alpha * (value - profile[slot]) + (1.0 - alpha) * (previous + gap * trend[idx]);
+    trend[idx] = beta * (level[idx] - previous) / gap + (1.0 - beta) * trend[idx];
+    profile[slot] = (float) (gamma * (value - level[idx]) + (1.0 - gamma) * profile[slot]);
+    folded[idx] = bucket;
+    observed[idx] = (int) Math.min(Integer.MAX_VALUE, (long) observed[idx] + gap);
+  }
+
+  /**
+   * Turns the bucket averages of the first season into level and profile; buckets it did not see start
+   * at no deviation.
+   */
+  private void initialize(int idx, float[] profile) {
+    double total = 0.0;
+    int count = 0;
+    for (float value : profile) {
+      if (!Float.isNaN(value)) {
+        total += value;
+        count++;
+      }
+    }
+    double mean = total / count;
+    for (int s = 0; s < profile.length; s++) {
+      profile[s] = Float.isNaN(profile[s]) ? 0.0f : (float) (profile[s] - mean);
+    }
+    level[idx] = mean;
+    trend[idx] = 0.0;
+  }
+
+  private int slot(long bucket) {
+    return (int) Math.floorMod(bucket, (long) seasonBuckets);
+  }
+
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(seasonBuckets);
+    out.writeInt(routes.size());
+    for (int idx = 0; idx < routes.size(); idx++) {
+      out.writeUTF(routes.routeId(idx));
+      out.writeDouble(level[idx]);
+      out.writeDouble(trend[idx]);
+      out.writeLong(folded[idx]);
+      out.writeLong(current[idx]);
+      out.writeDouble(sum[idx]);
+      out.writeInt(samples[idx]);
+      out.writeInt(observed[idx]);
+      float[] profile = season[idx];
+      out.writeBoolean(profile != null);
+      if (profile != null) {
+        for (float value : profile) {
+          out.writeFloat(value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Restores routes written by {@link #write}. A file of another format or season length is rejected
+   * as a whole.
+   */
+  public void read(DataInput in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a seasonal model file");
+    }
+    int buckets = in.readInt();
+    if (buckets != seasonBuckets) {
+      throw new IOException("Stored season has " + buckets + " buckets, configured " + seasonBuckets);
+    }
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      int idx = routes.intern(in.readUTF());
+      level[idx] = in.readDouble();
+      trend[idx] = in.readDouble();
+      folded[idx] = in.readLong();
+      current[idx] = in.readLong();
+      sum[idx] = in.readDouble();
+      samples[idx] = in.readInt();
+      observed[idx] = in.readInt();
+      if (in.readBoolean()) {
+        float[] profile = new float[seasonBuckets];
+        for (int s = 0; s < seasonBuckets; s++) {
+          profile[s] = in.readFloat();
+        }
+        season[idx] = profile;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+package com.korovko.arm_controller.metrics;
+
+import com.korovko.arm_controller.config.SloProperties;
+
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Error-budget burn rates of one tick over the configured fast and slow windows. A burn rate of 1 spends
+ * the route's budget exactly as fast as its objective allows; the fast windows catch an outage within
+ * minutes, the slow ones tell whether the budget can afford a tighter setting. All windows are resolved
+ * from the snapshot once per tick, so a route's evaluation is a few divisions.
+ */
+public final class BurnRates {
+
+  private static final IntPredicate SERVER_ERROR = status -> status >= 500 && status < 600;
+  private static final BurnRates NONE = new BurnRates(null, new MetricsSnapshot[0], new MetricsSnapshot[0]);
+
+  private final SloProperties slo;
+  private final MetricsSnapshot[] fast;
+  private final MetricsSnapshot[] slow;
+
+  private BurnRates(SloProperties slo, MetricsSnapshot[] fast, MetricsSnapshot[] slow) {
+    this.slo = slo;
+    this.fast = fast;
+    this.slow = slow;
+  }
+
+  /**
+   * Burn rates that never panic and never hold a decrease, as when SLOs are off.
+   */
+  public static BurnRates none() {
+    return NONE;
+  }
+
+  /**
+   * @throws IllegalArgumentException when a configured window is not one the snapshot carries
+   */
+  public static BurnRates of(MetricsSnapshot snapshot, SloProperties slo) {
+    if (slo == null || !slo.isEnabled()) {
+      return NONE;
+    }
+    return new BurnRates(slo, windows(snapshot, slo.getFastWindowsMs()), windows(snapshot, slo.getSlowWindowsMs()));
+  }
+
+  public boolean enabled() {
+    return slo != null;
+  }
+
+  /**
+   * Whether matching responses burn the route's budget at the fast rate or faster in every fast window.
+   * A window without requests does not count as burning.
+   */
+  public boolean fastBurn(String routeId, IntPredicate errors) {
+    if (slo == null || fast.length == 0) {
+      return false;
+    }
+    double budgetPct = budgetPct(routeId);
+    for (MetricsSnapshot window : fast) {
+      if (!(burnRate(window.percent(routeId, errors), budgetPct) >= slo.getFastBurn())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Whether server errors of any kind burn the route's budget no faster than the slow rate in every slow
+   * window; always true when SLOs are off. A window without requests burns nothing.
+   */
+  public boolean budgetHealthy(String routeId) {
+    if (slo == null) {
+      return true;
+    }
+    double budgetPct = budgetPct(routeId);
+    for (MetricsSnapshot window : slow) {
+      if (burnRate(window.percent(routeId, SERVER_ERROR), budgetPct) > slo.getSlowBurn()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Multiple of the error budget spent, e.g. 2 when 2% fail against a 1% budget; NaN when the share is.
+   */
+  public static double burnRate(double errorPct, double budgetPct) {
+    return errorPct / Math.max(budgetPct, 1e-9);
+  }
+
+  private double budgetPct(String routeId) {
+    return 100.0 - slo.getObjectivesPct().getOrDefault(routeId, slo.getObjectivePct());
+  }
+
+  private static MetricsSnapshot[] windows(MetricsSnapshot snapshot, List<Long> windowsMs) {
+    MetricsSnapshot[] windows = new MetricsSnapshot[windowsMs.size()];
+    for (int i = 0; i < windows.length; i++) {
+      windows[i] = snapshot.window(windowsMs.get(i));
+    }
+    return windows;
+  }
+
+}
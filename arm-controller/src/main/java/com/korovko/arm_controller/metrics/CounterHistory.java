@@ -0,0 +1,230 @@
+package com.korovko.arm_controller.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recent samples of cumulative counters per route, code and exporting instance, kept in fixed-size rings
+ * of primitives at the timestamps Prometheus reported them with. Increases over any window up to the
+ * retained history are computed locally, so Prometheus only serves a cheap instant fetch of the raw
+ * counters. The code is read as in {@link CounterSamples}: request counters come out as a
+ * {@link MetricsSnapshot} per status, latency buckets as {@link LatencyBuckets} per bound.
+ * <p>
+ * Each sample also stores a reset-adjusted running total: a counter that went down was restarted, and
+ * everything it counted since then is new. Resets are told apart per instance, since a sum over instances
+ * hides one restarting while the others keep counting; increases are summed per route and code only
+ * after that. An increase over a window is then one subtraction.
+ */
+public class CounterHistory {
+
+  private final int capacity;
+
+  private final Map<String, Integer> routeIndex = new HashMap<>();
+  private String[] routeIds = new String[16];
+  private int[][] routeSeries = new int[16][];
+  private int[] routeSeriesCount = new int[16];
+  private int routes;
+
+  // Per series (route + code + instance)
+  private int[] codes = new int[64];
+  private String[] instances = new String[64];
+  private double[] lastRaw = new double[64];
+  private long[][] times = new long[64][];
+  private double[][] adjusted = new double[64][];
+  private int[] head = new int[64];
+  private int[] size = new int[64];
+  private int series;
+  private long newestMillis = Long.MIN_VALUE;
+
+  public CounterHistory(int capacity) {
+    if (capacity < 2) {
+      throw new IllegalArgumentException("Counter history needs at least 2 samples, got " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Appends one fetch of raw counter values, each at its own sample timestamp. A sample not newer than
+   * what its series already holds is ignored, so a fetch that saw no new scrape adds nothing.
+   */
+  public synchronized void record(CounterSamples samples) {
+    samples.forEach((routeId, code, instance, atMillis, value) ->
+        appendIfNewer(series(route(routeId), code, instance), atMillis, value));
+  }
+
+  /**
+   * Appends the samples of one series, oldest first; samples not newer than what is already kept are
+   * ignored, so a backfill cannot reorder the ring.
+   */
+  public synchronized void record(String routeId, int code, String instance, long[] atMillis,
+                                  double[] values, int count) {
+    int s = series(route(routeId), code, instance);
+    for (int i = 0; i < count; i++) {
+      appendIfNewer(s, atMillis[i], values[i]);
+    }
+  }
+
+  /**
+   * Timestamp of the newest sample kept, {@link Long#MIN_VALUE} while empty.
+   */
+  public synchronized long newestMillis() {
+    return newestMillis;
+  }
+
+  /**
+   * Requests per route and status over the window ending at {@code nowMillis}. When the history is
+   * shorter than the window, the increase since the oldest sample is used; a series needs two samples
+   * inside the window to show up at all.
+   */
+  public synchronized MetricsSnapshot increases(long nowMillis, long windowMillis) {
+    MetricsSnapshot.Builder builder = MetricsSnapshot.builder();
+    increasesBetween(nowMillis - windowMillis, nowMillis, builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Latency bucket increases per route over the window ending at {@code nowMillis}, for a history fed
+   * with bucket samples; the window is read as in {@link #increases(long, long)}.
+   */
+  public synchronized LatencyBuckets bucketIncreases(long nowMillis, long windowMillis) {
+    LatencyBuckets.Builder builder = LatencyBuckets.builder();
+    increasesBetween(nowMillis - windowMillis, nowMillis, builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Consecutive windows of {@code stepMillis} ending at {@code nowMillis}, oldest first.
+   */
+  public synchronized List<MetricsSnapshot> steps(long nowMillis, long stepMillis, int count) {
+    List<MetricsSnapshot> steps = new ArrayList<>(count);
+    for (int i = count; i > 0; i--) {
+      long to = nowMillis - (i - 1) * stepMillis;
+      MetricsSnapshot.Builder builder = MetricsSnapshot.builder();
+      increasesBetween(to - stepMillis, to, builder::add);
+      steps.add(builder.build());
+    }
+    return steps;
+  }
+
+  @FunctionalInterface
+  private interface IncreaseConsumer {
+
+    void accept(String routeId, int code, double increase);
+
+  }
+
+  private void increasesBetween(long from, long to, IncreaseConsumer consumer) {
+    for (int route = 0; route < routes; route++) {
+      for (int i = 0; i < routeSeriesCount[route]; i++) {
+        int s = routeSeries[route][i];
+        if (size[s] < 2) {
+          continue;
+        }
+        int end = lastSampleAtOrBefore(s, to);
+        if (end < 0 || times[s][end] <= from) {
+          continue;
+        }
+        int base = lastSampleAtOrBefore(s, from);
+        if (base < 0) {
+          base = slot(s, 0);
+        }
+        if (base != end) {
+          consumer.accept(routeIds[route], codes[s], adjusted[s][end] - adjusted[s][base]);
+        }
+      }
+    }
+  }
+
+  private void appendIfNewer(int s, long atMillis, double value) {
+    if (size[s] == 0 || atMillis > times[s][slot(s, size[s] - 1)]) {
+      append(s, atMillis, value);
+      newestMillis = Math.max(newestMillis, atMillis);
+    }
+  }
+
+  private void append(int s, long atMillis, double value) {
+    double total;
+    if (size[s] == 0) {
+      total = 0.0;
+    } else {
+      double previous = lastRaw[s];
+      total = adjusted[s][slot(s, size[s] - 1)] + (value >= previous ? value - previous : value);
+    }
+    lastRaw[s] = value;
+    if (size[s] < capacity) {
+      size[s]++;
+    } else {
+      head[s] = (head[s] + 1) % capacity;
+    }
+    int slot = slot(s, size[s] - 1);
+    times[s][slot] = atMillis;
+    adjusted[s][slot] = total;
+  }
+
+  // Slot of the newest sample taken at or before the given time, -1 if all are later
+  private int lastSampleAtOrBefore(int s, long atMillis) {
+    int found = -1;
+    for (int i = 0; i < size[s]; i++) {
+      int slot = slot(s, i);
+      if (times[s][slot] > atMillis) {
+        break;
+      }
+      found = slot;
+    }
+    return found;
+  }
+
+  private int slot(int s, int offset) {
+    return (head[s] + offset) % capacity;
+  }
+
+  private int route(String routeId) {
+    Integer index = routeIndex.get(routeId);
+    if (index != null) {
+      return index;
+    }
+    if (routes == routeIds.length) {
+      routeIds = Arrays.copyOf(routeIds, routes * 2);
+      routeSeries = Arrays.copyOf(routeSeries, routes * 2);
+      routeSeriesCount = Arrays.copyOf(routeSeriesCount, routes * 2);
+    }
+    routeIds[routes] = routeId;
+    routeSeries[routes] = new int[4];
+    routeIndex.put(routeId, routes);
+    return routes++;
+  }
+
+  private int series(int route, int code, String instance) {
+    int[] owned = routeSeries[route];
+    int count = routeSeriesCount[route];
+    for (int i = 0; i < count; i++) {
+      if (codes[owned[i]] == code && instances[owned[i]].equals(instance)) {
+        return owned[i];
+      }
+    }
+    if (series == codes.length) {
+      int grown = series * 2;
+      codes = Arrays.copyOf(codes, grown);
+      instances = Arrays.copyOf(instances, grown);
+      lastRaw = Arrays.copyOf(lastRaw, grown);
+      times = Arrays.copyOf(times, grown);
+      adjusted = Arrays.copyOf(adjusted, grown);
+      head = Arrays.copyOf(head, grown);
+      size = Arrays.copyOf(size, grown);
+    }
+    codes[series] = code;
+    instances[series] = instance;
+    times[series] = new long[capacity];
+    adjusted[series] = new double[capacity];
+    if (count == owned.length) {
+      routeSeries[route] = owned = Arrays.copyOf(owned, count * 2);
+    }
+    owned[count] = series;
+    routeSeriesCount[route] = count + 1;
+    return series++;
+  }
+
+}
@@ -0,0 +1,136 @@
+package com.korovko.arm_controller.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Raw result of an instant counter query: one sample per exported series, with its route, code, the
+ * instance that exported it and the sample's own timestamp. The code is the HTTP status of a request
+ * counter, or the upper bound in microseconds of a latency bucket. A counter reset can only be told apart per
+ * instance, so the series stay separate here; {@link CounterHistory} sums them per route once it has
+ * turned them into increases.
+ */
+public final class CounterSamples {
+
+  private static final CounterSamples EMPTY = new Builder().build();
+
+  private final String[] routeIds;
+  private final int[] codes;
+  private final String[] instances;
+  private final long[] timesMillis;
+  private final double[] values;
+  private final long newestMillis;
+
+  private CounterSamples(String[] routeIds, int[] codes, String[] instances, long[] timesMillis,
+                         double[] values, long newestMillis) {
+    this.routeIds = routeIds;
+    this.codes = codes;
+    this.instances = instances;
+    this.timesMillis = timesMillis;
+    this.values = values;
+    this.newestMillis = newestMillis;
+  }
+
+  @FunctionalInterface
+  public interface SampleConsumer {
+
+    void accept(String routeId, int code, String instance, long atMillis, double value);
+
+  }
+
+  public static CounterSamples empty() {
+    return EMPTY;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  /**
+   * Timestamp of the newest sample, {@link Long#MIN_VALUE} when there is none.
+   */
+  public long newestMillis() {
+    return newestMillis;
+  }
+
+  public void forEach(SampleConsumer consumer) {
+    for (int i = 0; i < values.length; i++) {
+      consumer.accept(routeIds[i], codes[i], instances[i], timesMillis[i], values[i]);
+    }
+  }
+
+  /**
+   * Collects samples in primitive arrays; route and instance labels are interned by content, so the
+   * streaming decoder resolves a repeated label value without creating a string for it.
+   */
+  public static final class Builder {
+
+    private final LabelInterner routes = new LabelInterner();
+    private final LabelInterner instances = new LabelInterner();
+    private int[] route = new int[16];
+    private int[] code = new int[16];
+    private int[] instance = new int[16];
+    private long[] at = new long[16];
+    private double[] value = new double[16];
+    private int size;
+
+    private Builder() {
+    }
+
+    public Builder add(String routeId, int code, String instanceId, long atMillis, double count) {
+      return add(routes.intern(routeId), code, instances.intern(instanceId == null ? "" : instanceId),
+          atMillis, count);
+    }
+
+    int route(char[] text, int offset, int length) {
+      return routes.intern(text, offset, length);
+    }
+
+    /**
+     * Index of the instance label; series without one share the empty instance.
+     */
+    int instance(char[] text, int offset, int length) {
+      return instances.intern(text, offset, length);
+    }
+
+    int noInstance() {
+      return instances.intern("");
+    }
+
+    Builder add(int routeIndex, int seriesCode, int instanceIndex, long atMillis, double count) {
+      if (size == value.length) {
+        int capacity = size * 2;
+        route = Arrays.copyOf(route, capacity);
+        code = Arrays.copyOf(code, capacity);
+        instance = Arrays.copyOf(instance, capacity);
+        at = Arrays.copyOf(at, capacity);
+        value = Arrays.copyOf(value, capacity);
+      }
+      route[size] = routeIndex;
+      code[size] = seriesCode;
+      instance[size] = instanceIndex;
+      at[size] = atMillis;
+      value[size] = count;
+      size++;
+      return this;
+    }
+
+    public CounterSamples build() {
+      String[] routeIds = new String[size];
+      String[] instanceIds = new String[size];
+      long newest = Long.MIN_VALUE;
+      for (int i = 0; i < size; i++) {
+        routeIds[i] = routes.value(route[i]);
+        instanceIds[i] = instances.value(instance[i]);
+        newest = Math.max(newest, at[i]);
+      }
+      return new CounterSamples(routeIds, Arrays.copyOf(code, size), instanceIds, Arrays.copyOf(at, size),
+          Arrays.copyOf(value, size), newest);
+    }
+
+  }
+
+}
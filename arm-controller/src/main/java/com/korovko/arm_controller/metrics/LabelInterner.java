@@ -0,0 +1,99 @@
+package com.korovko.arm_controller.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Dense indexes for label values, looked up by content. A decoder resolves a repeated label value straight
+ * from the parser's character buffer; only the first sight of a value creates a string.
+ */
+final class LabelInterner {
+
+  private String[] values = new String[16];
+  private int size;
+  // Open addressing over indexes, stored +1 so that 0 marks a free slot
+  private int[] slots = new int[32];
+
+  /**
+   * Index of the value equal to the given characters, registering it on first sight.
+   */
+  int intern(char[] text, int offset, int length) {
+    int mask = slots.length - 1;
+    for (int slot = hash(text, offset, length) & mask; ; slot = (slot + 1) & mask) {
+      int entry = slots[slot];
+      if (entry == 0) {
+        return insert(slot, new String(text, offset, length));
+      }
+      if (matches(values[entry - 1], text, offset, length)) {
+        return entry - 1;
+      }
+    }
+  }
+
+  int intern(String value) {
+    int mask = slots.length - 1;
+    for (int slot = value.hashCode() & mask; ; slot = (slot + 1) & mask) {
+      int entry = slots[slot];
+      if (entry == 0) {
+        return insert(slot, value);
+      }
+      if (values[entry - 1].equals(value)) {
+        return entry - 1;
+      }
+    }
+  }
+
+  String value(int index) {
+    return values[index];
+  }
+
+  int size() {
+    return size;
+  }
+
+  private int insert(int slot, String value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size] = value;
+    slots[slot] = size + 1;
+    size++;
+    if (size * 2 > slots.length) {
+      rehash();
+    }
+    return size - 1;
+  }
+
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int index = 0; index < size; index++) {
+      int slot = values[index].hashCode() & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = index + 1;
+    }
+  }
+
+  // Same value as String.hashCode, so rehashing can use the interned strings
+  private static int hash(char[] text, int offset, int length) {
+    int h = 0;
+    for (int i = offset; i < offset + length; i++) {
+      h = 31 * h + text[i];
+    }
+    return h;
+  }
+
+  private static boolean matches(String value, char[] text, int offset, int length) {
+    if (value.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (value.charAt(i) != text[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
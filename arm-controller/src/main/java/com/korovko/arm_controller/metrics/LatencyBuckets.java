@@ -0,0 +1,118 @@
+package com.korovko.arm_controller.metrics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cumulative latency buckets per route, as increases over a window: for each upper bound in microseconds,
+ * the requests that took at most that long. Bounds are kept sorted, the {@code +Inf} bucket last as
+ * {@link LatencyHistogram#INFINITE}. Immutable, like the {@link MetricsSnapshot} that carries it.
+ */
+public final class LatencyBuckets {
+
+  private static final LatencyBuckets EMPTY = new LatencyBuckets(Map.of());
+  private static final int[] NO_BOUNDS = new int[0];
+  private static final double[] NO_COUNTS = new double[0];
+
+  private final Map<String, Route> routes;
+
+  private LatencyBuckets(Map<String, Route> routes) {
+    this.routes = routes;
+  }
+
+  public static LatencyBuckets empty() {
+    return EMPTY;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public boolean contains(String routeId) {
+    return routes.containsKey(routeId);
+  }
+
+  /**
+   * Upper bounds of the route's buckets in microseconds, ascending; empty for an unknown route.
+   */
+  int[] bounds(String routeId) {
+    Route route = routes.get(routeId);
+    return route == null ? NO_BOUNDS : route.bounds();
+  }
+
+  /**
+   * Requests at or below each of {@link #bounds(String)}.
+   */
+  double[] cumulative(String routeId) {
+    Route route = routes.get(routeId);
+    return route == null ? NO_COUNTS : route.cumulative();
+  }
+
+  private record Route(int[] bounds, double[] cumulative) {
+  }
+
+  /**
+   * Sums what is added per route and bound, so the increases of several instances fold into one histogram.
+   */
+  public static final class Builder {
+
+    private final Map<String, Accumulator> routes = new HashMap<>();
+
+    private Builder() {
+    }
+
+    public Builder add(String routeId, int boundMicros, double count) {
+      routes.computeIfAbsent(routeId, id -> new Accumulator()).add(boundMicros, count);
+      return this;
+    }
+
+    public LatencyBuckets build() {
+      Map<String, Route> built = new HashMap<>();
+      routes.forEach((routeId, accumulator) -> built.put(routeId, accumulator.sorted()));
+      return new LatencyBuckets(Map.copyOf(built));
+    }
+
+  }
+
+  private static final class Accumulator {
+
+    private int[] bounds = new int[16];
+    private double[] counts = new double[16];
+    private int size;
+
+    void add(int bound, double count) {
+      for (int i = 0; i < size; i++) {
+        if (bounds[i] == bound) {
+          counts[i] += count;
+          return;
+        }
+      }
+      if (size == bounds.length) {
+        bounds = Arrays.copyOf(bounds, size * 2);
+        counts = Arrays.copyOf(counts, size * 2);
+      }
+      bounds[size] = bound;
+      counts[size] = count;
+      size++;
+    }
+
+    // Bound in the high half, position in the low half: sorting orders buckets by bound
+    Route sorted() {
+      long[] order = new long[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = ((long) bounds[i] << 32) | i;
+      }
+      Arrays.sort(order);
+      int[] sortedBounds = new int[size];
+      double[] cumulative = new double[size];
+      for (int i = 0; i < size; i++) {
+        sortedBounds[i] = (int) (order[i] >>> 32);
+        cumulative[i] = counts[(int) order[i]];
+      }
+      return new Route(sortedBounds, cumulative);
+    }
+
+  }
+
+}
@@ -0,0 +1,180 @@
+package com.korovko.arm_controller.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Quantiles from cumulative latency buckets. The raw buckets are sampled, stored and turned into increases
+ * by the same code as the request counters, each series coded by its upper bound ({@code le}) in
+ * microseconds instead of an HTTP status; the increases come out as {@link LatencyBuckets}.
+ * <p>
+ * The gateway only exports buckets with percentile histograms enabled for
+ * {@code spring.cloud.gateway.requests}, which the starter does by default.
+ */
+public final class LatencyHistogram {
+
+  static final String BUCKET_LABEL = "le";
+
+  /**
+   * Bound of the {@code +Inf} bucket.
+   */
+  public static final int INFINITE = Integer.MAX_VALUE;
+
+  private LatencyHistogram() {
+  }
+
+  /**
+   * Requests observed by the route's histogram, i.e. its {@code +Inf} bucket.
+   */
+  public static double count(LatencyBuckets buckets, String routeId) {
+    double count = 0.0;
+    for (double value : buckets.cumulative(routeId)) {
+      count = Math.max(count, value);
+    }
+    return count;
+  }
+
+  /**
+   * The {@code q}-quantile of the route's latency in milliseconds, interpolated linearly inside the bucket
+   * it falls into like {@code histogram_quantile} does. A quantile beyond the highest finite bound is
+   * reported as that bound; NaN when the route has no observations.
+   */
+  public static double quantileMillis(LatencyBuckets buckets, String routeId, double q) {
+    Sorted sorted = sorted(buckets, routeId);
+    if (sorted == null) {
+      return Double.NaN;
+    }
+    double rank = Math.min(1.0, Math.max(0.0, q)) * sorted.total();
+    double previousBound = 0.0;
+    double previousCount = 0.0;
+    for (int i = 0; i < sorted.bounds().length; i++) {
+      int bound = sorted.bounds()[i];
+      double cumulative = sorted.cumulative()[i];
+      if (cumulative >= rank) {
+        if (bound == INFINITE) {
+          break;
+        }
+        double inBucket = cumulative - previousCount;
+        double share = inBucket > 0.0 ? (rank - previousCount) / inBucket : 1.0;
+        return (previousBound + (bound - previousBound) * share) / 1000.0;
+      }
+      previousBound = bound;
+      previousCount = Math.max(previousCount, cumulative);
+    }
+    return previousBound / 1000.0;
+  }
+
+  /**
+   * Share of the route's requests that took at most each of the given durations, interpolated linearly
+   * inside buckets. Beyond the highest finite bound nothing more is known, so the share stays at that
+   * bound's. All NaN when the route has no observations.
+   */
+  public static double[] fractionsWithin(LatencyBuckets buckets, String routeId, int[] millis) {
+    double[] fractions = new double[millis.length];
+    Sorted sorted = sorted(buckets, routeId);
+    if (sorted == null) {
+      Arrays.fill(fractions, Double.NaN);
+      return fractions;
+    }
+    for (int m = 0; m < millis.length; m++) {
+      double micros = millis[m] * 1000.0;
+      double previousBound = 0.0;
+      double previousCount = 0.0;
+      double within = Double.NaN;
+      for (int i = 0; i < sorted.bounds().length && Double.isNaN(within); i++) {
+        int bound = sorted.bounds()[i];
+        double cumulative = Math.max(previousCount, sorted.cumulative()[i]);
+        if (bound == INFINITE) {
+          within = previousCount;
+        } else if (bound >= micros) {
+          within = previousCount + (cumulative - previousCount) * (micros - previousBound) / (bound - previousBound);
+        }
+        previousBound = bound;
+        previousCount = cumulative;
+      }
+      fractions[m] = (Double.isNaN(within) ? previousCount : within) / sorted.total();
+    }
+    return fractions;
+  }
+
+  // Buckets of the route ordered by bound; null without observations
+  private static Sorted sorted(LatencyBuckets buckets, String routeId) {
+    double[] cumulative = buckets.cumulative(routeId);
+    if (cumulative.length == 0) {
+      return null;
+    }
+    double total = cumulative[cumulative.length - 1];
+    return total > 0.0 ? new Sorted(buckets.bounds(routeId), cumulative, total) : null;
+  }
+
+  private record Sorted(int[] bounds, double[] cumulative, double total) {
+  }
+
+  /**
+   * Bucket bound of an {@code le} label value in microseconds, read straight from the parser's buffer;
+   * {@code +Inf} and out-of-range bounds map to {@link #INFINITE}, unparseable ones to 0.
+   */
+  static int parseBound(char[] text, int offset, int length) {
+    int end = offset + length;
+    int i = offset;
+    if (i < end && text[i] == '+') {
+      i++;
+    }
+    if (end - i == 3 && text[i] == 'I' && text[i + 1] == 'n' && text[i + 2] == 'f') {
+      return INFINITE;
+    }
+    // Up to 18 significant digits and the power of ten they are scaled by
+    long digits = 0;
+    int scale = 0;
+    int seen = 0;
+    boolean fraction = false;
+    for (; i < end && text[i] != 'e' && text[i] != 'E'; i++) {
+      char c = text[i];
+      if (c == '.' && !fraction) {
+        fraction = true;
+      } else if (c >= '0' && c <= '9') {
+        if (digits < 100_000_000_000_000_000L) {
+          digits = digits * 10 + (c - '0');
+          scale -= fraction ? 1 : 0;
+        } else {
+          scale += fraction ? 0 : 1;
+        }
+        seen++;
+      } else {
+        return 0;
+      }
+    }
+    if (seen == 0) {
+      return 0;
+    }
+    if (i < end) {
+      int exponent = parseExponent(text, i + 1, end);
+      if (exponent == Integer.MIN_VALUE) {
+        return 0;
+      }
+      scale += exponent;
+    }
+    double micros = digits * Math.pow(10, scale + 6);
+    return micros >= INFINITE ? INFINITE : (int) Math.round(micros);
+  }
+
+  // Signed decimal exponent, Integer.MIN_VALUE when malformed
+  private static int parseExponent(char[] text, int from, int end) {
+    int i = from;
+    boolean negative = i < end && text[i] == '-';
+    if (i < end && (text[i] == '-' || text[i] == '+')) {
+      i++;
+    }
+    if (i == end || end - i > 3) {
+      return Integer.MIN_VALUE;
+    }
+    int exponent = 0;
+    for (; i < end; i++) {
+      if (text[i] < '0' || text[i] > '9') {
+        return Integer.MIN_VALUE;
+      }
+      exponent = exponent * 10 + (text[i] - '0');
+    }
+    return negative ? -exponent : exponent;
+  }
+
+}
@@ -0,0 +1,240 @@
+package com.korovko.arm_controller.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Request counts per route and HTTP status: their increases over a window as the control loops see them once
+ * per tick, summed over the instances that export them. Immutable, so it can
+ * be handed to several services evaluating in parallel.
+ */
+public final class MetricsSnapshot {
+
+  private static final MetricsSnapshot EMPTY = new Builder().build();
+
+  private final List<String> routeIds;
+  private final Map<String, Integer> indexByRoute;
+  private final double[] totals;
+  private final int[][] statusCodes;
+  private final double[][] statusCounts;
+  private final Map<Long, MetricsSnapshot> windows;
+  private final List<MetricsSnapshot> steps;
+  private final LatencyBuckets latency;
+
+  private MetricsSnapshot(List<String> routeIds, Map<String, Integer> indexByRoute, double[] totals,
+                          int[][] statusCodes, double[][] statusCounts, Map<Long, MetricsSnapshot> windows,
+                          List<MetricsSnapshot> steps, LatencyBuckets latency) {
+    this.routeIds = routeIds;
+    this.indexByRoute = indexByRoute;
+    this.totals = totals;
+    this.statusCodes = statusCodes;
+    this.statusCounts = statusCounts;
+    this.windows = windows;
+    this.steps = steps;
+    this.latency = latency;
+  }
+
+  @FunctionalInterface
+  public interface StatusConsumer {
+
+    void accept(int httpStatusCode, double count);
+
+  }
+
+  public static MetricsSnapshot empty() {
+    return EMPTY;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Routes present in this tick's data.
+   */
+  public List<String> routeIds() {
+    return routeIds;
+  }
+
+  public boolean contains(String routeId) {
+    return indexByRoute.containsKey(routeId);
+  }
+
+  /**
+   * Requests of the route in the window, 0 for an unknown route.
+   */
+  public double requests(String routeId) {
+    Integer index = indexByRoute.get(routeId);
+    return index == null ? 0.0 : totals[index];
+  }
+
+  /**
+   * Requests of the route in the window that ended with a matching status.
+   */
+  public double responses(String routeId, IntPredicate status) {
+    Integer index = indexByRoute.get(routeId);
+    if (index == null) {
+      return 0.0;
+    }
+    int[] codes = statusCodes[index];
+    double[] counts = statusCounts[index];
+    double sum = 0.0;
+    for (int i = 0; i < codes.length; i++) {
+      if (status.test(codes[i])) {
+        sum += counts[i];
+      }
+    }
+    return sum;
+  }
+
+  public void forEachStatus(String routeId, StatusConsumer consumer) {
+    Integer index = indexByRoute.get(routeId);
+    if (index == null) {
+      return;
+    }
+    for (int i = 0; i < statusCodes[index].length; i++) {
+      consumer.accept(statusCodes[index][i], statusCounts[index][i]);
+    }
+  }
+
+  /**
+   * The same counters over another of the configured windows, taken at the same moment.
+   */
+  public MetricsSnapshot window(long windowMs) {
+    MetricsSnapshot window = windows.get(windowMs);
+    if (window == null) {
+      throw new IllegalArgumentException("No " + windowMs + " ms window in this snapshot, have " + windows.keySet());
+    }
+    return window;
+  }
+
+  /**
+   * This snapshot carrying views over other windows.
+   */
+  public MetricsSnapshot withWindows(Map<Long, MetricsSnapshot> windows) {
+    return new MetricsSnapshot(routeIds, indexByRoute, totals, statusCodes, statusCounts, Map.copyOf(windows),
+        steps, latency);
+  }
+
+  /**
+   * This snapshot carrying the short per-step history that led up to it, oldest first.
+   */
+  public MetricsSnapshot withSteps(List<MetricsSnapshot> steps) {
+    return new MetricsSnapshot(routeIds, indexByRoute, totals, statusCodes, statusCounts, windows,
+        List.copyOf(steps), latency);
+  }
+
+  /**
+   * This snapshot carrying the latency bucket increases over the same window, see {@link LatencyHistogram}.
+   */
+  public MetricsSnapshot withLatency(LatencyBuckets latency) {
+    return new MetricsSnapshot(routeIds, indexByRoute, totals, statusCodes, statusCounts, windows, steps,
+        latency);
+  }
+
+  /**
+   * Latency bucket increases over the decision window; empty when histograms are not sampled.
+   */
+  public LatencyBuckets latency() {
+    return latency == null ? LatencyBuckets.empty() : latency;
+  }
+
+  /**
+   * Share of matching responses per step of the history, oldest first; NaN for steps without requests.
+   * Empty when the snapshot carries no history.
+   */
+  public double[] percentHistory(String routeId, IntPredicate status) {
+    double[] series = new double[steps.size()];
+    for (int i = 0; i < series.length; i++) {
+      series[i] = steps.get(i).percent(routeId, status);
+    }
+    return series;
+  }
+
+  /**
+   * Share of matching responses in percent; NaN when the route had no requests.
+   */
+  public double percent(String routeId, IntPredicate status) {
+    return 100.0 * responses(routeId, status) / requests(routeId);
+  }
+
+  /**
+   * Accumulates samples into primitive per-route arrays; route ids are interned by content.
+   */
+  public static final class Builder {
+
+    private final LabelInterner routes = new LabelInterner();
+    private double[] totals = new double[16];
+    private int[][] codes = new int[16][];
+    private double[][] counts = new double[16][];
+    private int[] statuses = new int[16];
+
+    private Builder() {
+    }
+
+    public Builder add(String routeId, int httpStatusCode, double count) {
+      return add(route(routeId), httpStatusCode, count);
+    }
+
+    private int route(String routeId) {
+      int route = routes.intern(routeId);
+      if (route == totals.length) {
+        int capacity = route * 2;
+        totals = Arrays.copyOf(totals, capacity);
+        codes = Arrays.copyOf(codes, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+      }
+      if (codes[route] == null) {
+        codes[route] = new int[4];
+        counts[route] = new double[4];
+      }
+      return route;
+    }
+
+    private Builder add(int route, int httpStatusCode, double count) {
+      totals[route] += count;
+      int[] routeCodes = codes[route];
+      int used = statuses[route];
+      for (int i = 0; i < used; i++) {
+        if (routeCodes[i] == httpStatusCode) {
+          counts[route][i] += count;
+          return this;
+        }
+      }
+      if (used == routeCodes.length) {
+        codes[route] = routeCodes = Arrays.copyOf(routeCodes, used * 2);
+        counts[route] = Arrays.copyOf(counts[route], used * 2);
+      }
+      routeCodes[used] = httpStatusCode;
+      counts[route][used] = count;
+      statuses[route] = used + 1;
+      return this;
+    }
+
+    public MetricsSnapshot build() {
+      int size = routes.size();
+      List<String> ids = new ArrayList<>(size);
+      Map<String, Integer> indexByRoute = new HashMap<>();
+      double[] routeTotals = new double[size];
+      int[][] routeCodes = new int[size][];
+      double[][] routeCounts = new double[size][];
+      for (int i = 0; i < size; i++) {
+        String routeId = routes.value(i);
+        ids.add(routeId);
+        indexByRoute.put(routeId, i);
+        routeTotals[i] = totals[i];
+        routeCodes[i] = Arrays.copyOf(codes[i], statuses[i]);
+        routeCounts[i] = Arrays.copyOf(counts[i], statuses[i]);
+      }
+      return new MetricsSnapshot(List.copyOf(ids), Map.copyOf(indexByRoute), routeTotals, routeCodes, routeCounts,
+          Map.of(), List.of(), null);
+    }
+
+  }
+
+}
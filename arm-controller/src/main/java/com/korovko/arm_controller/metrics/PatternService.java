@@ -0,0 +1,16 @@
+package com.korovko.arm_controller.metrics;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A control loop driven by the shared per-tick {@link MetricsSnapshot}. Every registered pattern service
+ * sees the same snapshot within a tick.
+ */
+public interface PatternService {
+
+  /**
+   * Reacts to the metrics of one tick; the future completes when the resulting gateway calls are done.
+   */
+  CompletableFuture<Void> onTick(MetricsSnapshot snapshot);
+
+}
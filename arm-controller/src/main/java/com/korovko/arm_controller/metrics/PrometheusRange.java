@@ -0,0 +1,60 @@
+package com.korovko.arm_controller.metrics;
+
+import java.util.List;
+
+/**
+ * Series of a {@code query_range} result, one per route, code and exporting instance, with their samples
+ * in primitive arrays. The code is read as in {@link CounterSamples}; timestamps are epoch milliseconds.
+ */
+public final class PrometheusRange {
+
+  private static final PrometheusRange EMPTY = new PrometheusRange(List.of());
+
+  private final List<Series> series;
+
+  PrometheusRange(List<Series> series) {
+    this.series = series;
+  }
+
+  public static PrometheusRange empty() {
+    return EMPTY;
+  }
+
+  @FunctionalInterface
+  public interface SeriesConsumer {
+
+    void accept(String routeId, int code, String instance, long[] timesMillis, double[] values, int count);
+
+  }
+
+  public int size() {
+    return series.size();
+  }
+
+  public void forEachSeries(SeriesConsumer consumer) {
+    for (Series s : series) {
+      consumer.accept(s.routeId, s.code, s.instance, s.timesMillis, s.values, s.count);
+    }
+  }
+
+  static final class Series {
+
+    private final String routeId;
+    private final int code;
+    private final String instance;
+    private final long[] timesMillis;
+    private final double[] values;
+    private final int count;
+
+    Series(String routeId, int code, String instance, long[] timesMillis, double[] values, int count) {
+      this.routeId = routeId;
+      this.code = code;
+      this.instance = instance;
+      this.timesMillis = timesMillis;
+      this.values = values;
+      this.count = count;
+    }
+
+  }
+
+}
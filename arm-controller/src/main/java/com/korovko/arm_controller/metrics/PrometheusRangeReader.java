@@ -0,0 +1,132 @@
+package com.korovko.arm_controller.metrics;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.korovko.arm_controller.metrics.PrometheusSnapshotReader.INSTANCE_LABEL;
+import static com.korovko.arm_controller.metrics.PrometheusSnapshotReader.ROUTE_LABEL;
+import static com.korovko.arm_controller.metrics.PrometheusSnapshotReader.STATUS_LABEL;
+import static com.korovko.arm_controller.metrics.PrometheusSnapshotReader.parseStatus;
+
+/**
+ * Decodes a Prometheus {@code query_range} (matrix) response in one pass. Range responses carry many
+ * samples per series, so each {@code [timestamp, "value"]} pair goes straight into growing primitive
+ * arrays instead of a list of string lists.
+ */
+public final class PrometheusRangeReader {
+
+  private PrometheusRangeReader() {
+  }
+
+  /**
+   * Reads the response from the parser's current position. A missing body or a status other than
+   * {@code success} gives an empty range.
+   */
+  public static PrometheusRange read(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      return PrometheusRange.empty();
+    }
+    List<PrometheusRange.Series> series = new ArrayList<>();
+    Map<String, String> labels = new HashMap<>();
+    boolean success = false;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if ("status".equals(field)) {
+        success = value == JsonToken.VALUE_STRING && "success".equals(parser.getText());
+      } else if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+        readData(parser, series, labels);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return success ? new PrometheusRange(List.copyOf(series)) : PrometheusRange.empty();
+  }
+
+  private static void readData(JsonParser parser, List<PrometheusRange.Series> series,
+                               Map<String, String> labels) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if ("result".equals(field) && value == JsonToken.START_ARRAY) {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          readSeries(parser, series, labels);
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  private static void readSeries(JsonParser parser, List<PrometheusRange.Series> series,
+                                 Map<String, String> labels) throws IOException {
+    String routeId = null;
+    String instance = "";
+    int code = 0;
+    long[] times = new long[0];
+    double[] values = new double[0];
+    int count = 0;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if ("metric".equals(field) && value == JsonToken.START_OBJECT) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String label = parser.currentName();
+          JsonToken labelValue = parser.nextToken();
+          if (labelValue != JsonToken.VALUE_STRING) {
+            parser.skipChildren();
+          } else if (ROUTE_LABEL.equals(label)) {
+            routeId = labels.computeIfAbsent(parser.getText(), id -> id);
+          } else if (INSTANCE_LABEL.equals(label)) {
+            instance = labels.computeIfAbsent(parser.getText(), id -> id);
+          } else if (STATUS_LABEL.equals(label)) {
+            code = parseStatus(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+          } else if (LatencyHistogram.BUCKET_LABEL.equals(label)) {
+            code = LatencyHistogram.parseBound(parser.getTextCharacters(), parser.getTextOffset(),
+                parser.getTextLength());
+          }
+        }
+      } else if ("values".equals(field) && value == JsonToken.START_ARRAY) {
+        times = new long[16];
+        values = new double[16];
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+          long at = Long.MIN_VALUE;
+          double sample = Double.NaN;
+          int position = 0;
+          for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (position == 0 && token.isNumeric()) {
+              at = Math.round(parser.getDoubleValue() * 1000.0);
+            } else if (position == 1 && token == JsonToken.VALUE_STRING) {
+              sample = parser.getValueAsDouble(Double.NaN);
+            }
+            position++;
+            parser.skipChildren();
+          }
+          if (at == Long.MIN_VALUE || !Double.isFinite(sample)) {
+            continue;
+          }
+          if (count == times.length) {
+            times = Arrays.copyOf(times, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+          }
+          times[count] = at;
+          values[count] = sample;
+          count++;
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (routeId != null && count > 0) {
+      series.add(new PrometheusRange.Series(routeId, code, instance, times, values, count));
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+package com.korovko.arm_controller.metrics;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Decodes a Prometheus instant-query response straight into {@link CounterSamples}: one pass over the
+ * tokens, route and instance labels resolved from the parser's character buffer and sample values parsed
+ * into doubles, without binding the labels and values of every series into objects first.
+ */
+public final class PrometheusSnapshotReader {
+
+  static final String ROUTE_LABEL = "routeId";
+  static final String STATUS_LABEL = "httpStatusCode";
+  static final String INSTANCE_LABEL = "instance";
+
+  private PrometheusSnapshotReader() {
+  }
+
+  /**
+   * Reads the response from the parser's current position. A missing body or a status other than
+   * {@code success} gives no samples.
+   */
+  public static CounterSamples read(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      return CounterSamples.empty();
+    }
+    CounterSamples.Builder builder = CounterSamples.builder();
+    boolean success = false;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if ("status".equals(field)) {
+        success = value == JsonToken.VALUE_STRING && "success".equals(parser.getText());
+      } else if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+        readData(parser, builder);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return success ? builder.build() : CounterSamples.empty();
+  }
+
+  private static void readData(JsonParser parser, CounterSamples.Builder builder) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if ("result".equals(field) && value == JsonToken.START_ARRAY) {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          readSample(parser, builder);
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  // Labels and value may come in any order, so the sample is added once the object is closed
+  private static void readSample(JsonParser parser, CounterSamples.Builder builder) throws IOException {
+    int route = -1;
+    int code = 0;
+    int instance = builder.noInstance();
+    long at = Long.MIN_VALUE;
+    double count = Double.NaN;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if ("metric".equals(field) && value == JsonToken.START_OBJECT) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String label = parser.currentName();
+          JsonToken labelValue = parser.nextToken();
+          if (labelValue != JsonToken.VALUE_STRING) {
+            parser.skipChildren();
+          } else if (ROUTE_LABEL.equals(label)) {
+            route = builder.route(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+          } else if (INSTANCE_LABEL.equals(label)) {
+            instance = builder.instance(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+          } else if (STATUS_LABEL.equals(label)) {
+            code = parseStatus(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+          } else if (LatencyHistogram.BUCKET_LABEL.equals(label)) {
+            code = LatencyHistogram.parseBound(parser.getTextCharacters(), parser.getTextOffset(),
+                parser.getTextLength());
+          }
+        }
+      } else if ("value".equals(field) && value == JsonToken.START_ARRAY) {
+        // [ <timestamp in seconds>, "<value>" ]
+        int position = 0;
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+          if (position == 0 && token.isNumeric()) {
+            at = Math.round(parser.getDoubleValue() * 1000.0);
+          } else if (position == 1 && token == JsonToken.VALUE_STRING) {
+            count = parser.getValueAsDouble(Double.NaN);
+          }
+          position++;
+          parser.skipChildren();
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (route >= 0 && at != Long.MIN_VALUE && Double.isFinite(count)) {
+      builder.add(route, code, instance, at, count);
+    }
+  }
+
+  static int parseStatus(char[] text, int offset, int length) {
+    if (length == 0 || length > 3) {
+      return 0;
+    }
+    int code = 0;
+    for (int i = offset; i < offset + length; i++) {
+      char c = text[i];
+      if (c < '0' || c > '9') {
+        return 0;
+      }
+      code = code * 10 + (c - '0');
+    }
+    return code;
+  }
+
+}
@@ -0,0 +1,104 @@
+package com.korovko.arm_controller.metrics;
+
+/**
+ * Level, slope and spread of a short, evenly spaced series, from an ordinary least-squares line.
+ * Steps without data (NaN) are left out of the fit but keep their position.
+ */
+public final class Trend {
+
+  /**
+   * Fewer points than this say nothing about a trend; decisions fall back to the instant value.
+   */
+  public static final int MIN_POINTS = 3;
+
+  private static final Trend NONE = new Trend(0, Double.NaN, 0.0, 0.0, 0.0);
+
+  private final int points;
+  private final double mean;
+  private final double slope;
+  private final double variance;
+  private final double next;
+
+  private Trend(int points, double mean, double slope, double variance, double next) {
+    this.points = points;
+    this.mean = mean;
+    this.slope = slope;
+    this.variance = variance;
+    this.next = next;
+  }
+
+  public static Trend none() {
+    return NONE;
+  }
+
+  public static Trend of(double[] series) {
+    int n = 0;
+    double sumX = 0.0;
+    double sumY = 0.0;
+    for (int x = 0; x < series.length; x++) {
+      if (Double.isFinite(series[x])) {
+        n++;
+        sumX += x;
+        sumY += series[x];
+      }
+    }
+    if (n < MIN_POINTS) {
+      return NONE;
+    }
+    double meanX = sumX / n;
+    double meanY = sumY / n;
+    double sxx = 0.0;
+    double sxy = 0.0;
+    for (int x = 0; x < series.length; x++) {
+      if (Double.isFinite(series[x])) {
+        sxx += (x - meanX) * (x - meanX);
+        sxy += (x - meanX) * (series[x] - meanY);
+      }
+    }
+    double slope = sxx == 0.0 ? 0.0 : sxy / sxx;
+    double residuals = 0.0;
+    for (int x = 0; x < series.length; x++) {
+      if (Double.isFinite(series[x])) {
+        double fitted = meanY + slope * (x - meanX);
+        residuals += (series[x] - fitted) * (series[x] - fitted);
+      }
+    }
+    double variance = n > 2 ? residuals / (n - 2) : 0.0;
+    double next = meanY + slope * (series.length - meanX);
+    return new Trend(n, meanY, slope, variance, next);
+  }
+
+  public boolean isPresent() {
+    return points >= MIN_POINTS;
+  }
+
+  public double mean() {
+    return mean;
+  }
+
+  /**
+   * Change per step.
+   */
+  public double slope() {
+    return slope;
+  }
+
+  /**
+   * Variance of the points around the fitted line.
+   */
+  public double variance() {
+    return variance;
+  }
+
+  public double stdDev() {
+    return Math.sqrt(variance);
+  }
+
+  /**
+   * The fitted line one step past the newest point.
+   */
+  public double next() {
+    return next;
+  }
+
+}
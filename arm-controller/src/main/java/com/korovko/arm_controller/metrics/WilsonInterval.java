@@ -0,0 +1,59 @@
+package com.korovko.arm_controller.metrics;
+
+/**
+ * Wilson score interval of a share measured over {@code n} requests, expressed as margins in percentage
+ * points below and above the measured value. Margins are wide for a handful of requests and shrink with
+ * volume, so a decision taken on {@code value - below} or {@code value + above} needs proportionally more
+ * evidence on a quiet route. The interval is asymmetric and never reaches below 0% or above 100%.
+ */
+public final class WilsonInterval {
+
+  private final double below;
+  private final double above;
+
+  private WilsonInterval(double below, double above) {
+    this.below = below;
+    this.above = above;
+  }
+
+  /**
+   * @param pct share in percent as measured
+   * @param n   requests it was measured over
+   * @param z   standard normal quantile of the confidence level, e.g. 1.96 for 95%; 0 collapses the interval
+   */
+  public static WilsonInterval of(double pct, double n, double z) {
+    if (!(n > 0.0) || !(z > 0.0)) {
+      return new WilsonInterval(0.0, 0.0);
+    }
+    double p = Math.min(1.0, Math.max(0.0, pct / 100.0));
+    double z2 = z * z;
+    double denominator = 1.0 + z2 / n;
+    double center = (p + z2 / (2.0 * n)) / denominator;
+    double half = z * Math.sqrt(p * (1.0 - p) / n + z2 / (4.0 * n * n)) / denominator;
+    return new WilsonInterval(100.0 * Math.max(0.0, p - (center - half)), 100.0 * Math.max(0.0, center + half - p));
+  }
+
+  /**
+   * Percentage points between the measured share and the lower bound.
+   */
+  public double below() {
+    return below;
+  }
+
+  /**
+   * Percentage points between the measured share and the upper bound.
+   */
+  public double above() {
+    return above;
+  }
+
+  /**
+   * The narrower of the two margins. Taken on both sides of the share, it asks the same evidence of a
+   * move down as of a move up; near 0% the upper margin alone would need hundreds of spotless requests
+   * before anything could be lowered.
+   */
+  public double margin() {
+    return Math.min(below, above);
+  }
+
+}
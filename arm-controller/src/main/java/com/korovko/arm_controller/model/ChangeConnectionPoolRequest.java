@@ -0,0 +1,12 @@
+package com.korovko.arm_controller.model;
+
+import java.time.Duration;
+
+public record ChangeConnectionPoolRequest(
+    int maxConnections,
+    int pendingAcquireMaxCount,
+    Duration pendingAcquireTimeout,
+    Duration maxIdleTime,
+    Duration connectTimeout,
+    Duration responseTimeout
+) {}
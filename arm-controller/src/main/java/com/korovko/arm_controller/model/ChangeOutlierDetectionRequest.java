@@ -0,0 +1,12 @@
+package com.korovko.arm_controller.model;
+
+import java.time.Duration;
+
+public record ChangeOutlierDetectionRequest(
+    int consecutiveFailures,
+    Duration baseEjectionTime,
+    Duration maxEjectionTime,
+    double latencyFactor,
+    long minSamples,
+    int maxEjectionPercent
+) {}
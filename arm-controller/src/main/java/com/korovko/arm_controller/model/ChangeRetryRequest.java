@@ -10,5 +10,7 @@ public record ChangeRetryRequest(
     int factor,
     boolean basedOnPreviousValue,
     Set<Integer> statuses,
-    Set<String> methods
+    Set<String> methods,
+    double jitter,
+    boolean honorRetryAfter
 ) {}
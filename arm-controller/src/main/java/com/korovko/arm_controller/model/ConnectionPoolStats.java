@@ -0,0 +1,9 @@
+package com.korovko.arm_controller.model;
+
+public record ConnectionPoolStats(
+    ChangeConnectionPoolRequest settings,
+    long version,
+    int acquired,
+    int idle,
+    int pendingAcquire
+) {}
@@ -0,0 +1,10 @@
+package com.korovko.arm_controller.model;
+
+/**
+ * Desired policies of one route; {@code version} is the document version that last changed it.
+ */
+public record DesiredRouteState(
+    long version,
+    Integer timeoutMs,
+    ChangeRetryRequest retry
+) {}
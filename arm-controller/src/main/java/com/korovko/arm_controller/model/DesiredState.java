@@ -0,0 +1,13 @@
+package com.korovko.arm_controller.model;
+
+import java.util.Map;
+
+/**
+ * Versioned document of the policies every gateway replica should run. {@code epoch} changes when the
+ * controller restarts, telling replicas that versions from before are no longer comparable.
+ */
+public record DesiredState(
+    String epoch,
+    long version,
+    Map<String, DesiredRouteState> routes
+) {}
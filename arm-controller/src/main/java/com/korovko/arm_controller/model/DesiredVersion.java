@@ -0,0 +1,11 @@
+package com.korovko.arm_controller.model;
+
+/**
+ * Position of a decision in the desired-state document: the controller run ({@code epoch}) and the
+ * document version that published it. Sent along with direct pushes, so gateway replicas order them
+ * the same way as the document they long-poll.
+ */
+public record DesiredVersion(
+    String epoch,
+    long version
+) {}
@@ -0,0 +1,70 @@
+package com.korovko.arm_controller.model;
+
+/**
+ * Cumulative retry outcomes of a route as reported by the gateway:
+ * {@code successByAttempt[i]} requests succeeded on attempt {@code i + 1},
+ * {@code exhaustedByAttempt[i]} failed on every one of {@code i + 1} allowed attempts.
+ */
+public record RetryEffectiveness(long[] successByAttempt, long[] exhaustedByAttempt) {
+
+  /**
+   * Number of requests that made at least {@code attempt} attempts.
+   */
+  public long reached(int attempt) {
+    return sumFrom(successByAttempt, attempt) + sumFrom(exhaustedByAttempt, attempt);
+  }
+
+  /**
+   * Share of requests that reached {@code attempt} and succeeded on it, in percent.
+   */
+  public double successPct(int attempt) {
+    long reached = reached(attempt);
+    if (reached == 0 || successByAttempt == null || attempt < 1 || attempt > successByAttempt.length) {
+      return Double.NaN;
+    }
+    return 100.0 * successByAttempt[attempt - 1] / reached;
+  }
+
+  /**
+   * Outcomes since {@code earlier}; all of them when there is no earlier reading or the gateway restarted
+   * its counters in between.
+   */
+  public RetryEffectiveness since(RetryEffectiveness earlier) {
+    if (earlier == null) {
+      return this;
+    }
+    long[] successes = minus(successByAttempt, earlier.successByAttempt);
+    long[] exhausted = minus(exhaustedByAttempt, earlier.exhaustedByAttempt);
+    return successes == null || exhausted == null ? this : new RetryEffectiveness(successes, exhausted);
+  }
+
+  private static long sumFrom(long[] counts, int attempt) {
+    long total = 0;
+    if (counts == null) {
+      return total;
+    }
+    for (int i = Math.max(0, attempt - 1); i < counts.length; i++) {
+      total += counts[i];
+    }
+    return total;
+  }
+
+  // Null when a counter went backwards
+  private static long[] minus(long[] now, long[] before) {
+    if (now == null) {
+      return new long[0];
+    }
+    long[] delta = now.clone();
+    if (before == null) {
+      return delta;
+    }
+    for (int i = 0; i < delta.length && i < before.length; i++) {
+      delta[i] -= before[i];
+      if (delta[i] < 0) {
+        return null;
+      }
+    }
+    return delta;
+  }
+
+}
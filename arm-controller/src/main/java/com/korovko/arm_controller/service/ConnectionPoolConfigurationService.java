@@ -0,0 +1,158 @@
+package com.korovko.arm_controller.service;
+
+import com.korovko.arm_controller.client.ApiGatewayClient;
+import com.korovko.arm_controller.config.ConnectionPoolProperties;
+import com.korovko.arm_controller.model.ChangeConnectionPoolRequest;
+import com.korovko.arm_controller.model.ConnectionPoolStats;
+import com.korovko.arm_controller.state.RouteStateTable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grows the upstream connection pool of routes whose requests queue for a free connection. Pool
+ * exhaustion shows up as timeouts, which the timeout controller cannot fix by itself. The configured
+ * routes are reconciled on every tick: a route the gateway has no pool for, e.g. after a restart, gets
+ * one with the connections it last had.
+ */
+@Slf4j
+@Service
+public class ConnectionPoolConfigurationService {
+
+  private final ApiGatewayClient apiGatewayClient;
+  private final ConnectionPoolProperties properties;
+
+  /** Last applied {@code maxConnections} and when it was applied, per route. */
+  private final RouteStateTable pools = new RouteStateTable();
+
+  public ConnectionPoolConfigurationService(final ApiGatewayClient apiGatewayClient,
+                                            final ConnectionPoolProperties properties) {
+    this.apiGatewayClient = apiGatewayClient;
+    this.properties = properties;
+  }
+
+  @Scheduled(fixedRate = 30_000, initialDelay = 7_000)
+  public void schedule() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    Map<String, ConnectionPoolStats> stats;
+    try {
+      stats = apiGatewayClient.getConnectionPools();
+    } catch (RestClientException e) {
+      log.warn("Failed to fetch connection pool stats: {}", e.getMessage());
+      return;
+    }
+    if (stats == null) {
+      stats = Map.of();
+    }
+    seedMissing(stats);
+    stats.forEach(this::processPool);
+  }
+
+  private void seedMissing(final Map<String, ConnectionPoolStats> stats) {
+    List<String> missing = properties.getRoutes().stream().filter(routeId -> !stats.containsKey(routeId)).toList();
+    if (missing.isEmpty()) {
+      return;
+    }
+    ChangeConnectionPoolRequest gateway;
+    try {
+      gateway = apiGatewayClient.getConnectionPoolDefaults();
+    } catch (RestClientException e) {
+      log.warn("Failed to fetch gateway connection pool defaults: {}", e.getMessage());
+      return;
+    }
+    if (gateway == null) {
+      return;
+    }
+    ChangeConnectionPoolRequest initial = initialSettings(gateway);
+    for (String routeId : missing) {
+      int last = pools.value(routeId);
+      ChangeConnectionPoolRequest request = last == RouteStateTable.NO_VALUE || last <= initial.maxConnections()
+          ? initial
+          : withMaxConnections(initial, last);
+      try {
+        apply(routeId, request);
+      } catch (RestClientException e) {
+        log.warn("Failed to apply connection pool for {}: {}", routeId, e.getMessage());
+      }
+    }
+  }
+
+  private void processPool(final String routeId, final ConnectionPoolStats stats) {
+    ChangeConnectionPoolRequest current = stats.settings();
+    if (current == null || stats.pendingAcquire() < properties.getPendingThreshold()
+        || current.maxConnections() >= properties.getMaxConnections()) {
+      return;
+    }
+    if (!allowedIncrease(routeId)) {
+      return;
+    }
+    int next = Math.min(properties.getMaxConnections(), current.maxConnections() + properties.getStepSize());
+    if (next <= current.maxConnections()) {
+      return;
+    }
+    log.info("Growing connection pool of {}: {} requests waiting for {} connections",
+        routeId, stats.pendingAcquire(), current.maxConnections());
+    try {
+      apply(routeId, withMaxConnections(current, next));
+    } catch (RestClientException e) {
+      log.warn("Failed to grow connection pool of {}: {}", routeId, e.getMessage());
+    }
+  }
+
+  private boolean allowedIncrease(String routeId) {
+    int index = pools.indexOf(routeId);
+    if (index < 0) {
+      return true;
+    }
+    long elapsedMs = System.currentTimeMillis() - pools.lastChangedAtMillis(index);
+    return Duration.ofMillis(elapsedMs).toMinutes() >= properties.getMinIncreaseWindowMins();
+  }
+
+  /**
+   * Gateway's shared client settings, overridden by the seed properties that are set.
+   */
+  ChangeConnectionPoolRequest initialSettings(final ChangeConnectionPoolRequest gateway) {
+    return new ChangeConnectionPoolRequest(
+        properties.getMinConnections() > 0 ? properties.getMinConnections() : gateway.maxConnections(),
+        properties.getPendingAcquireMaxCount() > 0
+            ? properties.getPendingAcquireMaxCount()
+            : gateway.pendingAcquireMaxCount(),
+        orDefault(properties.getPendingAcquireTimeoutMs(), gateway.pendingAcquireTimeout()),
+        orDefault(properties.getMaxIdleMs(), gateway.maxIdleTime()),
+        orDefault(properties.getConnectTimeoutMs(), gateway.connectTimeout()),
+        orDefault(properties.getResponseTimeoutMs(), gateway.responseTimeout())
+    );
+  }
+
+  private static Duration orDefault(final long millis, final Duration gateway) {
+    return millis > 0 ? Duration.ofMillis(millis) : gateway;
+  }
+
+  private static ChangeConnectionPoolRequest withMaxConnections(final ChangeConnectionPoolRequest request,
+                                                                final int maxConnections) {
+    return new ChangeConnectionPoolRequest(
+        maxConnections,
+        request.pendingAcquireMaxCount(),
+        request.pendingAcquireTimeout(),
+        request.maxIdleTime(),
+        request.connectTimeout(),
+        request.responseTimeout()
+    );
+  }
+
+  private void apply(String routeId, ChangeConnectionPoolRequest request) {
+    apiGatewayClient.changeConnectionPool(routeId, request);
+    int index = pools.intern(routeId);
+    pools.setValue(index, request.maxConnections());
+    pools.setLastChangedAtMillis(index, System.currentTimeMillis());
+    log.info("Updated connection pool for {} -> maxConnections={}", routeId, request.maxConnections());
+  }
+
+}
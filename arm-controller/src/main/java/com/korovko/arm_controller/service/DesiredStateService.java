@@ -0,0 +1,165 @@
+package com.korovko.arm_controller.service;
+
+import com.korovko.arm_controller.config.DesiredStateProperties;
+import com.korovko.arm_controller.model.ChangeRetryRequest;
+import com.korovko.arm_controller.model.DesiredRouteState;
+import com.korovko.arm_controller.model.DesiredState;
+import com.korovko.arm_controller.model.DesiredVersion;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Desired-state document the gateway replicas long-poll. Every decision bumps the document version once,
+ * and each waiting poll is answered with only the routes changed since the version it already has, so
+ * the cost of a decision does not depend on how many replicas are running.
+ */
+@Service
+public class DesiredStateService {
+
+  private final DesiredStateProperties properties;
+  // Time-prefixed, so gateways order a restarted controller's decisions after the previous run's
+  private final String epoch = String.format("%013d-%s", System.currentTimeMillis(), UUID.randomUUID());
+
+  private final Map<String, DesiredRouteState> routes = new HashMap<>();
+  private final List<Waiter> waiters = new ArrayList<>();
+  private final Set<String> jointlyTuned = ConcurrentHashMap.newKeySet();
+  private long version;
+
+  public DesiredStateService(final DesiredStateProperties properties) {
+    this.properties = properties;
+  }
+
+  /**
+   * Whether decisions are still pushed to the configured gateway in addition to being published here.
+   */
+  public boolean pushEnabled() {
+    return properties.isPushEnabled();
+  }
+
+  /**
+   * Hands the routes' timeout and retry over to one joint decision; the per-setting loops skip them.
+   */
+  public void tuneJointly(final Collection<String> routeIds) {
+    jointlyTuned.addAll(routeIds);
+  }
+
+  public boolean tunedJointly(final String routeId) {
+    return jointlyTuned.contains(routeId);
+  }
+
+  /**
+   * Publishes the route's timeout and returns the version it is published under.
+   */
+  public DesiredVersion putTimeout(final String routeId, final int timeoutMs) {
+    return update(routeId,
+        current -> new DesiredRouteState(0, timeoutMs, current == null ? null : current.retry()));
+  }
+
+  public DesiredVersion putRetry(final String routeId, final ChangeRetryRequest retry) {
+    return update(routeId,
+        current -> new DesiredRouteState(0, current == null ? null : current.timeoutMs(), retry));
+  }
+
+  /**
+   * Current desired state of the route, null when nothing has been published for it.
+   */
+  public synchronized DesiredRouteState route(final String routeId) {
+    return routes.get(routeId);
+  }
+
+  /**
+   * Puts the route back to {@code previous} after the push of the change published under {@code published}
+   * failed, unless a later decision has replaced that change since. A route that had no state before is
+   * published as a tombstone with neither timeout nor retry, so polls that already saw the change learn it
+   * is withdrawn.
+   */
+  public void revert(final String routeId, final DesiredVersion published, final DesiredRouteState previous) {
+    DesiredRouteState restored = previous == null ? new DesiredRouteState(0, null, null) : previous;
+    update(routeId, current -> current != null && epoch.equals(published.epoch())
+        && current.version() == published.version() ? restored : current);
+  }
+
+  /**
+   * Routes changed after {@code sinceVersion}; the whole document when the caller knows another epoch.
+   */
+  public synchronized DesiredState since(final String knownEpoch, final long sinceVersion) {
+    long from = epoch.equals(knownEpoch) && sinceVersion <= version ? sinceVersion : 0;
+    Map<String, DesiredRouteState> changed = new HashMap<>();
+    routes.forEach((routeId, state) -> {
+      if (state.version() > from) {
+        changed.put(routeId, state);
+      }
+    });
+    return new DesiredState(epoch, version, changed);
+  }
+
+  /**
+   * Answers right away when the caller is behind, otherwise parks the request until the next change or
+   * until the long-poll timeout, which answers {@code 304 Not Modified}.
+   */
+  public DeferredResult<ResponseEntity<DesiredState>> poll(final String knownEpoch, final long sinceVersion) {
+    DeferredResult<ResponseEntity<DesiredState>> result = new DeferredResult<>(
+        properties.getLongPollTimeoutMs(), ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+    synchronized (this) {
+      if (!epoch.equals(knownEpoch) || sinceVersion != version) {
+        result.setResult(ResponseEntity.ok(since(knownEpoch, sinceVersion)));
+        return result;
+      }
+      Waiter waiter = new Waiter(new PollPosition(knownEpoch, sinceVersion), result);
+      waiters.add(waiter);
+      result.onCompletion(() -> removeWaiter(waiter));
+    }
+    return result;
+  }
+
+  private DesiredVersion update(final String routeId, final UnaryOperator<DesiredRouteState> change) {
+    List<Waiter> ready;
+    Map<PollPosition, DesiredState> deltas = new HashMap<>();
+    DesiredVersion published;
+    synchronized (this) {
+      DesiredRouteState current = routes.get(routeId);
+      DesiredRouteState next = change.apply(current);
+      if (current != null && Objects.equals(current.timeoutMs(), next.timeoutMs())
+          && Objects.equals(current.retry(), next.retry())) {
+        return new DesiredVersion(epoch, current.version());
+      }
+      version++;
+      published = new DesiredVersion(epoch, version);
+      routes.put(routeId, new DesiredRouteState(version, next.timeoutMs(), next.retry()));
+      ready = new ArrayList<>(waiters);
+      waiters.clear();
+      // Parked polls mostly sit at the same version: build each distinct delta once, not once per replica
+      for (Waiter waiter : ready) {
+        deltas.computeIfAbsent(waiter.position(), position -> since(position.epoch(), position.sinceVersion()));
+      }
+    }
+    for (Waiter waiter : ready) {
+      waiter.result().setResult(ResponseEntity.ok(deltas.get(waiter.position())));
+    }
+    return published;
+  }
+
+  private synchronized void removeWaiter(final Waiter waiter) {
+    waiters.remove(waiter);
+  }
+
+  private record PollPosition(String epoch, long sinceVersion) {
+  }
+
+  private record Waiter(PollPosition position, DeferredResult<ResponseEntity<DesiredState>> result) {
+  }
+
+}
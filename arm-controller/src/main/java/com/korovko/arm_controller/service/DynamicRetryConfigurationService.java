@@ -1,50 +1,127 @@
 package com.korovko.arm_controller.service;
 
 import com.korovko.arm_controller.client.ApiGatewayClient;
-import com.korovko.arm_controller.client.ArmClient;
+import com.korovko.arm_controller.control.ControlLaws;
+import com.korovko.arm_controller.control.ControlLimits;
+import com.korovko.arm_controller.control.ControlSignal;
+import com.korovko.arm_controller.control.ThompsonBandit;
+import com.korovko.arm_controller.metrics.BurnRates;
+import com.korovko.arm_controller.metrics.MetricsSnapshot;
+import com.korovko.arm_controller.metrics.PatternService;
+import com.korovko.arm_controller.metrics.Trend;
+import com.korovko.arm_controller.metrics.WilsonInterval;
 import com.korovko.arm_controller.model.ChangeRetryRequest;
-import com.korovko.arm_controller.model.PrometheusData;
-import com.korovko.arm_controller.model.PrometheusQueryResponse;
-import com.korovko.arm_controller.model.PrometheusResultItem;
+import com.korovko.arm_controller.model.DesiredRouteState;
+import com.korovko.arm_controller.model.DesiredVersion;
+import com.korovko.arm_controller.model.RetryEffectiveness;
+import com.korovko.arm_controller.config.BanditSettings;
 import com.korovko.arm_controller.config.RetryConfigProperties;
+import com.korovko.arm_controller.config.SloProperties;
+import com.korovko.arm_controller.engine.RouteEvaluationEngine;
+import com.korovko.arm_controller.signal.SignalFilterChain;
+import com.korovko.arm_controller.state.RouteStateTable;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
-import java.time.Instant;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
 
 @Slf4j
 @Service
-public class DynamicRetryConfigurationService {
+public class DynamicRetryConfigurationService implements PatternService {
 
-  private static final String RETRY_RATE_QUERY = """
-      (sum by (routeId) (increase(spring_cloud_gateway_requests_seconds_count{httpStatusCode=~"502|503"}[1m])) / sum by (routeId) (increase(spring_cloud_gateway_requests_seconds_count[1m]))) * 100
-      """;
+  private static final IntPredicate RETRYABLE = status -> status == 502 || status == 503;
 
-  private final ArmClient armClient;
   private final ApiGatewayClient apiGatewayClient;
   private final RetryConfigProperties retryConfigProperties;
+  private final DesiredStateService desiredState;
+  private final RouteEvaluationEngine engine;
+  private final SloProperties slo;
 
-  private final Map<String, Integer> stableGoodCount = new HashMap<>();
-  private final Map<String, Integer> routeToRetryAttempts = new HashMap<>();
-  private final Map<String, Instant> routeIdByRetryLastChangedAt = new HashMap<>();
+  // value = current maxAttempts
+  private final RouteStateTable routes = new RouteStateTable();
+  // Per-route conditioning of the signal, indexed like routes
+  private final SignalFilterChain filter;
+  private final ControlLaws laws;
+  // Thompson sampling over attempts x first backoff for the bandit routes; null when there are none
+  private final Set<String> banditRoutes;
+  private final ThompsonBandit bandit;
+  private final int[] armAttempts;
+  private final int[] armBackoffMs;
+  // Per route: arm in play, -1 before the first decision, and the cumulative counts it is measured from
+  private final int[] playedArm;
+  private final long[] baseSuccesses;
+  private final long[] baseRequests;
+  private final long[] baseUpstream;
+  private final long[] playedSinceMillis;
+  // Source of the bandit's draws, asked on the evaluating thread for every draw
+  private Supplier<RandomGenerator> random = ThreadLocalRandom::current;
+  // Gateway calls started by the current tick
+  private final Queue<CompletableFuture<Void>> pendingCalls = new ConcurrentLinkedQueue<>();
 
+  // Cumulative retry outcomes fetched at the start of the tick, and those of the last tick that got them
+  private volatile Map<String, RetryEffectiveness> tickEffectiveness = Map.of();
+  private volatile Map<String, RetryEffectiveness> previousEffectiveness = Map.of();
+  // Error-budget burn of the current tick, shared by all routes
+  private volatile BurnRates tickBurn = BurnRates.none();
 
-  public DynamicRetryConfigurationService(final ApiGatewayClient apiGatewayClient, ArmClient armClient, RetryConfigProperties retryConfigProperties) {
+  public DynamicRetryConfigurationService(final ApiGatewayClient apiGatewayClient,
+                                          RetryConfigProperties retryConfigProperties,
+                                          DesiredStateService desiredState,
+                                          RouteEvaluationEngine engine,
+                                          SloProperties slo) {
     this.apiGatewayClient = apiGatewayClient;
-    this.armClient = armClient;
     this.retryConfigProperties = retryConfigProperties;
+    this.desiredState = desiredState;
+    this.engine = engine;
+    this.slo = slo;
+    this.filter = SignalFilterChain.of(retryConfigProperties.getFilter(), routes.capacity());
+    this.laws = ControlLaws.of(retryConfigProperties.getControl(), routes.capacity());
+
+    BanditSettings banditSettings = retryConfigProperties.getBandit();
+    this.banditRoutes = banditSettings == null ? Set.of() : new HashSet<>(banditSettings.getRoutes());
+    if (banditRoutes.isEmpty()) {
+      this.bandit = null;
+      this.armAttempts = this.armBackoffMs = this.playedArm = null;
+      this.baseSuccesses = this.baseRequests = this.baseUpstream = this.playedSinceMillis = null;
+      return;
+    }
+    List<Integer> backoffs = banditSettings.getFirstBackoffsMs();
+    int minAttempts = retryConfigProperties.getMinAttempts();
+    int attemptCounts = Math.max(1, retryConfigProperties.getMaxAttempts() - minAttempts + 1);
+    this.armAttempts = new int[attemptCounts * backoffs.size()];
+    this.armBackoffMs = new int[armAttempts.length];
+    for (int a = 0; a < attemptCounts; a++) {
+      for (int b = 0; b < backoffs.size(); b++) {
+        armAttempts[a * backoffs.size() + b] = minAttempts + a;
+        armBackoffMs[a * backoffs.size() + b] = backoffs.get(b);
+      }
+    }
+    this.bandit = new ThompsonBandit(armAttempts.length, routes.capacity());
+    this.playedArm = new int[routes.capacity()];
+    Arrays.fill(playedArm, -1);
+    this.baseSuccesses = new long[routes.capacity()];
+    this.baseRequests = new long[routes.capacity()];
+    this.baseUpstream = new long[routes.capacity()];
+    this.playedSinceMillis = new long[routes.capacity()];
   }
 
   @EventListener(ApplicationReadyEvent.class)
@@ -52,118 +129,299 @@ public class DynamicRetryConfigurationService {
     CompletableFuture
         .delayedExecutor(5, TimeUnit.SECONDS)
         .execute(() -> {
-          routeToRetryAttempts.put("customers_route", retryConfigProperties.getMinAttempts());
-          routeToRetryAttempts.put("vets_route", retryConfigProperties.getMinAttempts());
-          routeToRetryAttempts.put("visits_route", retryConfigProperties.getMinAttempts());
+          routes.setValue(routes.intern("customers_route"), retryConfigProperties.getMinAttempts());
+          routes.setValue(routes.intern("vets_route"), retryConfigProperties.getMinAttempts());
+          routes.setValue(routes.intern("visits_route"), retryConfigProperties.getMinAttempts());
         });
   }
 
-  @Scheduled(fixedRate = 30_000, initialDelay = 6_000)
-  public void schedule() {
+  /**
+   * Evaluates every route of the snapshot by its share of 502/503 responses; the returned future completes
+   * when the resulting gateway calls are done.
+   */
+  @Override
+  public CompletableFuture<Void> onTick(MetricsSnapshot snapshot) {
     log.info("Running a scheduled task to check retries");
+    tickBurn = BurnRates.of(snapshot, slo);
+    if (!tracksAny(snapshot)) {
+      return CompletableFuture.completedFuture(null);
+    }
 
-    armClient.getPrometheusQuery(RETRY_RATE_QUERY)
-        .filter(r -> "success".equals(r.getStatus()))
-        .map(PrometheusQueryResponse::getData)
-        .map(PrometheusData::getResult)
-        .filter(result -> !result.isEmpty())
-        .stream()
-        .flatMap(List::stream)
-        .forEach(this::processRetry);
+    return apiGatewayClient.getRetryEffectivenessAsync()
+        .handle((fetched, error) -> {
+          if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+            log.warn("Failed to fetch retry effectiveness: {}", cause.getMessage());
+            tickEffectiveness = Map.of();
+            return null;
+          }
+          if (!tickEffectiveness.isEmpty()) {
+            previousEffectiveness = tickEffectiveness;
+          }
+          tickEffectiveness = fetched == null ? Map.of() : fetched;
+          return null;
+        })
+        .thenCompose(ignored -> {
+          engine.evaluate(snapshot.routeIds(), routeId -> routeId, routeId -> {
+            if (desiredState.tunedJointly(routeId)) {
+              return;
+            }
+            if (banditRoutes.contains(routeId)) {
+              exploreRetry(routeId);
+            } else {
+              processRetry(routeId, snapshot.percent(routeId, RETRYABLE), snapshot.requests(routeId),
+                  Trend.of(snapshot.percentHistory(routeId, RETRYABLE)));
+            }
+          });
+          return drainCalls();
+        });
   }
 
-  private void processRetry(final PrometheusResultItem item) {
-    String routeId = item.getMetric().get("routeId");
-    List<String> value = item.getValue();
-    if (routeId == null || value == null || value.size() < 2) {
-      return;
+  private boolean tracksAny(MetricsSnapshot snapshot) {
+    for (String routeId : snapshot.routeIds()) {
+      int idx = routes.indexOf(routeId);
+      if (idx >= 0 && routes.hasValue(idx) && !desiredState.tunedJointly(routeId)) {
+        return true;
+      }
     }
+    return false;
+  }
 
-    double errPct = toDouble(value.get(1));
-    Integer current = routeToRetryAttempts.get(routeId);
-    if (current == null) {
+  /**
+   * Same band logic as {@code DynamicTimeoutConfigurationService}, applied to the attempts. An increase also
+   * needs the last attempt to pay off.
+   */
+  private void processRetry(final String routeId, final double errPct, final double requests, final Trend trend) {
+    int idx = routes.indexOf(routeId);
+    if (idx < 0 || !routes.hasValue(idx)) {
+      return;
+    }
+    if (!(requests >= Math.max(1, retryConfigProperties.getMinRequests()))) {
       return;
     }
+    int current = routes.value(idx);
 
     double target = retryConfigProperties.getTargetErrorPct();
-    double lower = Math.max(0.0, target - retryConfigProperties.getDeadbandPct());
-    double upper = target + retryConfigProperties.getDeadbandPct();
+    double halfBand = trend.isPresent()
+        ? Math.max(retryConfigProperties.getDeadbandPct(), Math.min(trend.stdDev(), target / 2))
+        : retryConfigProperties.getDeadbandPct();
+    double lower = Math.max(0.0, target - halfBand);
+    double upper = target + halfBand;
     double panic = target * retryConfigProperties.getPanicMultiplier();
+    double signal = filter.apply(idx, trend.isPresent() ? Math.max(0.0, trend.next()) : errPct);
+    WilsonInterval interval = WilsonInterval.of(errPct, requests, retryConfigProperties.getConfidenceZ());
+    double surelyErr = errPct - interval.below();
+    BurnRates burn = tickBurn;
+    boolean panicking = burn.enabled()
+        ? burn.fastBurn(routeId, RETRYABLE)
+        : surelyErr > upper && surelyErr >= panic;
+    int cap = panicking
+        ? retryConfigProperties.getMaxAttempts()
+        : Math.min(2, retryConfigProperties.getMaxAttempts());
 
-    if (errPct > upper) {
-      stableGoodCount.put(routeId, 0);
+    ControlSignal control = new ControlSignal(signal, signal - interval.margin(), signal + interval.margin(),
+        target, lower, upper, panicking);
+    ControlLimits limits = new ControlLimits(retryConfigProperties.getMinAttempts(), cap,
+        retryConfigProperties.getStepSize(), retryConfigProperties.getDecreaseStablePeriods(),
+        allowedIncrease(idx), allowedDecrease(idx));
 
-      if (!allowedIncrease(routeId)) {
-        return;
-      }
-
-      int cap = (errPct >= panic)
-          ? retryConfigProperties.getMaxAttempts()
-          : Math.min(2, retryConfigProperties.getMaxAttempts());
+    int next = laws.forRoute(routeId).next(routes, idx, control, limits);
+    if (next == current || next > current && !lastAttemptPaysOff(routeId, current)) {
+      return;
+    }
+    apply(idx, next, retryConfigProperties.getFirstBackoffMs());
+  }
 
-      int next = Math.min(cap, current + retryConfigProperties.getStepSize());
-      if (next != current) {
-        apply(routeId, next);
-      }
+  /**
+   * Scores the arm in play once its decision interval is over and draws the next one, at most maxStepUp
+   * attempts above the current.
+   */
+  private void exploreRetry(final String routeId) {
+    int idx = routes.indexOf(routeId);
+    if (idx < 0 || !routes.hasValue(idx)) {
+      return;
+    }
+    RetryEffectiveness effectiveness = tickEffectiveness.get(routeId);
+    if (effectiveness == null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    int played = playedArm[idx];
+    long playedSuccesses = successes(effectiveness) - baseSuccesses[idx];
+    long playedRequests = upstream(effectiveness, 1) - baseRequests[idx];
+    long playedUpstream = played < 0 ? -1 : upstream(effectiveness, armAttempts[played]) - baseUpstream[idx];
+    if (played < 0 || playedSuccesses < 0 || playedRequests < 0 || playedUpstream < 0) {
+      // First sight or the gateway restarted its counters: measure from here on
+      play(idx, played < 0 ? armOf(routes.value(idx)) : played, effectiveness, now);
+      return;
+    }
+    BanditSettings settings = retryConfigProperties.getBandit();
+    if (now - playedSinceMillis[idx] < TimeUnit.MINUTES.toMillis(settings.getDecisionIntervalMins())
+        || playedUpstream < Math.max(1, settings.getMinUpstreamRequests()) || playedRequests == 0) {
       return;
     }
 
-    if (errPct >= lower) {
-      stableGoodCount.put(routeId, 0);
+    long retries = Math.max(0, playedUpstream - playedRequests);
+    double reward = Math.max(0.0, Math.min(1.0,
+        (playedSuccesses - settings.getRetryCost() * retries) / playedRequests));
+    double trials = Math.max(1, Math.min(playedRequests, settings.getTrialsPerDecision()));
+    bandit.update(idx, played, reward * trials, trials, settings.getDecay());
+    int ceiling = routes.value(idx) + Math.max(0, settings.getMaxStepUp());
+    int next = bandit.sample(idx, arm -> armAttempts[arm] <= ceiling, random.get());
+    if (next < 0) {
+      next = played;
+    }
+    play(idx, next, effectiveness, now);
+    if (next == played) {
       return;
     }
+    log.info("Bandit for {}: {} attempts/{}ms scored {} per request -> {} attempts/{}ms",
+        routeId, armAttempts[played], armBackoffMs[played], Math.round(1000.0 * reward) / 1000.0,
+        armAttempts[next], armBackoffMs[next]);
+    int previousArm = played;
+    apply(idx, armAttempts[next], armBackoffMs[next]).exceptionally(error -> {
+      // The gateway still runs the previous arm: keep measuring that one
+      play(idx, previousArm, effectiveness, now);
+      return null;
+    });
+  }
 
-    int good = stableGoodCount.getOrDefault(routeId, 0) + 1;
-    stableGoodCount.put(routeId, good);
+  // Starts measuring an arm from the current cumulative counts
+  private void play(int idx, int arm, RetryEffectiveness effectiveness, long now) {
+    playedArm[idx] = arm;
+    baseSuccesses[idx] = successes(effectiveness);
+    baseRequests[idx] = upstream(effectiveness, 1);
+    baseUpstream[idx] = upstream(effectiveness, armAttempts[arm]);
+    playedSinceMillis[idx] = now;
+  }
 
-    if (good < retryConfigProperties.getDecreaseStablePeriods()) {
-      return;
+  private static long successes(RetryEffectiveness effectiveness) {
+    long total = 0;
+    if (effectiveness.successByAttempt() != null) {
+      for (long succeeded : effectiveness.successByAttempt()) {
+        total += succeeded;
+      }
     }
-    if (!allowedDecrease(routeId)) {
-      return;
+    return total;
+  }
+
+  // Upstream requests of a route allowed the given attempts: every request reaching attempt k made it
+  private static long upstream(RetryEffectiveness effectiveness, int attempts) {
+    long total = 0;
+    for (int attempt = 1; attempt <= attempts; attempt++) {
+      total += effectiveness.reached(attempt);
     }
+    return total;
+  }
 
-    int next = Math.max(retryConfigProperties.getMinAttempts(), current - retryConfigProperties.getStepSize());
-    if (next != current) {
-      apply(routeId, next);
+  // Arm closest to the configuration a route had before the bandit took over
+  private int armOf(int attempts) {
+    int best = 0;
+    for (int arm = 1; arm < armAttempts.length; arm++) {
+      if (distance(arm, attempts) < distance(best, attempts)) {
+        best = arm;
+      }
     }
-    stableGoodCount.put(routeId, 0);
+    return best;
+  }
+
+  private long distance(int arm, int attempts) {
+    return Math.abs(armAttempts[arm] - attempts) * 100_000L
+        + Math.abs(armBackoffMs[arm] - (long) retryConfigProperties.getFirstBackoffMs());
   }
 
-  private boolean allowedIncrease(String routeId) {
-    Instant last = routeIdByRetryLastChangedAt.getOrDefault(routeId, Instant.EPOCH);
-    return Duration.between(last, Instant.now()).toMinutes() >= retryConfigProperties.getMinIncreaseWindowMins();
+  private boolean allowedIncrease(int idx) {
+    return minutesSinceChange(idx) >= retryConfigProperties.getMinIncreaseWindowMins();
   }
 
-  private boolean allowedDecrease(String routeId) {
-    Instant last = routeIdByRetryLastChangedAt.getOrDefault(routeId, Instant.EPOCH);
-    return Duration.between(last, Instant.now()).toMinutes() >= retryConfigProperties.getMinDecreaseWindowMins();
+  private boolean allowedDecrease(int idx) {
+    return minutesSinceChange(idx) >= retryConfigProperties.getMinDecreaseWindowMins()
+        && tickBurn.budgetHealthy(routes.routeId(idx));
   }
 
-  private void apply(String routeId, int newAttempts) {
+  private long minutesSinceChange(int idx) {
+    return (System.currentTimeMillis() - routes.lastChangedAtMillis(idx)) / 60_000;
+  }
+
+  /**
+   * Adding attempts only makes sense while the last allowed attempt still recovers requests.
+   * If it almost never succeeds, one more attempt is pure extra load on the backend. Judged by the outcomes
+   * since the previous tick, or since the gateway started before there was one.
+   */
+  private boolean lastAttemptPaysOff(String routeId, int currentAttempts) {
+    if (currentAttempts < 2) {
+      return true;
+    }
+    RetryEffectiveness cumulative = tickEffectiveness.get(routeId);
+    if (cumulative == null) {
+      return true;
+    }
+    RetryEffectiveness effectiveness = cumulative.since(previousEffectiveness.get(routeId));
+    if (effectiveness.reached(currentAttempts) < retryConfigProperties.getMinAttemptSamples()) {
+      return true;
+    }
+    double successPct = effectiveness.successPct(currentAttempts);
+    if (successPct < retryConfigProperties.getMinAttemptSuccessPct()) {
+      log.info("Not adding attempts for {}: attempt {} succeeds in {}% of requests that reach it",
+          routeId, currentAttempts, Math.round(successPct * 100.0) / 100.0);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Publishes the new retry policy. With pushes on, the route only takes it once the gateway accepted it; a
+   * failed push puts the desired state back, so the next tick decides again from what the gateway runs.
+   */
+  private CompletableFuture<Void> apply(int idx, int newAttempts, int firstBackoffMs) {
+    String routeId = routes.routeId(idx);
     ChangeRetryRequest req = new ChangeRetryRequest(
         newAttempts,
-        Duration.ofMillis(retryConfigProperties.getFirstBackoffMs()),
+        Duration.ofMillis(firstBackoffMs),
         Duration.ofMillis(retryConfigProperties.getMaxBackoffMs()),
         retryConfigProperties.getFactor(),
         true,
         Set.of(HttpStatus.BAD_GATEWAY.value(), HttpStatus.SERVICE_UNAVAILABLE.value()),
-        Set.of(HttpMethod.GET.name())
+        Set.of(HttpMethod.GET.name()),
+        retryConfigProperties.getJitter(),
+        retryConfigProperties.isHonorRetryAfter()
     );
 
-    apiGatewayClient.changeRetry(routeId, req);
-    routeToRetryAttempts.put(routeId, newAttempts);
-    routeIdByRetryLastChangedAt.put(routeId, Instant.now());
+    DesiredRouteState previous = desiredState.route(routeId);
+    DesiredVersion desiredVersion = desiredState.putRetry(routeId, req);
+    if (!desiredState.pushEnabled()) {
+      commit(idx, newAttempts, firstBackoffMs);
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> call = engine.submit(routeId,
+            () -> apiGatewayClient.changeRetryAsync(routeId, req, desiredVersion))
+        .whenComplete((ignored, error) -> {
+          if (error == null) {
+            commit(idx, newAttempts, firstBackoffMs);
+          } else {
+            desiredState.revert(routeId, desiredVersion, previous);
+          }
+        });
+    pendingCalls.add(call);
+    return call;
+  }
+
+  private void commit(int idx, int newAttempts, int firstBackoffMs) {
+    routes.setValue(idx, newAttempts);
+    routes.setLastChangedAtMillis(idx, System.currentTimeMillis());
 
-    log.info("Updated retry for {} -> maxAttempts={}", routeId, newAttempts);
+    log.info("Updated retry for {} -> maxAttempts={}, firstBackoff={}ms", routes.routeId(idx), newAttempts,
+        firstBackoffMs);
   }
 
-  private double toDouble(final String value) {
-    try {
-      return Double.parseDouble(value);
-    } catch (NumberFormatException e) {
-      return 0.0;
+  private CompletableFuture<Void> drainCalls() {
+    List<CompletableFuture<Void>> calls = new ArrayList<>();
+    for (CompletableFuture<Void> call; (call = pendingCalls.poll()) != null; ) {
+      calls.add(call);
     }
+    return engine.whenAll(calls);
   }
 
 }
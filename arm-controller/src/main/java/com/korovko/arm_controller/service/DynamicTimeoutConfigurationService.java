@@ -1,51 +1,79 @@
 package com.korovko.arm_controller.service;
 
 import com.korovko.arm_controller.client.ApiGatewayClient;
-import com.korovko.arm_controller.client.ArmClient;
+import com.korovko.arm_controller.config.SloProperties;
 import com.korovko.arm_controller.config.TimeoutConfigProperties;
+import com.korovko.arm_controller.control.ControlLaw;
+import com.korovko.arm_controller.control.ControlLaws;
+import com.korovko.arm_controller.control.ControlLimits;
+import com.korovko.arm_controller.control.ControlSignal;
+import com.korovko.arm_controller.engine.RouteEvaluationEngine;
+import com.korovko.arm_controller.metrics.BurnRates;
+import com.korovko.arm_controller.metrics.LatencyBuckets;
+import com.korovko.arm_controller.metrics.LatencyHistogram;
+import com.korovko.arm_controller.metrics.MetricsSnapshot;
+import com.korovko.arm_controller.metrics.PatternService;
+import com.korovko.arm_controller.metrics.Trend;
+import com.korovko.arm_controller.metrics.WilsonInterval;
 import com.korovko.arm_controller.model.ChangeTimeoutRequest;
-import com.korovko.arm_controller.model.PrometheusData;
-import com.korovko.arm_controller.model.PrometheusQueryResponse;
-import com.korovko.arm_controller.model.PrometheusResultItem;
+import com.korovko.arm_controller.model.DesiredRouteState;
+import com.korovko.arm_controller.model.DesiredVersion;
+import com.korovko.arm_controller.signal.SignalFilterChain;
+import com.korovko.arm_controller.state.RouteStateTable;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntPredicate;
 
 @Slf4j
 @Service
-public class DynamicTimeoutConfigurationService {
+public class DynamicTimeoutConfigurationService implements PatternService {
 
-  private static final String TIMEOUT_RATE_QUERY = """
-      100 *
-      (sum by (routeId) (increase(spring_cloud_gateway_requests_seconds_count{httpStatusCode="504"}[1m]))
-       /
-       sum by (routeId) (increase(spring_cloud_gateway_requests_seconds_count[1m])))
-      """;
+  private static final IntPredicate GATEWAY_TIMEOUT = status -> status == 504;
 
-  private final ArmClient armClient;
   private final ApiGatewayClient apiGatewayClient;
   private final TimeoutConfigProperties props;
-
-  private final Map<String, Integer> routeToTimeout = new HashMap<>();
-  private final Map<String, Instant> routeIdByLastChangedAt = new HashMap<>();
-  private final Map<String, Integer> stableGoodCount = new HashMap<>();
-
-  public DynamicTimeoutConfigurationService(ArmClient armClient,
-                                            ApiGatewayClient apiGatewayClient,
-                                            TimeoutConfigProperties props) {
-    this.armClient = armClient;
+  private final DesiredStateService desiredState;
+  private final RouteEvaluationEngine engine;
+  private final SeasonalForecastService forecast;
+  private final SloProperties slo;
+
+  // value = current timeout in ms
+  private final RouteStateTable routes = new RouteStateTable();
+  // Per-route conditioning of the signal, indexed like routes
+  private final SignalFilterChain filter;
+  private final ControlLaws laws;
+  // Routes raised ahead of a forecast peak (1); they are not lowered again until the peak is over
+  private final AtomicIntegerArray preRaised = new AtomicIntegerArray(routes.capacity());
+  // Gateway calls started by the current tick
+  private final Queue<CompletableFuture<Void>> pendingCalls = new ConcurrentLinkedQueue<>();
+  // Error-budget burn of the current tick, shared by all routes
+  private volatile BurnRates tickBurn = BurnRates.none();
+
+  public DynamicTimeoutConfigurationService(ApiGatewayClient apiGatewayClient,
+                                            TimeoutConfigProperties props,
+                                            DesiredStateService desiredState,
+                                            RouteEvaluationEngine engine,
+                                            SeasonalForecastService forecast,
+                                            SloProperties slo) {
     this.apiGatewayClient = apiGatewayClient;
     this.props = props;
+    this.desiredState = desiredState;
+    this.engine = engine;
+    this.forecast = forecast;
+    this.slo = slo;
+    this.filter = SignalFilterChain.of(props.getFilter(), routes.capacity());
+    this.laws = ControlLaws.of(props.getControl(), routes.capacity());
   }
 
   @EventListener(ApplicationReadyEvent.class)
@@ -54,144 +82,215 @@ public class DynamicTimeoutConfigurationService {
         .execute(this::initializeTimeouts);
   }
 
-  @Scheduled(fixedRate = 30_000, initialDelay = 5_000)
-  public void schedule() {
-    if (routeToTimeout.isEmpty()) {
-      return;
+  /**
+   * Evaluates every route of the snapshot by its latency quantile or its share of 504 responses; the
+   * returned future completes when the resulting gateway calls are done.
+   */
+  @Override
+  public CompletableFuture<Void> onTick(MetricsSnapshot snapshot) {
+    if (routes.size() == 0) {
+      return CompletableFuture.completedFuture(null);
     }
-
-    armClient.getPrometheusQuery(TIMEOUT_RATE_QUERY)
-        .filter(r -> "success".equals(r.getStatus()))
-        .map(PrometheusQueryResponse::getData)
-        .map(PrometheusData::getResult)
-        .filter(list -> !list.isEmpty())
-        .stream()
-        .flatMap(List::stream)
-        .forEach(this::processTimeoutMetric);
+    tickBurn = BurnRates.of(snapshot, slo);
+    engine.evaluate(snapshot.routeIds(), routeId -> routeId, routeId -> {
+      if (desiredState.tunedJointly(routeId)) {
+        return;
+      }
+      if (preAdjustForPeak(routeId)) {
+        return;
+      }
+      if (!sizeByLatency(routeId, snapshot.latency())) {
+        processTimeoutMetric(routeId, snapshot.percent(routeId, GATEWAY_TIMEOUT),
+            snapshot.requests(routeId), Trend.of(snapshot.percentHistory(routeId, GATEWAY_TIMEOUT)));
+      }
+    });
+    return drainCalls();
   }
 
-  private void processTimeoutMetric(final PrometheusResultItem item) {
-    String routeId = item.getMetric().get("routeId");
-    Double errorPct = extractValue(item);
-
-    if (routeId == null || errorPct == null) return;
+  /**
+   * Raises the timeout by a few steps when traffic is forecast to peak within the lead time, once per
+   * peak, so the route does not have to time out first. Until the forecast peak is over the route is not
+   * lowered; afterwards the usual logic relaxes it again. Returns true when the tick's
+   * decision for the route was the pre-adjustment.
+   */
+  private boolean preAdjustForPeak(final String routeId) {
+    int idx = routes.indexOf(routeId);
+    if (idx < 0 || !routes.hasValue(idx)) {
+      return false;
+    }
+    if (!forecast.inPeak(routeId)) {
+      preRaised.set(idx, 0);
+      return false;
+    }
+    if (!preRaised.compareAndSet(idx, 0, 1)) {
+      return false;
+    }
+    int currentTimeout = routes.value(idx);
+    long raised = (long) currentTimeout + (long) forecast.preAdjustSteps() * props.getStepSize();
+    int next = (int) Math.min(props.getMax(), raised);
+    if (next <= currentTimeout) {
+      return false;
+    }
+    routes.resetStableGoodCount(idx);
+    change(idx, currentTimeout, next, "forecast peak").exceptionally(error -> {
+      preRaised.set(idx, 0);
+      return null;
+    });
+    return true;
+  }
 
-    Integer currentTimeout = routeToTimeout.get(routeId);
-    if (currentTimeout == null) return;
+  /**
+   * Quantile sizing: the timeout goes to a multiple of the route's latency quantile in one move, as far as
+   * the cooldown of that direction allows; differences smaller than one step are left alone. Returns
+   * false, leaving the decision to the 504 share, when the mode is off or the histogram has too few
+   * observations of the route.
+   */
+  private boolean sizeByLatency(final String routeId, final LatencyBuckets latency) {
+    if (!Boolean.TRUE.equals(props.getQuantileSizing())) {
+      return false;
+    }
+    int idx = routes.indexOf(routeId);
+    if (idx < 0 || !routes.hasValue(idx)) {
+      return false;
+    }
+    if (!(LatencyHistogram.count(latency, routeId) >= Math.max(1, props.getMinRequests()))) {
+      return false;
+    }
+    double quantileMs = LatencyHistogram.quantileMillis(latency, routeId, props.getQuantile());
+    if (!Double.isFinite(quantileMs)) {
+      return false;
+    }
 
-    double target = props.getTargetErrorRate();
-    double lower = Math.max(0.0, target - props.getDeadbandPct());
-    double upper = target + props.getDeadbandPct();
-    double panic = target * props.getPanicMultiplier();
+    int currentTimeout = routes.value(idx);
+    long sized = Math.round(quantileMs * props.getQuantileMultiplier());
+    int next = (int) Math.max(props.getMin(), Math.min(props.getMax(), sized));
 
-    log.info("route={} timeout={}ms timeoutErr={}%, band=[{}..{}], panic>={}",
-        routeId, currentTimeout, round2(errorPct), round2(lower), round2(upper), round2(panic));
+    log.info("route={} timeout={}ms q{}={}ms -> target={}ms",
+        routeId, currentTimeout, props.getQuantile(), round2(quantileMs), next);
 
-    // 1) Panic: fast increase
-    if (errorPct >= panic) {
-      stableGoodCount.put(routeId, 0);
-      if (allowedToIncrease(routeId)) {
-        increaseTimeout(routeId, currentTimeout, errorPct);
-      }
-      return;
+    if (Math.abs(next - currentTimeout) < Math.max(1, props.getStepSize())) {
+      return true;
     }
-
-    // 2) Above band: increase
-    if (errorPct > upper) {
-      stableGoodCount.put(routeId, 0);
-      if (allowedToIncrease(routeId)) {
-        increaseTimeout(routeId, currentTimeout, errorPct);
-      }
-      return;
+    if (next > currentTimeout ? allowedToIncrease(idx) : allowedToDecrease(idx)) {
+      routes.resetStableGoodCount(idx);
+      change(idx, currentTimeout, next, "q" + props.getQuantile() + "=" + round2(quantileMs) + "ms");
     }
+    return true;
+  }
 
-    // 3) In band: noop
-    if (errorPct >= lower) {
-      stableGoodCount.put(routeId, 0);
+  /**
+   * Moves the timeout when the error trend leaves a noise-widened band around the target by more than the
+   * Wilson margin. Panic, or a fast error-budget burn with SLOs on, raises it on the instant value.
+   */
+  private void processTimeoutMetric(final String routeId, final double errorPct, final double requests,
+                                    final Trend trend) {
+    int idx = routes.indexOf(routeId);
+    if (idx < 0 || !routes.hasValue(idx)) return;
+    if (!(requests >= Math.max(1, props.getMinRequests()))) {
+      log.debug("route={} skipped, {} requests in window", routeId, requests);
       return;
     }
+    int currentTimeout = routes.value(idx);
 
-    // 4) Below band: candidate decrease after N stable periods + slow cooldown
-    int good = stableGoodCount.getOrDefault(routeId, 0) + 1;
-    stableGoodCount.put(routeId, good);
-
-    if (good >= props.getDecreaseStablePeriods() && allowedToDecrease(routeId)) {
-      stableGoodCount.put(routeId, 0);
-      decreaseTimeout(routeId, currentTimeout, errorPct);
+    double target = props.getTargetErrorRate();
+    double halfBand = trend.isPresent()
+        ? Math.max(props.getDeadbandPct(), Math.min(trend.stdDev(), target / 2))
+        : props.getDeadbandPct();
+    double lower = Math.max(0.0, target - halfBand);
+    double upper = target + halfBand;
+    double panic = target * props.getPanicMultiplier();
+    double signal = filter.apply(idx, trend.isPresent() ? Math.max(0.0, trend.next()) : errorPct);
+    WilsonInterval interval = WilsonInterval.of(errorPct, requests, props.getConfidenceZ());
+    BurnRates burn = tickBurn;
+    boolean panicking = burn.enabled()
+        ? burn.fastBurn(routeId, GATEWAY_TIMEOUT)
+        : errorPct - interval.below() >= panic;
+
+    log.info("route={} timeout={}ms timeoutErr={}% of {} trend={}% ±{}, band=[{}..{}], panic>={}",
+        routeId, currentTimeout, round2(errorPct), Math.round(requests), round2(signal),
+        round2(interval.margin()), round2(lower), round2(upper), round2(panic));
+
+    ControlSignal control = new ControlSignal(signal, signal - interval.margin(), signal + interval.margin(),
+        target, lower, upper, panicking);
+    ControlLimits limits = new ControlLimits(props.getMin(), props.getMax(), props.getStepSize(),
+        props.getDecreaseStablePeriods(), allowedToIncrease(idx), allowedToDecrease(idx));
+
+    int next = laws.forRoute(routeId).next(routes, idx, control, limits);
+    if (next != currentTimeout) {
+      change(idx, currentTimeout, next, "timeoutErr=" + round2(errorPct) + "%");
     }
   }
 
-  private void increaseTimeout(String routeId, int currentTimeout, double errPct) {
-    if (currentTimeout >= props.getMax()) {
-      return;
-    }
-
-    int next = Math.min(currentTimeout + props.getStepSize(), props.getMax());
-    if (next == currentTimeout) {
-      return;
+  /**
+   * Publishes the new timeout. With pushes on, the route only takes it once the gateway accepted it; a
+   * failed push puts the desired state back, so the next tick decides again from what the gateway runs.
+   */
+  private CompletableFuture<Void> change(int idx, int currentTimeout, int next, String cause) {
+    String routeId = routes.routeId(idx);
+    DesiredRouteState previous = desiredState.route(routeId);
+    DesiredVersion desiredVersion = desiredState.putTimeout(routeId, next);
+    if (!desiredState.pushEnabled()) {
+      commit(idx, currentTimeout, next, cause);
+      return CompletableFuture.completedFuture(null);
     }
+    CompletableFuture<Void> call = engine.submit(routeId,
+            () -> apiGatewayClient.changeTimeoutAsync(new ChangeTimeoutRequest(routeId, next), desiredVersion))
+        .whenComplete((ignored, error) -> {
+          if (error == null) {
+            commit(idx, currentTimeout, next, cause);
+          } else {
+            desiredState.revert(routeId, desiredVersion, previous);
+          }
+        });
+    pendingCalls.add(call);
+    return call;
+  }
 
-    apiGatewayClient.changeTimeout(new ChangeTimeoutRequest(routeId, next));
-    routeToTimeout.put(routeId, next);
-    routeIdByLastChangedAt.put(routeId, Instant.now());
+  private void commit(int idx, int currentTimeout, int next, String cause) {
+    routes.setValue(idx, next);
+    routes.setLastChangedAtMillis(idx, System.currentTimeMillis());
 
-    log.info("INCREASE route={} {}ms -> {}ms (timeoutErr={}%)",
-        routeId, currentTimeout, next, round2(errPct));
+    log.info("{} route={} {}ms -> {}ms ({})",
+        next > currentTimeout ? "INCREASE" : "DECREASE", routes.routeId(idx), currentTimeout, next, cause);
   }
 
-  private void decreaseTimeout(String routeId, int currentTimeout, double errPct) {
-    if (currentTimeout <= props.getMin()) {
-      return;
+  private CompletableFuture<Void> drainCalls() {
+    List<CompletableFuture<Void>> calls = new ArrayList<>();
+    for (CompletableFuture<Void> call; (call = pendingCalls.poll()) != null; ) {
+      calls.add(call);
     }
+    return engine.whenAll(calls);
+  }
 
-    int next = Math.max(currentTimeout - props.getStepSize(), props.getMin());
-    if (next == currentTimeout) {
-      return;
-    }
-
-    apiGatewayClient.changeTimeout(new ChangeTimeoutRequest(routeId, next));
-    routeToTimeout.put(routeId, next);
-    routeIdByLastChangedAt.put(routeId, Instant.now());
-
-    log.info("DECREASE route={} {}ms -> {}ms (timeoutErr={}%)", routeId, currentTimeout, next, round2(errPct));
+  private boolean allowedToIncrease(int idx) {
+    return minutesSinceChange(idx) >= props.getMinIncreaseWindowMins();
   }
 
-  private boolean allowedToIncrease(String routeId) {
-    Instant last = routeIdByLastChangedAt.getOrDefault(routeId, Instant.EPOCH);
-    return Duration.between(last, Instant.now()).toMinutes() >= props.getMinIncreaseWindowMins();
+  private boolean allowedToDecrease(int idx) {
+    return preRaised.get(idx) == 0 && minutesSinceChange(idx) >= props.getMinDecreaseWindowMins()
+        && tickBurn.budgetHealthy(routes.routeId(idx));
   }
 
-  private boolean allowedToDecrease(String routeId) {
-    Instant last = routeIdByLastChangedAt.getOrDefault(routeId, Instant.EPOCH);
-    return Duration.between(last, Instant.now()).toMinutes() >= props.getMinDecreaseWindowMins();
+  private long minutesSinceChange(int idx) {
+    return (System.currentTimeMillis() - routes.lastChangedAtMillis(idx)) / 60_000;
   }
 
   private void initializeTimeouts() {
     Map<String, Integer> latencies = apiGatewayClient.getLatencies();
-    routeToTimeout.putAll(latencies);
 
     // Seed so both increase and decrease are allowed initially
     long seedMinutes = Math.max(props.getMinDecreaseWindowMins(), props.getMinIncreaseWindowMins()) + 1;
-    Instant past = Instant.now().minus(Duration.ofMinutes(seedMinutes));
+    long past = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(seedMinutes);
 
-    for (String routeId : routeToTimeout.keySet()) {
-      routeIdByLastChangedAt.put(routeId, past);
-      stableGoodCount.put(routeId, 0);
-    }
+    latencies.forEach((routeId, timeoutMs) -> {
+      int idx = routes.intern(routeId);
+      routes.setValue(idx, timeoutMs);
+      routes.setLastChangedAtMillis(idx, past);
+      routes.resetStableGoodCount(idx);
+      desiredState.putTimeout(routeId, timeoutMs);
+    });
 
-    log.info("Initialized timeouts: {}", routeToTimeout);
-  }
-
-  private Double extractValue(PrometheusResultItem item) {
-    List<String> v = item.getValue();
-    if (v == null || v.size() < 2) {
-      return null;
-    }
-    try {
-      return Double.parseDouble(v.get(1));
-    } catch (Exception e) {
-      return null;
-    }
+    log.info("Initialized timeouts: {}", latencies);
   }
 
   private double round2(double x) {
@@ -0,0 +1,268 @@
+package com.korovko.arm_controller.service;
+
+import com.korovko.arm_controller.client.ApiGatewayClient;
+import com.korovko.arm_controller.config.JointConfigProperties;
+import com.korovko.arm_controller.config.MetricsProperties;
+import com.korovko.arm_controller.config.RetryConfigProperties;
+import com.korovko.arm_controller.config.TimeoutConfigProperties;
+import com.korovko.arm_controller.engine.RouteEvaluationEngine;
+import com.korovko.arm_controller.metrics.LatencyBuckets;
+import com.korovko.arm_controller.metrics.LatencyHistogram;
+import com.korovko.arm_controller.metrics.MetricsSnapshot;
+import com.korovko.arm_controller.metrics.PatternService;
+import com.korovko.arm_controller.model.ChangeRetryRequest;
+import com.korovko.arm_controller.model.ChangeTimeoutRequest;
+import com.korovko.arm_controller.model.DesiredRouteState;
+import com.korovko.arm_controller.model.DesiredVersion;
+import com.korovko.arm_controller.state.RouteStateTable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * Picks timeout, attempts and first backoff of opted-in routes together, instead of letting the timeout
+ * and retry loops push them independently past what a client can wait for.
+ * <p>
+ * An attempt is taken to succeed with {@code s(T) = (1 - p) * F(T)}, where {@code F} is the share of
+ * requests finishing within timeout {@code T} according to the latency histogram and {@code p} the share
+ * failing with a retryable status. With independent attempts, {@code n} of them succeed with
+ * {@code 1 - (1 - s)^n} and cost {@code (1 - (1 - s)^n) / s} upstream requests on average. The worst case
+ * is {@code n} full timeouts plus every backoff at its largest jitter. Of the combinations within the
+ * latency and amplification budgets the one with the highest expected success wins, the cheaper one on
+ * a tie.
+ * <p>
+ * Without {@code dynamic.metrics.histogram} there is no {@code F} to work with: the opted-in routes are then
+ * left to the separate timeout and retry loops.
+ */
+@Slf4j
+@Service
+public class JointRouteOptimizerService implements PatternService {
+
+  private static final IntPredicate RETRYABLE = status -> status == 502 || status == 503;
+  private static final double TIE = 1e-9;
+
+  private final ApiGatewayClient apiGatewayClient;
+  private final JointConfigProperties props;
+  private final RetryConfigProperties retryProps;
+  private final DesiredStateService desiredState;
+  private final RouteEvaluationEngine engine;
+
+  // value = index of the applied combination
+  private final RouteStateTable routes = new RouteStateTable();
+  private final Queue<CompletableFuture<Void>> pendingCalls = new ConcurrentLinkedQueue<>();
+
+  // Candidate combinations, indexed alike; worst-case latency does not depend on traffic
+  private final int[] timeouts;
+  private final int[] candidateTimeout;
+  private final int[] candidateAttempts;
+  private final int[] candidateBackoff;
+  private final long[] candidateWorstCaseMs;
+
+  public JointRouteOptimizerService(ApiGatewayClient apiGatewayClient,
+                                    JointConfigProperties props,
+                                    TimeoutConfigProperties timeoutProps,
+                                    RetryConfigProperties retryProps,
+                                    MetricsProperties metricsProps,
+                                    DesiredStateService desiredState,
+                                    RouteEvaluationEngine engine) {
+    this.apiGatewayClient = apiGatewayClient;
+    this.props = props;
+    this.retryProps = retryProps;
+    this.desiredState = desiredState;
+    this.engine = engine;
+
+    int step = Math.max(1, timeoutProps.getStepSize());
+    List<Integer> timeoutValues = new ArrayList<>();
+    for (int t = timeoutProps.getMin(); t < timeoutProps.getMax(); t += step) {
+      timeoutValues.add(t);
+    }
+    timeoutValues.add(timeoutProps.getMax());
+    this.timeouts = timeoutValues.stream().mapToInt(Integer::intValue).toArray();
+
+    int attemptChoices = Math.max(1, retryProps.getMaxAttempts() - retryProps.getMinAttempts() + 1);
+    int size = timeouts.length * attemptChoices * props.getFirstBackoffsMs().size();
+    this.candidateTimeout = new int[size];
+    this.candidateAttempts = new int[size];
+    this.candidateBackoff = new int[size];
+    this.candidateWorstCaseMs = new long[size];
+    int c = 0;
+    for (int t = 0; t < timeouts.length; t++) {
+      for (int n = retryProps.getMinAttempts(); n < retryProps.getMinAttempts() + attemptChoices; n++) {
+        for (int backoff : props.getFirstBackoffsMs()) {
+          candidateTimeout[c] = t;
+          candidateAttempts[c] = Math.max(1, n);
+          candidateBackoff[c] = backoff;
+          candidateWorstCaseMs[c] = worstCaseMs(timeouts[t], Math.max(1, n), backoff);
+          c++;
+        }
+      }
+    }
+
+    if (!props.getRoutes().isEmpty() && !metricsProps.isHistogram()) {
+      log.warn("Joint routes {} need dynamic.metrics.histogram, leaving them to the timeout and retry loops",
+          props.getRoutes());
+      return;
+    }
+    props.getRoutes().forEach(routes::intern);
+    desiredState.tuneJointly(props.getRoutes());
+  }
+
+  @Override
+  public CompletableFuture<Void> onTick(MetricsSnapshot snapshot) {
+    if (routes.size() == 0) {
+      return CompletableFuture.completedFuture(null);
+    }
+    engine.evaluate(snapshot.routeIds(), routeId -> routeId, routeId -> optimize(routeId, snapshot));
+    return drainCalls();
+  }
+
+  private void optimize(String routeId, MetricsSnapshot snapshot) {
+    int idx = routes.indexOf(routeId);
+    if (idx < 0) {
+      return;
+    }
+    LatencyBuckets latency = snapshot.latency();
+    if (!(LatencyHistogram.count(latency, routeId) >= Math.max(1, props.getMinRequests()))) {
+      return;
+    }
+    double retryableShare = snapshot.responses(routeId, RETRYABLE) / snapshot.requests(routeId);
+    double[] within = LatencyHistogram.fractionsWithin(latency, routeId, timeouts);
+    if (!Double.isFinite(retryableShare) || Double.isNaN(within[0])) {
+      return;
+    }
+
+    long budget = props.getLatencyBudgetsMs().getOrDefault(routeId, props.getLatencyBudgetMs());
+    int best = -1;
+    double bestSuccess = -1.0;
+    double bestAmplification = Double.MAX_VALUE;
+    for (int c = 0; c < candidateTimeout.length; c++) {
+      if (candidateWorstCaseMs[c] > budget) {
+        continue;
+      }
+      double perAttempt = (1.0 - retryableShare) * within[candidateTimeout[c]];
+      double success = success(perAttempt, candidateAttempts[c]);
+      double amplification = amplification(perAttempt, candidateAttempts[c]);
+      if (amplification > props.getMaxAmplification()) {
+        continue;
+      }
+      boolean better = best < 0 || success > bestSuccess + TIE
+          || Math.abs(success - bestSuccess) <= TIE && (amplification < bestAmplification - TIE
+          || Math.abs(amplification - bestAmplification) <= TIE && candidateWorstCaseMs[c] < candidateWorstCaseMs[best]);
+      if (better) {
+        best = c;
+        bestSuccess = success;
+        bestAmplification = amplification;
+      }
+    }
+    if (best < 0) {
+      log.info("route={} no timeout/retry combination fits {}ms and {}x", routeId, budget, props.getMaxAmplification());
+      return;
+    }
+
+    int current = routes.hasValue(idx) ? routes.value(idx) : -1;
+    if (best == current || !allowedToChange(idx)) {
+      return;
+    }
+    if (current >= 0 && candidateWorstCaseMs[current] <= budget) {
+      double perAttempt = (1.0 - retryableShare) * within[candidateTimeout[current]];
+      double currentSuccess = success(perAttempt, candidateAttempts[current]);
+      if (amplification(perAttempt, candidateAttempts[current]) <= props.getMaxAmplification()
+          && 100.0 * (bestSuccess - currentSuccess) < props.getMinGainPct()) {
+        return;
+      }
+    }
+    apply(idx, best, bestSuccess, bestAmplification);
+  }
+
+  static double success(double perAttempt, int attempts) {
+    return 1.0 - Math.pow(1.0 - perAttempt, attempts);
+  }
+
+  // Expected attempts: 1 + (1 - s) + ... + (1 - s)^(n - 1)
+  static double amplification(double perAttempt, int attempts) {
+    return perAttempt > 0.0 ? success(perAttempt, attempts) / perAttempt : attempts;
+  }
+
+  private long worstCaseMs(int timeoutMs, int attempts, int firstBackoffMs) {
+    double total = (double) timeoutMs * attempts;
+    double backoff = firstBackoffMs;
+    for (int retry = 1; retry < attempts; retry++) {
+      total += Math.min(backoff, retryProps.getMaxBackoffMs()) * (1.0 + retryProps.getJitter());
+      backoff *= retryProps.getFactor();
+    }
+    return (long) Math.ceil(total);
+  }
+
+  private boolean allowedToChange(int idx) {
+    return (System.currentTimeMillis() - routes.lastChangedAtMillis(idx)) / 60_000 >= props.getMinChangeIntervalMins();
+  }
+
+  private void apply(int idx, int candidate, double success, double amplification) {
+    String routeId = routes.routeId(idx);
+    int timeoutMs = timeouts[candidateTimeout[candidate]];
+    int attempts = candidateAttempts[candidate];
+    ChangeRetryRequest retry = new ChangeRetryRequest(
+        attempts,
+        Duration.ofMillis(candidateBackoff[candidate]),
+        Duration.ofMillis(retryProps.getMaxBackoffMs()),
+        retryProps.getFactor(),
+        true,
+        Set.of(HttpStatus.BAD_GATEWAY.value(), HttpStatus.SERVICE_UNAVAILABLE.value()),
+        Set.of(HttpMethod.GET.name()),
+        retryProps.getJitter(),
+        retryProps.isHonorRetryAfter()
+    );
+
+    DesiredRouteState previous = desiredState.route(routeId);
+    DesiredVersion timeoutVersion = desiredState.putTimeout(routeId, timeoutMs);
+    DesiredVersion retryVersion = desiredState.putRetry(routeId, retry);
+    if (!desiredState.pushEnabled()) {
+      commit(idx, candidate, success, amplification);
+      return;
+    }
+    // The pair is taken only when the gateway accepted both halves; otherwise the next tick decides again
+    CompletableFuture<Void> timeoutCall = engine.submit(routeId,
+        () -> apiGatewayClient.changeTimeoutAsync(new ChangeTimeoutRequest(routeId, timeoutMs), timeoutVersion));
+    CompletableFuture<Void> retryCall = engine.submit(routeId,
+        () -> apiGatewayClient.changeRetryAsync(routeId, retry, retryVersion));
+    pendingCalls.add(CompletableFuture.allOf(timeoutCall, retryCall)
+        .whenComplete((ignored, error) -> {
+          if (error == null) {
+            commit(idx, candidate, success, amplification);
+          } else {
+            desiredState.revert(routeId, retryVersion, previous);
+          }
+        }));
+  }
+
+  private void commit(int idx, int candidate, double success, double amplification) {
+    routes.setValue(idx, candidate);
+    routes.setLastChangedAtMillis(idx, System.currentTimeMillis());
+
+    String routeId = routes.routeId(idx);
+    int timeoutMs = timeouts[candidateTimeout[candidate]];
+    int attempts = candidateAttempts[candidate];
+    log.info("JOINT route={} timeout={}ms attempts={} firstBackoff={}ms (success={}%, amplification={}x, worst={}ms)",
+        routeId, timeoutMs, attempts, candidateBackoff[candidate], Math.round(success * 10_000.0) / 100.0,
+        Math.round(amplification * 100.0) / 100.0, candidateWorstCaseMs[candidate]);
+  }
+
+  private CompletableFuture<Void> drainCalls() {
+    List<CompletableFuture<Void>> calls = new ArrayList<>();
+    for (CompletableFuture<Void> call; (call = pendingCalls.poll()) != null; ) {
+      calls.add(call);
+    }
+    return engine.whenAll(calls);
+  }
+
+}
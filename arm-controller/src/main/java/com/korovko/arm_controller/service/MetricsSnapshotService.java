@@ -0,0 +1,208 @@
+package com.korovko.arm_controller.service;
+
+import com.korovko.arm_controller.client.ArmClient;
+import com.korovko.arm_controller.config.MetricsProperties;
+import com.korovko.arm_controller.metrics.CounterHistory;
+import com.korovko.arm_controller.metrics.CounterSamples;
+import com.korovko.arm_controller.metrics.MetricsSnapshot;
+import com.korovko.arm_controller.metrics.PatternService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drives every {@link PatternService} from one shared snapshot per tick, so all control loops decide on
+ * the same data and the query load does not grow with the number of loops. Prometheus is only asked for
+ * the raw counters of every instance. Increases over the decision window and the extra windows are
+ * computed from the local {@link CounterHistory} at Prometheus' sample timestamps. That history is
+ * backfilled from one range query on start. Longer windows are served by a coarse history fed from the
+ * same fetches, so they add no queries either. Every snapshot also carries the per-step history the loops
+ * fit their trend over and, when enabled, the latency bucket increases over the decision window.
+ */
+@Slf4j
+@Service
+public class MetricsSnapshotService {
+
+  static final String COUNTERS_QUERY = """
+      sum by (routeId, httpStatusCode, instance) (spring_cloud_gateway_requests_seconds_count)
+      """;
+  static final String BUCKETS_QUERY = """
+      sum by (routeId, le, instance) (spring_cloud_gateway_requests_seconds_bucket)
+      """;
+
+  private final ArmClient armClient;
+  private final List<PatternService> patternServices;
+  private final MetricsProperties props;
+  private final CounterHistory history;
+  private final CounterHistory buckets;
+  // Every longHistoryIntervalMs-th moment of the counters, null when disabled
+  private final CounterHistory longHistory;
+  private volatile long longRecordedAt = Long.MIN_VALUE;
+  private final AtomicBoolean sampleRunning = new AtomicBoolean();
+  private volatile boolean backfilled;
+  private final AtomicBoolean tickRunning = new AtomicBoolean();
+
+  public MetricsSnapshotService(ArmClient armClient, List<PatternService> patternServices, MetricsProperties props) {
+    this.armClient = armClient;
+    this.patternServices = patternServices;
+    this.props = props;
+    this.history = new CounterHistory(props.getHistorySize());
+    this.buckets = new CounterHistory(props.getHistorySize());
+    this.longHistory = props.getLongHistorySize() < 2 ? null : new CounterHistory(props.getLongHistorySize());
+  }
+
+  @Scheduled(fixedRateString = "${dynamic.metrics.sample-interval-ms:10000}", initialDelay = 1_000)
+  public void scheduleSample() {
+    sample();
+  }
+
+  /**
+   * Fetches the raw counters, and the latency buckets when enabled, once and appends them to the history.
+   * A fetch still in flight makes the next one a no-op.
+   */
+  public CompletableFuture<Void> sample() {
+    if (!sampleRunning.compareAndSet(false, true)) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return backfill()
+        .thenCompose(ignored -> {
+          CompletableFuture<Void> counters = armClient.getCounterSamplesAsync(COUNTERS_QUERY)
+              .thenAccept(samples -> {
+                history.record(samples);
+                recordLong(samples);
+              });
+          if (!props.isHistogram()) {
+            return counters;
+          }
+          return counters.thenCombine(armClient.getCounterSamplesAsync(BUCKETS_QUERY)
+              .thenAccept(buckets::record), (a, b) -> null);
+        })
+        .exceptionally(e -> {
+          Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+          log.warn("Counter sample failed: {}", cause.getMessage());
+          return null;
+        })
+        .whenComplete((ignored, error) -> sampleRunning.set(false));
+  }
+
+  private void recordLong(CounterSamples samples) {
+    long at = samples.newestMillis();
+    if (longHistory != null && samples.size() > 0 && at - longRecordedAt >= props.getLongHistoryIntervalMs()) {
+      longHistory.record(samples);
+      longRecordedAt = at;
+    }
+  }
+
+  // One range query per history covering all of it, attempted once; live samples take over from there
+  private CompletableFuture<Void> backfill() {
+    if (backfilled || !props.isBackfill()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    backfilled = true;
+
+    CompletableFuture<Void> counters = backfill(COUNTERS_QUERY, history, props.getSampleIntervalMs(),
+        props.getHistorySize(), "counter");
+    if (longHistory != null) {
+      counters = counters.thenCombine(backfill(COUNTERS_QUERY, longHistory, props.getLongHistoryIntervalMs(),
+          props.getLongHistorySize(), "long counter"), (a, b) -> null);
+    }
+    return props.isHistogram()
+        ? counters.thenCombine(backfill(BUCKETS_QUERY, buckets, props.getSampleIntervalMs(),
+        props.getHistorySize(), "latency bucket"), (a, b) -> null)
+        : counters;
+  }
+
+  private CompletableFuture<Void> backfill(String query, CounterHistory target, long stepMs, int samples,
+                                           String what) {
+    Duration step = Duration.ofMillis(stepMs);
+    Instant end = Instant.now();
+    Instant start = end.minus(step.multipliedBy(samples - 1L));
+    return armClient.getPrometheusRangeAsync(query, start, end, step)
+        .thenAccept(range -> {
+          range.forEachSeries(target::record);
+          log.info("Backfilled {} history with {} series", what, range.size());
+        })
+        .exceptionally(e -> {
+          Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+          log.warn("Backfill of {} history failed, it starts empty: {}", what, cause.getMessage());
+          return null;
+        });
+  }
+
+  @Scheduled(fixedRate = 30_000, initialDelay = 6_000)
+  public void schedule() {
+    tick();
+  }
+
+  /**
+   * Starts a tick without blocking the calling thread; the returned future completes when every pattern
+   * service is done with it. A tick still waiting on the gateway makes the next one a no-op.
+   */
+  public CompletableFuture<Void> tick() {
+    if (!tickRunning.compareAndSet(false, true)) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return CompletableFuture.completedFuture(System.currentTimeMillis())
+        .thenApply(this::snapshot)
+        .thenCompose(this::dispatch)
+        .exceptionally(e -> {
+          Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+          log.warn("Metrics tick failed: {}", cause.getMessage());
+          return null;
+        })
+        .whenComplete((ignored, error) -> tickRunning.set(false));
+  }
+
+  // Windows end at the newest sample when Prometheus' clock runs ahead of ours, so none is cut short
+  private MetricsSnapshot snapshot(long clockMillis) {
+    long nowMillis = Math.max(clockMillis, history.newestMillis());
+    Map<Long, MetricsSnapshot> windows = new HashMap<>();
+    for (long windowMs : props.getWindowsMs()) {
+      windows.put(windowMs, historyFor(windowMs).increases(nowMillis, windowMs));
+    }
+    MetricsSnapshot snapshot = history.increases(nowMillis, props.getWindowMs())
+        .withWindows(windows)
+        .withSteps(history.steps(nowMillis, props.getSampleIntervalMs(), props.getTrendSteps()));
+    return props.isHistogram()
+        ? snapshot.withLatency(buckets.bucketIncreases(nowMillis, props.getWindowMs()))
+        : snapshot;
+  }
+
+  // The regular history as long as it covers the window, the coarse one beyond that
+  private CounterHistory historyFor(long windowMs) {
+    long covered = (props.getHistorySize() - 1L) * props.getSampleIntervalMs();
+    return windowMs > covered && longHistory != null ? longHistory : history;
+  }
+
+  private CompletableFuture<Void> dispatch(MetricsSnapshot snapshot) {
+    CompletableFuture<?>[] ticks = patternServices.stream()
+        .map(service -> onTick(service, snapshot))
+        .toArray(CompletableFuture[]::new);
+    return CompletableFuture.allOf(ticks);
+  }
+
+  // One failing service must not keep the others from seeing the snapshot
+  private static CompletableFuture<Void> onTick(PatternService service, MetricsSnapshot snapshot) {
+    try {
+      return service.onTick(snapshot).exceptionally(e -> {
+        log.warn("{} failed on tick: {}", service.getClass().getSimpleName(), e.getMessage());
+        return null;
+      });
+    } catch (RuntimeException e) {
+      log.warn("{} failed on tick: {}", service.getClass().getSimpleName(), e.getMessage());
+      return CompletableFuture.completedFuture(null);
+    }
+  }
+
+}
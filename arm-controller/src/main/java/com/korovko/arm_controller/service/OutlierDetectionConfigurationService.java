@@ -0,0 +1,60 @@
+package com.korovko.arm_controller.service;
+
+import com.korovko.arm_controller.client.ApiGatewayClient;
+import com.korovko.arm_controller.config.OutlierDetectionProperties;
+import com.korovko.arm_controller.model.ChangeOutlierDetectionRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Keeps the gateway's outlier detection rules equal to {@code dynamic.outlier.*}. Ejection itself happens
+ * per request in the gateway, the controller only owns the thresholds. The rules are compared on every
+ * tick, so a rebound property and a restarted gateway both converge without a controller restart.
+ */
+@Slf4j
+@Service
+public class OutlierDetectionConfigurationService {
+
+  private final ApiGatewayClient apiGatewayClient;
+  private final OutlierDetectionProperties properties;
+
+  public OutlierDetectionConfigurationService(final ApiGatewayClient apiGatewayClient,
+                                              final OutlierDetectionProperties properties) {
+    this.apiGatewayClient = apiGatewayClient;
+    this.properties = properties;
+  }
+
+  @Scheduled(fixedRate = 30_000, initialDelay = 3_000)
+  public void schedule() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    ChangeOutlierDetectionRequest request = desired();
+    try {
+      if (Objects.equals(apiGatewayClient.getOutlierDetection(), request)) {
+        return;
+      }
+      apiGatewayClient.changeOutlierDetection(request);
+      log.info("Applied outlier detection rules: {}", request);
+    } catch (RestClientException e) {
+      log.warn("Failed to apply outlier detection rules: {}", e.getMessage());
+    }
+  }
+
+  private ChangeOutlierDetectionRequest desired() {
+    return new ChangeOutlierDetectionRequest(
+        properties.getConsecutiveFailures(),
+        Duration.ofMillis(properties.getBaseEjectionMs()),
+        Duration.ofMillis(properties.getMaxEjectionMs()),
+        properties.getLatencyFactor(),
+        properties.getMinSamples(),
+        properties.getMaxEjectionPercent()
+    );
+  }
+
+}
@@ -0,0 +1,182 @@
+package com.korovko.arm_controller.service;
+
+import com.korovko.arm_controller.config.ForecastProperties;
+import com.korovko.arm_controller.forecast.SeasonalModel;
+import com.korovko.arm_controller.metrics.MetricsSnapshot;
+import com.korovko.arm_controller.metrics.PatternService;
+import com.korovko.arm_controller.state.RouteStateTable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Learns the daily or weekly traffic shape of every route from the shared snapshots and tells the
+ * timeout loop when a peak is coming, so timeouts go up before the errors do instead of after. The model
+ * is written to a local file periodically and on shutdown, so a restart does not cost a season of
+ * learning.
+ */
+@Slf4j
+@Service
+public class SeasonalForecastService implements PatternService {
+
+  private static final long NO_PEAK = Long.MIN_VALUE;
+
+  private final ForecastProperties props;
+  private final SeasonalModel model;
+
+  // Peak a route is in or heading for: forecast traffic before it, its first and last forecast bucket
+  private final RouteStateTable peaks;
+  private final double[] prePeakLevel;
+  private final long[] peakFrom;
+  private final long[] peakUntil;
+
+  public SeasonalForecastService(ForecastProperties props) {
+    this.props = props;
+    this.model = props.isEnabled()
+        ? new SeasonalModel(props.getSeasonBuckets(), props.getAlpha(), props.getBeta(), props.getGamma(),
+        RouteStateTable.DEFAULT_CAPACITY)
+        : null;
+    this.peaks = model == null ? null : new RouteStateTable();
+    this.prePeakLevel = model == null ? null : new double[peaks.capacity()];
+    this.peakFrom = model == null ? null : new long[peaks.capacity()];
+    this.peakUntil = model == null ? null : new long[peaks.capacity()];
+    load();
+  }
+
+  /**
+   * Adds each route's requests in the decision window to its current bucket.
+   */
+  @Override
+  public CompletableFuture<Void> onTick(MetricsSnapshot snapshot) {
+    observe(snapshot, System.currentTimeMillis());
+    return CompletableFuture.completedFuture(null);
+  }
+
+  void observe(MetricsSnapshot snapshot, long nowMillis) {
+    if (model == null) {
+      return;
+    }
+    long bucket = bucketAt(nowMillis);
+    synchronized (model) {
+      for (String routeId : snapshot.routeIds()) {
+        model.observe(routeId, bucket, snapshot.requests(routeId));
+      }
+    }
+  }
+
+  /**
+   * Whether the route is in a forecast peak or heading into one. A peak starts when traffic within the lead
+   * time is forecast to exceed the current forecast by the configured peak ratio, and lasts until, once its
+   * first bucket is reached, the forecast is back at the level before it, or until the last bucket forecast
+   * as part of it has passed. False while forecasting is off or the route has less than a season of history.
+   */
+  public boolean inPeak(String routeId) {
+    return inPeak(routeId, System.currentTimeMillis());
+  }
+
+  boolean inPeak(String routeId, long nowMillis) {
+    if (model == null) {
+      return false;
+    }
+    long bucket = bucketAt(nowMillis);
+    long aheadBucket = bucketAt(nowMillis + props.getLeadMinutes() * 60_000L);
+    synchronized (model) {
+      double current = model.forecast(routeId, bucket);
+      double ahead = model.forecast(routeId, aheadBucket);
+      int idx = peaks.indexOf(routeId);
+      if (idx < 0 || peakUntil[idx] == NO_PEAK) {
+        if (!(ahead / Math.max(1.0, current) >= props.getPeakRatio())) {
+          return false;
+        }
+        idx = peaks.intern(routeId);
+        prePeakLevel[idx] = Math.max(1.0, current);
+        peakFrom[idx] = aheadBucket;
+        peakUntil[idx] = aheadBucket;
+        return true;
+      }
+      if (ahead / prePeakLevel[idx] >= props.getPeakRatio()) {
+        peakUntil[idx] = Math.max(peakUntil[idx], aheadBucket);
+      }
+      boolean over = bucket > peakUntil[idx] || (bucket >= peakFrom[idx] && current <= prePeakLevel[idx]);
+      if (over) {
+        peakUntil[idx] = NO_PEAK;
+      }
+      return !over;
+    }
+  }
+
+  /**
+   * Steps a control loop raises its limit by ahead of a forecast peak.
+   */
+  public int preAdjustSteps() {
+    return props.getPreAdjustSteps();
+  }
+
+  @Scheduled(fixedRateString = "${dynamic.forecast.persist-interval-ms:300000}",
+      initialDelayString = "${dynamic.forecast.persist-interval-ms:300000}")
+  public void schedulePersist() {
+    persist();
+  }
+
+  @EventListener(ContextClosedEvent.class)
+  public void onShutdown() {
+    persist();
+  }
+
+  void persist() {
+    Path file = stateFile();
+    if (model == null || file == null) {
+      return;
+    }
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      try (OutputStream stream = Files.newOutputStream(temp);
+           DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+        synchronized (model) {
+          model.write(out);
+        }
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Failed to persist forecast model to {}: {}", file, e.getMessage());
+    }
+  }
+
+  private void load() {
+    Path file = stateFile();
+    if (model == null || file == null || !Files.isRegularFile(file)) {
+      return;
+    }
+    try (InputStream stream = Files.newInputStream(file);
+         DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+      model.read(in);
+      log.info("Loaded forecast model for {} routes from {}", model.size(), file);
+    } catch (IOException e) {
+      log.warn("Ignoring forecast model in {}: {}", file, e.getMessage());
+    }
+  }
+
+  private Path stateFile() {
+    String file = props.getStateFile();
+    return file == null || file.isBlank() ? null : Path.of(file).toAbsolutePath();
+  }
+
+  private long bucketAt(long epochMillis) {
+    return Math.floorDiv(epochMillis, props.getBucketMinutes() * 60_000L);
+  }
+
+}
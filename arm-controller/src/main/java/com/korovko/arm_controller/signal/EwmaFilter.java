@@ -0,0 +1,33 @@
+package com.korovko.arm_controller.signal;
+
+import java.util.Arrays;
+
+/**
+ * Exponentially weighted moving average; the first value of a route seeds it.
+ */
+public class EwmaFilter implements SignalFilter {
+
+  private final double alpha;
+  private final double[] level;
+
+  public EwmaFilter(double alpha, int capacity) {
+    if (alpha <= 0.0 || alpha > 1.0) {
+      throw new IllegalArgumentException("EWMA alpha must be in (0, 1], got " + alpha);
+    }
+    this.alpha = alpha;
+    this.level = new double[capacity];
+    Arrays.fill(level, Double.NaN);
+  }
+
+  @Override
+  public double apply(int route, double value) {
+    if (Double.isNaN(value)) {
+      return value;
+    }
+    double previous = level[route];
+    double next = Double.isNaN(previous) ? value : previous + alpha * (value - previous);
+    level[route] = next;
+    return next;
+  }
+
+}
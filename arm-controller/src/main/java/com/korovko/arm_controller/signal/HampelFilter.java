@@ -0,0 +1,37 @@
+package com.korovko.arm_controller.signal;
+
+/**
+ * Hampel outlier rejection over the route's last {@code window} values: a value further than
+ * {@code threshold} scaled MADs from the window median is replaced by that median. Values in range pass
+ * unchanged. The raw value still enters the window, so a lasting shift is accepted once it makes up half
+ * of it.
+ */
+public class HampelFilter implements SignalFilter {
+
+  // MAD to standard deviation for normally distributed data
+  private static final double MAD_SCALE = 1.4826;
+  private static final int MIN_SAMPLES = 3;
+
+  private final WindowState state;
+  private final double threshold;
+
+  public HampelFilter(int window, double threshold, int capacity) {
+    this.state = new WindowState(window, capacity);
+    this.threshold = threshold;
+  }
+
+  @Override
+  public double apply(int route, double value) {
+    if (Double.isNaN(value)) {
+      return value;
+    }
+    double[] values = state.push(route, value);
+    if (WindowState.count(values) < MIN_SAMPLES) {
+      return value;
+    }
+    double median = state.median(values);
+    double mad = state.mad(values, median);
+    return Math.abs(value - median) > threshold * MAD_SCALE * mad ? median : value;
+  }
+
+}
@@ -0,0 +1,22 @@
+package com.korovko.arm_controller.signal;
+
+/**
+ * Median of the route's last {@code window} values; a single spike never moves it.
+ */
+public class RollingMedianFilter implements SignalFilter {
+
+  private final WindowState state;
+
+  public RollingMedianFilter(int window, int capacity) {
+    this.state = new WindowState(window, capacity);
+  }
+
+  @Override
+  public double apply(int route, double value) {
+    if (Double.isNaN(value)) {
+      return value;
+    }
+    return state.median(state.push(route, value));
+  }
+
+}
@@ -0,0 +1,17 @@
+package com.korovko.arm_controller.signal;
+
+/**
+ * One conditioning step applied to a route's signal before it reaches the deadband comparison.
+ * <p>
+ * State is kept per route index of the owning service's route table, in a small primitive array that is
+ * allocated the first time the route is seen. Routes are evaluated in parallel but each route by one
+ * thread at a time, so a route's state needs no locking.
+ */
+public interface SignalFilter {
+
+  /**
+   * Conditions the next value of the route; NaN (no data) passes through and leaves the state alone.
+   */
+  double apply(int route, double value);
+
+}
@@ -0,0 +1,54 @@
+package com.korovko.arm_controller.signal;
+
+import com.korovko.arm_controller.config.SignalFilterSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Filters applied in the configured order, each with its own per-route state.
+ */
+public class SignalFilterChain {
+
+  private static final SignalFilterChain NONE = new SignalFilterChain(List.of());
+
+  private final List<SignalFilter> filters;
+
+  public SignalFilterChain(List<SignalFilter> filters) {
+    this.filters = List.copyOf(filters);
+  }
+
+  public static SignalFilterChain none() {
+    return NONE;
+  }
+
+  /**
+   * Builds the chain named by {@code settings.chain} ({@code ewma}, {@code median}, {@code hampel}) for
+   * route indexes below {@code capacity}; no settings means no filtering.
+   */
+  public static SignalFilterChain of(SignalFilterSettings settings, int capacity) {
+    if (settings == null || settings.getChain() == null || settings.getChain().isEmpty()) {
+      return NONE;
+    }
+    List<SignalFilter> filters = new ArrayList<>();
+    for (String name : settings.getChain()) {
+      filters.add(switch (name.trim().toLowerCase(Locale.ROOT)) {
+        case "ewma" -> new EwmaFilter(settings.getEwmaAlpha(), capacity);
+        case "median" -> new RollingMedianFilter(settings.getMedianWindow(), capacity);
+        case "hampel" -> new HampelFilter(settings.getHampelWindow(), settings.getHampelThreshold(), capacity);
+        default -> throw new IllegalArgumentException("Unknown signal filter: " + name);
+      });
+    }
+    return new SignalFilterChain(filters);
+  }
+
+  public double apply(int route, double value) {
+    double conditioned = value;
+    for (SignalFilter filter : filters) {
+      conditioned = filter.apply(route, conditioned);
+    }
+    return conditioned;
+  }
+
+}
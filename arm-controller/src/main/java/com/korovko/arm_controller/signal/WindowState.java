@@ -0,0 +1,71 @@
+package com.korovko.arm_controller.signal;
+
+import java.util.Arrays;
+
+/**
+ * Fixed ring of the last values per route plus scratch space for order statistics, laid out in one
+ * {@code double[]} per route: {@code [count, next, ring..., scratch...]}.
+ */
+final class WindowState {
+
+  private final int window;
+  private final double[][] routes;
+
+  WindowState(int window, int capacity) {
+    if (window < 1) {
+      throw new IllegalArgumentException("Filter window must be >= 1, got " + window);
+    }
+    this.window = window;
+    this.routes = new double[capacity][];
+  }
+
+  /**
+   * Adds the value to the route's ring and returns the state array.
+   */
+  double[] push(int route, double value) {
+    double[] state = routes[route];
+    if (state == null) {
+      state = routes[route] = new double[2 + 2 * window];
+    }
+    int count = (int) state[0];
+    int next = (int) state[1];
+    state[2 + next] = value;
+    state[0] = Math.min(count + 1, window);
+    state[1] = (next + 1) % window;
+    return state;
+  }
+
+  static int count(double[] state) {
+    return (int) state[0];
+  }
+
+  /**
+   * Median of the ring; leaves the ring's values sorted in the scratch area.
+   */
+  double median(double[] state) {
+    int count = count(state);
+    int scratch = 2 + window;
+    System.arraycopy(state, 2, state, scratch, count);
+    Arrays.sort(state, scratch, scratch + count);
+    return middle(state, scratch, count);
+  }
+
+  /**
+   * Median absolute deviation from {@code center}; reuses the scratch area.
+   */
+  double mad(double[] state, double center) {
+    int count = count(state);
+    int scratch = 2 + window;
+    for (int i = 0; i < count; i++) {
+      state[scratch + i] = Math.abs(state[2 + i] - center);
+    }
+    Arrays.sort(state, scratch, scratch + count);
+    return middle(state, scratch, count);
+  }
+
+  private static double middle(double[] sorted, int from, int count) {
+    int mid = from + count / 2;
+    return count % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2.0;
+  }
+
+}
@@ -0,0 +1,140 @@
+package com.korovko.arm_controller.state;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-route controller state in flat primitive arrays. A route id is interned to a dense index once;
+ * after that every read and write is a single atomic array access, with no boxing and no {@code Instant}
+ * allocation, and values written by one thread are visible to the others.
+ */
+public class RouteStateTable {
+
+  public static final int DEFAULT_CAPACITY = 65_536;
+
+  /** Marks a route that is interned but has no value yet. */
+  public static final int NO_VALUE = Integer.MIN_VALUE;
+
+  private final int capacity;
+  private final Map<String, Integer> indexByRoute = new ConcurrentHashMap<>();
+  private final AtomicReferenceArray<String> routeIds;
+  private final AtomicInteger size = new AtomicInteger();
+
+  private final AtomicIntegerArray values;
+  private final AtomicLongArray lastChangedAtMillis;
+  private final AtomicIntegerArray stableGoodCount;
+
+  public RouteStateTable() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public RouteStateTable(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be >= 1");
+    }
+    this.capacity = capacity;
+    this.routeIds = new AtomicReferenceArray<>(capacity);
+    this.values = new AtomicIntegerArray(capacity);
+    this.lastChangedAtMillis = new AtomicLongArray(capacity);
+    this.stableGoodCount = new AtomicIntegerArray(capacity);
+  }
+
+  /**
+   * Returns the index of the route, or -1 when it has never been interned.
+   */
+  public int indexOf(String routeId) {
+    if (routeId == null) {
+      return -1;
+    }
+    Integer index = indexByRoute.get(routeId);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Returns the index of the route, assigning the next free one on first use.
+   *
+   * @throws IllegalStateException when the table is full
+   */
+  public int intern(String routeId) {
+    if (routeId == null) {
+      throw new IllegalArgumentException("routeId must not be null");
+    }
+    int existing = indexOf(routeId);
+    if (existing >= 0) {
+      return existing;
+    }
+    // computeIfAbsent only locks the id's bin: reserve the slot atomically so routes in other bins never share it
+    return indexByRoute.computeIfAbsent(routeId, id -> {
+      int next = size.getAndIncrement();
+      if (next >= capacity) {
+        throw new IllegalStateException("Route state table is full: " + capacity + " routes");
+      }
+      values.set(next, NO_VALUE);
+      routeIds.set(next, id);
+      return next;
+    });
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Upper bound of interned indexes; {@link #routeId(int)} may still return null for one being interned.
+   */
+  public int size() {
+    return Math.min(size.get(), capacity);
+  }
+
+  public String routeId(int index) {
+    return routeIds.get(index);
+  }
+
+  public boolean hasValue(int index) {
+    return values.get(index) != NO_VALUE;
+  }
+
+  public int value(int index) {
+    return values.get(index);
+  }
+
+  public void setValue(int index, int value) {
+    values.set(index, value);
+  }
+
+  /**
+   * Returns the value of the route, or {@link #NO_VALUE} when the route is unknown or has no value.
+   */
+  public int value(String routeId) {
+    int index = indexOf(routeId);
+    return index < 0 ? NO_VALUE : values.get(index);
+  }
+
+  /**
+   * Epoch millis of the last change, 0 when the route has never changed.
+   */
+  public long lastChangedAtMillis(int index) {
+    return lastChangedAtMillis.get(index);
+  }
+
+  public void setLastChangedAtMillis(int index, long epochMillis) {
+    lastChangedAtMillis.set(index, epochMillis);
+  }
+
+  public int stableGoodCount(int index) {
+    return stableGoodCount.get(index);
+  }
+
+  public int incrementStableGoodCount(int index) {
+    return stableGoodCount.incrementAndGet(index);
+  }
+
+  public void resetStableGoodCount(int index) {
+    stableGoodCount.set(index, 0);
+  }
+
+}
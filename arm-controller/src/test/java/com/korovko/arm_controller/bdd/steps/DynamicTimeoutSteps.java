@@ -1,23 +1,37 @@
 package com.korovko.arm_controller.bdd.steps;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.korovko.arm_controller.client.ApiGatewayClient;
 import com.korovko.arm_controller.client.ArmClient;
+import com.korovko.arm_controller.config.DesiredStateProperties;
+import com.korovko.arm_controller.config.EngineProperties;
+import com.korovko.arm_controller.config.ForecastProperties;
+import com.korovko.arm_controller.config.MetricsProperties;
+import com.korovko.arm_controller.config.SloProperties;
 import com.korovko.arm_controller.config.TimeoutConfigProperties;
-import com.korovko.arm_controller.model.PrometheusData;
-import com.korovko.arm_controller.model.PrometheusQueryResponse;
-import com.korovko.arm_controller.model.PrometheusResultItem;
+import com.korovko.arm_controller.engine.RouteEvaluationEngine;
+import com.korovko.arm_controller.metrics.CounterSamples;
+import com.korovko.arm_controller.metrics.PrometheusSnapshotReader;
+import com.korovko.arm_controller.service.DesiredStateService;
 import com.korovko.arm_controller.service.DynamicTimeoutConfigurationService;
+import com.korovko.arm_controller.service.MetricsSnapshotService;
+import com.korovko.arm_controller.service.SeasonalForecastService;
+import com.korovko.arm_controller.state.RouteStateTable;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -32,10 +46,13 @@ import static org.mockito.Mockito.*;
 
 public class DynamicTimeoutSteps {
 
+  private static final ObjectMapper JSON = new ObjectMapper();
+
   private final ApiGatewayClient apiGatewayClient;
   private final ArmClient armClient;
   private final TimeoutConfigProperties timeoutConfigProperties;
   private final DynamicTimeoutConfigurationService service;
+  private final MetricsSnapshotService metricsSnapshotService;
 
   public DynamicTimeoutSteps() {
     this.apiGatewayClient = mock(ApiGatewayClient.class);
@@ -43,11 +60,16 @@ public class DynamicTimeoutSteps {
     this.timeoutConfigProperties = mock(TimeoutConfigProperties.class);
 
     this.service = new DynamicTimeoutConfigurationService(
-        armClient,
         apiGatewayClient,
-        timeoutConfigProperties
+        timeoutConfigProperties,
+        new DesiredStateService(new DesiredStateProperties()),
+        new RouteEvaluationEngine(new EngineProperties()),
+        new SeasonalForecastService(new ForecastProperties()),
+        new SloProperties()
     );
+    this.metricsSnapshotService = new MetricsSnapshotService(armClient, List.of(service), metricsProperties());
 
+    when(apiGatewayClient.changeTimeoutAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
     when(timeoutConfigProperties.getDeadbandPct()).thenReturn(0.5);
     when(timeoutConfigProperties.getPanicMultiplier()).thenReturn(3.0);
     when(timeoutConfigProperties.getDecreaseStablePeriods()).thenReturn(2);
@@ -56,19 +78,11 @@ public class DynamicTimeoutSteps {
 
   @Given("there is a route {string} with initial timeout {int} ms")
   public void there_is_a_route_with_initial_timeout(String routeId, int timeoutMs) {
-    @SuppressWarnings("unchecked")
-    Map<String, Integer> routeToTimeout =
-        (Map<String, Integer>) ReflectionTestUtils.getField(service, "routeToTimeout");
-    @SuppressWarnings("unchecked")
-    Map<String, Instant> lastChanged =
-        (Map<String, Instant>) ReflectionTestUtils.getField(service, "routeIdByLastChangedAt");
-    @SuppressWarnings("unchecked")
-    Map<String, Integer> good =
-        (Map<String, Integer>) ReflectionTestUtils.getField(service, "stableGoodCount");
-
-    if (routeToTimeout != null) routeToTimeout.put(routeId, timeoutMs);
-    if (lastChanged != null) lastChanged.put(routeId, Instant.EPOCH);
-    if (good != null) good.put(routeId, 0);
+    RouteStateTable routes = routes();
+    int idx = routes.intern(routeId);
+    routes.setValue(idx, timeoutMs);
+    routes.setLastChangedAtMillis(idx, Instant.EPOCH.toEpochMilli());
+    routes.resetStableGoodCount(idx);
   }
 
   @Given("the acceptable error rate is {int} percent")
@@ -94,23 +108,31 @@ public class DynamicTimeoutSteps {
 
   @Given("the current error rate for {string} is {double} percent")
   public void the_current_error_rate_for_is_percent(String routeId, double errorRate) {
-    PrometheusResultItem item = buildItem(
+    Map<String, Object> timeouts = buildItem(
         routeId,
+        "504",
         List.of("ignored-ts", Double.toString(errorRate))
     );
-    PrometheusQueryResponse prometheusResponse = buildPrometheusResponse(List.of(item));
-    doReturn(Optional.of(prometheusResponse)).when(armClient).getPrometheusQuery(anyString());
+    Map<String, Object> ok = buildItem(
+        routeId,
+        "200",
+        List.of("ignored-ts", Double.toString(100.0 - errorRate))
+    );
+    long tenSecondsAgo = System.currentTimeMillis() - 10_000;
+    CounterSamples before = CounterSamples.builder()
+        .add(routeId, 504, "gw-1", tenSecondsAgo, 0.0)
+        .add(routeId, 200, "gw-1", tenSecondsAgo, 0.0)
+        .build();
+    doReturn(CompletableFuture.completedFuture(before),
+        CompletableFuture.completedFuture(readSnapshot(List.of(timeouts, ok))))
+        .when(armClient).getCounterSamplesAsync(anyString());
   }
 
   @Given("the last timeout change for {string} was {int} minutes ago")
   public void the_last_timeout_change_for_was_minutes_ago(String routeId, int minutesAgo) {
-    @SuppressWarnings("unchecked")
-    Map<String, Instant> lastChanged =
-        (Map<String, Instant>) ReflectionTestUtils.getField(service, "routeIdByLastChangedAt");
-
-    if (lastChanged != null) {
-      lastChanged.put(routeId, Instant.now().minus(minutesAgo, ChronoUnit.MINUTES));
-    }
+    RouteStateTable routes = routes();
+    routes.setLastChangedAtMillis(routes.intern(routeId),
+        Instant.now().minus(minutesAgo, ChronoUnit.MINUTES).toEpochMilli());
   }
 
   @Given("an incoming Prometheus metric with routeId {string} and value kind {string}")
@@ -125,79 +147,94 @@ public class DynamicTimeoutSteps {
       default -> throw new IllegalArgumentException("Unknown valueKind: " + valueKind);
     };
 
-    PrometheusResultItem item = buildItem(routeId, value);
-    PrometheusQueryResponse prometheusResponse = buildPrometheusResponse(List.of(item));
-    doReturn(Optional.of(prometheusResponse)).when(armClient).getPrometheusQuery(anyString());
+    Map<String, Object> item = buildItem(routeId, "504", value);
+    doReturn(CompletableFuture.completedFuture(readSnapshot(List.of(item)))).when(armClient).getCounterSamplesAsync(anyString());
   }
 
   @When("the scheduler checks Prometheus metrics")
   public void the_scheduler_checks_prometheus_metrics() {
-    service.schedule();
+    runTick();
   }
 
   @When("I trigger the dynamic configuration check")
   public void i_trigger_the_dynamic_configuration_check() {
-    service.schedule();
+    runTick();
+  }
+
+  // Two counter samples, so the tick sees the stubbed requests as the increase over its window
+  private void runTick() {
+    metricsSnapshotService.sample().join();
+    metricsSnapshotService.sample().join();
+    metricsSnapshotService.tick().join();
   }
 
   @Then("the timeout for {string} should become {int} ms")
   public void the_timeout_for_should_become_ms(String routeId, int expectedTimeoutMs) {
-    Map<String, Integer> routeToTimeout = routeToTimeout();
-    Integer actual = routeToTimeout.get(routeId);
+    Integer actual = storedTimeout(routeId);
     assertEquals(expectedTimeoutMs, actual, "Unexpected timeout value for route " + routeId);
   }
 
   @Then("no timeout change should be performed for {string}")
   public void no_timeout_change_should_be_performed_for(String routeId) {
-    verify(apiGatewayClient, never()).changeTimeout(any());
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
   }
 
   @Then("the stored timeout for {string} should remain {int} ms")
   public void the_stored_timeout_for_should_remain_ms(String routeId, int expectedTimeoutMs) {
-    Map<String, Integer> routeToTimeout = routeToTimeout();
-    Integer actual = routeToTimeout.get(routeId);
+    Integer actual = storedTimeout(routeId);
     assertEquals(expectedTimeoutMs, actual, "Timeout for route " + routeId + " must remain unchanged");
   }
 
   @Then("the last timeout change timestamp for {string} should be updated")
   public void the_last_timeout_change_timestamp_for_should_be_updated(String routeId) {
-    @SuppressWarnings("unchecked")
-    Map<String, Instant> lastChanged =
-        (Map<String, Instant>) ReflectionTestUtils.getField(service, "routeIdByLastChangedAt");
-
-    Instant ts = lastChanged != null ? lastChanged.get(routeId) : null;
+    RouteStateTable routes = routes();
+    int idx = routes.indexOf(routeId);
+    Instant ts = idx < 0 ? null : Instant.ofEpochMilli(routes.lastChangedAtMillis(idx));
     assertTrue(ts != null && ts.isAfter(Instant.EPOCH), "Last changed timestamp for " + routeId + " was not updated");
   }
 
   @Then("the stored timeout for {string} should not exceed {int} ms")
   public void the_stored_timeout_for_should_not_exceed_ms(String routeId, int maxMs) {
-    Map<String, Integer> routeToTimeout = routeToTimeout();
-    Integer actual = routeToTimeout.get(routeId);
+    Integer actual = storedTimeout(routeId);
     assertTrue(actual != null && actual <= maxMs, "Timeout for route " + routeId + " exceeds max: " + maxMs);
   }
 
-  @SuppressWarnings("unchecked")
-  private Map<String, Integer> routeToTimeout() {
-    return (Map<String, Integer>) ReflectionTestUtils.getField(service, "routeToTimeout");
+  private static MetricsProperties metricsProperties() {
+    MetricsProperties props = new MetricsProperties();
+    props.setBackfill(false);
+    return props;
   }
 
-  private PrometheusQueryResponse buildPrometheusResponse(List<PrometheusResultItem> items) {
-    PrometheusData data = new PrometheusData();
-    data.setResult(items);
+  private Integer storedTimeout(String routeId) {
+    int timeoutMs = routes().value(routeId);
+    return timeoutMs == RouteStateTable.NO_VALUE ? null : timeoutMs;
+  }
 
-    PrometheusQueryResponse response = new PrometheusQueryResponse();
-    response.setStatus("success");
-    response.setData(data);
+  private RouteStateTable routes() {
+    return (RouteStateTable) ReflectionTestUtils.getField(service, "routes");
+  }
 
-    return response;
+  // Decoded by the same reader as the live query response
+  private CounterSamples readSnapshot(List<Map<String, Object>> items) {
+    Map<String, Object> response = Map.of("status", "success", "data", Map.of("result", items));
+    try (JsonParser parser = JSON.getFactory().createParser(JSON.writeValueAsBytes(response))) {
+      return PrometheusSnapshotReader.read(parser);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
-  private PrometheusResultItem buildItem(String routeId, List<String> value) {
-    PrometheusResultItem item = new PrometheusResultItem();
+  private Map<String, Object> buildItem(String routeId, String httpStatusCode, List<String> value) {
     Map<String, String> metric = new HashMap<>();
     if (routeId != null) metric.put("routeId", routeId);
-    item.setMetric(metric);
-    item.setValue(value);
+    metric.put("httpStatusCode", httpStatusCode);
+    metric.put("instance", "gw-1");
+    // Prometheus sends the sample time in seconds as a number; the step's first element only marks its place
+    List<Object> sample = new ArrayList<>(value);
+    sample.set(0, System.currentTimeMillis() / 1000.0);
+    Map<String, Object> item = new HashMap<>();
+    item.put("metric", metric);
+    item.put("value", sample);
     return item;
   }
 }
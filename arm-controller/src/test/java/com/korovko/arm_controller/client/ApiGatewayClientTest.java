@@ -2,17 +2,26 @@ package com.korovko.arm_controller.client;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.korovko.arm_controller.model.ChangeConnectionPoolRequest;
+import com.korovko.arm_controller.model.ChangeOutlierDetectionRequest;
 import com.korovko.arm_controller.model.ChangeRetryRequest;
 import com.korovko.arm_controller.model.ChangeTimeoutRequest;
+import com.korovko.arm_controller.model.DesiredVersion;
+import com.korovko.arm_controller.model.RetryEffectiveness;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.ResponseEntity;
@@ -28,7 +37,7 @@ class ApiGatewayClientTest {
     RestClient.RequestHeadersSpec<?> headersSpec = mock(RestClient.RequestHeadersSpec.class);
     RestClient.ResponseSpec responseSpec = mock(RestClient.ResponseSpec.class);
 
-    ApiGatewayClient client = new ApiGatewayClient(restClient);
+    ApiGatewayClient client = new ApiGatewayClient(restClient, mock(AsyncHttpClient.class));
 
     Map<String, Integer> expected = Map.of("route-1", 1000);
 
@@ -50,7 +59,7 @@ class ApiGatewayClientTest {
     RestClient.RequestBodySpec bodySpec = mock(RestClient.RequestBodySpec.class);
     RestClient.ResponseSpec responseSpec = mock(RestClient.ResponseSpec.class);
 
-    ApiGatewayClient client = new ApiGatewayClient(restClient);
+    ApiGatewayClient client = new ApiGatewayClient(restClient, mock(AsyncHttpClient.class));
 
     ChangeTimeoutRequest request = mock(ChangeTimeoutRequest.class);
 
@@ -74,7 +83,7 @@ class ApiGatewayClientTest {
     RestClient.RequestBodySpec bodySpec = mock(RestClient.RequestBodySpec.class);
     RestClient.ResponseSpec responseSpec = mock(RestClient.ResponseSpec.class);
 
-    ApiGatewayClient client = new ApiGatewayClient(restClient);
+    ApiGatewayClient client = new ApiGatewayClient(restClient, mock(AsyncHttpClient.class));
 
     String routeId = "customers_route";
     ChangeRetryRequest request = mock(ChangeRetryRequest.class);
@@ -92,4 +101,109 @@ class ApiGatewayClientTest {
     verify(responseSpec).toBodilessEntity();
   }
 
+  @Test
+  void getRetryEffectivenessAsync_readsExpectedEndpoint() {
+    AsyncHttpClient asyncClient = mock(AsyncHttpClient.class);
+    ApiGatewayClient client = new ApiGatewayClient(mock(RestClient.class), asyncClient);
+    Map<String, RetryEffectiveness> expected = Map.of("route-1",
+        new RetryEffectiveness(new long[]{10, 2}, new long[]{0, 1}));
+    when(asyncClient.get(eq(URI.create("/internal/resilience/retry-effectiveness")),
+        ArgumentMatchers.<TypeReference<Map<String, RetryEffectiveness>>>any()))
+        .thenReturn(CompletableFuture.completedFuture(expected));
+
+    assertThat(client.getRetryEffectivenessAsync().join()).isEqualTo(expected);
+  }
+
+  @Test
+  void getOutlierDetection_callsExpectedEndpoint_andReturnsBody() {
+    RestClient restClient = mock(RestClient.class);
+    RestClient.RequestHeadersUriSpec<?> getSpec = mock(RestClient.RequestHeadersUriSpec.class);
+    RestClient.RequestHeadersSpec<?> headersSpec = mock(RestClient.RequestHeadersSpec.class);
+    RestClient.ResponseSpec responseSpec = mock(RestClient.ResponseSpec.class);
+
+    ApiGatewayClient client = new ApiGatewayClient(restClient, mock(AsyncHttpClient.class));
+
+    ChangeOutlierDetectionRequest expected = mock(ChangeOutlierDetectionRequest.class);
+
+    doReturn(getSpec).when(restClient).get();
+    doReturn(headersSpec).when(getSpec).uri("/internal/resilience/outlier-detection");
+    when(headersSpec.retrieve()).thenReturn(responseSpec);
+    when(responseSpec.body(ChangeOutlierDetectionRequest.class)).thenReturn(expected);
+
+    assertThat(client.getOutlierDetection()).isSameAs(expected);
+  }
+
+  @Test
+  void changeOutlierDetection_postsRequest_toExpectedEndpoint() {
+    RestClient restClient = mock(RestClient.class);
+    RestClient.RequestBodyUriSpec postSpec = mock(RestClient.RequestBodyUriSpec.class);
+    RestClient.RequestBodySpec bodySpec = mock(RestClient.RequestBodySpec.class);
+    RestClient.ResponseSpec responseSpec = mock(RestClient.ResponseSpec.class);
+
+    ApiGatewayClient client = new ApiGatewayClient(restClient, mock(AsyncHttpClient.class));
+
+    ChangeOutlierDetectionRequest request = mock(ChangeOutlierDetectionRequest.class);
+
+    when(restClient.post()).thenReturn(postSpec);
+    when(postSpec.uri("/internal/resilience/outlier-detection")).thenReturn(bodySpec);
+    when(bodySpec.body(request)).thenReturn(bodySpec);
+    when(bodySpec.retrieve()).thenReturn(responseSpec);
+    when(responseSpec.toBodilessEntity()).thenReturn(ResponseEntity.ok().build());
+
+    client.changeOutlierDetection(request);
+
+    verify(postSpec).uri("/internal/resilience/outlier-detection");
+    verify(bodySpec).body(request);
+  }
+
+  @Test
+  void changeConnectionPool_postsRequest_toTemplatedEndpoint() {
+    RestClient restClient = mock(RestClient.class);
+    RestClient.RequestBodyUriSpec postSpec = mock(RestClient.RequestBodyUriSpec.class);
+    RestClient.RequestBodySpec bodySpec = mock(RestClient.RequestBodySpec.class);
+    RestClient.ResponseSpec responseSpec = mock(RestClient.ResponseSpec.class);
+
+    ApiGatewayClient client = new ApiGatewayClient(restClient, mock(AsyncHttpClient.class));
+
+    ChangeConnectionPoolRequest request = mock(ChangeConnectionPoolRequest.class);
+
+    when(restClient.post()).thenReturn(postSpec);
+    when(postSpec.uri("/internal/resilience/connection-pools/{routeId}", "vets_route")).thenReturn(bodySpec);
+    when(bodySpec.body(request)).thenReturn(bodySpec);
+    when(bodySpec.retrieve()).thenReturn(responseSpec);
+    when(responseSpec.toBodilessEntity()).thenReturn(ResponseEntity.ok().build());
+
+    client.changeConnectionPool("vets_route", request);
+
+    verify(postSpec).uri("/internal/resilience/connection-pools/{routeId}", "vets_route");
+    verify(bodySpec).body(request);
+  }
+
+  @Test
+  void changeRetryAsync_postsToEncodedRoutePath() {
+    AsyncHttpClient asyncClient = mock(AsyncHttpClient.class);
+    ApiGatewayClient client = new ApiGatewayClient(mock(RestClient.class), asyncClient);
+    ChangeRetryRequest request = mock(ChangeRetryRequest.class);
+    when(asyncClient.post(any(URI.class), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+    client.changeRetryAsync("route 1", request, null).join();
+
+    verify(asyncClient).post(URI.create("/internal/resilience/retry/route%201"), request);
+  }
+
+  @Test
+  void changeAsync_stampsTheDesiredStateVersion() {
+    AsyncHttpClient asyncClient = mock(AsyncHttpClient.class);
+    ApiGatewayClient client = new ApiGatewayClient(mock(RestClient.class), asyncClient);
+    ChangeRetryRequest retry = mock(ChangeRetryRequest.class);
+    ChangeTimeoutRequest timeout = new ChangeTimeoutRequest("route 1", 500);
+    when(asyncClient.post(any(URI.class), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+    client.changeRetryAsync("route 1", retry, new DesiredVersion("e1", 7)).join();
+    client.changeTimeoutAsync(timeout, new DesiredVersion("e1", 8)).join();
+
+    verify(asyncClient).post(URI.create("/internal/resilience/retry/route%201?epoch=e1&version=7"), retry);
+    verify(asyncClient).post(URI.create("/dynamic-timeouts?epoch=e1&version=8"), timeout);
+  }
+
 }
@@ -0,0 +1,163 @@
+package com.korovko.arm_controller.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.korovko.arm_controller.metrics.CounterSamples;
+import com.korovko.arm_controller.metrics.PrometheusSnapshotReader;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+class AsyncHttpClientTest {
+
+  private HttpServer server;
+  private AsyncHttpClient client;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.start();
+    client = new AsyncHttpClient(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(),
+        "http://127.0.0.1:" + server.getAddress().getPort(), new ObjectMapper(), Duration.ofMillis(500));
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  void get_requestsGzip_andDecodesCompressedBody() {
+    AtomicReference<String> acceptEncoding = new AtomicReference<>();
+    server.createContext("/latencies", exchange -> {
+      acceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+      byte[] body = gzip("{\"route-1\":1200}");
+      exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+
+    Map<String, Integer> result = client.get(URI.create("/latencies"),
+        new TypeReference<Map<String, Integer>>() {}).join();
+
+    assertThat(result).containsEntry("route-1", 1200);
+    assertThat(acceptEncoding.get()).isEqualTo("gzip");
+  }
+
+  @Test
+  void get_streamsCompressedBodyIntoReader() {
+    server.createContext("/api/v1/query", exchange -> {
+      byte[] body = gzip("""
+          {"status":"success","data":{"result":[
+            {"metric":{"routeId":"route-1","httpStatusCode":"504"},"value":[1,"7"]}]}}
+          """);
+      exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+
+    CounterSamples samples = client.get(URI.create("/api/v1/query"), PrometheusSnapshotReader::read).join();
+
+    assertThat(samples.size()).isEqualTo(1);
+    samples.forEach((routeId, status, instance, atMillis, value) -> assertThat(value).isEqualTo(7.0));
+  }
+
+  @Test
+  void get_returnsNull_forEmptyBody() {
+    server.createContext("/empty", exchange -> {
+      exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+      exchange.sendResponseHeaders(204, -1);
+      exchange.close();
+    });
+
+    assertThat(client.get(URI.create("/empty"), new TypeReference<Map<String, Integer>>() {}).join()).isNull();
+  }
+
+  @Test
+  void post_failsWithResponseException_onErrorStatus() {
+    server.createContext("/dynamic-timeouts", exchange -> {
+      exchange.getRequestBody().readAllBytes();
+      exchange.sendResponseHeaders(503, -1);
+      exchange.close();
+    });
+
+    assertThatThrownBy(() -> client.post(URI.create("/dynamic-timeouts"), Map.of("routeId", "r")).join())
+        .isInstanceOf(CompletionException.class)
+        .cause()
+        .isInstanceOfSatisfying(RestClientResponseException.class,
+            e -> assertThat(e.getStatusCode().value()).isEqualTo(503));
+  }
+
+  @Test
+  void get_failsWithResourceAccessException_whenServerIsTooSlow() {
+    server.createContext("/slow", exchange -> {
+      try {
+        Thread.sleep(2_000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      exchange.close();
+    });
+
+    assertThatThrownBy(() -> client.get(URI.create("/slow"), new TypeReference<Map<String, Integer>>() {}).join())
+        .isInstanceOf(CompletionException.class)
+        .cause()
+        .isInstanceOf(ResourceAccessException.class);
+  }
+
+  @Test
+  void get_failsWithResourceAccessException_whenBodyStallsMidway() {
+    server.createContext("/stalled", exchange -> {
+      byte[] head = "{\"route-1\":".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, head.length + 5);
+      OutputStream out = exchange.getResponseBody();
+      out.write(head);
+      out.flush();
+      try {
+        Thread.sleep(2_000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      exchange.close();
+    });
+
+    long startedAt = System.nanoTime();
+    assertThatThrownBy(() -> client.get(URI.create("/stalled"), new TypeReference<Map<String, Integer>>() {}).join())
+        .isInstanceOf(CompletionException.class)
+        .cause()
+        .isInstanceOf(ResourceAccessException.class);
+    assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isLessThan(Duration.ofMillis(1_500));
+  }
+
+  private static byte[] gzip(String json) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(json.getBytes(StandardCharsets.UTF_8));
+    }
+    return bytes.toByteArray();
+  }
+
+}
@@ -0,0 +1,90 @@
+package com.korovko.arm_controller.control;
+
+import com.korovko.arm_controller.config.ControlLawSettings;
+import com.korovko.arm_controller.state.RouteStateTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ControlLawTest {
+
+  private static final ControlLimits LIMITS = new ControlLimits(500, 1500, 100, 2, true, true);
+
+  private final RouteStateTable routes = new RouteStateTable(16);
+
+  @Test
+  void deadbandStep_movesOneStep_andDecreasesOnlyAfterStablePeriods() {
+    int idx = route(1000);
+    DeadbandStepLaw law = new DeadbandStepLaw();
+
+    assertThat(law.next(routes, idx, signal(10.0), LIMITS)).isEqualTo(1100);
+    assertThat(law.next(routes, idx, signal(4.0), LIMITS)).isEqualTo(1000);
+    assertThat(law.next(routes, idx, signal(1.0), LIMITS)).isEqualTo(1000);
+    assertThat(law.next(routes, idx, signal(1.0), LIMITS)).isEqualTo(900);
+    assertThat(law.next(routes, idx, signal(10.0), new ControlLimits(500, 1500, 100, 2, false, true)))
+        .isEqualTo(1000);
+  }
+
+  @Test
+  void pid_stepsInProportionToTheError_andCarriesFractions() {
+    int idx = route(1000);
+    PidLaw law = new PidLaw(50.0, 10.0, 0.0, 16);
+
+    // e = 6: 50 * 6 + 10 * 6
+    assertThat(law.next(routes, idx, signal(10.0), LIMITS)).isEqualTo(1360);
+    routes.setValue(idx, 1360);
+    // Inside the band the error is 0: the proportional part takes its 300 back
+    assertThat(law.next(routes, idx, signal(4.0), LIMITS)).isEqualTo(1060);
+
+    PidLaw slow = new PidLaw(0.0, 0.2, 0.0, 16);
+    int retries = route(1);
+    routes.setValue(retries, 1);
+    assertThat(slow.next(routes, retries, signal(6.0), LIMITS)).isEqualTo(1);
+    assertThat(slow.next(routes, retries, signal(6.0), LIMITS)).isEqualTo(1);
+    assertThat(slow.next(routes, retries, signal(6.0), LIMITS)).isEqualTo(2);
+  }
+
+  @Test
+  void aimd_multipliesOnTrouble_andGivesBackStepwise() {
+    int idx = route(600);
+    AimdLaw law = new AimdLaw(2.0);
+
+    assertThat(law.next(routes, idx, signal(10.0), LIMITS)).isEqualTo(1200);
+    routes.setValue(idx, 1200);
+    assertThat(law.next(routes, idx, signal(10.0), LIMITS)).isEqualTo(1500);
+    routes.setValue(idx, 1500);
+    law.next(routes, idx, signal(1.0), LIMITS);
+    assertThat(law.next(routes, idx, signal(1.0), LIMITS)).isEqualTo(1400);
+  }
+
+  @Test
+  void laws_areSelectedPerRoute() {
+    ControlLawSettings settings = new ControlLawSettings();
+    settings.setLaw("deadband");
+    settings.setRoutes(Map.of("vets_route", "PID", "visits_route", "aimd"));
+    ControlLaws laws = ControlLaws.of(settings, 16);
+
+    assertThat(laws.forRoute("customers_route")).isInstanceOf(DeadbandStepLaw.class);
+    assertThat(laws.forRoute("vets_route")).isInstanceOf(PidLaw.class);
+    assertThat(laws.forRoute("visits_route")).isInstanceOf(AimdLaw.class);
+    assertThat(ControlLaws.of(null, 16).forRoute("vets_route")).isInstanceOf(DeadbandStepLaw.class);
+
+    settings.setLaw("bang-bang");
+    assertThatThrownBy(() -> ControlLaws.of(settings, 16)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private int route(int value) {
+    int idx = routes.intern("route-" + routes.size());
+    routes.setValue(idx, value);
+    return idx;
+  }
+
+  // Exact share (no interval), target 4% with a band of 0.75
+  private static ControlSignal signal(double pct) {
+    return new ControlSignal(pct, pct, pct, 4.0, 3.25, 4.75, false);
+  }
+
+}
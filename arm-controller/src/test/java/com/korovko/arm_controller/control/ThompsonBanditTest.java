@@ -0,0 +1,59 @@
+package com.korovko.arm_controller.control;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ThompsonBanditTest {
+
+  private static final double[] SUCCESS = {0.3, 0.6, 0.5};
+
+  @Test
+  void convergesOnTheBestArm_perRouteIndependently() {
+    ThompsonBandit bandit = new ThompsonBandit(3, 4);
+    SplittableRandom random = new SplittableRandom(7);
+    int[] plays = new int[3];
+
+    for (int round = 0; round < 300; round++) {
+      int arm = bandit.sample(1, a -> true, random);
+      plays[arm]++;
+      bandit.update(1, arm, SUCCESS[arm] * 20, 20, 1.0);
+    }
+
+    assertThat(plays[1]).isGreaterThan(200);
+    assertThat(bandit.mean(1, 1)).isCloseTo(0.6, within(0.05));
+    // Route 0 has seen nothing and still sits at the uniform prior
+    assertThat(bandit.mean(0, 1)).isEqualTo(0.5);
+  }
+
+  @Test
+  void decay_boundsTheEvidence_soTheBanditFollowsDrift() {
+    ThompsonBandit bandit = new ThompsonBandit(2, 1);
+    for (int round = 0; round < 100; round++) {
+      bandit.update(0, 0, 90, 100, 0.5);
+    }
+    assertThat(bandit.mean(0, 0)).isCloseTo(0.9, within(0.01));
+
+    // The arm degrades; a handful of rounds is enough to notice
+    for (int round = 0; round < 5; round++) {
+      bandit.update(0, 0, 10, 100, 0.5);
+    }
+    assertThat(bandit.mean(0, 0)).isLessThan(0.2);
+  }
+
+  @Test
+  void sample_onlyDrawsFromAllowedArms() {
+    ThompsonBandit bandit = new ThompsonBandit(3, 1);
+    bandit.update(0, 2, 1000, 1000, 1.0);
+    SplittableRandom random = new SplittableRandom(1);
+
+    for (int i = 0; i < 50; i++) {
+      assertThat(bandit.sample(0, arm -> arm < 2, random)).isBetween(0, 1);
+    }
+    assertThat(bandit.sample(0, arm -> false, random)).isEqualTo(-1);
+  }
+
+}
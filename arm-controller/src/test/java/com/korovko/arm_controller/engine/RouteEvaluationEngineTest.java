@@ -0,0 +1,121 @@
+package com.korovko.arm_controller.engine;
+
+import com.korovko.arm_controller.config.EngineProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteEvaluationEngineTest {
+
+  private RouteEvaluationEngine engine;
+
+  @AfterEach
+  void tearDown() {
+    engine.shutdown();
+  }
+
+  @Test
+  void evaluate_keepsEachRouteOnOneThread() {
+    EngineProperties props = new EngineProperties();
+    props.setParallelism(4);
+    engine = new RouteEvaluationEngine(props);
+
+    List<String> items = new ArrayList<>();
+    IntStream.range(0, 200).forEach(i -> items.add("route-" + (i % 20)));
+    Map<String, String> threadByRoute = new ConcurrentHashMap<>();
+    List<String> seen = new CopyOnWriteArrayList<>();
+
+    engine.evaluate(items, item -> item, item -> {
+      String previous = threadByRoute.putIfAbsent(item, Thread.currentThread().getName());
+      assertThat(previous == null || previous.equals(Thread.currentThread().getName())).isTrue();
+      seen.add(item);
+    });
+
+    assertThat(seen).hasSize(200);
+  }
+
+  @Test
+  void submit_startsCallsForOneRouteInOrder_andOtherRoutesConcurrently() {
+    engine = new RouteEvaluationEngine(new EngineProperties());
+
+    CompletableFuture<Void> firstA = new CompletableFuture<>();
+    List<String> started = new CopyOnWriteArrayList<>();
+    List<CompletableFuture<Void>> calls = new ArrayList<>();
+
+    calls.add(engine.submit("a", () -> {
+      started.add("a1");
+      return firstA;
+    }));
+    calls.add(engine.submit("a", () -> {
+      started.add("a2");
+      return CompletableFuture.completedFuture(null);
+    }));
+    calls.add(engine.submit("b", () -> {
+      started.add("b1");
+      return CompletableFuture.completedFuture(null);
+    }));
+
+    // "b" is not stuck behind the pending call of "a", the second call of "a" is
+    assertThat(started).containsExactly("a1", "b1");
+
+    firstA.complete(null);
+    engine.whenAll(calls).join();
+
+    assertThat(started).containsExactly("a1", "b1", "a2");
+  }
+
+  @Test
+  void submit_boundsCallsInFlight() {
+    EngineProperties props = new EngineProperties();
+    props.setApplyConcurrency(2);
+    engine = new RouteEvaluationEngine(props);
+
+    List<CompletableFuture<Void>> responses = new ArrayList<>();
+    List<CompletableFuture<Void>> calls = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      calls.add(engine.submit("route-" + i, () -> {
+        CompletableFuture<Void> response = new CompletableFuture<>();
+        responses.add(response);
+        return response;
+      }));
+    }
+
+    assertThat(responses).hasSize(2);
+
+    responses.get(0).complete(null);
+    assertThat(responses).hasSize(3);
+
+    for (int i = 1; i < 5; i++) {
+      responses.get(i).complete(null);
+    }
+    engine.whenAll(calls).join();
+    assertThat(calls).allMatch(CompletableFuture::isDone);
+  }
+
+  @Test
+  void submit_failedCallDoesNotBlockTheRoute() {
+    engine = new RouteEvaluationEngine(new EngineProperties());
+    List<Integer> ran = new CopyOnWriteArrayList<>();
+
+    CompletableFuture<Void> failing = engine.submit("a",
+        () -> CompletableFuture.failedFuture(new IllegalStateException("gateway down")));
+    CompletableFuture<Void> next = engine.submit("a", () -> {
+      ran.add(1);
+      return CompletableFuture.completedFuture(null);
+    });
+    engine.whenAll(List.of(failing, next)).join();
+
+    assertThat(failing).isCompletedExceptionally();
+    assertThat(ran).containsExactly(1);
+  }
+
+}
@@ -0,0 +1,94 @@
+package com.korovko.arm_controller.forecast;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class SeasonalModelTest {
+
+  private static final int SEASON = 24;
+
+  @Test
+  void learnsTheSeasonalPeak_andForecastsItAhead() {
+    SeasonalModel model = new SeasonalModel(SEASON, 0.2, 0.01, 0.3, 16);
+
+    assertThat(model.forecast("route", 0)).isNaN();
+    long bucket = 0;
+    for (int day = 0; day < 20; day++) {
+      for (int hour = 0; hour < SEASON; hour++, bucket++) {
+        // Two observations per bucket, averaged
+        model.observe("route", bucket, traffic(hour) - 10);
+        model.observe("route", bucket, traffic(hour) + 10);
+      }
+    }
+
+    long nextDay = bucket;
+    assertThat(model.forecast("route", nextDay + 3)).isCloseTo(100.0, within(10.0));
+    assertThat(model.forecast("route", nextDay + 18)).isCloseTo(400.0, within(20.0));
+    assertThat(model.forecast("unknown", nextDay)).isNaN();
+  }
+
+  @Test
+  void startsTheProfileFromTheFirstSeason() {
+    SeasonalModel model = new SeasonalModel(SEASON, 0.2, 0.01, 0.3, 16);
+    for (long bucket = 0; bucket < SEASON; bucket++) {
+      model.observe("route", bucket, traffic((int) bucket));
+    }
+    assertThat(model.forecast("route", SEASON)).isNaN();
+
+    // Folding the last bucket of the season completes it: level 150, off-peak -50, peak +250
+    model.observe("route", SEASON, traffic(0));
+    assertThat(model.forecast("route", SEASON + 3)).isCloseTo(100.0, within(1e-3));
+    assertThat(model.forecast("route", SEASON + 18)).isCloseTo(400.0, within(1e-3));
+  }
+
+  @Test
+  void ignoresObservationsOfBucketsAlreadyLeft() {
+    SeasonalModel model = trained();
+    double before = model.forecast("route", 500);
+
+    model.observe("route", 10, 1_000_000.0);
+    model.observe("route", 480, Double.NaN);
+
+    assertThat(model.forecast("route", 500)).isEqualTo(before);
+  }
+
+  @Test
+  void roundTripsThroughItsFileFormat() throws IOException {
+    SeasonalModel model = trained();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    model.write(new DataOutputStream(bytes));
+
+    SeasonalModel restored = new SeasonalModel(SEASON, 0.2, 0.01, 0.3, 16);
+    restored.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertThat(restored.size()).isEqualTo(1);
+    assertThat(restored.forecast("route", 500)).isEqualTo(model.forecast("route", 500));
+
+    SeasonalModel otherSeason = new SeasonalModel(SEASON * 2, 0.2, 0.01, 0.3, 16);
+    assertThatThrownBy(() -> otherSeason.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))))
+        .isInstanceOf(IOException.class);
+  }
+
+  private static SeasonalModel trained() {
+    SeasonalModel model = new SeasonalModel(SEASON, 0.2, 0.01, 0.3, 16);
+    for (long bucket = 0; bucket < SEASON * 20; bucket++) {
+      model.observe("route", bucket, traffic((int) (bucket % SEASON)));
+    }
+    return model;
+  }
+
+  // Flat 100 with an evening peak of 400
+  private static double traffic(int hour) {
+    return hour >= 17 && hour <= 20 ? 400.0 : 100.0;
+  }
+
+}
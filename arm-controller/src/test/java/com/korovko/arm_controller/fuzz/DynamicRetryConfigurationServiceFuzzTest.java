@@ -2,18 +2,29 @@ package com.korovko.arm_controller.fuzz;
 
 import com.code_intelligence.jazzer.api.FuzzedDataProvider;
 import com.code_intelligence.jazzer.junit.FuzzTest;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.korovko.arm_controller.client.ApiGatewayClient;
-import com.korovko.arm_controller.client.ArmClient;
+import com.korovko.arm_controller.config.DesiredStateProperties;
+import com.korovko.arm_controller.config.EngineProperties;
 import com.korovko.arm_controller.config.RetryConfigProperties;
-import com.korovko.arm_controller.model.PrometheusResultItem;
+import com.korovko.arm_controller.config.SloProperties;
+import com.korovko.arm_controller.engine.RouteEvaluationEngine;
+import com.korovko.arm_controller.metrics.MetricsSnapshot;
+import com.korovko.arm_controller.metrics.PrometheusSnapshotReader;
+import com.korovko.arm_controller.service.DesiredStateService;
 import com.korovko.arm_controller.service.DynamicRetryConfigurationService;
+import com.korovko.arm_controller.state.RouteStateTable;
 import org.mockito.ArgumentCaptor;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.time.Instant;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -28,17 +39,20 @@ import static org.mockito.Mockito.when;
 
 class DynamicRetryConfigurationServiceFuzzTest {
 
+  private static final ObjectMapper JSON = new ObjectMapper();
+
   @FuzzTest(maxDuration = "10m")
   void processRetry_never_throws_and_never_updates_unknown_route(FuzzedDataProvider data) {
     ApiGatewayClient apiGatewayClient = mock(ApiGatewayClient.class);
-    ArmClient armClient = mock(ArmClient.class);
+    when(apiGatewayClient.changeRetryAsync(anyString(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    when(apiGatewayClient.getRetryEffectivenessAsync()).thenReturn(CompletableFuture.completedFuture(Map.of()));
     RetryConfigProperties props = mock(RetryConfigProperties.class);
 
-    DynamicRetryConfigurationService service = newService(apiGatewayClient, armClient, props);
+    DynamicRetryConfigurationService service = newService(apiGatewayClient, props);
 
-    Map<String, Integer> attempts = routeToRetryAttempts(service);
-    assertNotNull(attempts);
-    attempts.put("route-1", 2);
+    RouteStateTable routes = routes(service);
+    assertNotNull(routes);
+    routes.setValue(routes.intern("route-1"), 2);
 
     String routeId = data.consumeBoolean() ? null : (data.consumeBoolean() ? "route-1" : "unknown");
     int valueShape = data.consumeInt(0, 4);
@@ -51,18 +65,18 @@ class DynamicRetryConfigurationServiceFuzzTest {
       default -> List.of("ts", fuzzErrPctString(data), data.consumeString(10));
     };
 
-    PrometheusResultItem item = itemWithRouteAndValue(routeId, value);
+    MetricsSnapshot snapshot = snapshot(List.of(itemWithRouteAndValue(routeId, value)));
 
-    assertDoesNotThrow(() -> ReflectionTestUtils.invokeMethod(service, "processRetry", item));
+    assertDoesNotThrow(() -> service.onTick(snapshot).join());
 
     boolean eligibleToTouch =
         "route-1".equals(routeId) && value != null && value.size() >= 2;
 
     if (!eligibleToTouch) {
-      verify(apiGatewayClient, never()).changeRetry(anyString(), any());
+      verify(apiGatewayClient, never()).changeRetryAsync(anyString(), any(), any());
     } else {
       ArgumentCaptor<String> routeCaptor = ArgumentCaptor.forClass(String.class);
-      verify(apiGatewayClient, atMost(1)).changeRetry(routeCaptor.capture(), any());
+      verify(apiGatewayClient, atMost(1)).changeRetryAsync(routeCaptor.capture(), any(), any());
       assertTrue(routeCaptor.getAllValues().stream().allMatch("route-1"::equals));
     }
   }
@@ -70,7 +84,8 @@ class DynamicRetryConfigurationServiceFuzzTest {
   @FuzzTest(maxDuration = "10m")
   void processRetry_sequence_keeps_attempts_within_bounds(FuzzedDataProvider data) {
     ApiGatewayClient apiGatewayClient = mock(ApiGatewayClient.class);
-    ArmClient armClient = mock(ArmClient.class);
+    when(apiGatewayClient.changeRetryAsync(anyString(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    when(apiGatewayClient.getRetryEffectivenessAsync()).thenReturn(CompletableFuture.completedFuture(Map.of()));
     RetryConfigProperties props = mock(RetryConfigProperties.class);
 
     int minAttempts = data.consumeInt(0, 3);
@@ -92,38 +107,40 @@ class DynamicRetryConfigurationServiceFuzzTest {
     when(props.getFactor()).thenReturn(2);
 
     DynamicRetryConfigurationService service =
-        new DynamicRetryConfigurationService(apiGatewayClient, armClient, props);
+        new DynamicRetryConfigurationService(apiGatewayClient, props,
+        new DesiredStateService(pushing()), new RouteEvaluationEngine(new EngineProperties()),
+        new SloProperties());
 
-    Map<String, Integer> attempts = routeToRetryAttempts(service);
-    assertNotNull(attempts);
+    RouteStateTable routes = routes(service);
+    assertNotNull(routes);
 
     int startAttempts = data.consumeInt(minAttempts, maxAttempts);
-    attempts.put("route-1", startAttempts);
+    int idx = routes.intern("route-1");
+    routes.setValue(idx, startAttempts);
 
     int steps = data.consumeInt(1, 50);
     for (int i = 0; i < steps; i++) {
       String errPct = fuzzErrPctString(data);
-      PrometheusResultItem item = itemWithRouteAndValue("route-1", List.of("ts", errPct));
+      MetricsSnapshot snapshot = snapshot(List.of(itemWithRouteAndValue("route-1", List.of("ts", errPct)),
+          itemWithRouteAndValue("route-1", "200", List.of("ts", "100"))));
 
-      assertDoesNotThrow(() -> ReflectionTestUtils.invokeMethod(service, "processRetry", item));
+      assertDoesNotThrow(() -> service.onTick(snapshot).join());
 
-      int current = attempts.get("route-1");
+      int current = routes.value(idx);
       assertTrue(current >= minAttempts, "attempts dropped below min");
       assertTrue(current <= maxAttempts, "attempts exceeded max");
 
-      Map<String, Integer> good = stableGoodCount(service);
-      if (good != null) {
-        int g = good.getOrDefault("route-1", 0);
-        assertTrue(g >= 0, "stableGoodCount went negative");
-        assertTrue(g <= decreasePeriods, "stableGoodCount grew unexpectedly large");
-      }
+      int g = routes.stableGoodCount(idx);
+      assertTrue(g >= 0, "stableGoodCount went negative");
+      assertTrue(g <= decreasePeriods, "stableGoodCount grew unexpectedly large");
     }
   }
 
   @FuzzTest(maxDuration = "10m")
   void processRetry_respects_min_windows_no_updates_when_blocked(FuzzedDataProvider data) {
     ApiGatewayClient apiGatewayClient = mock(ApiGatewayClient.class);
-    ArmClient armClient = mock(ArmClient.class);
+    when(apiGatewayClient.changeRetryAsync(anyString(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    when(apiGatewayClient.getRetryEffectivenessAsync()).thenReturn(CompletableFuture.completedFuture(Map.of()));
     RetryConfigProperties props = mock(RetryConfigProperties.class);
 
     when(props.getTargetErrorPct()).thenReturn(2.0);
@@ -142,25 +159,25 @@ class DynamicRetryConfigurationServiceFuzzTest {
     when(props.getFactor()).thenReturn(2);
 
     DynamicRetryConfigurationService service =
-        new DynamicRetryConfigurationService(apiGatewayClient, armClient, props);
-
-    Map<String, Integer> attempts = routeToRetryAttempts(service);
-    assertNotNull(attempts);
-    attempts.put("route-1", 3);
+        new DynamicRetryConfigurationService(apiGatewayClient, props,
+        new DesiredStateService(pushing()), new RouteEvaluationEngine(new EngineProperties()),
+        new SloProperties());
 
-    Map<String, Instant> last = lastChanged(service);
-    assertNotNull(last);
-    last.put("route-1", Instant.now());
+    RouteStateTable routes = routes(service);
+    assertNotNull(routes);
+    int idx = routes.intern("route-1");
+    routes.setValue(idx, 3);
+    routes.setLastChangedAtMillis(idx, System.currentTimeMillis());
 
     String errPct = data.consumeBoolean() ? "9999" : "0";
-    PrometheusResultItem item = itemWithRouteAndValue("route-1", List.of("ts", errPct));
+    MetricsSnapshot snapshot = snapshot(List.of(itemWithRouteAndValue("route-1", List.of("ts", errPct)),
+        itemWithRouteAndValue("route-1", "200", List.of("ts", "100"))));
 
-    assertDoesNotThrow(() -> ReflectionTestUtils.invokeMethod(service, "processRetry", item));
-    verify(apiGatewayClient, never()).changeRetry(anyString(), any());
+    assertDoesNotThrow(() -> service.onTick(snapshot).join());
+    verify(apiGatewayClient, never()).changeRetryAsync(anyString(), any(), any());
   }
 
   private static DynamicRetryConfigurationService newService(ApiGatewayClient apiGatewayClient,
-                                                             ArmClient armClient,
                                                              RetryConfigProperties props) {
     when(props.getTargetErrorPct()).thenReturn(2.0);
     when(props.getDeadbandPct()).thenReturn(1.0);
@@ -175,33 +192,50 @@ class DynamicRetryConfigurationServiceFuzzTest {
     when(props.getMaxBackoffMs()).thenReturn(1000);
     when(props.getFactor()).thenReturn(2);
 
-    return new DynamicRetryConfigurationService(apiGatewayClient, armClient, props);
+    return new DynamicRetryConfigurationService(apiGatewayClient, props,
+        new DesiredStateService(pushing()), new RouteEvaluationEngine(new EngineProperties()),
+        new SloProperties());
   }
 
-  @SuppressWarnings("unchecked")
-  private static Map<String, Integer> routeToRetryAttempts(DynamicRetryConfigurationService service) {
-    return (Map<String, Integer>) ReflectionTestUtils.getField(service, "routeToRetryAttempts");
+  private static RouteStateTable routes(DynamicRetryConfigurationService service) {
+    return (RouteStateTable) ReflectionTestUtils.getField(service, "routes");
   }
 
-  @SuppressWarnings("unchecked")
-  private static Map<String, Integer> stableGoodCount(DynamicRetryConfigurationService service) {
-    return (Map<String, Integer>) ReflectionTestUtils.getField(service, "stableGoodCount");
+  // Goes through the same decoder as the live query, so fuzzed values are parsed the way Prometheus sends them
+  private static MetricsSnapshot snapshot(List<Map<String, Object>> items) {
+    Map<String, Object> response = Map.of("status", "success", "data", Map.of("result", items));
+    try (JsonParser parser = JSON.getFactory().createParser(JSON.writeValueAsBytes(response))) {
+      MetricsSnapshot.Builder builder = MetricsSnapshot.builder();
+      PrometheusSnapshotReader.read(parser).forEach((routeId, status, instance, atMillis, value) ->
+          builder.add(routeId, status, value));
+      return builder.build();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
-  @SuppressWarnings("unchecked")
-  private static Map<String, Instant> lastChanged(DynamicRetryConfigurationService service) {
-    return (Map<String, Instant>) ReflectionTestUtils.getField(service, "routeIdByRetryLastChangedAt");
+  private static Map<String, Object> itemWithRouteAndValue(String routeId, List<String> value) {
+    return itemWithRouteAndValue(routeId, "503", value);
   }
 
-  private static PrometheusResultItem itemWithRouteAndValue(String routeId, List<String> value) {
-    PrometheusResultItem item = new PrometheusResultItem();
+  private static Map<String, Object> itemWithRouteAndValue(String routeId, String httpStatusCode,
+                                                           List<String> value) {
     Map<String, String> metric = new HashMap<>();
     if (routeId != null) metric.put("routeId", routeId);
-    item.setMetric(metric);
-    item.setValue(value);
+    metric.put("httpStatusCode", httpStatusCode);
+    Map<String, Object> item = new HashMap<>();
+    item.put("metric", metric);
+    item.put("value", value == null || value.isEmpty() ? value : withTimestamp(value));
     return item;
   }
 
+  // Prometheus sends the sample time as a number; the fuzzed first element only marks its place
+  private static List<Object> withTimestamp(List<String> value) {
+    List<Object> sample = new ArrayList<>(value);
+    sample.set(0, 1_700_000_000);
+    return sample;
+  }
+
   private static String fuzzErrPctString(FuzzedDataProvider data) {
     return switch (data.consumeInt(0, 7)) {
       case 0 -> "NaN";
@@ -214,4 +248,10 @@ class DynamicRetryConfigurationServiceFuzzTest {
     };
   }
 
+  private static DesiredStateProperties pushing() {
+    DesiredStateProperties props = new DesiredStateProperties();
+    props.setPushEnabled(true);
+    return props;
+  }
+
 }
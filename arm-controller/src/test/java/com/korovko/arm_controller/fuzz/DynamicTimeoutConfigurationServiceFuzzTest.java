@@ -3,16 +3,21 @@ package com.korovko.arm_controller.fuzz;
 import com.code_intelligence.jazzer.api.FuzzedDataProvider;
 import com.code_intelligence.jazzer.junit.FuzzTest;
 import com.korovko.arm_controller.client.ApiGatewayClient;
-import com.korovko.arm_controller.client.ArmClient;
+import com.korovko.arm_controller.config.DesiredStateProperties;
+import com.korovko.arm_controller.config.EngineProperties;
+import com.korovko.arm_controller.config.ForecastProperties;
+import com.korovko.arm_controller.config.SloProperties;
 import com.korovko.arm_controller.config.TimeoutConfigProperties;
-import com.korovko.arm_controller.model.PrometheusResultItem;
+import com.korovko.arm_controller.engine.RouteEvaluationEngine;
+import com.korovko.arm_controller.metrics.Trend;
+import com.korovko.arm_controller.service.DesiredStateService;
 import com.korovko.arm_controller.service.DynamicTimeoutConfigurationService;
+import com.korovko.arm_controller.service.SeasonalForecastService;
+import com.korovko.arm_controller.state.RouteStateTable;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -20,34 +25,14 @@ import static org.mockito.Mockito.*;
 
 class DynamicTimeoutConfigurationServiceFuzzTest {
 
-  @SuppressWarnings("unchecked")
-  private static Map<String, Integer> routeToTimeout(DynamicTimeoutConfigurationService s) {
-    return (Map<String, Integer>) ReflectionTestUtils.getField(s, "routeToTimeout");
-  }
-
-  @SuppressWarnings("unchecked")
-  private static Map<String, Instant> lastChanged(DynamicTimeoutConfigurationService s) {
-    return (Map<String, Instant>) ReflectionTestUtils.getField(s, "routeIdByLastChangedAt");
-  }
-
-  @SuppressWarnings("unchecked")
-  private static Map<String, Integer> stableGoodCount(DynamicTimeoutConfigurationService s) {
-    return (Map<String, Integer>) ReflectionTestUtils.getField(s, "stableGoodCount");
-  }
-
-  private static PrometheusResultItem item(double errPct) {
-    PrometheusResultItem it = new PrometheusResultItem();
-    Map<String, String> metric = new HashMap<>();
-    metric.put("routeId", "route-1");
-    it.setMetric(metric);
-    it.setValue(List.of("ts", Double.toString(errPct)));
-    return it;
+  private static RouteStateTable routes(DynamicTimeoutConfigurationService s) {
+    return (RouteStateTable) ReflectionTestUtils.getField(s, "routes");
   }
 
   @FuzzTest(maxDuration = "10m")
   void processTimeoutMetric_guided_branch_behavior(FuzzedDataProvider data) {
-    ArmClient arm = mock(ArmClient.class);
     ApiGatewayClient api = mock(ApiGatewayClient.class);
+    when(api.changeTimeoutAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
     TimeoutConfigProperties props = mock(TimeoutConfigProperties.class);
 
     int target = data.consumeInt(0, 10);
@@ -68,17 +53,17 @@ class DynamicTimeoutConfigurationServiceFuzzTest {
     when(props.getMinIncreaseWindowMins()).thenReturn(0);
     when(props.getMinDecreaseWindowMins()).thenReturn(0);
 
-    DynamicTimeoutConfigurationService service = new DynamicTimeoutConfigurationService(arm, api, props);
+    DynamicTimeoutConfigurationService service = new DynamicTimeoutConfigurationService(api, props,
+        new DesiredStateService(pushing()), new RouteEvaluationEngine(new EngineProperties()),
+        new SeasonalForecastService(new ForecastProperties()), new SloProperties());
 
-    Map<String, Integer> rtt = routeToTimeout(service);
-    assertNotNull(rtt);
+    RouteStateTable routes = routes(service);
+    assertNotNull(routes);
 
     int current = data.consumeInt(min, max);
-    rtt.put("route-1", current);
-
-    Map<String, Instant> lc = lastChanged(service);
-    assertNotNull(lc);
-    lc.put("route-1", Instant.EPOCH);
+    int idx = routes.intern("route-1");
+    routes.setValue(idx, current);
+    routes.setLastChangedAtMillis(idx, Instant.EPOCH.toEpochMilli());
 
     double lower = Math.max(0.0, target - deadband);
     double upper = target + deadband;
@@ -92,53 +77,55 @@ class DynamicTimeoutConfigurationServiceFuzzTest {
       default -> Math.max(0.0, lower - 0.01);
     };
 
-    ReflectionTestUtils.invokeMethod(service, "processTimeoutMetric", item(errPct));
+    ReflectionTestUtils.invokeMethod(service, "processTimeoutMetric", "route-1", errPct, 100.0, Trend.none());
+    ((CompletableFuture<?>) ReflectionTestUtils.invokeMethod(service, "drainCalls")).join();
 
-    int after1 = rtt.get("route-1");
+    int after1 = routes.value(idx);
 
     if (scenario == 0 || scenario == 1) {
       if (current < max) {
-        verify(api, atLeastOnce()).changeTimeout(any());
+        verify(api, atLeastOnce()).changeTimeoutAsync(any(), any());
         assertEquals(Math.min(current + step, max), after1);
-        assertEquals(0, stableGoodCount(service).getOrDefault("route-1", -1));
+        assertEquals(0, routes.stableGoodCount(idx));
       } else {
-        verify(api, never()).changeTimeout(any());
+        verify(api, never()).changeTimeoutAsync(any(), any());
         assertEquals(current, after1);
       }
       return;
     }
 
     if (scenario == 2) {
-      verify(api, never()).changeTimeout(any());
+      verify(api, never()).changeTimeoutAsync(any(), any());
       assertEquals(current, after1);
-      assertEquals(0, stableGoodCount(service).getOrDefault("route-1", -1));
+      assertEquals(0, routes.stableGoodCount(idx));
       return;
     }
 
-    verify(api, never()).changeTimeout(any());
+    verify(api, never()).changeTimeoutAsync(any(), any());
     assertEquals(current, after1);
-    int g1 = stableGoodCount(service).getOrDefault("route-1", 0);
+    int g1 = routes.stableGoodCount(idx);
     assertEquals(1, g1);
 
     for (int i = 1; i < stableN; i++) {
-      ReflectionTestUtils.invokeMethod(service, "processTimeoutMetric", item(errPct));
+      ReflectionTestUtils.invokeMethod(service, "processTimeoutMetric", "route-1", errPct, 100.0, Trend.none());
+      ((CompletableFuture<?>) ReflectionTestUtils.invokeMethod(service, "drainCalls")).join();
     }
 
-    int afterN = rtt.get("route-1");
+    int afterN = routes.value(idx);
     if (current > min) {
-      verify(api, times(1)).changeTimeout(any());
+      verify(api, times(1)).changeTimeoutAsync(any(), any());
       assertEquals(Math.max(current - step, min), afterN);
-      assertEquals(0, stableGoodCount(service).getOrDefault("route-1", -1));
+      assertEquals(0, routes.stableGoodCount(idx));
     } else {
-      verify(api, never()).changeTimeout(any());
+      verify(api, never()).changeTimeoutAsync(any(), any());
       assertEquals(current, afterN);
     }
   }
 
   @FuzzTest(maxDuration = "10m")
   void processTimeoutMetric_windows_block_changes(FuzzedDataProvider data) {
-    ArmClient arm = mock(ArmClient.class);
     ApiGatewayClient api = mock(ApiGatewayClient.class);
+    when(api.changeTimeoutAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
     TimeoutConfigProperties props = mock(TimeoutConfigProperties.class);
 
     when(props.getTargetErrorRate()).thenReturn(2);
@@ -154,22 +141,29 @@ class DynamicTimeoutConfigurationServiceFuzzTest {
     when(props.getMinIncreaseWindowMins()).thenReturn(incWin);
     when(props.getMinDecreaseWindowMins()).thenReturn(decWin);
 
-    DynamicTimeoutConfigurationService service = new DynamicTimeoutConfigurationService(arm, api, props);
-
-    Map<String, Integer> rtt = routeToTimeout(service);
-    assertNotNull(rtt);
-    rtt.put("route-1", 300);
+    DynamicTimeoutConfigurationService service = new DynamicTimeoutConfigurationService(api, props,
+        new DesiredStateService(pushing()), new RouteEvaluationEngine(new EngineProperties()),
+        new SeasonalForecastService(new ForecastProperties()), new SloProperties());
 
-    Map<String, Instant> lc = lastChanged(service);
-    assertNotNull(lc);
-    lc.put("route-1", Instant.now());
+    RouteStateTable routes = routes(service);
+    assertNotNull(routes);
+    int idx = routes.intern("route-1");
+    routes.setValue(idx, 300);
+    routes.setLastChangedAtMillis(idx, System.currentTimeMillis());
 
     double errPct = data.consumeBoolean() ? 9999.0 : 0.0;
 
-    ReflectionTestUtils.invokeMethod(service, "processTimeoutMetric", item(errPct));
+    ReflectionTestUtils.invokeMethod(service, "processTimeoutMetric", "route-1", errPct, 100.0, Trend.none());
+    ((CompletableFuture<?>) ReflectionTestUtils.invokeMethod(service, "drainCalls")).join();
+
+    verify(api, never()).changeTimeoutAsync(any(), any());
+    assertEquals(300, routes.value(idx));
+  }
 
-    verify(api, never()).changeTimeout(any());
-    assertEquals(300, rtt.get("route-1"));
+  private static DesiredStateProperties pushing() {
+    DesiredStateProperties props = new DesiredStateProperties();
+    props.setPushEnabled(true);
+    return props;
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,79 @@
+package com.korovko.arm_controller.metrics;
+
+import com.korovko.arm_controller.config.SloProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BurnRatesTest {
+
+  private static final IntPredicate GATEWAY_TIMEOUT = status -> status == 504;
+
+  @Test
+  void fastBurn_needsEveryFastWindowBurning() {
+    SloProperties slo = slo();
+    MetricsSnapshot blip = snapshot(20.0, 0.0);
+    MetricsSnapshot calm = snapshot(1.0, 0.0);
+
+    assertThat(BurnRates.of(withWindows(blip, blip, blip, calm, calm), slo).fastBurn("route", GATEWAY_TIMEOUT))
+        .isTrue();
+    // A one-minute blip alone does not panic
+    assertThat(BurnRates.of(withWindows(blip, blip, calm, calm, calm), slo).fastBurn("route", GATEWAY_TIMEOUT))
+        .isFalse();
+  }
+
+  @Test
+  void budgetHealthy_countsEveryServerError_againstTheRoutesOwnObjective() {
+    SloProperties slo = slo();
+    MetricsSnapshot overspent = snapshot(0.0, 2.0);
+    MetricsSnapshot calm = snapshot(0.5, 0.0);
+    MetricsSnapshot snapshot = withWindows(calm, calm, calm, overspent, calm);
+
+    assertThat(BurnRates.of(snapshot, slo).budgetHealthy("route")).isFalse();
+    assertThat(BurnRates.of(snapshot, slo).budgetHealthy("idle")).isTrue();
+
+    slo.setObjectivesPct(Map.of("route", 97.0));
+    assertThat(BurnRates.of(snapshot, slo).budgetHealthy("route")).isTrue();
+  }
+
+  @Test
+  void disabledOrMisconfigured() {
+    SloProperties slo = slo();
+    MetricsSnapshot window = snapshot(50.0, 50.0);
+
+    assertThatThrownBy(() -> BurnRates.of(window, slo)).isInstanceOf(IllegalArgumentException.class);
+
+    slo.setEnabled(false);
+    BurnRates none = BurnRates.of(window, slo);
+    assertThat(none.enabled()).isFalse();
+    assertThat(none.fastBurn("route", GATEWAY_TIMEOUT)).isFalse();
+    assertThat(none.budgetHealthy("route")).isTrue();
+  }
+
+  private static SloProperties slo() {
+    SloProperties slo = new SloProperties();
+    slo.setEnabled(true);
+    return slo;
+  }
+
+  // 100 requests, timeoutPct of them 504s and unavailablePct 503s
+  private static MetricsSnapshot snapshot(double timeoutPct, double unavailablePct) {
+    return MetricsSnapshot.builder()
+        .add("route", 504, timeoutPct)
+        .add("route", 503, unavailablePct)
+        .add("route", 200, 100.0 - timeoutPct - unavailablePct)
+        .build();
+  }
+
+  private static MetricsSnapshot withWindows(MetricsSnapshot decision, MetricsSnapshot oneMinute,
+                                             MetricsSnapshot fiveMinutes, MetricsSnapshot halfHour,
+                                             MetricsSnapshot sixHours) {
+    return decision.withWindows(Map.of(60_000L, oneMinute, 300_000L, fiveMinutes, 1_800_000L, halfHour,
+        21_600_000L, sixHours));
+  }
+
+}
@@ -0,0 +1,109 @@
+package com.korovko.arm_controller.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CounterHistoryTest {
+
+  private static final long T0 = 1_000_000L;
+
+  @Test
+  void increases_coverOnlyTheRequestedWindow() {
+    CounterHistory history = new CounterHistory(64);
+    for (int i = 0; i <= 30; i++) {
+      history.record(counters(T0 + i * 10_000L, i * 10.0));
+    }
+    long now = T0 + 300_000L;
+
+    assertThat(history.increases(now, 10_000).requests("route-1")).isEqualTo(10.0);
+    assertThat(history.increases(now, 60_000).requests("route-1")).isEqualTo(60.0);
+    assertThat(history.increases(now, 300_000).requests("route-1")).isEqualTo(300.0);
+  }
+
+  @Test
+  void increases_countRequestsAfterCounterReset() {
+    CounterHistory history = new CounterHistory(8);
+    history.record(counters(T0, 500));
+    history.record(counters(T0 + 10_000, 520));
+    history.record(counters(T0 + 20_000, 5));
+    history.record(counters(T0 + 30_000, 15));
+
+    // 20 before the restart, 5 + 10 after it
+    assertThat(history.increases(T0 + 30_000, 60_000).requests("route-1")).isEqualTo(35.0);
+  }
+
+  @Test
+  void increases_useRetainedHistory_whenWindowIsLonger() {
+    CounterHistory history = new CounterHistory(3);
+    for (int i = 0; i < 10; i++) {
+      history.record(counters(T0 + i * 10_000L, i * 10.0));
+    }
+
+    // Only the last three samples are kept: 70, 80, 90
+    assertThat(history.increases(T0 + 90_000, 300_000).requests("route-1")).isEqualTo(20.0);
+  }
+
+  @Test
+  void increases_skipSeries_withoutTwoSamplesInWindow() {
+    CounterHistory history = new CounterHistory(8);
+    history.record(counters(T0, 100));
+
+    assertThat(history.increases(T0, 60_000).routeIds()).isEmpty();
+
+    history.record(counters(T0 + 10_000, 110));
+    assertThat(history.increases(T0 + 200_000, 60_000).routeIds()).isEmpty();
+  }
+
+  @Test
+  void steps_splitHistoryIntoConsecutiveWindows_andBackfillKeepsOrder() {
+    CounterHistory history = new CounterHistory(16);
+    history.record("route-1", 200, "gw-1", new long[]{T0, T0 + 10_000, T0 + 20_000, T0 + 30_000},
+        new double[]{0, 5, 15, 30}, 4);
+    // Older than what is kept, must not go into the ring
+    history.record("route-1", 200, "gw-1", new long[]{T0 - 10_000}, new double[]{100}, 1);
+
+    List<MetricsSnapshot> steps = history.steps(T0 + 30_000, 10_000, 3);
+
+    assertThat(steps).extracting(step -> step.requests("route-1")).containsExactly(5.0, 10.0, 15.0);
+  }
+
+  @Test
+  void increases_detectResetsPerInstance_andSumThemPerRoute() {
+    CounterHistory history = new CounterHistory(8);
+    history.record(CounterSamples.builder()
+        .add("route-1", 200, "gw-1", T0, 1000)
+        .add("route-1", 200, "gw-2", T0, 100)
+        .build());
+    // gw-2 restarted while gw-1 kept counting: the sum still grew, 1000 + 100 -> 1060 + 10
+    history.record(CounterSamples.builder()
+        .add("route-1", 200, "gw-1", T0 + 10_000, 1060)
+        .add("route-1", 200, "gw-2", T0 + 10_000, 10)
+        .build());
+
+    MetricsSnapshot increases = history.increases(T0 + 10_000, 60_000);
+
+    assertThat(increases.requests("route-1")).isEqualTo(70.0);
+    assertThat(increases.responses("route-1", status -> status == 200)).isEqualTo(70.0);
+  }
+
+  @Test
+  void record_keepsSampleTimestamps_andIgnoresRepeatedScrapes() {
+    CounterHistory history = new CounterHistory(8);
+    history.record(counters(T0, 100));
+    history.record(counters(T0 + 15_000, 130));
+    // The next fetch came before a new scrape: same sample, nothing to add
+    history.record(counters(T0 + 15_000, 130));
+
+    assertThat(history.newestMillis()).isEqualTo(T0 + 15_000);
+    assertThat(history.steps(T0 + 15_000, 15_000, 1)).extracting(step -> step.requests("route-1"))
+        .containsExactly(30.0);
+  }
+
+  private static CounterSamples counters(long atMillis, double value) {
+    return CounterSamples.builder().add("route-1", 200, "gw-1", atMillis, value).build();
+  }
+
+}
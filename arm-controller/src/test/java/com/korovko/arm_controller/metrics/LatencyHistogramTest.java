@@ -0,0 +1,93 @@
+package com.korovko.arm_controller.metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+  @Test
+  void quantile_interpolatesInsideBucket_whateverTheBucketOrder() throws IOException {
+    LatencyBuckets buckets = read("""
+        {"status":"success","data":{"resultType":"vector","result":[
+          {"metric":{"routeId":"customers_route","le":"0.5"},"value":[1,"99"]},
+          {"metric":{"routeId":"customers_route","le":"+Inf"},"value":[1,"100"]},
+          {"metric":{"routeId":"customers_route","le":"0.1"},"value":[1,"50"]},
+          {"metric":{"routeId":"customers_route","le":"1.0"},"value":[1,"100"]},
+          {"metric":{"routeId":"customers_route","le":"0.25"},"value":[1,"90"]}]}}
+        """);
+
+    assertThat(LatencyHistogram.count(buckets, "customers_route")).isEqualTo(100.0);
+    assertThat(LatencyHistogram.quantileMillis(buckets, "customers_route", 0.5)).isCloseTo(100.0, within(1e-9));
+    assertThat(LatencyHistogram.quantileMillis(buckets, "customers_route", 0.95)).isCloseTo(388.89, within(0.01));
+    assertThat(LatencyHistogram.quantileMillis(buckets, "customers_route", 0.99)).isCloseTo(500.0, within(1e-9));
+  }
+
+  @Test
+  void quantile_inInfiniteBucket_isHighestFiniteBound() throws IOException {
+    LatencyBuckets buckets = read("""
+        {"status":"success","data":{"resultType":"vector","result":[
+          {"metric":{"routeId":"customers_route","le":"0.1"},"value":[1,"10"]},
+          {"metric":{"routeId":"customers_route","le":"+Inf"},"value":[1,"100"]}]}}
+        """);
+
+    assertThat(LatencyHistogram.quantileMillis(buckets, "customers_route", 0.99)).isEqualTo(100.0);
+  }
+
+  @Test
+  void quantile_isNaN_withoutObservations() {
+    LatencyBuckets idle = LatencyBuckets.builder()
+        .add("customers_route", LatencyHistogram.INFINITE, 0.0)
+        .build();
+
+    assertThat(LatencyHistogram.quantileMillis(idle, "customers_route", 0.99)).isNaN();
+    assertThat(LatencyHistogram.quantileMillis(idle, "vets_route", 0.99)).isNaN();
+  }
+
+  @Test
+  void buckets_ofSeveralInstances_addUpPerBound() {
+    LatencyBuckets buckets = LatencyBuckets.builder()
+        .add("customers_route", LatencyHistogram.INFINITE, 60.0)
+        .add("customers_route", 100_000, 30.0)
+        .add("customers_route", LatencyHistogram.INFINITE, 40.0)
+        .add("customers_route", 100_000, 20.0)
+        .build();
+
+    assertThat(LatencyHistogram.count(buckets, "customers_route")).isEqualTo(100.0);
+    assertThat(LatencyHistogram.quantileMillis(buckets, "customers_route", 0.5)).isCloseTo(100.0, within(1e-9));
+  }
+
+  @Test
+  void parseBound_readsLeValuesWithoutAllocating() {
+    assertThat(bound("0.005")).isEqualTo(5_000);
+    assertThat(bound("1.0")).isEqualTo(1_000_000);
+    assertThat(bound("0.001048576")).isEqualTo(1_049);
+    assertThat(bound("1.0E-4")).isEqualTo(100);
+    assertThat(bound("30")).isEqualTo(30_000_000);
+    assertThat(bound("+Inf")).isEqualTo(LatencyHistogram.INFINITE);
+    assertThat(bound("1e4")).isEqualTo(LatencyHistogram.INFINITE);
+    assertThat(bound("abc")).isZero();
+    assertThat(bound("")).isZero();
+    assertThat(bound("1e")).isZero();
+  }
+
+  private static int bound(String le) {
+    char[] text = ("[" + le + "]").toCharArray();
+    return LatencyHistogram.parseBound(text, 1, le.length());
+  }
+
+  private static LatencyBuckets read(String json) throws IOException {
+    try (JsonParser parser = new JsonFactory().createParser(json)) {
+      LatencyBuckets.Builder builder = LatencyBuckets.builder();
+      PrometheusSnapshotReader.read(parser).forEach((routeId, bound, instance, atMillis, value) ->
+          builder.add(routeId, bound, value));
+      return builder.build();
+    }
+  }
+
+}
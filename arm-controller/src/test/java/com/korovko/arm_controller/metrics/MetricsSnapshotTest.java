@@ -0,0 +1,83 @@
+package com.korovko.arm_controller.metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricsSnapshotTest {
+
+  private final JsonFactory factory = new JsonFactory();
+
+  @Test
+  void read_aggregatesStatusesPerRoute() throws IOException {
+    MetricsSnapshot snapshot = read("""
+        {"status":"success","data":{"resultType":"vector","result":[
+          {"metric":{"routeId":"customers_route","httpStatusCode":"200"},"value":[0,"90"]},
+          {"metric":{"routeId":"customers_route","httpStatusCode":"502"},"value":[0,"4"]},
+          {"metric":{"routeId":"customers_route","httpStatusCode":"503"},"value":[0,"2"]},
+          {"metric":{"routeId":"customers_route","httpStatusCode":"504"},"value":[0,"4"]},
+          {"metric":{"routeId":"vets_route","httpStatusCode":"200"},"value":[0,"10"]}
+        ]}}
+        """);
+
+    assertThat(snapshot.routeIds()).containsExactly("customers_route", "vets_route");
+    assertThat(snapshot.requests("customers_route")).isEqualTo(100.0);
+    assertThat(snapshot.percent("customers_route", status -> status == 504)).isEqualTo(4.0);
+    assertThat(snapshot.percent("customers_route", status -> status == 502 || status == 503)).isEqualTo(6.0);
+    assertThat(snapshot.percent("vets_route", status -> status == 504)).isEqualTo(0.0);
+  }
+
+  @Test
+  void read_isEmpty_whenStatusNotSuccess() throws IOException {
+    MetricsSnapshot snapshot = read("""
+        {"status":"error","data":{"result":[
+          {"metric":{"routeId":"customers_route","httpStatusCode":"504"},"value":[0,"10"]}]}}
+        """);
+
+    assertThat(snapshot.routeIds()).isEmpty();
+  }
+
+  @Test
+  void read_isEmpty_whenResultEmpty() throws IOException {
+    assertThat(read("""
+        {"status":"success","data":{"resultType":"vector","result":[]}}
+        """).routeIds()).isEmpty();
+  }
+
+  @Test
+  void read_skipsSamples_withoutRouteIdOrNumericValue() throws IOException {
+    MetricsSnapshot snapshot = read("""
+        {"status":"success","data":{"result":[
+          {"metric":{"httpStatusCode":"504"},"value":[0,"10"]},
+          {"metric":{"routeId":"vets_route","httpStatusCode":"504"},"value":[0]},
+          {"metric":{"routeId":"visits_route","httpStatusCode":"504"},"value":[0,"abc"]},
+          {"metric":{"routeId":"customers_route","httpStatusCode":"504"},"value":[0,"NaN"]}
+        ]}}
+        """);
+
+    assertThat(snapshot.routeIds()).isEmpty();
+  }
+
+  @Test
+  void unknownRoute_hasNoRequests() {
+    MetricsSnapshot snapshot = MetricsSnapshot.empty();
+
+    assertThat(snapshot.contains("customers_route")).isFalse();
+    assertThat(snapshot.requests("customers_route")).isZero();
+    assertThat(snapshot.responses("customers_route", status -> true)).isZero();
+  }
+
+  private MetricsSnapshot read(String json) throws IOException {
+    try (JsonParser parser = factory.createParser(json)) {
+      MetricsSnapshot.Builder builder = MetricsSnapshot.builder();
+      PrometheusSnapshotReader.read(parser).forEach((routeId, status, instance, atMillis, value) ->
+          builder.add(routeId, status, value));
+      return builder.build();
+    }
+  }
+
+}
@@ -0,0 +1,49 @@
+package com.korovko.arm_controller.metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrometheusRangeReaderTest {
+
+  @Test
+  void read_decodesMatrixIntoPrimitiveSeries_skippingInvalidSamples() throws IOException {
+    PrometheusRange range = read("""
+        {"status":"success","data":{"resultType":"matrix","result":[
+          {"metric":{"routeId":"customers_route","httpStatusCode":"504","instance":"gw-1:8080"},
+           "values":[[1700000000,"1"],[1700000010.5,"NaN"],[1700000020,"3"]]},
+          {"metric":{"httpStatusCode":"504"},"values":[[1700000000,"1"]]}
+        ]}}
+        """);
+
+    List<String> seen = new ArrayList<>();
+    range.forEachSeries((routeId, status, instance, times, values, count) -> {
+      seen.add(routeId + "/" + status + "@" + instance);
+      assertThat(count).isEqualTo(2);
+      assertThat(times[0]).isEqualTo(1_700_000_000_000L);
+      assertThat(times[1]).isEqualTo(1_700_000_020_000L);
+      assertThat(values[1]).isEqualTo(3.0);
+    });
+    assertThat(seen).containsExactly("customers_route/504@gw-1:8080");
+  }
+
+  @Test
+  void read_isEmpty_whenStatusNotSuccess() throws IOException {
+    assertThat(read("""
+        {"status":"error","errorType":"bad_data","error":"invalid step"}
+        """).size()).isZero();
+  }
+
+  private static PrometheusRange read(String json) throws IOException {
+    try (JsonParser parser = new JsonFactory().createParser(json)) {
+      return PrometheusRangeReader.read(parser);
+    }
+  }
+
+}
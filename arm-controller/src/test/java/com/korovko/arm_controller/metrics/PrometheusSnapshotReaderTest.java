@@ -0,0 +1,71 @@
+package com.korovko.arm_controller.metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrometheusSnapshotReaderTest {
+
+  private final JsonFactory factory = new JsonFactory();
+
+  @Test
+  void read_decodesSamples_withInstanceAndTimestamp() throws IOException {
+    CounterSamples samples = read("""
+        {"status":"success","data":{"resultType":"vector","result":[
+          {"metric":{"routeId":"customers_route","httpStatusCode":"200","instance":"gw-1:8080"},
+           "value":[1700000000.125,"96"]},
+          {"value":[1700000001,"10"],"metric":{"httpStatusCode":"503","routeId":"vets_route","instance":"gw-2:8080"}},
+          {"metric":{"routeId":"vets_route","httpStatusCode":"503"},"value":[1700000000,"7"]}
+        ]}}
+        """);
+
+    assertThat(lines(samples)).containsExactly(
+        "customers_route/200@gw-1:8080 1700000000125=96.0",
+        "vets_route/503@gw-2:8080 1700000001000=10.0",
+        "vets_route/503@ 1700000000000=7.0");
+    assertThat(samples.newestMillis()).isEqualTo(1_700_000_001_000L);
+  }
+
+  @Test
+  void read_skipsSamples_withoutRouteTimestampOrFiniteValue() throws IOException {
+    CounterSamples samples = read("""
+        {"status":"success","data":{"result":[
+          {"metric":{"httpStatusCode":"504"},"value":[1,"10"]},
+          {"metric":{"routeId":"customers_route","httpStatusCode":"504"},"value":[1,"NaN"]},
+          {"metric":{"routeId":"vets_route","httpStatusCode":"504"},"value":[1,"+Inf"]},
+          {"metric":{"routeId":"visits_route","httpStatusCode":"504"},"value":[1]},
+          {"metric":{"routeId":"owners_route","httpStatusCode":"504"},"value":["1","10"]}
+        ]}}
+        """);
+
+    assertThat(samples.size()).isZero();
+  }
+
+  @Test
+  void read_isEmpty_whenStatusNotSuccessOrBodyMissing() throws IOException {
+    assertThat(read("""
+        {"data":{"result":[{"metric":{"routeId":"customers_route"},"value":[1,"10"]}]},"status":"error"}
+        """).size()).isZero();
+    assertThat(read("").size()).isZero();
+  }
+
+  private static List<String> lines(CounterSamples samples) {
+    List<String> lines = new ArrayList<>();
+    samples.forEach((routeId, status, instance, atMillis, value) ->
+        lines.add(routeId + "/" + status + "@" + instance + " " + atMillis + "=" + value));
+    return lines;
+  }
+
+  private CounterSamples read(String json) throws IOException {
+    try (JsonParser parser = factory.createParser(json)) {
+      return PrometheusSnapshotReader.read(parser);
+    }
+  }
+
+}
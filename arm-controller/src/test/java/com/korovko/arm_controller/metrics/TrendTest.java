@@ -0,0 +1,37 @@
+package com.korovko.arm_controller.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TrendTest {
+
+  @Test
+  void of_fitsLine_andProjectsOneStepAhead() {
+    Trend trend = Trend.of(new double[]{1.0, 2.0, 3.0, 4.0});
+
+    assertThat(trend.isPresent()).isTrue();
+    assertThat(trend.slope()).isCloseTo(1.0, within(1e-9));
+    assertThat(trend.variance()).isCloseTo(0.0, within(1e-9));
+    assertThat(trend.next()).isCloseTo(5.0, within(1e-9));
+  }
+
+  @Test
+  void of_reportsSpreadAroundTheLine() {
+    Trend trend = Trend.of(new double[]{2.0, 6.0, 2.0, 6.0, 2.0, 6.0});
+
+    assertThat(trend.mean()).isCloseTo(4.0, within(1e-9));
+    assertThat(trend.stdDev()).isGreaterThan(2.0);
+  }
+
+  @Test
+  void of_skipsStepsWithoutData_andNeedsThreePoints() {
+    assertThat(Trend.of(new double[]{Double.NaN, 1.0, Double.NaN, 2.0}).isPresent()).isFalse();
+
+    Trend trend = Trend.of(new double[]{0.0, Double.NaN, 2.0, 3.0});
+    assertThat(trend.isPresent()).isTrue();
+    assertThat(trend.next()).isCloseTo(4.0, within(1e-9));
+  }
+
+}
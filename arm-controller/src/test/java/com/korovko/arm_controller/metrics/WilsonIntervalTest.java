@@ -0,0 +1,44 @@
+package com.korovko.arm_controller.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class WilsonIntervalTest {
+
+  @Test
+  void narrowsWithVolume() {
+    WilsonInterval few = WilsonInterval.of(10.0, 10, 1.96);
+    WilsonInterval many = WilsonInterval.of(10.0, 10_000, 1.96);
+
+    // 1 of 10: roughly 1.8% .. 40.4%
+    assertThat(10.0 - few.below()).isCloseTo(1.79, within(0.01));
+    assertThat(10.0 + few.above()).isCloseTo(40.42, within(0.01));
+    assertThat(many.below()).isLessThan(0.7);
+    assertThat(many.above()).isLessThan(0.7);
+  }
+
+  @Test
+  void staysWithinZeroAndHundredPercent() {
+    WilsonInterval none = WilsonInterval.of(0.0, 20, 1.96);
+
+    assertThat(none.below()).isCloseTo(0.0, within(1e-9));
+    assertThat(none.above()).isPositive();
+    assertThat(WilsonInterval.of(100.0, 20, 1.96).above()).isCloseTo(0.0, within(1e-9));
+  }
+
+  @Test
+  void margin_isTheNarrowerSide() {
+    assertThat(WilsonInterval.of(0.0, 60, 1.96).margin()).isCloseTo(0.0, within(1e-9));
+    WilsonInterval few = WilsonInterval.of(10.0, 10, 1.96);
+    assertThat(few.margin()).isEqualTo(few.below());
+  }
+
+  @Test
+  void collapses_withoutConfidenceOrRequests() {
+    assertThat(WilsonInterval.of(10.0, 10, 0.0).below()).isZero();
+    assertThat(WilsonInterval.of(10.0, 0, 1.96).above()).isZero();
+  }
+
+}
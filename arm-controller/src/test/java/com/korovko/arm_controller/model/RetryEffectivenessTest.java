@@ -0,0 +1,33 @@
+package com.korovko.arm_controller.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryEffectivenessTest {
+
+  @Test
+  void reached_leavesOutRequestsThatRanOutOfAttemptsEarlier() {
+    // 100 requests ran out after a single allowed attempt, 40 after two
+    RetryEffectiveness effectiveness = new RetryEffectiveness(new long[]{800, 60}, new long[]{100, 40});
+
+    assertThat(effectiveness.reached(1)).isEqualTo(1000);
+    assertThat(effectiveness.reached(2)).isEqualTo(100);
+    assertThat(effectiveness.successPct(2)).isEqualTo(60.0);
+  }
+
+  @Test
+  void since_subtractsTheEarlierReading_unlessTheGatewayRestarted() {
+    RetryEffectiveness earlier = new RetryEffectiveness(new long[]{800, 60}, new long[]{100, 40});
+    RetryEffectiveness now = new RetryEffectiveness(new long[]{900, 61}, new long[]{100, 139});
+
+    RetryEffectiveness delta = now.since(earlier);
+    assertThat(delta.successByAttempt()).containsExactly(100, 1);
+    assertThat(delta.exhaustedByAttempt()).containsExactly(0, 99);
+
+    RetryEffectiveness restarted = new RetryEffectiveness(new long[]{5, 0}, new long[]{1, 0});
+    assertThat(restarted.since(earlier)).isSameAs(restarted);
+    assertThat(now.since(null)).isSameAs(now);
+  }
+
+}
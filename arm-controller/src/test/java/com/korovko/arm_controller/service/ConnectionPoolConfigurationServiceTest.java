@@ -0,0 +1,139 @@
+package com.korovko.arm_controller.service;
+
+import com.korovko.arm_controller.client.ApiGatewayClient;
+import com.korovko.arm_controller.config.ConnectionPoolProperties;
+import com.korovko.arm_controller.model.ChangeConnectionPoolRequest;
+import com.korovko.arm_controller.model.ConnectionPoolStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConnectionPoolConfigurationServiceTest {
+
+  private ApiGatewayClient apiGatewayClient;
+  private ConnectionPoolProperties props;
+  private ConnectionPoolConfigurationService service;
+
+  @BeforeEach
+  void setUp() {
+    apiGatewayClient = mock(ApiGatewayClient.class);
+    props = new ConnectionPoolProperties();
+    props.setEnabled(true);
+    props.setRoutes(List.of("customers_route"));
+    service = new ConnectionPoolConfigurationService(apiGatewayClient, props);
+  }
+
+  @Test
+  void schedule_growsPool_whenRequestsWaitForConnections() {
+    when(apiGatewayClient.getConnectionPools()).thenReturn(Map.of("customers_route", stats(50, 7)));
+
+    service.schedule();
+
+    ArgumentCaptor<ChangeConnectionPoolRequest> captor = ArgumentCaptor.forClass(ChangeConnectionPoolRequest.class);
+    verify(apiGatewayClient).changeConnectionPool(eq("customers_route"), captor.capture());
+    assertThat(captor.getValue().maxConnections()).isEqualTo(100);
+    assertThat(captor.getValue().connectTimeout()).isEqualTo(Duration.ofMillis(500));
+  }
+
+  @Test
+  void schedule_doesNotGrow_whenNothingIsPending_orPoolIsAtMax() {
+    when(apiGatewayClient.getConnectionPools()).thenReturn(Map.of(
+        "customers_route", stats(50, 0),
+        "vets_route", stats(500, 12)));
+
+    service.schedule();
+
+    verify(apiGatewayClient, never()).changeConnectionPool(anyString(), any());
+  }
+
+  @Test
+  void schedule_growsOncePerWindow() {
+    when(apiGatewayClient.getConnectionPools()).thenReturn(Map.of("customers_route", stats(50, 7)));
+
+    service.schedule();
+    service.schedule();
+
+    verify(apiGatewayClient).changeConnectionPool(eq("customers_route"), any());
+  }
+
+  @Test
+  void schedule_ignoresGatewayErrors() {
+    when(apiGatewayClient.getConnectionPools()).thenThrow(new RestClientException("down"));
+
+    service.schedule();
+
+    verify(apiGatewayClient, never()).changeConnectionPool(anyString(), any());
+  }
+
+  @Test
+  void schedule_reseedsPoolTheGatewayLost_withTheConnectionsItLastHad() {
+    when(apiGatewayClient.getConnectionPools())
+        .thenReturn(Map.of("customers_route", stats(50, 7)))
+        .thenReturn(Map.of());
+    when(apiGatewayClient.getConnectionPoolDefaults()).thenReturn(new ChangeConnectionPoolRequest(32, 64,
+        Duration.ofSeconds(45), null, Duration.ofSeconds(30), null));
+
+    service.schedule();
+    service.schedule();
+
+    ArgumentCaptor<ChangeConnectionPoolRequest> captor = ArgumentCaptor.forClass(ChangeConnectionPoolRequest.class);
+    verify(apiGatewayClient, times(2)).changeConnectionPool(eq("customers_route"), captor.capture());
+    assertThat(captor.getAllValues().get(1).maxConnections()).isEqualTo(100);
+    assertThat(captor.getAllValues().get(1).pendingAcquireMaxCount()).isEqualTo(64);
+  }
+
+  @Test
+  void schedule_isOptIn() {
+    service = new ConnectionPoolConfigurationService(apiGatewayClient, new ConnectionPoolProperties());
+
+    service.schedule();
+
+    verifyNoInteractions(apiGatewayClient);
+  }
+
+  @Test
+  void initialSettings_keepGatewayDefaults_unlessOverridden() {
+    ChangeConnectionPoolRequest gateway = new ChangeConnectionPoolRequest(32, 64,
+        Duration.ofSeconds(45), null, Duration.ofSeconds(30), null);
+
+    ChangeConnectionPoolRequest inherited = service.initialSettings(gateway);
+
+    assertThat(inherited).isEqualTo(gateway);
+
+    props.setMinConnections(80);
+    props.setResponseTimeoutMs(5000);
+
+    ChangeConnectionPoolRequest overridden = service.initialSettings(gateway);
+
+    assertThat(overridden.maxConnections()).isEqualTo(80);
+    assertThat(overridden.pendingAcquireMaxCount()).isEqualTo(64);
+    assertThat(overridden.maxIdleTime()).isNull();
+    assertThat(overridden.responseTimeout()).isEqualTo(Duration.ofSeconds(5));
+  }
+
+  private static ConnectionPoolStats stats(int maxConnections, int pending) {
+    ChangeConnectionPoolRequest settings = new ChangeConnectionPoolRequest(maxConnections, 200,
+        Duration.ofSeconds(1), Duration.ofSeconds(30), Duration.ofMillis(500), Duration.ofSeconds(5));
+    return new ConnectionPoolStats(settings, 1, maxConnections, 0, pending);
+  }
+
+}
@@ -0,0 +1,130 @@
+package com.korovko.arm_controller.service;
+
+import com.korovko.arm_controller.config.DesiredStateProperties;
+import com.korovko.arm_controller.model.DesiredState;
+import com.korovko.arm_controller.model.DesiredVersion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DesiredStateServiceTest {
+
+  private DesiredStateService service;
+
+  @BeforeEach
+  void setUp() {
+    service = new DesiredStateService(new DesiredStateProperties());
+  }
+
+  @Test
+  void since_returnsOnlyRoutesChangedAfterVersion() {
+    service.putTimeout("customers_route", 900);
+    service.putTimeout("vets_route", 1000);
+    String epoch = service.since("", 0).epoch();
+
+    service.putTimeout("customers_route", 1000);
+    DesiredState delta = service.since(epoch, 2);
+
+    assertThat(delta.version()).isEqualTo(3);
+    assertThat(delta.routes()).containsOnlyKeys("customers_route");
+    assertThat(delta.routes().get("customers_route").timeoutMs()).isEqualTo(1000);
+  }
+
+  @Test
+  void since_returnsWholeDocument_forUnknownEpoch() {
+    service.putTimeout("customers_route", 900);
+    service.putTimeout("vets_route", 1000);
+
+    assertThat(service.since("previous-run", 2).routes()).containsOnlyKeys("customers_route", "vets_route");
+  }
+
+  @Test
+  void putTimeout_withSameValue_doesNotBumpVersion() {
+    DesiredVersion first = service.putTimeout("customers_route", 900);
+    DesiredVersion second = service.putTimeout("customers_route", 900);
+
+    assertThat(service.since("", 0).version()).isEqualTo(1);
+    assertThat(second).isEqualTo(first);
+  }
+
+  @Test
+  void put_returnsTheVersionThatStampsTheChange() {
+    DesiredVersion first = service.putTimeout("customers_route", 900);
+    DesiredVersion second = service.putTimeout("customers_route", 1000);
+
+    assertThat(first.epoch()).isEqualTo(service.since("", 0).epoch());
+    assertThat(first.version()).isEqualTo(1);
+    assertThat(second.version()).isEqualTo(2);
+  }
+
+  @Test
+  void revert_withdrawsAFailedFirstPush() {
+    DesiredVersion published = service.putTimeout("customers_route", 900);
+    String epoch = published.epoch();
+
+    service.revert("customers_route", published, null);
+
+    DesiredState delta = service.since(epoch, published.version());
+    assertThat(delta.version()).isEqualTo(2);
+    assertThat(delta.routes()).containsOnlyKeys("customers_route");
+    assertThat(delta.routes().get("customers_route").timeoutMs()).isNull();
+    assertThat(delta.routes().get("customers_route").retry()).isNull();
+  }
+
+  @Test
+  void revert_keepsALaterDecision() {
+    DesiredVersion failed = service.putTimeout("customers_route", 900);
+    service.putTimeout("customers_route", 1000);
+
+    service.revert("customers_route", failed, null);
+
+    assertThat(service.route("customers_route").timeoutMs()).isEqualTo(1000);
+    assertThat(service.since("", 0).version()).isEqualTo(2);
+  }
+
+  @Test
+  void poll_answersImmediately_whenCallerIsBehind() {
+    service.putTimeout("customers_route", 900);
+
+    DeferredResult<ResponseEntity<DesiredState>> result = service.poll("", 0);
+
+    assertThat(result.hasResult()).isTrue();
+  }
+
+  @Test
+  void poll_waitsForNextChange() {
+    service.putTimeout("customers_route", 900);
+    String epoch = service.since("", 0).epoch();
+
+    DeferredResult<ResponseEntity<DesiredState>> result = service.poll(epoch, 1);
+    assertThat(result.hasResult()).isFalse();
+
+    service.putTimeout("vets_route", 800);
+
+    assertThat(result.hasResult()).isTrue();
+    @SuppressWarnings("unchecked")
+    ResponseEntity<DesiredState> response = (ResponseEntity<DesiredState>) result.getResult();
+    assertThat(response.getBody().routes()).containsOnlyKeys("vets_route");
+  }
+
+  @Test
+  void update_buildsOneDeltaForAllPollsAtTheSameVersion() {
+    service.putTimeout("customers_route", 900);
+    String epoch = service.since("", 0).epoch();
+    DeferredResult<ResponseEntity<DesiredState>> first = service.poll(epoch, 1);
+    DeferredResult<ResponseEntity<DesiredState>> second = service.poll(epoch, 1);
+
+    service.putTimeout("vets_route", 800);
+
+    @SuppressWarnings("unchecked")
+    ResponseEntity<DesiredState> firstResponse = (ResponseEntity<DesiredState>) first.getResult();
+    @SuppressWarnings("unchecked")
+    ResponseEntity<DesiredState> secondResponse = (ResponseEntity<DesiredState>) second.getResult();
+    assertThat(firstResponse.getBody()).isSameAs(secondResponse.getBody());
+    assertThat(firstResponse.getBody().routes()).containsOnlyKeys("vets_route");
+  }
+
+}
@@ -1,30 +1,40 @@
 package com.korovko.arm_controller.service;
 
 import com.korovko.arm_controller.client.ApiGatewayClient;
-import com.korovko.arm_controller.client.ArmClient;
+import com.korovko.arm_controller.config.BanditSettings;
+import com.korovko.arm_controller.config.DesiredStateProperties;
+import com.korovko.arm_controller.config.EngineProperties;
 import com.korovko.arm_controller.config.RetryConfigProperties;
+import com.korovko.arm_controller.config.SloProperties;
+import com.korovko.arm_controller.engine.RouteEvaluationEngine;
+import com.korovko.arm_controller.metrics.MetricsSnapshot;
 import com.korovko.arm_controller.model.ChangeRetryRequest;
-import com.korovko.arm_controller.model.PrometheusData;
-import com.korovko.arm_controller.model.PrometheusQueryResponse;
-import com.korovko.arm_controller.model.PrometheusResultItem;
+import com.korovko.arm_controller.model.RetryEffectiveness;
+import com.korovko.arm_controller.state.RouteStateTable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.lang.reflect.Field;
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -32,131 +42,96 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 class DynamicRetryConfigurationServiceTest {
 
-  private ArmClient armClient;
   private ApiGatewayClient apiGatewayClient;
   private RetryConfigProperties props;
+  private final SloProperties slo = new SloProperties();
   private DynamicRetryConfigurationService service;
 
   @BeforeEach
   void setUp() {
-    armClient = mock(ArmClient.class);
     apiGatewayClient = mock(ApiGatewayClient.class);
     props = mock(RetryConfigProperties.class);
-    service = new DynamicRetryConfigurationService(apiGatewayClient, armClient, props);
+    lenient().when(apiGatewayClient.changeRetryAsync(anyString(), any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+    lenient().when(apiGatewayClient.getRetryEffectivenessAsync())
+        .thenReturn(CompletableFuture.completedFuture(Map.of()));
+    service = new DynamicRetryConfigurationService(apiGatewayClient, props,
+        new DesiredStateService(pushing()), new RouteEvaluationEngine(new EngineProperties()),
+        slo);
   }
 
   @Test
-  void schedule_doesNothing_whenPrometheusOptionalEmpty() {
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.empty());
-
-    service.schedule();
-
-    verifyNoInteractions(apiGatewayClient);
-  }
-
-  @Test
-  void schedule_doesNothing_whenStatusNotSuccess() {
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    when(resp.getStatus()).thenReturn("error");
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
+  void onTick_doesNothing_whenSnapshotEmpty() {
+    seedRouteAttempts(Map.of("customers_route", 1));
 
-    service.schedule();
+    service.onTick(MetricsSnapshot.empty()).join();
 
     verifyNoInteractions(apiGatewayClient);
   }
 
   @Test
-  void schedule_doesNothing_whenResultEmpty() {
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    PrometheusData data = mock(PrometheusData.class);
-
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
-    when(data.getResult()).thenReturn(List.of());
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
+  void onTick_doesNothing_whenRouteNotTracked() {
+    MetricsSnapshot snapshot = snapshot("unknown_route", 10.0);
 
-    service.schedule();
+    service.onTick(snapshot).join();
 
     verifyNoInteractions(apiGatewayClient);
   }
 
   @Test
-  void schedule_ignoresItem_whenRouteIdNull() {
-    seedRouteAttempts(Map.of("customers_route", 1));
-
-    PrometheusResultItem item = mock(PrometheusResultItem.class);
-    when(item.getMetric()).thenReturn(Map.of());
-    when(item.getValue()).thenReturn(List.of("0", "10.0"));
-
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    PrometheusData data = mock(PrometheusData.class);
-
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
-    when(data.getResult()).thenReturn(List.of(item));
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
+  void onTick_skipsIdleRoute_insteadOfCountingItAsGood() {
+    seedRouteAttempts(Map.of("customers_route", 3));
+    seedLastChangedAt("customers_route", Instant.EPOCH);
+    MetricsSnapshot idle = MetricsSnapshot.builder().add("customers_route", 200, 0.0).build();
 
-    service.schedule();
+    service.onTick(idle).join();
+    service.onTick(idle).join();
 
-    verifyNoInteractions(apiGatewayClient);
+    verify(apiGatewayClient, never()).changeRetryAsync(anyString(), any(), any());
+    assertThat(attempts("customers_route")).isEqualTo(3);
+    assertThat(stableGoodCount("customers_route")).isEqualTo(0);
   }
 
   @Test
-  void schedule_ignoresItem_whenValueMissingOrTooShort() {
+  void onTick_increasesAttempts_fastPath_whenErrPctAboveUpper_andIncreaseAllowed() {
     seedRouteAttempts(Map.of("customers_route", 1));
+    seedLastChangedAt("customers_route", Instant.EPOCH);
 
-    PrometheusResultItem item = mock(PrometheusResultItem.class);
-    when(item.getMetric()).thenReturn(Map.of("routeId", "customers_route"));
-    when(item.getValue()).thenReturn(List.of("0"));
-
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    PrometheusData data = mock(PrometheusData.class);
-
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
-    when(data.getResult()).thenReturn(List.of(item));
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
-
-    service.schedule();
-
-    verifyNoInteractions(apiGatewayClient);
-  }
+    MetricsSnapshot snapshot = snapshot("customers_route", 7.1);
 
-  @Test
-  void schedule_doesNothing_whenRouteNotTracked() {
-    PrometheusResultItem item = mock(PrometheusResultItem.class);
-    when(item.getMetric()).thenReturn(Map.of("routeId", "unknown_route"));
-    when(item.getValue()).thenReturn(List.of("0", "10.0"));
+    when(props.getTargetErrorPct()).thenReturn(5.0);
+    when(props.getDeadbandPct()).thenReturn(1.0);
+    when(props.getPanicMultiplier()).thenReturn(3.0);
+    when(props.getMinIncreaseWindowMins()).thenReturn(0);
+    when(props.getStepSize()).thenReturn(1);
+    when(props.getMaxAttempts()).thenReturn(5);
 
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    PrometheusData data = mock(PrometheusData.class);
+    when(props.getFirstBackoffMs()).thenReturn(100);
+    when(props.getMaxBackoffMs()).thenReturn(1000);
+    when(props.getFactor()).thenReturn(2);
 
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
-    when(data.getResult()).thenReturn(List.of(item));
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
+    service.onTick(snapshot).join();
 
-    service.schedule();
+    ArgumentCaptor<ChangeRetryRequest> captor = ArgumentCaptor.forClass(ChangeRetryRequest.class);
+    verify(apiGatewayClient).changeRetryAsync(eq("customers_route"), captor.capture(), any());
+    assertThat(readAttempts(captor.getValue())).isEqualTo(2);
+    assertThat(readRetryableStatusCodes(captor.getValue())).containsExactlyInAnyOrder(502, 503);
+    assertThat(readHttpMethods(captor.getValue())).containsExactly("GET");
 
-    verifyNoInteractions(apiGatewayClient);
+    assertThat(attempts("customers_route")).isEqualTo(2);
   }
 
   @Test
-  void schedule_increasesAttempts_fastPath_whenErrPctAboveUpper_andIncreaseAllowed() {
+  void onTick_failedPush_keepsAttemptsAndRevertsTheDesiredState() {
+    DesiredStateService desiredState = new DesiredStateService(pushing());
+    service = new DynamicRetryConfigurationService(apiGatewayClient, props, desiredState,
+        new RouteEvaluationEngine(new EngineProperties()), slo);
     seedRouteAttempts(Map.of("customers_route", 1));
     seedLastChangedAt("customers_route", Instant.EPOCH);
-
-    PrometheusResultItem item = mock(PrometheusResultItem.class);
-    when(item.getMetric()).thenReturn(Map.of("routeId", "customers_route"));
-    when(item.getValue()).thenReturn(List.of("0", "7.1"));
-
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    PrometheusData data = mock(PrometheusData.class);
-
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
-    when(data.getResult()).thenReturn(List.of(item));
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
+    ChangeRetryRequest running = mock(ChangeRetryRequest.class);
+    desiredState.putRetry("customers_route", running);
+    when(apiGatewayClient.changeRetryAsync(anyString(), any(), any()))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("gateway down")));
 
     when(props.getTargetErrorPct()).thenReturn(5.0);
     when(props.getDeadbandPct()).thenReturn(1.0);
@@ -164,69 +139,43 @@ class DynamicRetryConfigurationServiceTest {
     when(props.getMinIncreaseWindowMins()).thenReturn(0);
     when(props.getStepSize()).thenReturn(1);
     when(props.getMaxAttempts()).thenReturn(5);
-
     when(props.getFirstBackoffMs()).thenReturn(100);
     when(props.getMaxBackoffMs()).thenReturn(1000);
     when(props.getFactor()).thenReturn(2);
 
-    service.schedule();
-
-    ArgumentCaptor<ChangeRetryRequest> captor = ArgumentCaptor.forClass(ChangeRetryRequest.class);
-    verify(apiGatewayClient).changeRetry(eq("customers_route"), captor.capture());
-    assertThat(readAttempts(captor.getValue())).isEqualTo(2);
-    assertThat(readRetryableStatusCodes(captor.getValue())).containsExactlyInAnyOrder(502, 503);
-    assertThat(readHttpMethods(captor.getValue())).containsExactly("GET");
+    service.onTick(snapshot("customers_route", 7.1)).join();
 
-    Map<String, Integer> attempts = getMap(service, "routeToRetryAttempts");
-    assertThat(attempts.get("customers_route")).isEqualTo(2);
+    verify(apiGatewayClient).changeRetryAsync(eq("customers_route"), any(), any());
+    assertThat(attempts("customers_route")).isEqualTo(1);
+    assertThat(routes().lastChangedAtMillis(routes().indexOf("customers_route"))).isZero();
+    assertThat(desiredState.route("customers_route").retry()).isSameAs(running);
   }
 
   @Test
-  void schedule_doesNotIncrease_whenIncreaseWindowBlocks() {
+  void onTick_doesNotIncrease_whenIncreaseWindowBlocks() {
     seedRouteAttempts(Map.of("customers_route", 1));
     seedLastChangedAt("customers_route", Instant.now());
 
-    PrometheusResultItem item = mock(PrometheusResultItem.class);
-    when(item.getMetric()).thenReturn(Map.of("routeId", "customers_route"));
-    when(item.getValue()).thenReturn(List.of("0", "7.1"));
-
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    PrometheusData data = mock(PrometheusData.class);
-
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
-    when(data.getResult()).thenReturn(List.of(item));
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
+    MetricsSnapshot snapshot = snapshot("customers_route", 7.1);
 
     when(props.getTargetErrorPct()).thenReturn(5.0);
     when(props.getDeadbandPct()).thenReturn(1.0);
     when(props.getPanicMultiplier()).thenReturn(3.0);
     when(props.getMinIncreaseWindowMins()).thenReturn(10);
 
-    service.schedule();
+    service.onTick(snapshot).join();
 
-    verifyNoInteractions(apiGatewayClient);
+    verify(apiGatewayClient, never()).changeRetryAsync(anyString(), any(), any());
 
-    Map<String, Integer> attempts = getMap(service, "routeToRetryAttempts");
-    assertThat(attempts.get("customers_route")).isEqualTo(1);
+    assertThat(attempts("customers_route")).isEqualTo(1);
   }
 
   @Test
-  void schedule_panicIncrease_capsAtMaxAttempts() {
+  void onTick_panicIncrease_capsAtMaxAttempts() {
     seedRouteAttempts(Map.of("customers_route", 4));
     seedLastChangedAt("customers_route", Instant.EPOCH);
 
-    PrometheusResultItem item = mock(PrometheusResultItem.class);
-    when(item.getMetric()).thenReturn(Map.of("routeId", "customers_route"));
-    when(item.getValue()).thenReturn(List.of("0", "25.0"));
-
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    PrometheusData data = mock(PrometheusData.class);
-
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
-    when(data.getResult()).thenReturn(List.of(item));
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
+    MetricsSnapshot snapshot = snapshot("customers_route", 25.0);
 
     when(props.getTargetErrorPct()).thenReturn(5.0);
     when(props.getDeadbandPct()).thenReturn(1.0);
@@ -239,63 +188,68 @@ class DynamicRetryConfigurationServiceTest {
     when(props.getMaxBackoffMs()).thenReturn(1000);
     when(props.getFactor()).thenReturn(2);
 
-    service.schedule();
+    service.onTick(snapshot).join();
 
     ArgumentCaptor<ChangeRetryRequest> captor = ArgumentCaptor.forClass(ChangeRetryRequest.class);
-    verify(apiGatewayClient).changeRetry(eq("customers_route"), captor.capture());
+    verify(apiGatewayClient).changeRetryAsync(eq("customers_route"), captor.capture(), any());
     assertThat(readAttempts(captor.getValue())).isEqualTo(5);
 
-    Map<String, Integer> attempts = getMap(service, "routeToRetryAttempts");
-    assertThat(attempts.get("customers_route")).isEqualTo(5);
+    assertThat(attempts("customers_route")).isEqualTo(5);
   }
 
   @Test
-  void schedule_withinDeadband_resetsGoodCount_andDoesNotChangeAttempts() {
+  void onTick_fastBurnOfTheErrorBudget_liftsTheCap() {
+    slo.setEnabled(true);
+    slo.setObjectivePct(99.5);
     seedRouteAttempts(Map.of("customers_route", 2));
-    seedStableGoodCount();
+    seedLastChangedAt("customers_route", Instant.EPOCH);
+
+    // 8% is above the band but short of 3x the target; it burns a 0.5% budget 16 times over
+    MetricsSnapshot window = snapshot("customers_route", 8.0);
+    MetricsSnapshot snapshot = window.withWindows(Map.of(60_000L, window, 300_000L, window,
+        1_800_000L, window, 21_600_000L, window));
+
+    when(props.getTargetErrorPct()).thenReturn(5.0);
+    when(props.getDeadbandPct()).thenReturn(1.0);
+    when(props.getPanicMultiplier()).thenReturn(3.0);
+    when(props.getMinIncreaseWindowMins()).thenReturn(0);
+    when(props.getStepSize()).thenReturn(1);
+    when(props.getMaxAttempts()).thenReturn(5);
+
+    when(props.getFirstBackoffMs()).thenReturn(100);
+    when(props.getMaxBackoffMs()).thenReturn(1000);
+    when(props.getFactor()).thenReturn(2);
 
-    PrometheusResultItem item = mock(PrometheusResultItem.class);
-    when(item.getMetric()).thenReturn(Map.of("routeId", "customers_route"));
-    when(item.getValue()).thenReturn(List.of("0", "4.5"));
+    service.onTick(snapshot).join();
 
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    PrometheusData data = mock(PrometheusData.class);
+    assertThat(attempts("customers_route")).isEqualTo(3);
+  }
 
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
-    when(data.getResult()).thenReturn(List.of(item));
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
+  @Test
+  void onTick_withinDeadband_resetsGoodCount_andDoesNotChangeAttempts() {
+    seedRouteAttempts(Map.of("customers_route", 2));
+    seedStableGoodCount();
+
+    MetricsSnapshot snapshot = snapshot("customers_route", 4.5);
 
     when(props.getTargetErrorPct()).thenReturn(5.0);
     when(props.getDeadbandPct()).thenReturn(1.0);
 
-    service.schedule();
+    service.onTick(snapshot).join();
 
-    verifyNoInteractions(apiGatewayClient);
+    verify(apiGatewayClient, never()).changeRetryAsync(anyString(), any(), any());
 
-    Map<String, Integer> good = getMap(service, "stableGoodCount");
-    assertThat(good.get("customers_route")).isEqualTo(0);
+    assertThat(stableGoodCount("customers_route")).isEqualTo(0);
 
-    Map<String, Integer> attempts = getMap(service, "routeToRetryAttempts");
-    assertThat(attempts.get("customers_route")).isEqualTo(2);
+    assertThat(attempts("customers_route")).isEqualTo(2);
   }
 
   @Test
-  void schedule_decreasesOnlyAfterStablePeriods_andDecreaseAllowed() {
+  void onTick_decreasesOnlyAfterStablePeriods_andDecreaseAllowed() {
     seedRouteAttempts(Map.of("customers_route", 3));
     seedLastChangedAt("customers_route", Instant.EPOCH);
 
-    PrometheusResultItem item = mock(PrometheusResultItem.class);
-    when(item.getMetric()).thenReturn(Map.of("routeId", "customers_route"));
-    when(item.getValue()).thenReturn(List.of("0", "0.0"));
-
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    PrometheusData data = mock(PrometheusData.class);
-
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
-    when(data.getResult()).thenReturn(List.of(item));
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
+    MetricsSnapshot snapshot = snapshot("customers_route", 0.0);
 
     when(props.getTargetErrorPct()).thenReturn(5.0);
     when(props.getDeadbandPct()).thenReturn(1.0);
@@ -308,123 +262,266 @@ class DynamicRetryConfigurationServiceTest {
     when(props.getMaxBackoffMs()).thenReturn(1000);
     when(props.getFactor()).thenReturn(2);
 
-    service.schedule();
+    service.onTick(snapshot).join();
 
-    verifyNoInteractions(apiGatewayClient);
+    verify(apiGatewayClient, never()).changeRetryAsync(anyString(), any(), any());
 
-    service.schedule();
+    service.onTick(snapshot).join();
 
     ArgumentCaptor<ChangeRetryRequest> captor = ArgumentCaptor.forClass(ChangeRetryRequest.class);
-    verify(apiGatewayClient).changeRetry(eq("customers_route"), captor.capture());
+    verify(apiGatewayClient).changeRetryAsync(eq("customers_route"), captor.capture(), any());
     assertThat(readAttempts(captor.getValue())).isEqualTo(2);
 
-    Map<String, Integer> attempts = getMap(service, "routeToRetryAttempts");
-    assertThat(attempts.get("customers_route")).isEqualTo(2);
+    assertThat(attempts("customers_route")).isEqualTo(2);
 
-    Map<String, Integer> good = getMap(service, "stableGoodCount");
-    assertThat(good.get("customers_route")).isEqualTo(0);
+    assertThat(stableGoodCount("customers_route")).isEqualTo(0);
   }
 
   @Test
-  void schedule_doesNotDecrease_whenDecreaseWindowBlocks_evenAfterStablePeriods() {
+  void onTick_decreasesOnLowVolume_whenTheWindowIsClean() {
     seedRouteAttempts(Map.of("customers_route", 3));
-    seedLastChangedAt("customers_route", Instant.now());
+    seedLastChangedAt("customers_route", Instant.EPOCH);
 
-    PrometheusResultItem item = mock(PrometheusResultItem.class);
-    when(item.getMetric()).thenReturn(Map.of("routeId", "customers_route"));
-    when(item.getValue()).thenReturn(List.of("0", "0.0"));
+    MetricsSnapshot snapshot = MetricsSnapshot.builder().add("customers_route", 200, 60.0).build();
 
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    PrometheusData data = mock(PrometheusData.class);
+    when(props.getMinRequests()).thenReturn(50L);
+    when(props.getConfidenceZ()).thenReturn(1.96);
+    when(props.getTargetErrorPct()).thenReturn(5.0);
+    when(props.getDeadbandPct()).thenReturn(1.0);
+    when(props.getDecreaseStablePeriods()).thenReturn(1);
+    when(props.getMinDecreaseWindowMins()).thenReturn(0);
+    when(props.getStepSize()).thenReturn(1);
+    when(props.getMinAttempts()).thenReturn(1);
+    when(props.getFirstBackoffMs()).thenReturn(100);
+    when(props.getMaxBackoffMs()).thenReturn(1000);
+    when(props.getFactor()).thenReturn(2);
+
+    service.onTick(snapshot).join();
 
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
-    when(data.getResult()).thenReturn(List.of(item));
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
+    ArgumentCaptor<ChangeRetryRequest> captor = ArgumentCaptor.forClass(ChangeRetryRequest.class);
+    verify(apiGatewayClient).changeRetryAsync(eq("customers_route"), captor.capture(), any());
+    assertThat(readAttempts(captor.getValue())).isEqualTo(2);
+  }
+
+  @Test
+  void onTick_doesNotDecrease_whenDecreaseWindowBlocks_evenAfterStablePeriods() {
+    seedRouteAttempts(Map.of("customers_route", 3));
+    seedLastChangedAt("customers_route", Instant.now());
+
+    MetricsSnapshot snapshot = snapshot("customers_route", 0.0);
 
     when(props.getTargetErrorPct()).thenReturn(5.0);
     when(props.getDeadbandPct()).thenReturn(1.0);
     when(props.getDecreaseStablePeriods()).thenReturn(2);
     when(props.getMinDecreaseWindowMins()).thenReturn(10);
 
-    service.schedule();
-    service.schedule();
+    service.onTick(snapshot).join();
+    service.onTick(snapshot).join();
 
-    verifyNoInteractions(apiGatewayClient);
+    verify(apiGatewayClient, never()).changeRetryAsync(anyString(), any(), any());
 
-    Map<String, Integer> good = getMap(service, "stableGoodCount");
-    assertThat(good.get("customers_route")).isEqualTo(2);
+    assertThat(stableGoodCount("customers_route")).isEqualTo(2);
 
-    Map<String, Integer> attempts = getMap(service, "routeToRetryAttempts");
-    assertThat(attempts.get("customers_route")).isEqualTo(3);
+    assertThat(attempts("customers_route")).isEqualTo(3);
   }
 
   @Test
-  void schedule_nonNumericErrPct_treatedAsZero_andCanDecrease() {
-    seedRouteAttempts(Map.of("customers_route", 3));
+  void onTick_doesNotIncrease_whenLastAttemptRarelySucceeds() {
+    seedRouteAttempts(Map.of("customers_route", 2));
     seedLastChangedAt("customers_route", Instant.EPOCH);
+    MetricsSnapshot snapshot = snapshot("customers_route", 25.0);
+
+    when(props.getTargetErrorPct()).thenReturn(5.0);
+    when(props.getDeadbandPct()).thenReturn(1.0);
+    when(props.getPanicMultiplier()).thenReturn(3.0);
+    when(props.getMinIncreaseWindowMins()).thenReturn(0);
+    when(props.getStepSize()).thenReturn(1);
+    when(props.getMaxAttempts()).thenReturn(5);
+    when(props.getMinAttemptSamples()).thenReturn(100L);
+    when(props.getMinAttemptSuccessPct()).thenReturn(5.0);
+
+    // 1000 requests reached attempt 2, only 10 of them succeeded there
+    when(apiGatewayClient.getRetryEffectivenessAsync()).thenReturn(effectiveness(new long[]{9000, 10, 0},
+        new long[]{0, 990, 0}));
 
-    PrometheusResultItem item = mock(PrometheusResultItem.class);
-    when(item.getMetric()).thenReturn(Map.of("routeId", "customers_route"));
-    when(item.getValue()).thenReturn(List.of("0", "abc"));
+    service.onTick(snapshot).join();
 
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    PrometheusData data = mock(PrometheusData.class);
+    verify(apiGatewayClient, never()).changeRetryAsync(anyString(), any(), any());
+    assertThat(attempts("customers_route")).isEqualTo(2);
+  }
 
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
-    when(data.getResult()).thenReturn(List.of(item));
-    when(armClient.getPrometheusQuery(anyString())).thenReturn(Optional.of(resp));
+  @Test
+  void onTick_increases_whenLastAttemptStillRecoversRequests() {
+    seedRouteAttempts(Map.of("customers_route", 2));
+    seedLastChangedAt("customers_route", Instant.EPOCH);
+    MetricsSnapshot snapshot = snapshot("customers_route", 25.0);
 
     when(props.getTargetErrorPct()).thenReturn(5.0);
     when(props.getDeadbandPct()).thenReturn(1.0);
-    when(props.getDecreaseStablePeriods()).thenReturn(1);
-    when(props.getMinDecreaseWindowMins()).thenReturn(0);
+    when(props.getPanicMultiplier()).thenReturn(3.0);
+    when(props.getMinIncreaseWindowMins()).thenReturn(0);
     when(props.getStepSize()).thenReturn(1);
-    when(props.getMinAttempts()).thenReturn(1);
-
+    when(props.getMaxAttempts()).thenReturn(5);
+    when(props.getMinAttemptSamples()).thenReturn(100L);
+    when(props.getMinAttemptSuccessPct()).thenReturn(5.0);
     when(props.getFirstBackoffMs()).thenReturn(100);
     when(props.getMaxBackoffMs()).thenReturn(1000);
     when(props.getFactor()).thenReturn(2);
 
-    service.schedule();
+    when(apiGatewayClient.getRetryEffectivenessAsync()).thenReturn(effectiveness(new long[]{9000, 600, 0},
+        new long[]{0, 400, 0}));
+
+    service.onTick(snapshot).join();
 
     ArgumentCaptor<ChangeRetryRequest> captor = ArgumentCaptor.forClass(ChangeRetryRequest.class);
-    verify(apiGatewayClient).changeRetry(eq("customers_route"), captor.capture());
-    assertThat(readAttempts(captor.getValue())).isEqualTo(2);
+    verify(apiGatewayClient).changeRetryAsync(eq("customers_route"), captor.capture(), any());
+    assertThat(readAttempts(captor.getValue())).isEqualTo(3);
+  }
+
+  @Test
+  void onTick_judgesTheLastAttemptByTheLastTick_notSinceTheGatewayStarted() {
+    seedRouteAttempts(Map.of("customers_route", 2));
+    seedLastChangedAt("customers_route", Instant.EPOCH);
+
+    when(props.getTargetErrorPct()).thenReturn(5.0);
+    when(props.getDeadbandPct()).thenReturn(1.0);
+    when(props.getPanicMultiplier()).thenReturn(3.0);
+    when(props.getMinIncreaseWindowMins()).thenReturn(0);
+    when(props.getStepSize()).thenReturn(1);
+    when(props.getMaxAttempts()).thenReturn(5);
+    when(props.getMinAttemptSamples()).thenReturn(100L);
+    when(props.getMinAttemptSuccessPct()).thenReturn(5.0);
+
+    // Attempt 2 used to recover 60% of the requests reaching it, but only 10 of the last 1000
+    when(apiGatewayClient.getRetryEffectivenessAsync())
+        .thenReturn(effectiveness(new long[]{9000, 600, 0}, new long[]{0, 400, 0}))
+        .thenReturn(effectiveness(new long[]{18000, 610, 0}, new long[]{0, 1390, 0}));
+
+    service.onTick(MetricsSnapshot.builder().add("customers_route", 200, 0.0).build()).join();
+    service.onTick(snapshot("customers_route", 25.0)).join();
+
+    verify(apiGatewayClient, never()).changeRetryAsync(anyString(), any(), any());
+    assertThat(attempts("customers_route")).isEqualTo(2);
+  }
+
+  @Test
+  void onTick_banditRoute_settlesOnFewerAttempts_whenRetriesNeverRecover() {
+    banditService(3);
+
+    // Half of the requests succeed at once, the other half fail on every attempt they are given
+    long[] succeeded = new long[3];
+    long[] exhausted = new long[3];
+    when(apiGatewayClient.getRetryEffectivenessAsync()).thenAnswer(invocation -> effectiveness(succeeded.clone(),
+        exhausted.clone()));
+    MetricsSnapshot snapshot = snapshot("customers_route", 0.0);
+
+    int settled = 0;
+    for (int round = 0; round < 40; round++) {
+      service.onTick(snapshot).join();
+      if (round >= 20 && attempts("customers_route") == 1) {
+        settled++;
+      }
+      succeeded[0] += 500;
+      exhausted[attempts("customers_route") - 1] += 500;
+    }
+
+    // Still exploring now and then, but mostly on a single attempt
+    assertThat(settled).isGreaterThanOrEqualTo(15);
+    verify(props, never()).getTargetErrorPct();
+  }
+
+  @Test
+  void onTick_banditRoute_takesMoreAttempts_whenRetriesRecover() {
+    banditService(1);
+
+    // Half of the requests fail once: with a second attempt they succeed, without it they are lost
+    long[] succeeded = new long[3];
+    long[] exhausted = new long[3];
+    when(apiGatewayClient.getRetryEffectivenessAsync()).thenAnswer(invocation -> effectiveness(succeeded.clone(),
+        exhausted.clone()));
+    MetricsSnapshot snapshot = snapshot("customers_route", 0.0);
+
+    int settled = 0;
+    for (int round = 0; round < 40; round++) {
+      service.onTick(snapshot).join();
+      if (round >= 20 && attempts("customers_route") >= 2) {
+        settled++;
+      }
+      succeeded[0] += 500;
+      if (attempts("customers_route") >= 2) {
+        succeeded[1] += 500;
+      } else {
+        exhausted[0] += 500;
+      }
+    }
+
+    // Successes per upstream request are 50% either way; the client's successes tell the arms apart
+    assertThat(settled).isGreaterThanOrEqualTo(15);
+  }
+
+  // A bandit over 1..3 attempts with a single backoff, deciding on every tick with a fixed seed
+  private void banditService(int attempts) {
+    BanditSettings bandit = new BanditSettings();
+    bandit.setRoutes(List.of("customers_route"));
+    bandit.setFirstBackoffsMs(List.of(100));
+    bandit.setDecisionIntervalMins(0);
+    bandit.setMinUpstreamRequests(100);
+    when(props.getBandit()).thenReturn(bandit);
+    when(props.getMinAttempts()).thenReturn(1);
+    when(props.getMaxAttempts()).thenReturn(3);
+    lenient().when(props.getMaxBackoffMs()).thenReturn(1000);
+    lenient().when(props.getFactor()).thenReturn(2);
+    service = new DynamicRetryConfigurationService(apiGatewayClient, props,
+        new DesiredStateService(pushing()), new RouteEvaluationEngine(new EngineProperties()),
+        slo);
+    SplittableRandom random = new SplittableRandom(7);
+    ReflectionTestUtils.setField(service, "random", (Supplier<RandomGenerator>) () -> random);
+    seedRouteAttempts(Map.of("customers_route", attempts));
+  }
+
+  private static CompletableFuture<Map<String, RetryEffectiveness>> effectiveness(long[] succeeded,
+                                                                                long[] exhausted) {
+    return CompletableFuture.completedFuture(Map.of("customers_route", new RetryEffectiveness(succeeded, exhausted)));
+  }
+
+  // 100 requests in the window, errPct of them failed with a retryable status
+  private static MetricsSnapshot snapshot(String routeId, double errPct) {
+    return MetricsSnapshot.builder()
+        .add(routeId, 502, errPct / 2)
+        .add(routeId, 503, errPct / 2)
+        .add(routeId, 200, 100.0 - errPct)
+        .build();
   }
 
   private void seedRouteAttempts(Map<String, Integer> values) {
-    Map<String, Integer> routeAttempts = getMap(service, "routeToRetryAttempts");
-    routeAttempts.clear();
-    routeAttempts.putAll(values);
+    RouteStateTable routes = routes();
+    values.forEach((routeId, attempts) -> routes.setValue(routes.intern(routeId), attempts));
   }
 
   private void seedLastChangedAt(String routeId, Instant at) {
-    Map<String, Instant> lastChanged = getMap(service, "routeIdByRetryLastChangedAt");
-    lastChanged.put(routeId, at);
+    RouteStateTable routes = routes();
+    routes.setLastChangedAtMillis(routes.intern(routeId), at.toEpochMilli());
   }
 
   private void seedStableGoodCount() {
-    Map<String, Integer> goodCount = getMap(service, "stableGoodCount");
-    goodCount.put("customers_route", 5);
+    RouteStateTable routes = routes();
+    int idx = routes.intern("customers_route");
+    for (int i = 0; i < 5; i++) {
+      routes.incrementStableGoodCount(idx);
+    }
   }
 
-  @SuppressWarnings("unchecked")
-  private static <K, V> Map<K, V> getMap(Object target, String fieldName) {
-    try {
-      Field f = target.getClass().getDeclaredField(fieldName);
-      f.setAccessible(true);
-      Object v = f.get(target);
-      if (v == null) {
-        Map<K, V> m = new HashMap<>();
-        f.set(target, m);
-        return m;
-      }
-      return (Map<K, V>) v;
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
+  private int attempts(String routeId) {
+    return routes().value(routeId);
+  }
+
+  private int stableGoodCount(String routeId) {
+    RouteStateTable routes = routes();
+    return routes.stableGoodCount(routes.indexOf(routeId));
+  }
+
+  private RouteStateTable routes() {
+    return (RouteStateTable) ReflectionTestUtils.getField(service, "routes");
   }
 
   private static int readAttempts(ChangeRetryRequest req) {
@@ -501,4 +598,11 @@ class DynamicRetryConfigurationServiceTest {
     if (v instanceof Set<?> s) return (Set<String>) s;
     throw new AssertionError("Unable to read http methods from ChangeRetryRequest");
   }
+
+  private static DesiredStateProperties pushing() {
+    DesiredStateProperties props = new DesiredStateProperties();
+    props.setPushEnabled(true);
+    return props;
+  }
+
 }
@@ -1,12 +1,19 @@
 package com.korovko.arm_controller.service;
 
 import com.korovko.arm_controller.client.ApiGatewayClient;
-import com.korovko.arm_controller.client.ArmClient;
+import com.korovko.arm_controller.config.DesiredStateProperties;
+import com.korovko.arm_controller.config.EngineProperties;
+import com.korovko.arm_controller.config.ForecastProperties;
+import com.korovko.arm_controller.config.SignalFilterSettings;
+import com.korovko.arm_controller.config.SloProperties;
 import com.korovko.arm_controller.config.TimeoutConfigProperties;
+import com.korovko.arm_controller.engine.RouteEvaluationEngine;
+import com.korovko.arm_controller.metrics.LatencyBuckets;
+import com.korovko.arm_controller.metrics.LatencyHistogram;
+import com.korovko.arm_controller.metrics.MetricsSnapshot;
 import com.korovko.arm_controller.model.ChangeTimeoutRequest;
-import com.korovko.arm_controller.model.PrometheusData;
-import com.korovko.arm_controller.model.PrometheusQueryResponse;
-import com.korovko.arm_controller.model.PrometheusResultItem;
+import com.korovko.arm_controller.state.RouteStateTable;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -17,42 +24,55 @@ import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class DynamicTimeoutConfigurationServiceTest {
 
-  @Mock
-  private ArmClient armClient;
   @Mock
   private ApiGatewayClient apiGatewayClient;
   @Mock
   private TimeoutConfigProperties props;
+  @Mock
+  private SeasonalForecastService forecast;
+  private final SloProperties slo = new SloProperties();
 
   @Captor
   private ArgumentCaptor<ChangeTimeoutRequest> changeReqCaptor;
 
+  @BeforeEach
+  void setUp() {
+    lenient().when(apiGatewayClient.changeTimeoutAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+  }
+
   private DynamicTimeoutConfigurationService newService() {
-    return new DynamicTimeoutConfigurationService(armClient, apiGatewayClient, props);
+    return new DynamicTimeoutConfigurationService(apiGatewayClient, props,
+        new DesiredStateService(pushing()), new RouteEvaluationEngine(new EngineProperties()),
+        forecast, slo);
   }
 
   @Test
-  void schedule_noRoutes_doesNotCallPrometheus() {
+  void onTick_noRoutes_doesNothing() {
     DynamicTimeoutConfigurationService service = newService();
 
-    service.schedule();
+    service.onTick(snapshot(9.0)).join();
 
-    verifyNoInteractions(armClient);
+    // Only the filter chain and control laws, read once on construction
+    verify(props).getFilter();
+    verify(props).getControl();
+    verifyNoMoreInteractions(props);
     verifyNoInteractions(apiGatewayClient);
   }
 
@@ -69,17 +89,67 @@ class DynamicTimeoutConfigurationServiceTest {
     when(props.getMax()).thenReturn(1500);
     when(props.getStepSize()).thenReturn(100);
 
-    stubPrometheusSingleRoute(armClient, 9.0);
+    MetricsSnapshot snapshot = snapshot(9.0);
 
-    service.schedule();
+    service.onTick(snapshot).join();
 
-    verify(apiGatewayClient).changeTimeout(changeReqCaptor.capture());
+    verify(apiGatewayClient).changeTimeoutAsync(changeReqCaptor.capture(), any());
     ChangeTimeoutRequest req = changeReqCaptor.getValue();
     assertThat(req.getRouteId()).isEqualTo("customers_route");
     assertThat(req.getTimeoutMillis()).isEqualTo(1300);
 
-    assertThat(getRouteToTimeout(service).get("customers_route")).isEqualTo(1300);
-    assertThat(getStableGoodCount(service).get("customers_route")).isEqualTo(0);
+    assertThat(timeout(service)).isEqualTo(1300);
+    assertThat(stableGoodCount(service)).isEqualTo(0);
+  }
+
+  @Test
+  void failedPush_keepsTheRouteAndRevertsTheDesiredState() {
+    DesiredStateService desiredState = new DesiredStateService(pushing());
+    DynamicTimeoutConfigurationService service = new DynamicTimeoutConfigurationService(apiGatewayClient, props,
+        desiredState, new RouteEvaluationEngine(new EngineProperties()), forecast, slo);
+    Instant lastChangedAt = Instant.now().minus(Duration.ofMinutes(10));
+    seedTimeoutState(service, 1200, lastChangedAt);
+    desiredState.putTimeout("customers_route", 1200);
+    when(apiGatewayClient.changeTimeoutAsync(any(), any()))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("gateway down")));
+
+    when(props.getTargetErrorRate()).thenReturn(4);
+    when(props.getDeadbandPct()).thenReturn(0.75);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+    when(props.getMinIncreaseWindowMins()).thenReturn(1);
+    when(props.getMax()).thenReturn(1500);
+    when(props.getStepSize()).thenReturn(100);
+
+    service.onTick(snapshot(9.0)).join();
+
+    verify(apiGatewayClient).changeTimeoutAsync(any(), any());
+    assertThat(timeout(service)).isEqualTo(1200);
+    RouteStateTable routes = routes(service);
+    assertThat(routes.lastChangedAtMillis(routes.indexOf("customers_route"))).isEqualTo(lastChangedAt.toEpochMilli());
+    assertThat(desiredState.route("customers_route").timeoutMs()).isEqualTo(1200);
+  }
+
+  @Test
+  void failedFirstPush_withdrawsTheDecisionFromTheDesiredState() {
+    DesiredStateService desiredState = new DesiredStateService(pushing());
+    DynamicTimeoutConfigurationService service = new DynamicTimeoutConfigurationService(apiGatewayClient, props,
+        desiredState, new RouteEvaluationEngine(new EngineProperties()), forecast, slo);
+    seedTimeoutState(service, 1200, Instant.now().minus(Duration.ofMinutes(10)));
+    when(apiGatewayClient.changeTimeoutAsync(any(), any()))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("gateway down")));
+
+    when(props.getTargetErrorRate()).thenReturn(4);
+    when(props.getDeadbandPct()).thenReturn(0.75);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+    when(props.getMinIncreaseWindowMins()).thenReturn(1);
+    when(props.getMax()).thenReturn(1500);
+    when(props.getStepSize()).thenReturn(100);
+
+    service.onTick(snapshot(9.0)).join();
+
+    verify(apiGatewayClient).changeTimeoutAsync(any(), any());
+    assertThat(desiredState.route("customers_route").timeoutMs()).isNull();
+    assertThat(desiredState.since("", 0).version()).isEqualTo(2);
   }
 
   @Test
@@ -94,11 +164,11 @@ class DynamicTimeoutConfigurationServiceTest {
     when(props.getMax()).thenReturn(1500);
     when(props.getStepSize()).thenReturn(100);
 
-    stubPrometheusSingleRoute(armClient, 5.0);
+    MetricsSnapshot snapshot = snapshot(5.0);
 
-    service.schedule();
+    service.onTick(snapshot).join();
 
-    verify(apiGatewayClient).changeTimeout(changeReqCaptor.capture());
+    verify(apiGatewayClient).changeTimeoutAsync(changeReqCaptor.capture(), any());
     ChangeTimeoutRequest req = changeReqCaptor.getValue();
     assertThat(req.getTimeoutMillis()).isEqualTo(1200);
   }
@@ -112,13 +182,13 @@ class DynamicTimeoutConfigurationServiceTest {
     when(props.getDeadbandPct()).thenReturn(0.75);
     when(props.getPanicMultiplier()).thenReturn(2.0);
 
-    stubPrometheusSingleRoute(armClient, 4.0);
+    MetricsSnapshot snapshot = snapshot(4.0);
 
-    service.schedule();
+    service.onTick(snapshot).join();
 
-    verify(apiGatewayClient, never()).changeTimeout(any());
-    assertThat(getStableGoodCount(service).get("customers_route")).isEqualTo(0);
-    assertThat(getRouteToTimeout(service).get("customers_route")).isEqualTo(1100);
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
+    assertThat(stableGoodCount(service)).isEqualTo(0);
+    assertThat(timeout(service)).isEqualTo(1100);
   }
 
   @Test
@@ -136,22 +206,22 @@ class DynamicTimeoutConfigurationServiceTest {
     when(props.getMin()).thenReturn(700);
     when(props.getStepSize()).thenReturn(100);
 
-    stubPrometheusSingleRoute(armClient, 0.5);
+    MetricsSnapshot snapshot = snapshot(0.5);
 
-    service.schedule();
-    verify(apiGatewayClient, never()).changeTimeout(any());
-    assertThat(getStableGoodCount(service).get("customers_route")).isEqualTo(1);
+    service.onTick(snapshot).join();
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
+    assertThat(stableGoodCount(service)).isEqualTo(1);
 
-    service.schedule();
-    verify(apiGatewayClient, never()).changeTimeout(any());
-    assertThat(getStableGoodCount(service).get("customers_route")).isEqualTo(2);
+    service.onTick(snapshot).join();
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
+    assertThat(stableGoodCount(service)).isEqualTo(2);
 
-    service.schedule();
-    verify(apiGatewayClient).changeTimeout(changeReqCaptor.capture());
+    service.onTick(snapshot).join();
+    verify(apiGatewayClient).changeTimeoutAsync(changeReqCaptor.capture(), any());
     ChangeTimeoutRequest req = changeReqCaptor.getValue();
     assertThat(req.getTimeoutMillis()).isEqualTo(1200);
 
-    assertThat(getStableGoodCount(service).get("customers_route")).isEqualTo(0);
+    assertThat(stableGoodCount(service)).isEqualTo(0);
   }
 
   @Test
@@ -164,12 +234,12 @@ class DynamicTimeoutConfigurationServiceTest {
     when(props.getPanicMultiplier()).thenReturn(2.0);
     when(props.getMinIncreaseWindowMins()).thenReturn(1);
 
-    stubPrometheusSingleRoute(armClient, 9.0);
+    MetricsSnapshot snapshot = snapshot(9.0);
 
-    service.schedule();
+    service.onTick(snapshot).join();
 
-    verify(apiGatewayClient, never()).changeTimeout(any());
-    assertThat(getRouteToTimeout(service).get("customers_route")).isEqualTo(1100);
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
+    assertThat(timeout(service)).isEqualTo(1100);
   }
 
   @Test
@@ -183,12 +253,12 @@ class DynamicTimeoutConfigurationServiceTest {
     when(props.getMinIncreaseWindowMins()).thenReturn(1);
     when(props.getMax()).thenReturn(1500);
 
-    stubPrometheusSingleRoute(armClient, 9.0);
+    MetricsSnapshot snapshot = snapshot(9.0);
 
-    service.schedule();
+    service.onTick(snapshot).join();
 
-    verify(apiGatewayClient, never()).changeTimeout(any());
-    assertThat(getRouteToTimeout(service).get("customers_route")).isEqualTo(1500);
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
+    assertThat(timeout(service)).isEqualTo(1500);
   }
 
   @Test
@@ -205,16 +275,287 @@ class DynamicTimeoutConfigurationServiceTest {
 
     when(props.getMin()).thenReturn(700);
 
-    stubPrometheusSingleRoute(armClient, 0.1);
+    MetricsSnapshot snapshot = snapshot(0.1);
+
+    service.onTick(snapshot).join();
+
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
+    assertThat(timeout(service)).isEqualTo(700);
+  }
+
+  @Test
+  void risingTrend_increases_whileInstantValueIsStillInBand() {
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 1100, Instant.now().minus(Duration.ofMinutes(10)));
+
+    when(props.getTargetErrorRate()).thenReturn(4);
+    when(props.getDeadbandPct()).thenReturn(0.75);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+    when(props.getMinIncreaseWindowMins()).thenReturn(1);
+    when(props.getMax()).thenReturn(1500);
+    when(props.getStepSize()).thenReturn(100);
+
+    MetricsSnapshot snapshot = snapshot(4.0).withSteps(steps(2.0, 3.0, 4.0, 5.0));
+
+    service.onTick(snapshot).join();
+
+    verify(apiGatewayClient).changeTimeoutAsync(changeReqCaptor.capture(), any());
+    assertThat(changeReqCaptor.getValue().getTimeoutMillis()).isEqualTo(1200);
+  }
+
+  @Test
+  void spikeInFlatHistory_doesNotIncrease() {
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 1100, Instant.now().minus(Duration.ofMinutes(10)));
+
+    when(props.getTargetErrorRate()).thenReturn(4);
+    when(props.getDeadbandPct()).thenReturn(0.75);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+    when(props.getDecreaseStablePeriods()).thenReturn(3);
+
+    MetricsSnapshot snapshot = snapshot(5.0).withSteps(steps(1.0, 1.0, 1.0, 1.0, 1.0, 1.0));
+
+    service.onTick(snapshot).join();
+
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
+    assertThat(timeout(service)).isEqualTo(1100);
+  }
+
+  @Test
+  void hampelFilter_rejectsSingleSpike_withoutHistory() {
+    SignalFilterSettings filter = new SignalFilterSettings();
+    filter.setChain(List.of("hampel"));
+    when(props.getFilter()).thenReturn(filter);
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 1100, Instant.now().minus(Duration.ofMinutes(10)));
+
+    when(props.getTargetErrorRate()).thenReturn(4);
+    when(props.getDeadbandPct()).thenReturn(0.75);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+
+    for (double errorPct : new double[] {4.0, 4.1, 3.9, 4.0, 6.0}) {
+      service.onTick(snapshot(errorPct)).join();
+    }
+
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
+    assertThat(timeout(service)).isEqualTo(1100);
+  }
+
+  @Test
+  void fewTimeoutsAmongFewRequests_doNotIncrease() {
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 1100, Instant.now().minus(Duration.ofMinutes(10)));
+
+    when(props.getMinRequests()).thenReturn(5);
+    when(props.getConfidenceZ()).thenReturn(1.96);
+    when(props.getTargetErrorRate()).thenReturn(4);
+    when(props.getDeadbandPct()).thenReturn(0.75);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+
+    service.onTick(snapshot(1.0, 9.0)).join();
+
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
+    assertThat(timeout(service)).isEqualTo(1100);
+  }
+
+  @Test
+  void sameShareOverHighVolume_panics() {
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 1100, Instant.now().minus(Duration.ofMinutes(10)));
+
+    when(props.getMinRequests()).thenReturn(5);
+    when(props.getConfidenceZ()).thenReturn(1.96);
+    when(props.getTargetErrorRate()).thenReturn(4);
+    when(props.getDeadbandPct()).thenReturn(0.75);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+    when(props.getMinIncreaseWindowMins()).thenReturn(1);
+    when(props.getMax()).thenReturn(1500);
+    when(props.getStepSize()).thenReturn(100);
+
+    service.onTick(snapshot(1_000.0, 9_000.0)).join();
+
+    verify(apiGatewayClient).changeTimeoutAsync(changeReqCaptor.capture(), any());
+    assertThat(changeReqCaptor.getValue().getTimeoutMillis()).isEqualTo(1200);
+  }
+
+  @Test
+  void cleanWindowOnLowVolume_decreases() {
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 1300, Instant.now().minus(Duration.ofMinutes(10)));
+
+    when(props.getMinRequests()).thenReturn(50);
+    when(props.getConfidenceZ()).thenReturn(1.96);
+    when(props.getTargetErrorRate()).thenReturn(1);
+    when(props.getDeadbandPct()).thenReturn(0.75);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+    when(props.getDecreaseStablePeriods()).thenReturn(1);
+    when(props.getMinDecreaseWindowMins()).thenReturn(3);
+    when(props.getMin()).thenReturn(700);
+    when(props.getStepSize()).thenReturn(100);
+
+    // The upper Wilson bound of 0 in 60 is still above 6%; the same margin as for a raise is 0
+    service.onTick(snapshot(0.0, 60.0)).join();
+
+    verify(apiGatewayClient).changeTimeoutAsync(changeReqCaptor.capture(), any());
+    assertThat(changeReqCaptor.getValue().getTimeoutMillis()).isEqualTo(1200);
+  }
+
+  @Test
+  void noisyHistory_doesNotWidenTheBandPastEveryDecrease() {
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 1300, Instant.now().minus(Duration.ofMinutes(10)));
+
+    when(props.getTargetErrorRate()).thenReturn(1);
+    when(props.getDeadbandPct()).thenReturn(0.25);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+    when(props.getDecreaseStablePeriods()).thenReturn(1);
+    when(props.getMinDecreaseWindowMins()).thenReturn(3);
+    when(props.getMin()).thenReturn(700);
+    when(props.getStepSize()).thenReturn(100);
+
+    // Spread of about 1.1 points would put the lower edge at 0; capped at half the target it stays at 0.5
+    service.onTick(snapshot(0.0, 1000.0).withSteps(steps(2.0, 0.0, 2.0, 0.0, 2.0, 0.0))).join();
+
+    verify(apiGatewayClient).changeTimeoutAsync(changeReqCaptor.capture(), any());
+    assertThat(changeReqCaptor.getValue().getTimeoutMillis()).isEqualTo(1200);
+  }
+
+  @Test
+  void idleRoute_isSkipped_insteadOfDecreasing() {
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 1100, Instant.now().minus(Duration.ofMinutes(10)));
+
+    for (int i = 0; i < 3; i++) {
+      service.onTick(snapshot(0.0, 0.0)).join();
+    }
+
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
+    assertThat(timeout(service)).isEqualTo(1100);
+    assertThat(stableGoodCount(service)).isEqualTo(0);
+  }
+
+  @Test
+  void quantileSizing_movesToMultipleOfP99_inOneTick() {
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 700, Instant.now().minus(Duration.ofMinutes(10)));
+
+    when(props.getQuantileSizing()).thenReturn(true);
+    when(props.getQuantile()).thenReturn(0.99);
+    when(props.getQuantileMultiplier()).thenReturn(1.5);
+    when(props.getMinRequests()).thenReturn(50);
+    when(props.getMin()).thenReturn(500);
+    when(props.getMax()).thenReturn(1500);
+    when(props.getStepSize()).thenReturn(100);
+    when(props.getMinIncreaseWindowMins()).thenReturn(1);
 
-    service.schedule();
+    // 99 of 100 requests within 800 ms
+    LatencyBuckets latency = LatencyBuckets.builder()
+        .add("customers_route", 400_000, 90.0)
+        .add("customers_route", 800_000, 99.0)
+        .add("customers_route", LatencyHistogram.INFINITE, 100.0)
+        .build();
 
-    verify(apiGatewayClient, never()).changeTimeout(any());
-    assertThat(getRouteToTimeout(service).get("customers_route")).isEqualTo(700);
+    service.onTick(snapshot(0.0).withLatency(latency)).join();
+
+    verify(apiGatewayClient).changeTimeoutAsync(changeReqCaptor.capture(), any());
+    assertThat(changeReqCaptor.getValue().getTimeoutMillis()).isEqualTo(1200);
+    assertThat(timeout(service)).isEqualTo(1200);
   }
 
   @Test
-  void initializeTimeouts_seedsMaps_andAllowsImmediateActions() {
+  void quantileSizing_fallsBackToErrorShare_withoutHistogram() {
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 1100, Instant.now().minus(Duration.ofMinutes(10)));
+
+    when(props.getQuantileSizing()).thenReturn(true);
+    when(props.getTargetErrorRate()).thenReturn(4);
+    when(props.getDeadbandPct()).thenReturn(0.75);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+    when(props.getMinIncreaseWindowMins()).thenReturn(1);
+    when(props.getMax()).thenReturn(1500);
+    when(props.getStepSize()).thenReturn(100);
+
+    service.onTick(snapshot(5.0)).join();
+
+    verify(apiGatewayClient).changeTimeoutAsync(changeReqCaptor.capture(), any());
+    assertThat(changeReqCaptor.getValue().getTimeoutMillis()).isEqualTo(1200);
+  }
+
+  @Test
+  void forecastPeak_raisesAhead_andHoldsDecreasesUntilItIsOver() {
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 1000, Instant.now().minus(Duration.ofMinutes(10)));
+
+    // A real model of a 2-hour season of 5-minute buckets, peaking over buckets 17..20
+    ForecastProperties forecastProps = new ForecastProperties();
+    forecastProps.setEnabled(true);
+    forecastProps.setSeasonBuckets(24);
+    forecastProps.setStateFile("");
+    SeasonalForecastService seasonal = new SeasonalForecastService(forecastProps);
+    long bucketMs = Duration.ofMinutes(5).toMillis();
+    for (int bucket = 0; bucket < 24 * 3; bucket++) {
+      double requests = bucket % 24 >= 17 && bucket % 24 <= 20 ? 400.0 : 100.0;
+      seasonal.observe(MetricsSnapshot.builder().add("customers_route", 200, requests).build(), bucket * bucketMs);
+    }
+    long[] now = {(24 * 3 + 15) * bucketMs};
+    when(forecast.inPeak("customers_route")).thenAnswer(call -> seasonal.inPeak("customers_route", now[0]));
+    when(forecast.preAdjustSteps()).thenReturn(2);
+    when(props.getTargetErrorRate()).thenReturn(4);
+    when(props.getDeadbandPct()).thenReturn(0.75);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+    when(props.getDecreaseStablePeriods()).thenReturn(1);
+    when(props.getMinDecreaseWindowMins()).thenReturn(0);
+    when(props.getMin()).thenReturn(700);
+    when(props.getMax()).thenReturn(1500);
+    when(props.getStepSize()).thenReturn(100);
+
+    // Quiet 10 minutes before the peak: the forecast alone raises the timeout
+    service.onTick(snapshot(0.5)).join();
+    assertThat(timeout(service)).isEqualTo(1200);
+
+    // Inside the peak, where the forecast no longer rises: a good window does not take it back
+    now[0] += 3 * bucketMs;
+    service.onTick(snapshot(0.5)).join();
+    assertThat(timeout(service)).isEqualTo(1200);
+    now[0] += 2 * bucketMs;
+    service.onTick(snapshot(0.5)).join();
+    assertThat(timeout(service)).isEqualTo(1200);
+
+    // Traffic back to where it was: relaxes as usual
+    now[0] += bucketMs;
+    service.onTick(snapshot(0.5)).join();
+    assertThat(timeout(service)).isEqualTo(1100);
+  }
+
+  @Test
+  void decrease_heldWhileTheSlowWindowsOverspendTheBudget() {
+    slo.setEnabled(true);
+    DynamicTimeoutConfigurationService service = newService();
+    seedTimeoutState(service, 1300, Instant.now().minus(Duration.ofMinutes(10)));
+
+    when(props.getTargetErrorRate()).thenReturn(4);
+    when(props.getDeadbandPct()).thenReturn(0.75);
+    when(props.getPanicMultiplier()).thenReturn(2.0);
+    when(props.getDecreaseStablePeriods()).thenReturn(1);
+    when(props.getMinDecreaseWindowMins()).thenReturn(0);
+    when(props.getMin()).thenReturn(700);
+    when(props.getStepSize()).thenReturn(100);
+
+    MetricsSnapshot quiet = snapshot(0.5);
+    MetricsSnapshot burning = snapshot(3.0);
+
+    // Quiet for the last minutes, but 3% over the last half hour burns a 1% budget three times over
+    service.onTick(quiet.withWindows(Map.of(60_000L, quiet, 300_000L, quiet,
+        1_800_000L, burning, 21_600_000L, quiet))).join();
+    assertThat(timeout(service)).isEqualTo(1300);
+
+    service.onTick(quiet.withWindows(Map.of(60_000L, quiet, 300_000L, quiet,
+        1_800_000L, quiet, 21_600_000L, quiet))).join();
+    assertThat(timeout(service)).isEqualTo(1200);
+  }
+
+  @Test
+  void initializeTimeouts_seedsState_andAllowsImmediateActions() {
     DynamicTimeoutConfigurationService service = newService();
 
     when(apiGatewayClient.getLatencies()).thenReturn(Map.of("customers_route", 1100));
@@ -224,57 +565,62 @@ class DynamicTimeoutConfigurationServiceTest {
 
     ReflectionTestUtils.invokeMethod(service, "initializeTimeouts");
 
-    assertThat(getRouteToTimeout(service)).containsEntry("customers_route", 1100);
-    assertThat(getStableGoodCount(service)).containsEntry("customers_route", 0);
+    assertThat(timeout(service)).isEqualTo(1100);
+    assertThat(stableGoodCount(service)).isEqualTo(0);
 
-    Instant last = getLastChanged(service).get("customers_route");
+    Instant last = Instant.ofEpochMilli(routes(service).lastChangedAtMillis(0));
     assertThat(last).isBefore(Instant.now().minus(Duration.ofMinutes(1)));
   }
 
-  private void stubPrometheusSingleRoute(ArmClient armClient, double errorPct) {
-    PrometheusResultItem item = mock(PrometheusResultItem.class);
-    when(item.getMetric()).thenReturn(Map.of("routeId", "customers_route"));
-    when(item.getValue()).thenReturn(List.of("0", String.valueOf(errorPct)));
-
-    PrometheusData data = mock(PrometheusData.class);
-    when(data.getResult()).thenReturn(List.of(item));
+  // 100 requests in the window, errorPct of them timed out
+  private MetricsSnapshot snapshot(double errorPct) {
+    return snapshot(errorPct, 100.0 - errorPct);
+  }
 
-    PrometheusQueryResponse resp = mock(PrometheusQueryResponse.class);
-    when(resp.getStatus()).thenReturn("success");
-    when(resp.getData()).thenReturn(data);
+  private MetricsSnapshot snapshot(double timeouts, double ok) {
+    return MetricsSnapshot.builder()
+        .add("customers_route", 504, timeouts)
+        .add("customers_route", 200, ok)
+        .build();
+  }
 
-    when(armClient.getPrometheusQuery(any())).thenReturn(Optional.of(resp));
+  private List<MetricsSnapshot> steps(double... errorPcts) {
+    List<MetricsSnapshot> steps = new ArrayList<>();
+    for (double errorPct : errorPcts) {
+      steps.add(snapshot(errorPct));
+    }
+    return steps;
   }
 
   private void seedTimeoutState(DynamicTimeoutConfigurationService service,
                                 int timeoutMs,
                                 Instant lastChangedAt) {
-    getRouteToTimeout(service).put("customers_route", timeoutMs);
-    getLastChanged(service).put("customers_route", lastChangedAt);
-    getStableGoodCount(service).put("customers_route", 0);
+    RouteStateTable routes = routes(service);
+    int idx = routes.intern("customers_route");
+    routes.setValue(idx, timeoutMs);
+    routes.setLastChangedAtMillis(idx, lastChangedAt.toEpochMilli());
+    routes.resetStableGoodCount(idx);
   }
 
-  @SuppressWarnings("unchecked")
-  private Map<String, Integer> getRouteToTimeout(DynamicTimeoutConfigurationService service) {
-    Object val = ReflectionTestUtils.getField(service, "routeToTimeout");
-    if (val == null) {
-      throw new IllegalStateException("Field routeToTimeout not found");
-    }
-    return (Map<String, Integer>) val;
+  private int timeout(DynamicTimeoutConfigurationService service) {
+    return routes(service).value("customers_route");
+  }
+
+  private int stableGoodCount(DynamicTimeoutConfigurationService service) {
+    RouteStateTable routes = routes(service);
+    return routes.stableGoodCount(routes.indexOf("customers_route"));
   }
 
-  @SuppressWarnings("unchecked")
-  private Map<String, Instant> getLastChanged(DynamicTimeoutConfigurationService service) {
-    Object val = ReflectionTestUtils.getField(service, "routeIdByLastChangedAt");
-    if (val == null) throw new IllegalStateException("Field routeIdByLastChangedAt not found");
-    return (Map<String, Instant>) val;
+  private RouteStateTable routes(DynamicTimeoutConfigurationService service) {
+    Object val = ReflectionTestUtils.getField(service, "routes");
+    if (val == null) throw new IllegalStateException("Field routes not found");
+    return (RouteStateTable) val;
   }
 
-  @SuppressWarnings("unchecked")
-  private Map<String, Integer> getStableGoodCount(DynamicTimeoutConfigurationService service) {
-    Object val = ReflectionTestUtils.getField(service, "stableGoodCount");
-    if (val == null) throw new IllegalStateException("Field stableGoodCount not found");
-    return (Map<String, Integer>) val;
+  private static DesiredStateProperties pushing() {
+    DesiredStateProperties props = new DesiredStateProperties();
+    props.setPushEnabled(true);
+    return props;
   }
 
 }
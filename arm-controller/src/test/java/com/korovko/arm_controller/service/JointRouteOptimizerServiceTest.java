@@ -0,0 +1,169 @@
+package com.korovko.arm_controller.service;
+
+import com.korovko.arm_controller.client.ApiGatewayClient;
+import com.korovko.arm_controller.config.DesiredStateProperties;
+import com.korovko.arm_controller.config.EngineProperties;
+import com.korovko.arm_controller.config.ForecastProperties;
+import com.korovko.arm_controller.config.JointConfigProperties;
+import com.korovko.arm_controller.config.MetricsProperties;
+import com.korovko.arm_controller.config.RetryConfigProperties;
+import com.korovko.arm_controller.config.SloProperties;
+import com.korovko.arm_controller.config.TimeoutConfigProperties;
+import com.korovko.arm_controller.engine.RouteEvaluationEngine;
+import com.korovko.arm_controller.metrics.LatencyBuckets;
+import com.korovko.arm_controller.metrics.LatencyHistogram;
+import com.korovko.arm_controller.metrics.MetricsSnapshot;
+import com.korovko.arm_controller.model.ChangeRetryRequest;
+import com.korovko.arm_controller.model.ChangeTimeoutRequest;
+import com.korovko.arm_controller.state.RouteStateTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class JointRouteOptimizerServiceTest {
+
+  @Mock
+  private ApiGatewayClient apiGatewayClient;
+
+  private final DesiredStateService desiredState = new DesiredStateService(pushing());
+  private final RouteEvaluationEngine engine = new RouteEvaluationEngine(new EngineProperties());
+  private final JointConfigProperties props = new JointConfigProperties();
+  private final TimeoutConfigProperties timeoutProps = new TimeoutConfigProperties();
+  private final MetricsProperties metricsProps = new MetricsProperties();
+
+  @BeforeEach
+  void setUp() {
+    lenient().when(apiGatewayClient.changeTimeoutAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    lenient().when(apiGatewayClient.changeRetryAsync(anyString(), any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+    lenient().when(apiGatewayClient.getRetryEffectivenessAsync()).thenReturn(CompletableFuture.completedFuture(Map.of()));
+    timeoutProps.setMin(500);
+    timeoutProps.setMax(1500);
+    timeoutProps.setStepSize(500);
+    props.setRoutes(List.of("customers_route"));
+    props.setFirstBackoffsMs(List.of(50));
+    props.setLatencyBudgetMs(1200);
+    metricsProps.setHistogram(true);
+  }
+
+  @Test
+  void picksShortTimeoutWithRetry_whenItBeatsLongTimeoutWithinBudget() {
+    JointRouteOptimizerService service = newService();
+
+    // 80% within 500 ms, 95% within 1 s: 2 x 500 ms (+ up to 100 ms backoff) beats 1 x 1000 ms
+    service.onTick(snapshot(0.0)).join();
+
+    ArgumentCaptor<ChangeTimeoutRequest> timeout = ArgumentCaptor.forClass(ChangeTimeoutRequest.class);
+    ArgumentCaptor<ChangeRetryRequest> retry = ArgumentCaptor.forClass(ChangeRetryRequest.class);
+    verify(apiGatewayClient).changeTimeoutAsync(timeout.capture(), any());
+    verify(apiGatewayClient).changeRetryAsync(eq("customers_route"), retry.capture(), any());
+    assertThat(timeout.getValue().getTimeoutMillis()).isEqualTo(500);
+    assertThat(retry.getValue().maxAttempts()).isEqualTo(2);
+  }
+
+  @Test
+  void amplificationBudget_keepsSingleAttempt() {
+    props.setMaxAmplification(1.1);
+    JointRouteOptimizerService service = newService();
+
+    service.onTick(snapshot(0.0)).join();
+
+    ArgumentCaptor<ChangeTimeoutRequest> timeout = ArgumentCaptor.forClass(ChangeTimeoutRequest.class);
+    ArgumentCaptor<ChangeRetryRequest> retry = ArgumentCaptor.forClass(ChangeRetryRequest.class);
+    verify(apiGatewayClient).changeTimeoutAsync(timeout.capture(), any());
+    verify(apiGatewayClient).changeRetryAsync(eq("customers_route"), retry.capture(), any());
+    assertThat(timeout.getValue().getTimeoutMillis()).isEqualTo(1000);
+    assertThat(retry.getValue().maxAttempts()).isEqualTo(1);
+  }
+
+  @Test
+  void optedInRoutes_areLeftAloneBySeparateLoops() {
+    newService();
+    DynamicTimeoutConfigurationService timeouts = timeoutLoop();
+    DynamicRetryConfigurationService retries = retryLoop();
+
+    assertThat(desiredState.tunedJointly("customers_route")).isTrue();
+    assertThat(desiredState.tunedJointly("vets_route")).isFalse();
+    timeouts.onTick(snapshot(50.0)).join();
+    retries.onTick(snapshot(50.0)).join();
+
+    verify(apiGatewayClient, never()).changeTimeoutAsync(any(), any());
+    verify(apiGatewayClient, never()).changeRetryAsync(anyString(), any(), any());
+  }
+
+  @Test
+  void withoutHistogram_optedInRoutesStayWithSeparateLoops() {
+    metricsProps.setHistogram(false);
+    JointRouteOptimizerService service = newService();
+    DynamicRetryConfigurationService retries = retryLoop();
+
+    assertThat(desiredState.tunedJointly("customers_route")).isFalse();
+    service.onTick(snapshot(50.0)).join();
+    verify(apiGatewayClient, never()).changeRetryAsync(anyString(), any(), any());
+
+    // 50% of 502/503 is far above target: the retry loop takes the route instead
+    retries.onTick(snapshot(50.0)).join();
+    verify(apiGatewayClient).changeRetryAsync(eq("customers_route"), any(), any());
+  }
+
+  private DynamicTimeoutConfigurationService timeoutLoop() {
+    DynamicTimeoutConfigurationService timeouts = new DynamicTimeoutConfigurationService(apiGatewayClient,
+        timeoutProps, desiredState, engine, new SeasonalForecastService(new ForecastProperties()),
+        new SloProperties());
+    RouteStateTable routes = (RouteStateTable) ReflectionTestUtils.getField(timeouts, "routes");
+    routes.setValue(routes.intern("customers_route"), 1000);
+    return timeouts;
+  }
+
+  private DynamicRetryConfigurationService retryLoop() {
+    RetryConfigProperties retryProps = new RetryConfigProperties();
+    DynamicRetryConfigurationService retries = new DynamicRetryConfigurationService(apiGatewayClient, retryProps,
+        desiredState, engine, new SloProperties());
+    RouteStateTable routes = (RouteStateTable) ReflectionTestUtils.getField(retries, "routes");
+    routes.setValue(routes.intern("customers_route"), retryProps.getMinAttempts());
+    return retries;
+  }
+
+  private JointRouteOptimizerService newService() {
+    return new JointRouteOptimizerService(apiGatewayClient, props, timeoutProps, new RetryConfigProperties(),
+        metricsProps, desiredState, engine);
+  }
+
+  private static MetricsSnapshot snapshot(double retryablePct) {
+    LatencyBuckets latency = LatencyBuckets.builder()
+        .add("customers_route", 500_000, 800.0)
+        .add("customers_route", 1_000_000, 950.0)
+        .add("customers_route", 1_500_000, 1000.0)
+        .add("customers_route", LatencyHistogram.INFINITE, 1000.0)
+        .build();
+    return MetricsSnapshot.builder()
+        .add("customers_route", 503, 10.0 * retryablePct)
+        .add("customers_route", 200, 1000.0 - 10.0 * retryablePct)
+        .build()
+        .withLatency(latency);
+  }
+
+  private static DesiredStateProperties pushing() {
+    DesiredStateProperties props = new DesiredStateProperties();
+    props.setPushEnabled(true);
+    return props;
+  }
+
+}
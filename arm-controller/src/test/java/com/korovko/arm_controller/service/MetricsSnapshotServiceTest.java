@@ -0,0 +1,188 @@
+package com.korovko.arm_controller.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.korovko.arm_controller.client.ArmClient;
+import com.korovko.arm_controller.config.MetricsProperties;
+import com.korovko.arm_controller.metrics.LatencyBuckets;
+import com.korovko.arm_controller.metrics.LatencyHistogram;
+import com.korovko.arm_controller.metrics.CounterSamples;
+import com.korovko.arm_controller.metrics.MetricsSnapshot;
+import com.korovko.arm_controller.metrics.PatternService;
+import com.korovko.arm_controller.metrics.PrometheusRange;
+import com.korovko.arm_controller.metrics.PrometheusRangeReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MetricsSnapshotServiceTest {
+
+  @Mock
+  private ArmClient armClient;
+  @Mock
+  private PatternService timeouts;
+  @Mock
+  private PatternService retries;
+
+  @Test
+  void tick_handsSameIncreasesToEveryService_withoutQueryingAgain() {
+    long now = System.currentTimeMillis();
+    when(armClient.getCounterSamplesAsync(anyString()))
+        .thenReturn(counters(now - 10_000, 1000, 10))
+        .thenReturn(counters(now, 1096, 14));
+    when(timeouts.onTick(any())).thenReturn(CompletableFuture.completedFuture(null));
+    when(retries.onTick(any())).thenReturn(CompletableFuture.completedFuture(null));
+    MetricsSnapshotService service = newService(List.of(timeouts, retries));
+
+    service.sample().join();
+    service.sample().join();
+    service.tick().join();
+
+    verify(armClient, times(2)).getCounterSamplesAsync(anyString());
+    ArgumentCaptor<MetricsSnapshot> seenByTimeouts = ArgumentCaptor.forClass(MetricsSnapshot.class);
+    ArgumentCaptor<MetricsSnapshot> seenByRetries = ArgumentCaptor.forClass(MetricsSnapshot.class);
+    verify(timeouts).onTick(seenByTimeouts.capture());
+    verify(retries).onTick(seenByRetries.capture());
+    MetricsSnapshot snapshot = seenByTimeouts.getValue();
+    assertThat(snapshot).isSameAs(seenByRetries.getValue());
+    assertThat(snapshot.requests("customers_route")).isEqualTo(100.0);
+    assertThat(snapshot.percent("customers_route", status -> status == 504)).isEqualTo(4.0);
+    assertThat(snapshot.window(300_000).requests("customers_route")).isEqualTo(100.0);
+  }
+
+  @Test
+  void tick_failingService_doesNotStopOthers() {
+    when(timeouts.onTick(any())).thenThrow(new IllegalStateException("boom"));
+    when(retries.onTick(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+    newService(List.of(timeouts, retries)).tick().join();
+
+    verify(retries).onTick(any());
+    verifyNoInteractions(armClient);
+  }
+
+  @Test
+  void sample_backfillsHistoryOnce_soFirstTickSeesTrend() {
+    PrometheusRange range = rangeOf("""
+        {"status":"success","data":{"resultType":"matrix","result":[
+          {"metric":{"routeId":"customers_route","httpStatusCode":"504"},
+           "values":[[1000,"0"],[1010,"1"],[1020,"3"],[1030,"6"],[1040,"10"]]}]}}
+        """);
+    when(armClient.getPrometheusRangeAsync(anyString(), any(), any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(range));
+    when(armClient.getCounterSamplesAsync(anyString())).thenReturn(
+        CompletableFuture.completedFuture(CounterSamples.empty()));
+    MetricsProperties props = new MetricsProperties();
+    props.setBackfill(true);
+    MetricsSnapshotService service = new MetricsSnapshotService(armClient, List.of(timeouts), props);
+
+    service.sample().join();
+    service.sample().join();
+
+    verify(armClient, times(1)).getPrometheusRangeAsync(anyString(), any(), any(), any());
+    verify(armClient, times(2)).getCounterSamplesAsync(anyString());
+  }
+
+  @Test
+  void tick_carriesLatencyBucketIncreases_whenHistogramSampled() {
+    long now = System.currentTimeMillis();
+    when(armClient.getCounterSamplesAsync(MetricsSnapshotService.COUNTERS_QUERY))
+        .thenReturn(counters(now - 10_000, 1000, 10))
+        .thenReturn(counters(now, 1096, 14));
+    when(armClient.getCounterSamplesAsync(MetricsSnapshotService.BUCKETS_QUERY))
+        .thenReturn(buckets(now - 10_000, 500, 1000))
+        .thenReturn(buckets(now, 560, 1100));
+    when(timeouts.onTick(any())).thenReturn(CompletableFuture.completedFuture(null));
+    MetricsProperties props = new MetricsProperties();
+    props.setBackfill(false);
+    props.setHistogram(true);
+    MetricsSnapshotService service = new MetricsSnapshotService(armClient, List.of(timeouts), props);
+
+    service.sample().join();
+    service.sample().join();
+    service.tick().join();
+
+    ArgumentCaptor<MetricsSnapshot> seen = ArgumentCaptor.forClass(MetricsSnapshot.class);
+    verify(timeouts).onTick(seen.capture());
+    LatencyBuckets latency = seen.getValue().latency();
+    assertThat(LatencyHistogram.count(latency, "customers_route")).isEqualTo(100.0);
+    assertThat(LatencyHistogram.quantileMillis(latency, "customers_route", 0.6)).isEqualTo(100.0);
+  }
+
+  @Test
+  void tick_servesWindowsBeyondTheHistory_fromTheLongHistory() {
+    long now = System.currentTimeMillis() / 1000;
+    PrometheusRange range = rangeOf("""
+        {"status":"success","data":{"resultType":"matrix","result":[
+          {"metric":{"routeId":"customers_route","httpStatusCode":"504"},
+           "values":[[%d,"0"],[%d,"40"],[%d,"50"],[%d,"55"],[%d,"60"]]}]}}
+        """.formatted(now - 3000, now - 1000, now - 30, now - 20, now - 10));
+    when(armClient.getPrometheusRangeAsync(anyString(), any(), any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(range));
+    when(armClient.getCounterSamplesAsync(anyString())).thenReturn(
+        CompletableFuture.completedFuture(CounterSamples.empty()));
+    when(timeouts.onTick(any())).thenReturn(CompletableFuture.completedFuture(null));
+    MetricsProperties props = new MetricsProperties();
+    props.setHistorySize(4);
+    props.setLongHistorySize(361);
+    props.setWindowsMs(List.of(60_000L, 21_600_000L));
+    MetricsSnapshotService service = new MetricsSnapshotService(armClient, List.of(timeouts), props);
+
+    service.sample().join();
+    service.tick().join();
+
+    // One range query per history, the live sample is shared
+    verify(armClient, times(2)).getPrometheusRangeAsync(anyString(), any(), any(), any());
+    verify(armClient, times(1)).getCounterSamplesAsync(anyString());
+    ArgumentCaptor<MetricsSnapshot> seen = ArgumentCaptor.forClass(MetricsSnapshot.class);
+    verify(timeouts).onTick(seen.capture());
+    assertThat(seen.getValue().window(21_600_000L).requests("customers_route")).isEqualTo(60.0);
+    assertThat(seen.getValue().window(60_000L).requests("customers_route")).isEqualTo(20.0);
+  }
+
+  private MetricsSnapshotService newService(List<PatternService> services) {
+    MetricsProperties props = new MetricsProperties();
+    props.setBackfill(false);
+    return new MetricsSnapshotService(armClient, services, props);
+  }
+
+  private static PrometheusRange rangeOf(String json) {
+    try (JsonParser parser = new JsonFactory().createParser(json)) {
+      return PrometheusRangeReader.read(parser);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Cumulative counts of the 100 ms and +Inf buckets
+  private static CompletableFuture<CounterSamples> buckets(long atMillis, double fast, double all) {
+    return CompletableFuture.completedFuture(CounterSamples.builder()
+        .add("customers_route", 100_000, "gw-1", atMillis, fast)
+        .add("customers_route", LatencyHistogram.INFINITE, "gw-1", atMillis, all)
+        .build());
+  }
+
+  private static CompletableFuture<CounterSamples> counters(long atMillis, double ok, double timedOut) {
+    return CompletableFuture.completedFuture(CounterSamples.builder()
+        .add("customers_route", 200, "gw-1", atMillis, ok)
+        .add("customers_route", 504, "gw-1", atMillis, timedOut)
+        .build());
+  }
+
+}
@@ -0,0 +1,73 @@
+package com.korovko.arm_controller.service;
+
+import com.korovko.arm_controller.config.ForecastProperties;
+import com.korovko.arm_controller.metrics.MetricsSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.function.IntToDoubleFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SeasonalForecastServiceTest {
+
+  private static final int SEASON = 24;
+  private static final long BUCKET_MS = Duration.ofMinutes(5).toMillis();
+
+  @Test
+  void inPeak_fromTheLeadTimeUntilTrafficIsBackDown() {
+    SeasonalForecastService service = trained(this::traffic);
+    long day = SEASON * 3L;
+
+    assertThat(service.inPeak("customers_route", (day + 14) * BUCKET_MS)).isFalse();
+    // 10 minutes ahead of bucket 17
+    assertThat(service.inPeak("customers_route", (day + 15) * BUCKET_MS)).isTrue();
+    for (int bucket = 16; bucket <= 20; bucket++) {
+      assertThat(service.inPeak("customers_route", (day + bucket) * BUCKET_MS)).as("bucket %d", bucket).isTrue();
+    }
+    assertThat(service.inPeak("customers_route", (day + 21) * BUCKET_MS)).isFalse();
+    assertThat(service.inPeak("unknown_route", (day + 15) * BUCKET_MS)).isFalse();
+  }
+
+  @Test
+  void inPeak_endsOnceThePeakHasPassed_evenWhenTrafficStaysAboveItsEarlierLevel() {
+    // Peaks over buckets 17..18, then settles at 140 for the rest of the season
+    SeasonalForecastService service = trained(bucket -> bucket < 17 ? 100.0 : bucket <= 18 ? 400.0 : 140.0);
+    long day = SEASON * 3L;
+
+    for (int bucket = 15; bucket <= 18; bucket++) {
+      assertThat(service.inPeak("customers_route", (day + bucket) * BUCKET_MS)).as("bucket %d", bucket).isTrue();
+    }
+    assertThat(service.inPeak("customers_route", (day + 19) * BUCKET_MS)).isFalse();
+  }
+
+  @Test
+  void inPeak_falseWhenForecastingIsOff() {
+    ForecastProperties props = new ForecastProperties();
+    props.setStateFile("");
+    SeasonalForecastService service = new SeasonalForecastService(props);
+
+    assertThat(service.inPeak("customers_route", 0)).isFalse();
+  }
+
+  private SeasonalForecastService trained(IntToDoubleFunction shape) {
+    ForecastProperties props = new ForecastProperties();
+    props.setEnabled(true);
+    props.setSeasonBuckets(SEASON);
+    props.setStateFile("");
+    SeasonalForecastService service = new SeasonalForecastService(props);
+    for (int bucket = 0; bucket < SEASON * 3; bucket++) {
+      MetricsSnapshot snapshot = MetricsSnapshot.builder()
+          .add("customers_route", 200, shape.applyAsDouble(bucket % SEASON))
+          .build();
+      service.observe(snapshot, bucket * BUCKET_MS);
+    }
+    return service;
+  }
+
+  // Flat 100 with a peak of 400 over buckets 17..20
+  private double traffic(int bucket) {
+    return bucket >= 17 && bucket <= 20 ? 400.0 : 100.0;
+  }
+
+}
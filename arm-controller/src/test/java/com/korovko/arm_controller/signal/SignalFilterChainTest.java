@@ -0,0 +1,66 @@
+package com.korovko.arm_controller.signal;
+
+import com.korovko.arm_controller.config.SignalFilterSettings;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class SignalFilterChainTest {
+
+  @Test
+  void ewma_seedsWithFirstValue_andSmoothsPerRoute() {
+    EwmaFilter ewma = new EwmaFilter(0.5, 4);
+
+    assertThat(ewma.apply(0, 10.0)).isEqualTo(10.0);
+    assertThat(ewma.apply(0, 20.0)).isEqualTo(15.0);
+    assertThat(ewma.apply(1, 2.0)).isEqualTo(2.0);
+    assertThat(ewma.apply(0, Double.NaN)).isNaN();
+    assertThat(ewma.apply(0, 15.0)).isEqualTo(15.0);
+  }
+
+  @Test
+  void rollingMedian_ignoresSingleSpike() {
+    RollingMedianFilter median = new RollingMedianFilter(3, 1);
+
+    median.apply(0, 1.0);
+    median.apply(0, 2.0);
+    assertThat(median.apply(0, 50.0)).isEqualTo(2.0);
+    assertThat(median.apply(0, 3.0)).isEqualTo(3.0);
+  }
+
+  @Test
+  void hampel_replacesOutlierWithMedian_butFollowsLastingShift() {
+    HampelFilter hampel = new HampelFilter(5, 3.0, 1);
+
+    for (double value : new double[] {4.0, 4.1, 3.9, 4.0}) {
+      assertThat(hampel.apply(0, value)).isEqualTo(value);
+    }
+    assertThat(hampel.apply(0, 9.0)).isEqualTo(4.0);
+
+    hampel.apply(0, 9.0);
+    assertThat(hampel.apply(0, 9.0)).isEqualTo(9.0);
+  }
+
+  @Test
+  void of_buildsConfiguredChainInOrder() {
+    SignalFilterSettings settings = new SignalFilterSettings();
+    settings.setChain(List.of("median", "EWMA"));
+    settings.setMedianWindow(3);
+    settings.setEwmaAlpha(0.5);
+    SignalFilterChain chain = SignalFilterChain.of(settings, 2);
+
+    chain.apply(1, 2.0);
+    chain.apply(1, 2.0);
+
+    assertThat(chain.apply(1, 40.0)).isCloseTo(2.0, within(1e-9));
+    assertThat(SignalFilterChain.of(null, 2).apply(0, 40.0)).isEqualTo(40.0);
+
+    settings.setChain(List.of("kalman"));
+    assertThatThrownBy(() -> SignalFilterChain.of(settings, 2)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+}
@@ -0,0 +1,98 @@
+package com.korovko.arm_controller.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RouteStateTableTest {
+
+  @Test
+  void intern_assignsDenseStableIndexes_andNewRoutesHaveNoValue() {
+    RouteStateTable routes = new RouteStateTable(4);
+
+    int a = routes.intern("a");
+    int b = routes.intern("b");
+
+    assertThat(a).isEqualTo(0);
+    assertThat(b).isEqualTo(1);
+    assertThat(routes.intern("a")).isEqualTo(a);
+    assertThat(routes.size()).isEqualTo(2);
+    assertThat(routes.routeId(b)).isEqualTo("b");
+    assertThat(routes.indexOf("missing")).isEqualTo(-1);
+
+    assertThat(routes.hasValue(a)).isFalse();
+    assertThat(routes.value("missing")).isEqualTo(RouteStateTable.NO_VALUE);
+    assertThat(routes.lastChangedAtMillis(a)).isZero();
+    assertThat(routes.stableGoodCount(a)).isZero();
+  }
+
+  @Test
+  void updates_areVisiblePerIndex() {
+    RouteStateTable routes = new RouteStateTable(4);
+    int idx = routes.intern("a");
+
+    routes.setValue(idx, 1200);
+    routes.setLastChangedAtMillis(idx, 42L);
+    routes.incrementStableGoodCount(idx);
+
+    assertThat(routes.value("a")).isEqualTo(1200);
+    assertThat(routes.lastChangedAtMillis(idx)).isEqualTo(42L);
+    assertThat(routes.incrementStableGoodCount(idx)).isEqualTo(2);
+
+    routes.resetStableGoodCount(idx);
+    assertThat(routes.stableGoodCount(idx)).isZero();
+  }
+
+  @Test
+  void intern_failsWhenFull() {
+    RouteStateTable routes = new RouteStateTable(1);
+    routes.intern("a");
+
+    assertThatThrownBy(() -> routes.intern("b")).isInstanceOf(IllegalStateException.class);
+    assertThat(routes.indexOf("b")).isEqualTo(-1);
+  }
+
+  @Test
+  void intern_givesConcurrentRoutesDistinctIndexes() throws Exception {
+    int threads = 8;
+    int perThread = 500;
+    RouteStateTable routes = new RouteStateTable(threads * perThread);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      futures.add(executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < perThread; i++) {
+          routes.intern("route-" + thread + "-" + i);
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertThat(routes.size()).isEqualTo(threads * perThread);
+    Set<String> seen = new HashSet<>();
+    for (int idx = 0; idx < routes.size(); idx++) {
+      assertThat(routes.indexOf(routes.routeId(idx))).isEqualTo(idx);
+      seen.add(routes.routeId(idx));
+    }
+    assertThat(seen).hasSize(threads * perThread);
+  }
+
+}
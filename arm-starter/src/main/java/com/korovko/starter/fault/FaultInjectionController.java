@@ -0,0 +1,46 @@
+package com.korovko.starter.fault;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/internal/faults")
+public class FaultInjectionController {
+
+    private final FaultInjectionStore store;
+
+    public FaultInjectionController(final FaultInjectionStore store) {
+        this.store = store;
+    }
+
+    @GetMapping
+    public Map<String, FaultSpec> getAll() {
+        return store.getAll();
+    }
+
+    @PostMapping("/{routeId}")
+    public ResponseEntity<Void> put(@PathVariable final String routeId, @RequestBody final FaultSpec spec) {
+        store.put(routeId, spec);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/{routeId}")
+    public ResponseEntity<Void> remove(@PathVariable final String routeId) {
+        store.remove(routeId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> clear() {
+        store.clear();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.korovko.starter.fault;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setAlreadyRouted;
+
+/**
+ * Injects the faults configured in {@link FaultInjectionStore}. Runs inside the route filters, so the
+ * TimeLimiter and DynamicRetry see injected faults like real upstream failures, but before the load
+ * balancer, so the faults are not held against any upstream instance.
+ */
+@Component
+public class FaultInjectionFilter implements GlobalFilter, Ordered {
+
+    public static final int ORDER = ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER - 1;
+
+    public static final String INJECTED_COUNTER = "arm.fault.injected";
+
+    private final FaultInjectionStore store;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, InjectedCounters> counters = new ConcurrentHashMap<>();
+
+    public FaultInjectionFilter(final FaultInjectionStore store, final MeterRegistry meterRegistry) {
+        this.store = store;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        if (store.isEmpty()) {
+            return chain.filter(exchange);
+        }
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        FaultSpec spec = route == null ? null : store.get(route.getId());
+        if (spec == null) {
+            return chain.filter(exchange);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        InjectedCounters injected = counters.computeIfAbsent(route.getId(), this::register);
+        Mono<Void> call;
+        if (random.nextDouble() < spec.resetRate()) {
+            injected.reset().increment();
+            call = Mono.error(new SocketException("Connection reset (injected fault)"));
+        } else if (random.nextDouble() < spec.abortRate()) {
+            injected.abort().increment();
+            call = Mono.fromRunnable(() -> {
+                setAlreadyRouted(exchange);
+                exchange.getResponse().setStatusCode(HttpStatusCode.valueOf(spec.abortStatus()));
+            });
+        } else {
+            call = chain.filter(exchange);
+        }
+
+        if (random.nextDouble() < spec.delayRate()) {
+            injected.delay().increment();
+            return Mono.delay(delay(spec, random)).then(call);
+        }
+        return call;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    private static Duration delay(final FaultSpec spec, final ThreadLocalRandom random) {
+        long min = spec.delayMin().toNanos();
+        long max = spec.delayMax().toNanos();
+        return Duration.ofNanos(max > min ? random.nextLong(min, max + 1) : min);
+    }
+
+    private InjectedCounters register(final String routeId) {
+        return new InjectedCounters(
+            meterRegistry.counter(INJECTED_COUNTER, "routeId", routeId, "type", "delay"),
+            meterRegistry.counter(INJECTED_COUNTER, "routeId", routeId, "type", "abort"),
+            meterRegistry.counter(INJECTED_COUNTER, "routeId", routeId, "type", "reset"));
+    }
+
+    /**
+     * Counters of one route, registered on its first request with faults so the request path only increments them.
+     */
+    private record InjectedCounters(Counter delay, Counter abort, Counter reset) {
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.korovko.starter.fault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Active faults by route. Copy-on-write: updates are rare, and the filter only needs one volatile read to
+ * find out that nothing is injected.
+ */
+@Component
+public class FaultInjectionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(FaultInjectionStore.class);
+
+    private volatile Map<String, FaultSpec> faults = Map.of();
+
+    public Map<String, FaultSpec> getAll() {
+        return faults;
+    }
+
+    public FaultSpec get(final String routeId) {
+        return faults.get(routeId);
+    }
+
+    public boolean isEmpty() {
+        return faults.isEmpty();
+    }
+
+    public synchronized void put(final String routeId, final FaultSpec spec) {
+        if (routeId == null || routeId.isEmpty()) {
+            throw new IllegalArgumentException("routeId must not be empty");
+        }
+        Map<String, FaultSpec> next = new HashMap<>(faults);
+        next.put(routeId, spec);
+        faults = Map.copyOf(next);
+        log.warn("Injecting faults into [{}]: {}", routeId, spec);
+    }
+
+    public synchronized void remove(final String routeId) {
+        if (!faults.containsKey(routeId)) {
+            return;
+        }
+        Map<String, FaultSpec> next = new HashMap<>(faults);
+        next.remove(routeId);
+        faults = Map.copyOf(next);
+        log.info("Stopped injecting faults into [{}]", routeId);
+    }
+
+    public synchronized void clear() {
+        faults = Map.of();
+        log.info("Stopped injecting faults into all routes");
+    }
+
+}
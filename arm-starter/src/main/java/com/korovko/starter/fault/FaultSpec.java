@@ -0,0 +1,48 @@
+package com.korovko.starter.fault;
+
+import java.time.Duration;
+
+/**
+ * Faults injected into the requests of a route. Each rate is the share of requests, in [0, 1], that get
+ * the fault; delay, abort and reset are rolled independently, abort and reset replace the upstream call.
+ *
+ * @param delayRate   share of requests delayed before they are sent upstream
+ * @param delayMin    lower bound of the injected delay
+ * @param delayMax    upper bound of the injected delay, the delay is uniform between the two bounds
+ * @param abortRate   share of requests answered with {@code abortStatus} without calling the upstream
+ * @param abortStatus status returned for aborted requests
+ * @param resetRate   share of requests failed with a connection reset
+ */
+public record FaultSpec(
+    double delayRate,
+    Duration delayMin,
+    Duration delayMax,
+    double abortRate,
+    int abortStatus,
+    double resetRate
+) {
+
+    public FaultSpec {
+        requireRate(delayRate, "delayRate");
+        requireRate(abortRate, "abortRate");
+        requireRate(resetRate, "resetRate");
+        if (delayRate > 0) {
+            if (delayMin == null || delayMin.isNegative()) {
+                throw new IllegalArgumentException("delayMin must be >= 0");
+            }
+            if (delayMax == null || delayMax.compareTo(delayMin) < 0) {
+                throw new IllegalArgumentException("delayMax must be >= delayMin");
+            }
+        }
+        if (abortRate > 0 && (abortStatus < 400 || abortStatus > 599)) {
+            throw new IllegalArgumentException("abortStatus must be a 4xx or 5xx status");
+        }
+    }
+
+    private static void requireRate(final double rate, final String name) {
+        if (!(rate >= 0.0 && rate <= 1.0)) {
+            throw new IllegalArgumentException(name + " must be in [0, 1]");
+        }
+    }
+
+}
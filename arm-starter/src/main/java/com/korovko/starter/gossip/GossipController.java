@@ -0,0 +1,46 @@
+package com.korovko.starter.gossip;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/internal/gossip")
+public class GossipController {
+
+    private final PolicyGossip gossip;
+    private final GossipProperties properties;
+
+    public GossipController(final PolicyGossip gossip, final GossipProperties properties) {
+        this.gossip = gossip;
+        this.properties = properties;
+    }
+
+    @GetMapping
+    public Map<String, GossipEntry> getAll() {
+        return gossip.entries();
+    }
+
+    @PostMapping("/digest")
+    public ResponseEntity<GossipReply> digest(@RequestBody final GossipDigest digest) {
+        if (!properties.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(gossip.onDigest(digest));
+    }
+
+    @PostMapping("/entries")
+    public ResponseEntity<Void> entries(@RequestBody final List<GossipEntry> entries) {
+        if (!properties.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        gossip.onEntries(entries);
+        return ResponseEntity.noContent().build();
+    }
+}
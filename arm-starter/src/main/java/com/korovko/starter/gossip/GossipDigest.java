@@ -0,0 +1,11 @@
+package com.korovko.starter.gossip;
+
+import java.util.Map;
+
+/**
+ * Summary of a replica's policies: an order-independent hash to detect "nothing to do" cheaply and the
+ * version of every policy key to compute the difference otherwise. A round opens with the hash alone
+ * ({@code versions == null}); the versions follow only when the peer's hash differs.
+ */
+public record GossipDigest(String nodeId, long hash, Map<String, GossipVersion> versions) {
+}
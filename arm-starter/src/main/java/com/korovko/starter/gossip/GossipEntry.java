@@ -0,0 +1,21 @@
+package com.korovko.starter.gossip;
+
+import com.korovko.starter.retry.RetryPolicy;
+
+/**
+ * Latest known change of one policy: the retry policy or the timeout of a route.
+ */
+public record GossipEntry(Kind kind, String routeId, RetryPolicy retryPolicy, Long timeoutMs,
+                          GossipVersion version) {
+
+    public enum Kind { RETRY, TIMEOUT }
+
+    public static String key(final Kind kind, final String routeId) {
+        return kind + ":" + routeId;
+    }
+
+    public String key() {
+        return key(kind, routeId);
+    }
+
+}
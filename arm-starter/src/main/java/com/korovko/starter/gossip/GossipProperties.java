@@ -0,0 +1,69 @@
+package com.korovko.starter.gossip;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Configuration
+@ConfigurationProperties(prefix = "arm.gossip")
+public class GossipProperties {
+
+    private boolean enabled = false;
+    private String nodeId = UUID.randomUUID().toString();
+    private List<String> peers = new ArrayList<>();
+    private long intervalMs = 1000;
+    private int fanout = 2;
+    private long timeoutMs = 500;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public List<String> getPeers() {
+        return peers;
+    }
+
+    public void setPeers(List<String> peers) {
+        this.peers = peers;
+    }
+
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    public void setIntervalMs(long intervalMs) {
+        this.intervalMs = intervalMs;
+    }
+
+    public int getFanout() {
+        return fanout;
+    }
+
+    public void setFanout(int fanout) {
+        this.fanout = fanout;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public void setTimeoutMs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+}
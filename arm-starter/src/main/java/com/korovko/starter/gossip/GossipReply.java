@@ -0,0 +1,20 @@
+package com.korovko.starter.gossip;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Answer to a {@link GossipDigest}: entries the sender is missing and keys the receiver wants back, or,
+ * for a hash-only digest that does not match, a request to send the versions.
+ */
+public record GossipReply(List<GossipEntry> newer, Set<String> wanted, boolean versionsNeeded) {
+
+    public static GossipReply empty() {
+        return new GossipReply(List.of(), Set.of(), false);
+    }
+
+    public static GossipReply needVersions() {
+        return new GossipReply(List.of(), Set.of(), true);
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.korovko.starter.gossip;
+
+import java.util.List;
+
+public interface GossipTransport {
+
+    GossipReply exchange(String peer, GossipDigest digest);
+
+    void push(String peer, List<GossipEntry> entries);
+
+}
@@ -0,0 +1,58 @@
+package com.korovko.starter.gossip;
+
+/**
+ * Version of a policy change. A change the controller decided carries the desired-state {@code epoch} and
+ * {@code stateVersion} it was published under, and those order it: the controller already serialized its
+ * decisions, so replicas must not reorder them by when they happened to hear about them. Epochs are
+ * time-prefixed, so a restarted controller's decisions order after the previous run's. A {@code manual}
+ * change is stamped with the controller state it overrides, so it wins over that state and loses to the
+ * next decision; manual changes made before any decision carry no epoch and order before all of them.
+ * Within the same state the Lamport {@code clock} decides and the origin node id breaks the remaining
+ * ties, so every replica picks the same winner.
+ */
+public record GossipVersion(long clock, String origin, String epoch, long stateVersion, boolean manual) {
+
+    public GossipVersion(final long clock, final String origin) {
+        this(clock, origin, null, 0, true);
+    }
+
+    public boolean isNewerThan(final GossipVersion other) {
+        if (other == null) {
+            return true;
+        }
+        int byState = compareState(other);
+        if (byState != 0) {
+            return byState > 0;
+        }
+        if (clock != other.clock) {
+            return clock > other.clock;
+        }
+        return origin.compareTo(other.origin) > 0;
+    }
+
+    /**
+     * Whether the version carries controller state, either as the decision itself or as the state a manual
+     * change overrides.
+     */
+    public boolean isControllerDecision() {
+        return epoch != null;
+    }
+
+    private int compareState(final GossipVersion other) {
+        if (isControllerDecision() != other.isControllerDecision()) {
+            return isControllerDecision() ? 1 : -1;
+        }
+        if (!isControllerDecision()) {
+            return 0;
+        }
+        int byEpoch = epoch.compareTo(other.epoch);
+        if (byEpoch != 0) {
+            return byEpoch;
+        }
+        if (stateVersion != other.stateVersion) {
+            return Long.compare(stateVersion, other.stateVersion);
+        }
+        return Boolean.compare(manual, other.manual);
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.korovko.starter.gossip;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Talks to the {@link GossipController} of a peer; peers are base URLs such as {@code http://10.0.0.2:8080}.
+ * Called from the gossip thread only, so blocking with a short timeout is fine.
+ */
+@Component
+public class HttpGossipTransport implements GossipTransport {
+
+    private final WebClient webClient;
+    private final GossipProperties properties;
+
+    public HttpGossipTransport(final WebClient.Builder builder, final GossipProperties properties) {
+        this.webClient = builder.build();
+        this.properties = properties;
+    }
+
+    @Override
+    public GossipReply exchange(final String peer, final GossipDigest digest) {
+        return webClient.post()
+            .uri(peer + "/internal/gossip/digest")
+            .bodyValue(digest)
+            .retrieve()
+            .bodyToMono(GossipReply.class)
+            .block(Duration.ofMillis(properties.getTimeoutMs()));
+    }
+
+    @Override
+    public void push(final String peer, final List<GossipEntry> entries) {
+        webClient.post()
+            .uri(peer + "/internal/gossip/entries")
+            .bodyValue(entries)
+            .retrieve()
+            .toBodilessEntity()
+            .block(Duration.ofMillis(properties.getTimeoutMs()));
+    }
+
+}
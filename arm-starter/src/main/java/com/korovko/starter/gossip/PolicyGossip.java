@@ -0,0 +1,283 @@
+package com.korovko.starter.gossip;
+
+import com.korovko.starter.retry.RetryPolicy;
+import com.korovko.starter.retry.RetryPolicyStore;
+import com.korovko.starter.timeout.DynamicTimeoutUpdater;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads retry and timeout changes among gateway replicas, so a controller update sent to one replica
+ * reaches all of them. A local change is pushed to a few random peers right away; on top of that every
+ * replica runs a periodic anti-entropy round with a random peer: the digest hashes are compared first, and
+ * only when they differ are the versions exchanged, followed by the entries one side is missing. Conflicts
+ * resolve by {@link GossipVersion}, the same way on every replica. Entries that could not be applied (a
+ * retry change without a policy, a timeout change without a positive timeout) are dropped on arrival.
+ */
+@Component
+public class PolicyGossip {
+
+    private static final Logger log = LoggerFactory.getLogger(PolicyGossip.class);
+
+    private final GossipProperties properties;
+    private final RetryPolicyStore retryStore;
+    private final DynamicTimeoutUpdater timeoutUpdater;
+    private final GossipTransport transport;
+
+    private final Map<String, GossipEntry> entries = new ConcurrentHashMap<>();
+    private long clock;
+    private ScheduledExecutorService executor;
+
+    public PolicyGossip(final GossipProperties properties, final RetryPolicyStore retryStore,
+                        final DynamicTimeoutUpdater timeoutUpdater, final GossipTransport transport) {
+        this.properties = properties;
+        this.retryStore = retryStore;
+        this.timeoutUpdater = timeoutUpdater;
+        this.transport = transport;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled() || properties.getPeers().isEmpty()) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "arm-gossip");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::safeRound, properties.getIntervalMs(), properties.getIntervalMs(),
+            TimeUnit.MILLISECONDS);
+        log.info("Gossip [{}] started with peers {}", properties.getNodeId(), properties.getPeers());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public void publishRetry(final String routeId, final RetryPolicy policy) {
+        publishRetry(routeId, policy, null, 0);
+    }
+
+    /**
+     * Publishes a retry change; {@code epoch} and {@code stateVersion} identify the controller decision it
+     * comes from, a null epoch marks a manual change, which overrides the current controller decision.
+     */
+    public void publishRetry(final String routeId, final RetryPolicy policy, final String epoch,
+                             final long stateVersion) {
+        publish(GossipEntry.Kind.RETRY, routeId, policy, null, epoch, stateVersion);
+    }
+
+    public void publishTimeout(final String routeId, final long timeoutMs) {
+        publishTimeout(routeId, timeoutMs, null, 0);
+    }
+
+    public void publishTimeout(final String routeId, final long timeoutMs, final String epoch,
+                               final long stateVersion) {
+        publish(GossipEntry.Kind.TIMEOUT, routeId, null, timeoutMs, epoch, stateVersion);
+    }
+
+    public Map<String, GossipEntry> entries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    public GossipDigest digest() {
+        Map<String, GossipVersion> versions = currentVersions();
+        return new GossipDigest(properties.getNodeId(), hash(versions), versions);
+    }
+
+    public GossipReply onDigest(final GossipDigest remote) {
+        if (remote.hash() == hash(currentVersions())) {
+            return GossipReply.empty();
+        }
+        if (remote.versions() == null) {
+            return GossipReply.needVersions();
+        }
+        Map<String, GossipVersion> remoteVersions = remote.versions();
+        List<GossipEntry> newer = new ArrayList<>();
+        for (GossipEntry entry : entries.values()) {
+            if (entry.version().isNewerThan(remoteVersions.get(entry.key()))) {
+                newer.add(entry);
+            }
+        }
+        Set<String> wanted = new HashSet<>();
+        remoteVersions.forEach((key, version) -> {
+            GossipEntry local = entries.get(key);
+            if (local == null || version.isNewerThan(local.version())) {
+                wanted.add(key);
+            }
+        });
+        return new GossipReply(newer, wanted, false);
+    }
+
+    public void onEntries(final List<GossipEntry> remoteEntries) {
+        if (remoteEntries != null) {
+            remoteEntries.forEach(this::merge);
+        }
+    }
+
+    /**
+     * One anti-entropy round with a random peer.
+     */
+    public void gossipRound() {
+        List<String> peers = properties.getPeers();
+        if (peers.isEmpty()) {
+            return;
+        }
+        syncWith(peers.get(ThreadLocalRandom.current().nextInt(peers.size())));
+    }
+
+    void syncWith(final String peer) {
+        GossipReply reply = transport.exchange(peer,
+            new GossipDigest(properties.getNodeId(), hash(currentVersions()), null));
+        if (reply != null && reply.versionsNeeded()) {
+            reply = transport.exchange(peer, digest());
+        }
+        if (reply == null) {
+            return;
+        }
+        onEntries(reply.newer());
+        if (reply.wanted() != null && !reply.wanted().isEmpty()) {
+            List<GossipEntry> wanted = new ArrayList<>();
+            for (String key : reply.wanted()) {
+                GossipEntry entry = entries.get(key);
+                if (entry != null) {
+                    wanted.add(entry);
+                }
+            }
+            transport.push(peer, wanted);
+        }
+    }
+
+    /**
+     * Keeps the entry if it is newer than the known one and applies it to the local stores.
+     */
+    synchronized boolean merge(final GossipEntry entry) {
+        if (!isValid(entry)) {
+            log.debug("Dropping invalid gossip entry {}", entry);
+            return false;
+        }
+        GossipEntry current = entries.get(entry.key());
+        if (current != null && !entry.version().isNewerThan(current.version())) {
+            return false;
+        }
+        apply(entry);
+        entries.put(entry.key(), entry);
+        clock = Math.max(clock, entry.version().clock());
+        return true;
+    }
+
+    private void publish(final GossipEntry.Kind kind, final String routeId, final RetryPolicy policy,
+                         final Long timeoutMs, final String epoch, final long stateVersion) {
+        GossipEntry entry;
+        synchronized (this) {
+            GossipVersion version;
+            GossipEntry current = entries.get(GossipEntry.key(kind, routeId));
+            if (epoch != null) {
+                version = new GossipVersion(clock + 1, properties.getNodeId(), epoch, stateVersion, false);
+            } else if (current != null) {
+                GossipVersion overridden = current.version();
+                version = new GossipVersion(clock + 1, properties.getNodeId(), overridden.epoch(),
+                    overridden.stateVersion(), true);
+            } else {
+                version = new GossipVersion(clock + 1, properties.getNodeId());
+            }
+            entry = new GossipEntry(kind, routeId, policy, timeoutMs, version);
+            if (!merge(entry)) {
+                return;
+            }
+        }
+        ScheduledExecutorService running = executor;
+        if (running != null) {
+            running.execute(() -> rumor(entry));
+        }
+    }
+
+    private void rumor(final GossipEntry entry) {
+        List<String> peers = new ArrayList<>(properties.getPeers());
+        Collections.shuffle(peers);
+        for (String peer : peers.subList(0, Math.min(properties.getFanout(), peers.size()))) {
+            try {
+                transport.push(peer, List.of(entry));
+            } catch (RuntimeException e) {
+                log.debug("Gossip push to {} failed: {}", peer, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Applies the entry to the local stores unless they already run its value.
+     */
+    private void apply(final GossipEntry entry) {
+        if (entry.kind() == GossipEntry.Kind.RETRY) {
+            if (!Objects.equals(retryStore.getAll().get(entry.routeId()), entry.retryPolicy())) {
+                retryStore.upsert(entry.routeId(), entry.retryPolicy());
+            }
+        } else if (timeoutUpdater.timeoutMs(entry.routeId()) != entry.timeoutMs()) {
+            timeoutUpdater.updateTimeout(entry.routeId(), entry.timeoutMs(), true);
+        }
+    }
+
+    private static boolean isValid(final GossipEntry entry) {
+        if (entry == null || entry.kind() == null || entry.routeId() == null || entry.routeId().isEmpty()) {
+            return false;
+        }
+        GossipVersion version = entry.version();
+        if (version == null || version.origin() == null) {
+            return false;
+        }
+        if (entry.kind() == GossipEntry.Kind.RETRY) {
+            return entry.retryPolicy() != null;
+        }
+        return entry.timeoutMs() != null && entry.timeoutMs() > 0;
+    }
+
+    private void safeRound() {
+        try {
+            gossipRound();
+        } catch (RuntimeException e) {
+            log.debug("Gossip round failed: {}", e.getMessage());
+        }
+    }
+
+    private Map<String, GossipVersion> currentVersions() {
+        Map<String, GossipVersion> versions = new HashMap<>();
+        entries.forEach((key, entry) -> versions.put(key, entry.version()));
+        return versions;
+    }
+
+    private static long hash(final Map<String, GossipVersion> versions) {
+        long hash = 0;
+        for (Map.Entry<String, GossipVersion> e : versions.entrySet()) {
+            long h = e.getKey().hashCode();
+            h = h * 31 + Long.hashCode(e.getValue().clock());
+            h = h * 31 + e.getValue().origin().hashCode();
+            h = h * 31 + Objects.hashCode(e.getValue().epoch());
+            h = h * 31 + Long.hashCode(e.getValue().stateVersion());
+            h = h * 31 + Boolean.hashCode(e.getValue().manual());
+            hash += h * 0x9E3779B97F4A7C15L;
+        }
+        return hash;
+    }
+
+}
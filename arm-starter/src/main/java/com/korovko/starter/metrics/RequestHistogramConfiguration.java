@@ -0,0 +1,35 @@
+package com.korovko.starter.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Publishes percentile histogram buckets for the gateway's request timer, so the controller can read
+ * latency quantiles from {@code spring_cloud_gateway_requests_seconds_bucket} (its
+ * {@code dynamic.metrics.histogram} mode). Turned off with {@code arm.metrics.request-histogram=false}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "arm.metrics", name = "request-histogram", havingValue = "true",
+    matchIfMissing = true)
+public class RequestHistogramConfiguration {
+
+    public static final String GATEWAY_REQUESTS = "spring.cloud.gateway.requests";
+
+    @Bean
+    public MeterFilter gatewayRequestHistogram() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(final Meter.Id id, final DistributionStatisticConfig config) {
+                if (!GATEWAY_REQUESTS.equals(id.getName())) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+            }
+        };
+    }
+
+}
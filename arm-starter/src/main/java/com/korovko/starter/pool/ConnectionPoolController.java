@@ -0,0 +1,46 @@
+package com.korovko.starter.pool;
+
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/internal/resilience/connection-pools")
+public class ConnectionPoolController {
+
+    private final RouteConnectionPools pools;
+    private final HttpClientProperties httpClientProperties;
+
+    public ConnectionPoolController(final RouteConnectionPools pools,
+                                    final HttpClientProperties httpClientProperties) {
+        this.pools = pools;
+        this.httpClientProperties = httpClientProperties;
+    }
+
+    @GetMapping
+    public Map<String, RoutePoolStats> getAll() {
+        return pools.stats();
+    }
+
+    /**
+     * Settings of the gateway's shared client, the starting point of a route's dedicated pool.
+     */
+    @GetMapping("/defaults")
+    public RoutePoolSettings defaults() {
+        return RoutePoolSettings.of(httpClientProperties);
+    }
+
+    @PostMapping("/{routeId}")
+    public ResponseEntity<Void> update(@PathVariable final String routeId,
+                                       @RequestBody final RoutePoolSettings settings) {
+        pools.update(routeId, settings);
+        return ResponseEntity.noContent().build();
+    }
+}
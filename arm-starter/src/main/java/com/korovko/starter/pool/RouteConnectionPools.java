@@ -0,0 +1,129 @@
+package com.korovko.starter.pool;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dedicated Reactor Netty connection pool per route. Changing the settings of a route builds a new pool
+ * and client; requests already running on the previous pool get a grace period before it is disposed.
+ * Routes without settings keep using the gateway's shared client.
+ */
+@Component
+public class RouteConnectionPools {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteConnectionPools.class);
+
+    private static final Duration MIN_DISPOSE_GRACE = Duration.ofSeconds(30);
+
+    private final Map<String, RoutePool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the client of the route's dedicated pool, or null when the route uses the shared client.
+     */
+    public HttpClient client(final String routeId) {
+        RoutePool pool = pools.get(routeId);
+        return pool == null ? null : pool.client;
+    }
+
+    public void update(final String routeId, final RoutePoolSettings settings) {
+        if (routeId == null || routeId.isEmpty()) {
+            throw new IllegalArgumentException("routeId must not be empty");
+        }
+        RoutePool[] replaced = new RoutePool[1];
+        pools.compute(routeId, (id, existing) -> {
+            replaced[0] = existing;
+            return build(id, settings, existing == null ? 1 : existing.version + 1);
+        });
+        if (replaced[0] != null) {
+            disposeLater(routeId, replaced[0]);
+        }
+        log.info("Updated connection pool [{}]: {}", routeId, settings);
+    }
+
+    public Map<String, RoutePoolStats> stats() {
+        Map<String, RoutePoolStats> result = new TreeMap<>();
+        pools.forEach((routeId, pool) -> result.put(routeId, pool.stats()));
+        return result;
+    }
+
+    @PreDestroy
+    public void dispose() {
+        pools.values().forEach(pool -> pool.provider.dispose());
+        pools.clear();
+    }
+
+    private static RoutePool build(final String routeId, final RoutePoolSettings settings, final long version) {
+        Map<String, ConnectionPoolMetrics> metrics = new ConcurrentHashMap<>();
+        ConnectionProvider.Builder builder = ConnectionProvider.builder("arm-" + routeId + "-v" + version)
+            .maxConnections(settings.maxConnections())
+            .pendingAcquireMaxCount(settings.pendingAcquireMaxCount())
+            .pendingAcquireTimeout(settings.pendingAcquireTimeout());
+        if (settings.maxIdleTime() != null) {
+            builder.maxIdleTime(settings.maxIdleTime());
+        }
+        ConnectionProvider provider = builder
+            .metrics(true, () -> new ConnectionProvider.MeterRegistrar() {
+                @Override
+                public void registerMetrics(final String poolName, final String id,
+                                            final SocketAddress remoteAddress,
+                                            final ConnectionPoolMetrics poolMetrics) {
+                    metrics.put(id, poolMetrics);
+                }
+
+                @Override
+                public void deRegisterMetrics(final String poolName, final String id,
+                                              final SocketAddress remoteAddress) {
+                    metrics.remove(id);
+                }
+            })
+            .build();
+        HttpClient client = HttpClient.create(provider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.connectTimeout().toMillis());
+        if (settings.responseTimeout() != null) {
+            client = client.responseTimeout(settings.responseTimeout());
+        }
+        return new RoutePool(settings, version, provider, client, metrics);
+    }
+
+    private static void disposeLater(final String routeId, final RoutePool pool) {
+        Duration responseTimeout = pool.settings.responseTimeout();
+        Duration grace = responseTimeout != null && responseTimeout.compareTo(MIN_DISPOSE_GRACE) > 0
+            ? responseTimeout
+            : MIN_DISPOSE_GRACE;
+        Mono.delay(grace)
+            .then(pool.provider.disposeLater())
+            .subscribe(null, e -> log.warn("Failed to dispose connection pool [{}] v{}: {}",
+                routeId, pool.version, e.getMessage()));
+    }
+
+    private record RoutePool(RoutePoolSettings settings, long version, ConnectionProvider provider,
+                             HttpClient client, Map<String, ConnectionPoolMetrics> metrics) {
+
+        private RoutePoolStats stats() {
+            int acquired = 0;
+            int idle = 0;
+            int pending = 0;
+            for (ConnectionPoolMetrics m : metrics.values()) {
+                acquired += m.acquiredSize();
+                idle += m.idleSize();
+                pending += m.pendingAcquireSize();
+            }
+            return new RoutePoolStats(settings, version, acquired, idle, pending);
+        }
+
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.korovko.starter.pool;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.List;
+
+/**
+ * Routing filter that sends a route's requests through its dedicated pool from {@link RouteConnectionPools}.
+ * Ordered just before the stock {@link NettyRoutingFilter}, which then sees the exchange as already routed.
+ */
+@Component
+public class RoutePoolRoutingFilter extends NettyRoutingFilter {
+
+    private final RouteConnectionPools pools;
+
+    public RoutePoolRoutingFilter(final HttpClient httpClient,
+                                  final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+                                  final HttpClientProperties properties,
+                                  final RouteConnectionPools pools) {
+        super(httpClient, headersFiltersProvider, properties);
+        this.pools = pools;
+    }
+
+    @Override
+    protected HttpClient getHttpClient(final Route route, final ServerWebExchange exchange) {
+        HttpClient pooled = pools.client(route.getId());
+        return pooled != null ? pooled : super.getHttpClient(route, exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER - 1;
+    }
+
+}
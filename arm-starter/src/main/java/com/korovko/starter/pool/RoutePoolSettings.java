@@ -0,0 +1,90 @@
+package com.korovko.starter.pool;
+
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Upstream connection pool and timeouts of a single route.
+ *
+ * @param maxConnections         connections the route may open to each upstream address
+ * @param pendingAcquireMaxCount requests allowed to wait for a free connection to an address
+ * @param pendingAcquireTimeout  how long a request may wait for a free connection
+ * @param maxIdleTime            idle connections older than this are closed; null keeps them open
+ * @param connectTimeout         TCP connect timeout
+ * @param responseTimeout        time to wait for the upstream response after the request was sent; null waits
+ *                               as long as the route timeout allows
+ */
+public record RoutePoolSettings(
+    int maxConnections,
+    int pendingAcquireMaxCount,
+    Duration pendingAcquireTimeout,
+    Duration maxIdleTime,
+    Duration connectTimeout,
+    Duration responseTimeout
+) {
+
+    // Netty's own CONNECT_TIMEOUT_MILLIS default
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 30_000;
+
+    public RoutePoolSettings {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be >= 1");
+        }
+        if (pendingAcquireMaxCount < 1) {
+            throw new IllegalArgumentException("pendingAcquireMaxCount must be >= 1");
+        }
+        requirePositive(pendingAcquireTimeout, "pendingAcquireTimeout");
+        if (maxIdleTime != null) {
+            requirePositive(maxIdleTime, "maxIdleTime");
+        }
+        requirePositive(connectTimeout, "connectTimeout");
+        if (responseTimeout != null) {
+            requirePositive(responseTimeout, "responseTimeout");
+        }
+        if (connectTimeout.toMillis() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("connectTimeout is too large");
+        }
+    }
+
+    /**
+     * Settings of the gateway's shared client ({@code spring.cloud.gateway.httpclient.*}), with Reactor Netty's
+     * defaults for whatever is not configured there. A route seeded with these behaves like it did on the
+     * shared pool until the controller sees a reason to grow it.
+     */
+    public static RoutePoolSettings of(final HttpClientProperties properties) {
+        HttpClientProperties.Pool pool = properties.getPool();
+        int maxConnections;
+        if (pool.getType() != HttpClientProperties.Pool.PoolType.FIXED) {
+            // Elastic (and disabled) pools open a connection whenever none is free
+            maxConnections = Integer.MAX_VALUE;
+        } else {
+            maxConnections = pool.getMaxConnections() != null
+                ? pool.getMaxConnections()
+                : ConnectionProvider.DEFAULT_POOL_MAX_CONNECTIONS;
+        }
+        long acquireTimeoutMs = pool.getAcquireTimeout() != null
+            ? pool.getAcquireTimeout()
+            : ConnectionProvider.DEFAULT_POOL_ACQUIRE_TIMEOUT;
+        int connectTimeoutMs = properties.getConnectTimeout() != null
+            ? properties.getConnectTimeout()
+            : DEFAULT_CONNECT_TIMEOUT_MS;
+        return new RoutePoolSettings(
+            maxConnections,
+            // Reactor Netty lets twice the pool size wait for a connection by default
+            maxConnections > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : 2 * maxConnections,
+            Duration.ofMillis(acquireTimeoutMs),
+            pool.getMaxIdleTime(),
+            Duration.ofMillis(connectTimeoutMs),
+            properties.getResponseTimeout()
+        );
+    }
+
+    private static void requirePositive(final Duration value, final String name) {
+        if (value == null || value.isNegative() || value.isZero()) {
+            throw new IllegalArgumentException(name + " must be > 0");
+        }
+    }
+
+}
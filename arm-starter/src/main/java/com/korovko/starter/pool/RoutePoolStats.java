@@ -0,0 +1,13 @@
+package com.korovko.starter.pool;
+
+/**
+ * Current settings and usage of a route's connection pool, summed over all upstream addresses.
+ */
+public record RoutePoolStats(
+    RoutePoolSettings settings,
+    long version,
+    int acquired,
+    int idle,
+    int pendingAcquire
+) {
+}
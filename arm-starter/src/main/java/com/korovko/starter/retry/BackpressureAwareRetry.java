@@ -0,0 +1,161 @@
+package com.korovko.starter.retry;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.RetryGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Retry/repeat filter of one {@link RetryPolicy} version. Runs the same attempt loop as the stock
+ * {@link RetryGatewayFilterFactory} but with its own backoff:
+ * <ul>
+ *     <li>the exponential delay is jittered ({@code jitter = 1} is full jitter),</li>
+ *     <li>{@code Retry-After} is honored and never exceeds the time left for the request,</li>
+ *     <li>no retries are made while the upstream signals overload (429, or 503 with {@code Retry-After}).</li>
+ * </ul>
+ */
+final class BackpressureAwareRetry {
+
+    private static final long NO_REPEAT = Long.MIN_VALUE;
+
+    private final RetryPolicy policy;
+    private final RetryBackoff backoff;
+    private final RetryGatewayFilterFactory.RetryConfig config;
+    private final RetryGatewayFilterFactory delegate;
+    private final UpstreamPressure pressure;
+    private final ToLongFunction<ServerWebExchange> remainingMs;
+
+    BackpressureAwareRetry(final RetryPolicy policy, final RetryGatewayFilterFactory.RetryConfig config,
+                           final RetryGatewayFilterFactory delegate, final UpstreamPressure pressure,
+                           final ToLongFunction<ServerWebExchange> remainingMs) {
+        this.policy = policy;
+        this.backoff = new RetryBackoff(policy);
+        this.config = config;
+        this.delegate = delegate;
+        this.pressure = pressure;
+        this.remainingMs = remainingMs;
+    }
+
+    GatewayFilter toFilter() {
+        return (exchange, chain) -> {
+            AtomicLong previousDelayMs = new AtomicLong();
+            return Mono.defer(() -> chain.filter(exchange))
+                .doOnSuccess(ignored -> updateIteration(exchange))
+                .doOnError(ignored -> updateIteration(exchange))
+                .retryWhen(Retry.from(signals -> signals.concatMap(signal -> shouldRetry(exchange, signal.failure())
+                    ? pause(exchange, previousDelayMs, RetryAfter.ABSENT)
+                    : Mono.error(signal.failure()))))
+                .repeatWhen(completions -> completions
+                    .map(ignored -> repeatAfterMs(exchange))
+                    .takeWhile(retryAfterMs -> retryAfterMs != NO_REPEAT)
+                    .concatMap(retryAfterMs -> pause(exchange, previousDelayMs, retryAfterMs)))
+                .then();
+        };
+    }
+
+    /**
+     * Returns the upstream {@code Retry-After} (or {@link RetryAfter#ABSENT}) when the response should be
+     * repeated, {@link #NO_REPEAT} otherwise.
+     */
+    private long repeatAfterMs(final ServerWebExchange exchange) {
+        if (delegate.exceedsMaxIterations(exchange, config)) {
+            return NO_REPEAT;
+        }
+
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        long retryAfterMs = RetryAfter.ABSENT;
+        if (policy.honorRetryAfter()) {
+            retryAfterMs = retryAfterMs(exchange);
+            pressure.observe(status, retryAfterMs, policy.maxBackoff().toMillis());
+        }
+
+        if (status == null || !isRetryableStatus(status) || !isRetryableMethod(exchange)) {
+            return NO_REPEAT;
+        }
+        if (retryAfterMs >= 0) {
+            // The upstream said when to come back: do it only if the request can still wait that long
+            return backoff.canWait(retryAfterMs, remainingMs.applyAsLong(exchange)) ? retryAfterMs : NO_REPEAT;
+        }
+        return policy.honorRetryAfter() && pressure.isOverloaded() ? NO_REPEAT : RetryAfter.ABSENT;
+    }
+
+    private boolean shouldRetry(final ServerWebExchange exchange, final Throwable exception) {
+        if (delegate.exceedsMaxIterations(exchange, config)) {
+            return false;
+        }
+        if (!isRetryableException(exception) || !isRetryableMethod(exchange)) {
+            return false;
+        }
+        return !(policy.honorRetryAfter() && pressure.isOverloaded());
+    }
+
+    private Mono<Long> pause(final ServerWebExchange exchange, final AtomicLong previousDelayMs,
+                             final long retryAfterMs) {
+        Integer iteration = exchange.getAttribute(RetryGatewayFilterFactory.RETRY_ITERATION_KEY);
+        long delayMs = backoff.delayMs(iteration == null ? 1 : iteration + 1L, previousDelayMs.get(), retryAfterMs,
+            remainingMs.applyAsLong(exchange), ThreadLocalRandom.current().nextDouble());
+        previousDelayMs.set(delayMs);
+        return Mono.delay(Duration.ofMillis(delayMs))
+            .doOnNext(ignored -> reset(exchange));
+    }
+
+    private static void updateIteration(final ServerWebExchange exchange) {
+        int iteration = exchange.getAttributeOrDefault(RetryGatewayFilterFactory.RETRY_ITERATION_KEY, -1);
+        exchange.getAttributes().put(RetryGatewayFilterFactory.RETRY_ITERATION_KEY, iteration + 1);
+    }
+
+    /**
+     * Releases the previous upstream connection and clears the routing state, so the next attempt is routed again.
+     */
+    private static void reset(final ServerWebExchange exchange) {
+        Connection connection = exchange.getAttribute(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR);
+        if (connection != null) {
+            connection.dispose();
+            exchange.getAttributes().remove(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR);
+        }
+        ServerWebExchangeUtils.reset(exchange);
+    }
+
+    private static long retryAfterMs(final ServerWebExchange exchange) {
+        return RetryAfter.parseMillis(exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER),
+            System.currentTimeMillis());
+    }
+
+    private boolean isRetryableStatus(final HttpStatusCode status) {
+        for (HttpStatus retryable : config.getStatuses()) {
+            if (retryable.value() == status.value()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isRetryableMethod(final ServerWebExchange exchange) {
+        HttpMethod method = exchange.getRequest().getMethod();
+        return config.getMethods().contains(method);
+    }
+
+    private static boolean isRetryableException(final Throwable exception) {
+        if (exception == null) {
+            return false;
+        }
+        Throwable cause = exception.getCause();
+        return exception instanceof IOException || exception instanceof TimeoutException
+            || cause instanceof IOException || cause instanceof TimeoutException;
+    }
+
+}
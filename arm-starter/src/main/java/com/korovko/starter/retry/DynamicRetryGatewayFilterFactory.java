@@ -1,69 +1,168 @@
 package com.korovko.starter.retry;
 
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.RetryGatewayFilterFactory;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.SignalType;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Component("DynamicRetry")
 public class DynamicRetryGatewayFilterFactory extends AbstractGatewayFilterFactory<DynamicRetryGatewayFilterFactory.Config> {
 
+    static final String STARTED_AT_ATTR = DynamicRetryGatewayFilterFactory.class.getName() + ".startedAt";
+
     private final RetryPolicyStore store;
     private final RetryGatewayFilterFactory delegate;
-
-    public DynamicRetryGatewayFilterFactory(final RetryPolicyStore store, final RetryGatewayFilterFactory delegate) {
+    private final MeterRegistry meterRegistry;
+    private final RetryEffectivenessTracker effectivenessTracker;
+    private final TimeLimiterRegistry timeLimiterRegistry;
+
+    public DynamicRetryGatewayFilterFactory(final RetryPolicyStore store, final RetryGatewayFilterFactory delegate,
+                                            final MeterRegistry meterRegistry,
+                                            final RetryEffectivenessTracker effectivenessTracker,
+                                            final TimeLimiterRegistry timeLimiterRegistry) {
         super(Config.class);
         this.store = store;
         this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.effectivenessTracker = effectivenessTracker;
+        this.timeLimiterRegistry = timeLimiterRegistry;
     }
 
     @Override
     public GatewayFilter apply(final Config config) {
-        return (exchange, chain) -> {
-            RetryPolicy policy = store.get(config.getName());
+        String routeId = config.getName();
+        RetryMeters meters = new RetryMeters(meterRegistry, routeId);
+        RetryEffectivenessTracker.RouteEffectiveness effectiveness = effectivenessTracker.route(routeId);
+        UpstreamPressure pressure = new UpstreamPressure();
+        AtomicReference<CompiledPolicy> compiled = new AtomicReference<>();
 
-            int retries = policy.toGatewayRetries();
-            if (retries <= 0) {
-                return chain.filter(exchange);
+        return (exchange, chain) -> {
+            CompiledPolicy current = compiled(routeId, compiled, pressure);
+
+            if (current.filter() == null) {
+                return chain.filter(exchange)
+                    .doFinally(signal -> {
+                        boolean success = isSuccess(exchange, signal);
+                        meters.record(1, success, 1);
+                        effectiveness.record(1, success, 1);
+                    });
             }
 
-            HttpMethod[] methods = policy.methods().stream()
-                .map(s -> s == null ? null : HttpMethod.valueOf(s.trim().toUpperCase()))
-                .filter(Objects::nonNull)
-                .toArray(HttpMethod[]::new);
+            exchange.getAttributes().putIfAbsent(STARTED_AT_ATTR, System.nanoTime());
+            int maxAttempts = current.policy().maxAttempts();
+            return current.filter().filter(exchange, chain)
+                .doFinally(signal -> {
+                    int attempts = attemptsMade(exchange);
+                    boolean success = isSuccess(exchange, signal);
+                    meters.record(attempts, success, maxAttempts);
+                    effectiveness.record(attempts, success, maxAttempts);
+                });
+        };
+    }
 
-            if (methods.length == 0) {
-                methods = new HttpMethod[]{HttpMethod.GET};
-            }
+    /**
+     * Returns the filter built for the active policy version, rebuilding it only after the policy changed.
+     */
+    private CompiledPolicy compiled(final String routeId, final AtomicReference<CompiledPolicy> cache,
+                                    final UpstreamPressure pressure) {
+        long version = store.version(routeId);
+        CompiledPolicy current = cache.get();
+        if (current != null && current.version() == version) {
+            return current;
+        }
+        CompiledPolicy rebuilt = compile(routeId, store.get(routeId), version, pressure);
+        cache.set(rebuilt);
+        return rebuilt;
+    }
 
-            HttpStatus[] statuses = policy.statuses().stream()
-                .map(code -> {
-                    try {
-                        return HttpStatus.valueOf(code);
-                    } catch (Exception e) {
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .toArray(HttpStatus[]::new);
-
-            if (statuses.length == 0) {
-                statuses = new HttpStatus[]{HttpStatus.BAD_GATEWAY, HttpStatus.GATEWAY_TIMEOUT};
-            }
+    private CompiledPolicy compile(final String routeId, final RetryPolicy policy, final long version,
+                                   final UpstreamPressure pressure) {
+        int retries = policy.toGatewayRetries();
+        if (retries <= 0) {
+            return new CompiledPolicy(version, policy, null);
+        }
 
-            RetryGatewayFilterFactory.RetryConfig rc = new RetryGatewayFilterFactory.RetryConfig();
-            rc.setRetries(retries);
-            rc.setMethods(methods);
-            rc.setStatuses(statuses);
-            rc.setBackoff(policy.firstBackoff(), policy.maxBackoff(), policy.factor(), policy.basedOnPreviousValue());
+        HttpMethod[] methods = policy.methods().stream()
+            .map(s -> s == null ? null : HttpMethod.valueOf(s.trim().toUpperCase()))
+            .filter(Objects::nonNull)
+            .toArray(HttpMethod[]::new);
 
-            return delegate.apply(rc).filter(exchange, chain);
-        };
+        if (methods.length == 0) {
+            methods = new HttpMethod[]{HttpMethod.GET};
+        }
+
+        HttpStatus[] statuses = policy.statuses().stream()
+            .map(code -> {
+                try {
+                    return HttpStatus.valueOf(code);
+                } catch (Exception e) {
+                    return null;
+                }
+            })
+            .filter(Objects::nonNull)
+            .toArray(HttpStatus[]::new);
+
+        if (statuses.length == 0) {
+            statuses = new HttpStatus[]{HttpStatus.BAD_GATEWAY, HttpStatus.GATEWAY_TIMEOUT};
+        }
+
+        RetryGatewayFilterFactory.RetryConfig rc = new RetryGatewayFilterFactory.RetryConfig();
+        rc.setRetries(retries);
+        rc.setMethods(methods);
+        rc.setStatuses(statuses);
+
+        enableBodyCaching(routeId);
+        GatewayFilter filter = new BackpressureAwareRetry(policy, rc, delegate, pressure,
+            exchange -> remainingMs(routeId, exchange)).toFilter();
+        return new CompiledPolicy(version, policy, filter);
+    }
+
+    /**
+     * Time left until the route's TimeLimiter fires, whether its timeout is static or set by the controller,
+     * or {@link RetryBackoff#NO_DEADLINE} when the route has none.
+     */
+    private long remainingMs(final String routeId, final ServerWebExchange exchange) {
+        long timeoutMs = timeLimiterRegistry.find(routeId)
+            .map(TimeLimiter::getTimeLimiterConfig)
+            .map(config -> config.getTimeoutDuration().toMillis())
+            .orElse(0L);
+        Long startedAt = exchange.getAttribute(STARTED_AT_ATTR);
+        if (timeoutMs <= 0 || startedAt == null) {
+            return RetryBackoff.NO_DEADLINE;
+        }
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000L;
+        return Math.max(0, timeoutMs - elapsedMs);
+    }
+
+    private static int attemptsMade(final ServerWebExchange exchange) {
+        Integer iteration = exchange.getAttribute(RetryGatewayFilterFactory.RETRY_ITERATION_KEY);
+        return iteration == null ? 1 : iteration + 1;
+    }
+
+    /**
+     * Only a 2xx answer is a success; a 404 or a 500 outside the retry statuses is not one either.
+     */
+    private static boolean isSuccess(final ServerWebExchange exchange, final SignalType signal) {
+        if (signal != SignalType.ON_COMPLETE) {
+            return false;
+        }
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        return status == null || status.is2xxSuccessful();
+    }
+
+    private record CompiledPolicy(long version, RetryPolicy policy, GatewayFilter filter) {
     }
 
     @Validated
@@ -1,11 +1,13 @@
 package com.korovko.starter.retry;
 
+import com.korovko.starter.gossip.PolicyGossip;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Map;
@@ -15,9 +17,11 @@ import java.util.Map;
 public class RetryAdminController {
 
     private final RetryPolicyStore store;
+    private final PolicyGossip gossip;
 
-    public RetryAdminController(final RetryPolicyStore store) {
+    public RetryAdminController(final RetryPolicyStore store, final PolicyGossip gossip) {
         this.store = store;
+        this.gossip = gossip;
     }
 
     @GetMapping
@@ -30,9 +34,15 @@ public class RetryAdminController {
         return store.get(routeId);
     }
 
+    /**
+     * Changes the route's retry policy; the controller adds the desired-state {@code epoch} and {@code version}
+     * of its decision, a manual change leaves them out.
+     */
     @PostMapping("/{routeId}")
-    public ResponseEntity<Void> upsert(@PathVariable final String routeId, @RequestBody final RetryPolicy policy) {
-        store.upsert(routeId, policy);
+    public ResponseEntity<Void> upsert(@PathVariable final String routeId, @RequestBody final RetryPolicy policy,
+                                       @RequestParam(required = false) final String epoch,
+                                       @RequestParam(defaultValue = "0") final long version) {
+        gossip.publishRetry(routeId, policy, epoch, version);
         return ResponseEntity.noContent().build();
     }
 }
@@ -0,0 +1,42 @@
+package com.korovko.starter.retry;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parser for the {@code Retry-After} response header (RFC 9110, section 10.2.3).
+ */
+public final class RetryAfter {
+
+    public static final long ABSENT = -1;
+
+    private RetryAfter() {
+    }
+
+    /**
+     * Returns the delay requested by the header in milliseconds, or {@link #ABSENT} when the header is
+     * missing or malformed. Both delay-seconds and HTTP-date forms are accepted.
+     */
+    public static long parseMillis(final String header, final long nowMillis) {
+        if (header == null || header.isBlank()) {
+            return ABSENT;
+        }
+        String value = header.trim();
+        if (Character.isDigit(value.charAt(0))) {
+            try {
+                long seconds = Long.parseLong(value);
+                return seconds > Long.MAX_VALUE / 1000 ? Long.MAX_VALUE : seconds * 1000;
+            } catch (NumberFormatException e) {
+                return ABSENT;
+            }
+        }
+        try {
+            long at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - nowMillis);
+        } catch (DateTimeParseException e) {
+            return ABSENT;
+        }
+    }
+
+}
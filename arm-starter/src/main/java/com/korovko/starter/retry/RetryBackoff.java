@@ -0,0 +1,76 @@
+package com.korovko.starter.retry;
+
+/**
+ * Delay between two attempts of one {@link RetryPolicy} version: exponential, jittered, raised to the
+ * upstream {@code Retry-After} and never longer than the time left for the request. A request without
+ * a dynamic timeout has no deadline; it then waits at most {@link RetryPolicy#maxBackoff()}.
+ */
+public final class RetryBackoff {
+
+    /**
+     * Remaining time of a request that has no deadline.
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final RetryPolicy policy;
+
+    public RetryBackoff(final RetryPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Longest the request may wait before its next attempt.
+     */
+    public long ceilingMs(final long remainingMs) {
+        if (remainingMs == NO_DEADLINE) {
+            return Math.max(policy.firstBackoff().toMillis(), policy.maxBackoff().toMillis());
+        }
+        return Math.max(0, remainingMs);
+    }
+
+    /**
+     * Whether waiting for the upstream {@code Retry-After} still leaves room for another attempt.
+     */
+    public boolean canWait(final long retryAfterMs, final long remainingMs) {
+        if (remainingMs == NO_DEADLINE) {
+            return retryAfterMs <= ceilingMs(remainingMs);
+        }
+        return retryAfterMs < remainingMs;
+    }
+
+    /**
+     * @param iteration       1-based number of the retry about to be made
+     * @param previousDelayMs delay before the previous retry, 0 before the first one
+     * @param retryAfterMs    upstream {@code Retry-After}, or {@link RetryAfter#ABSENT}
+     * @param remainingMs     time left for the request, or {@link #NO_DEADLINE}
+     * @param random          uniform sample from {@code [0, 1)}
+     */
+    public long delayMs(final long iteration, final long previousDelayMs, final long retryAfterMs,
+                        final long remainingMs, final double random) {
+        long delayMs = jittered(exponentialMs(iteration, previousDelayMs), random);
+        if (policy.honorRetryAfter()) {
+            delayMs = Math.max(delayMs, retryAfterMs);
+        }
+        return Math.max(0, Math.min(delayMs, ceilingMs(remainingMs)));
+    }
+
+    private long exponentialMs(final long iteration, final long previousDelayMs) {
+        long first = policy.firstBackoff().toMillis();
+        long max = Math.max(first, policy.maxBackoff().toMillis());
+        double delay;
+        if (policy.basedOnPreviousValue() && previousDelayMs > 0) {
+            delay = (double) previousDelayMs * policy.factor();
+        } else {
+            delay = first * Math.pow(policy.factor(), Math.max(0, iteration - 1));
+        }
+        return delay >= max ? max : (long) delay;
+    }
+
+    private long jittered(final long delayMs, final double random) {
+        if (policy.jitter() <= 0 || delayMs <= 0) {
+            return delayMs;
+        }
+        return delayMs - (long) (random * policy.jitter() * delayMs);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.korovko.starter.retry;
+
+/**
+ * Cumulative outcome counters of a route: {@code successByAttempt[i]} is the number of requests
+ * that succeeded on attempt {@code i + 1}, {@code exhaustedByAttempt[i]} the number that failed on
+ * every one of {@code i + 1} allowed attempts.
+ */
+public record RetryEffectiveness(long[] successByAttempt, long[] exhaustedByAttempt) {
+}
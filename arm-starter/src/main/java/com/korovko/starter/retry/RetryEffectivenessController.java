@@ -0,0 +1,23 @@
+package com.korovko.starter.retry;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/internal/resilience/retry-effectiveness")
+public class RetryEffectivenessController {
+
+    private final RetryEffectivenessTracker tracker;
+
+    public RetryEffectivenessController(final RetryEffectivenessTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @GetMapping
+    public Map<String, RetryEffectiveness> getAll() {
+        return tracker.snapshot();
+    }
+}
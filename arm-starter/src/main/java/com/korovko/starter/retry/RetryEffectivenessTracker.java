@@ -0,0 +1,90 @@
+package com.korovko.starter.retry;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * Counts, per route, on which attempt requests succeeded and after how many attempts the others ran out.
+ * All counters are lock-free; the per-route holder is resolved once when the route filter is built.
+ */
+@Component
+public class RetryEffectivenessTracker {
+
+    static final String SUCCESS_BY_ATTEMPT = "arm.retry.success.by.attempt";
+    static final String EXHAUSTED = "arm.retry.effectiveness.exhausted";
+
+    /**
+     * Outcomes on this attempt or later ones are counted in the last bucket.
+     */
+    public static final int MAX_TRACKED_ATTEMPTS = 8;
+
+    private final Map<String, RouteEffectiveness> routes = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public RetryEffectivenessTracker(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public RouteEffectiveness route(final String routeId) {
+        return routes.computeIfAbsent(routeId, this::register);
+    }
+
+    public Map<String, RetryEffectiveness> snapshot() {
+        return routes.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().snapshot()));
+    }
+
+    private RouteEffectiveness register(final String routeId) {
+        RouteEffectiveness route = new RouteEffectiveness();
+        for (int i = 0; i < MAX_TRACKED_ATTEMPTS; i++) {
+            int bucket = i;
+            FunctionCounter.builder(SUCCESS_BY_ATTEMPT, route, r -> r.successByAttempt.get(bucket))
+                .description("Requests that succeeded on the given attempt")
+                .tag("routeId", routeId)
+                .tag("attempt", String.valueOf(i + 1))
+                .register(meterRegistry);
+        }
+        for (int i = 0; i < MAX_TRACKED_ATTEMPTS; i++) {
+            int bucket = i;
+            FunctionCounter.builder(EXHAUSTED, route, r -> r.exhaustedByAttempt.get(bucket))
+                .description("Requests that failed on every allowed attempt, by the number of attempts made")
+                .tag("routeId", routeId)
+                .tag("attempts", String.valueOf(i + 1))
+                .register(meterRegistry);
+        }
+        return route;
+    }
+
+    public static final class RouteEffectiveness {
+
+        private final AtomicLongArray successByAttempt = new AtomicLongArray(MAX_TRACKED_ATTEMPTS);
+        private final AtomicLongArray exhaustedByAttempt = new AtomicLongArray(MAX_TRACKED_ATTEMPTS);
+
+        public void record(final int attempt, final boolean success, final int maxAttempts) {
+            int bucket = Math.min(Math.max(attempt, 1), MAX_TRACKED_ATTEMPTS) - 1;
+            if (success) {
+                successByAttempt.incrementAndGet(bucket);
+            } else if (attempt >= maxAttempts) {
+                exhaustedByAttempt.incrementAndGet(bucket);
+            }
+        }
+
+        RetryEffectiveness snapshot() {
+            long[] successes = new long[MAX_TRACKED_ATTEMPTS];
+            long[] exhausted = new long[MAX_TRACKED_ATTEMPTS];
+            for (int i = 0; i < successes.length; i++) {
+                successes[i] = successByAttempt.get(i);
+                exhausted[i] = exhaustedByAttempt.get(i);
+            }
+            return new RetryEffectiveness(successes, exhausted);
+        }
+
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.korovko.starter.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * Per-route retry counters. Created once when the route filter is built, so the
+ * request path only increments already registered meters.
+ */
+final class RetryMeters {
+
+    static final String REQUESTS = "arm.retry.requests";
+    static final String ATTEMPTS = "arm.retry.attempts";
+    static final String RETRIES = "arm.retry.retries";
+    static final String RECOVERED = "arm.retry.recovered";
+    static final String EXHAUSTED = "arm.retry.exhausted";
+
+    private final Counter requests;
+    private final Counter attempts;
+    private final Counter retries;
+    private final Counter recovered;
+    private final Counter exhausted;
+
+    RetryMeters(final MeterRegistry registry, final String routeId) {
+        Tags tags = Tags.of("routeId", routeId == null ? "unknown" : routeId);
+        this.requests = Counter.builder(REQUESTS)
+            .description("Requests that passed through the DynamicRetry filter")
+            .tags(tags)
+            .register(registry);
+        this.attempts = Counter.builder(ATTEMPTS)
+            .description("Upstream attempts, including the first one")
+            .tags(tags)
+            .register(registry);
+        this.retries = Counter.builder(RETRIES)
+            .description("Upstream attempts made after the first one")
+            .tags(tags)
+            .register(registry);
+        this.recovered = Counter.builder(RECOVERED)
+            .description("Requests that failed at least once and then succeeded on a retry")
+            .tags(tags)
+            .register(registry);
+        this.exhausted = Counter.builder(EXHAUSTED)
+            .description("Requests that still failed after using every allowed attempt")
+            .tags(tags)
+            .register(registry);
+    }
+
+    void record(final int attemptsMade, final boolean success, final int maxAttempts) {
+        requests.increment();
+        attempts.increment(attemptsMade);
+        if (attemptsMade > 1) {
+            retries.increment(attemptsMade - 1);
+            if (success) {
+                recovered.increment();
+            }
+        }
+        if (!success && attemptsMade >= maxAttempts) {
+            exhausted.increment();
+        }
+    }
+
+}
@@ -3,8 +3,14 @@ package com.korovko.starter.retry;
 import java.time.Duration;
 import java.util.Set;
 
+/**
+ * @param jitter          share of the exponential delay that is randomized: 0 keeps it fixed, 1 is full jitter
+ * @param honorRetryAfter wait for the upstream {@code Retry-After} delay and stop retrying while the upstream
+ *                        signals overload
+ */
 public record RetryPolicy(int maxAttempts, Duration firstBackoff, Duration maxBackoff, int factor,
-                          boolean basedOnPreviousValue, Set<Integer> statuses, Set<String> methods) {
+                          boolean basedOnPreviousValue, Set<Integer> statuses, Set<String> methods,
+                          double jitter, boolean honorRetryAfter) {
 
     public RetryPolicy {
         if (maxAttempts < 1) {
@@ -25,6 +31,9 @@ public record RetryPolicy(int maxAttempts, Duration firstBackoff, Duration maxBa
         if (methods == null || methods.isEmpty()) {
             throw new IllegalArgumentException("methods must not be empty");
         }
+        if (jitter < 0 || jitter > 1 || Double.isNaN(jitter)) {
+            throw new IllegalArgumentException("jitter must be within [0, 1]");
+        }
     }
 
     public int toGatewayRetries() {
@@ -1,5 +1,7 @@
 package com.korovko.starter.retry;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -9,11 +11,20 @@ import java.time.Duration;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Component
 public class RetryPolicyStore {
 
-    private final Map<String, RetryPolicy> policies = new ConcurrentHashMap<>();
+    static final String MAX_ATTEMPTS_GAUGE = "arm.retry.policy.max.attempts";
+    static final String VERSION_GAUGE = "arm.retry.policy.version";
+
+    private final Map<String, Entry> policies = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public RetryPolicyStore(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     @PostConstruct
     public void initDefaults() {
@@ -24,25 +35,61 @@ public class RetryPolicyStore {
             2,
             true,
             Set.of(HttpStatus.BAD_GATEWAY.value(), HttpStatus.SERVICE_UNAVAILABLE.value()),
-            Set.of(HttpMethod.GET.name())
+            Set.of(HttpMethod.GET.name()),
+            1.0,
+            true
         );
 
-        policies.put("customers_route", defaultPolicy);
-        policies.put("vets_route", defaultPolicy);
-        policies.put("visits_route", defaultPolicy);
+        upsert("customers_route", defaultPolicy);
+        upsert("vets_route", defaultPolicy);
+        upsert("visits_route", defaultPolicy);
     }
 
     public RetryPolicy get(String routeId) {
-        RetryPolicy p = policies.get(routeId);
-        if (p == null) throw new IllegalArgumentException("Unknown routeId: " + routeId);
-        return p;
+        Entry e = policies.get(routeId);
+        if (e == null) throw new IllegalArgumentException("Unknown routeId: " + routeId);
+        return e.policy;
     }
 
     public Map<String, RetryPolicy> getAll() {
-        return Map.copyOf(policies);
+        return policies.entrySet().stream()
+            .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> e.getValue().policy));
+    }
+
+    /**
+     * Returns the number of times the policy of the route has been replaced, or 0 for an unknown route.
+     */
+    public long version(String routeId) {
+        Entry e = policies.get(routeId);
+        return e == null ? 0 : e.version;
     }
 
     public void upsert(String routeId, RetryPolicy policy) {
-        policies.put(routeId, policy);
+        policies.compute(routeId, (id, existing) -> {
+            Entry e = existing != null ? existing : register(id);
+            e.policy = policy;
+            e.version++;
+            return e;
+        });
+    }
+
+    private Entry register(String routeId) {
+        Entry e = new Entry();
+        Gauge.builder(MAX_ATTEMPTS_GAUGE, e, entry -> entry.policy == null ? 0 : entry.policy.maxAttempts())
+            .description("maxAttempts of the active retry policy")
+            .tag("routeId", routeId)
+            .register(meterRegistry);
+        Gauge.builder(VERSION_GAUGE, e, entry -> entry.version)
+            .description("Version of the active retry policy, incremented on every update")
+            .tag("routeId", routeId)
+            .register(meterRegistry);
+        return e;
+    }
+
+    private static final class Entry {
+
+        private volatile RetryPolicy policy;
+        private volatile long version;
+
     }
 }
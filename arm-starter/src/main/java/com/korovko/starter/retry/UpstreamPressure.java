@@ -0,0 +1,41 @@
+package com.korovko.starter.retry;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers, per route, until when the upstream asked clients to back off. While the window is open
+ * the retry filter does not retry, so many gateway replicas do not hit an overloaded upstream with
+ * synchronized retry waves.
+ */
+public final class UpstreamPressure {
+
+    private final AtomicLong overloadedUntilNanos = new AtomicLong();
+
+    /**
+     * Opens (or extends) the overload window on 429, or on 503 with {@code Retry-After}.
+     */
+    public void observe(final HttpStatusCode status, final long retryAfterMs, final long defaultBackoffMs) {
+        if (status == null) {
+            return;
+        }
+        long windowMs;
+        if (status.value() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+            windowMs = retryAfterMs >= 0 ? retryAfterMs : defaultBackoffMs;
+        } else if (status.value() == HttpStatus.SERVICE_UNAVAILABLE.value() && retryAfterMs >= 0) {
+            windowMs = retryAfterMs;
+        } else {
+            return;
+        }
+        long until = System.nanoTime() + Math.min(windowMs, Long.MAX_VALUE / 2_000_000L) * 1_000_000L;
+        overloadedUntilNanos.accumulateAndGet(until, (current, candidate) -> current - candidate > 0 ? current : candidate);
+    }
+
+    public boolean isOverloaded() {
+        long until = overloadedUntilNanos.get();
+        return until != 0 && until - System.nanoTime() > 0;
+    }
+
+}
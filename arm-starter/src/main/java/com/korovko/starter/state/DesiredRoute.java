@@ -0,0 +1,6 @@
+package com.korovko.starter.state;
+
+import com.korovko.starter.retry.RetryPolicy;
+
+public record DesiredRoute(long version, Integer timeoutMs, RetryPolicy retry) {
+}
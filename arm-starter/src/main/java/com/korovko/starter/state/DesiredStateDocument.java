@@ -0,0 +1,9 @@
+package com.korovko.starter.state;
+
+import java.util.Map;
+
+/**
+ * Routes changed since the version the gateway asked for, as published by the controller.
+ */
+public record DesiredStateDocument(String epoch, long version, Map<String, DesiredRoute> routes) {
+}
@@ -0,0 +1,129 @@
+package com.korovko.starter.state;
+
+import com.korovko.starter.gossip.PolicyGossip;
+import com.korovko.starter.retry.RetryPolicy;
+import com.korovko.starter.retry.RetryPolicyStore;
+import com.korovko.starter.timeout.DynamicTimeoutUpdater;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Long-polls the controller's desired-state document and applies the changed routes. Each request carries
+ * the last seen version, so the controller answers only with deltas, or holds the request until the next
+ * change. Only values that differ from what the gateway already runs are applied. They go through
+ * {@link PolicyGossip} stamped with the document epoch and route version, so a stale decision still
+ * travelling between replicas cannot overwrite a newer one.
+ */
+@Component
+public class DesiredStatePoller {
+
+    private static final Logger log = LoggerFactory.getLogger(DesiredStatePoller.class);
+
+    private final DesiredStateProperties properties;
+    private final RetryPolicyStore retryStore;
+    private final DynamicTimeoutUpdater timeoutUpdater;
+    private final PolicyGossip gossip;
+    private final WebClient webClient;
+
+    private volatile String epoch = "";
+    private volatile long version;
+    private Disposable subscription;
+
+    public DesiredStatePoller(final DesiredStateProperties properties, final RetryPolicyStore retryStore,
+                              final DynamicTimeoutUpdater timeoutUpdater, final PolicyGossip gossip,
+                              final WebClient.Builder builder) {
+        this.properties = properties;
+        this.retryStore = retryStore;
+        this.timeoutUpdater = timeoutUpdater;
+        this.gossip = gossip;
+        this.webClient = builder.baseUrl(properties.getControllerUrl()).build();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        subscription = Mono.defer(this::pollOnce)
+            .onErrorResume(e -> {
+                log.warn("Desired state poll failed: {}", e.getMessage());
+                return Mono.delay(Duration.ofMillis(properties.getErrorBackoffMs())).then();
+            })
+            .repeat()
+            .subscribe();
+        log.info("Polling desired state from {}", properties.getControllerUrl());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    public long version() {
+        return version;
+    }
+
+    private Mono<Void> pollOnce() {
+        return webClient.get()
+            .uri(uri -> uri.path("/internal/desired-state")
+                .queryParam("epoch", epoch)
+                .queryParam("sinceVersion", version)
+                .build())
+            .exchangeToMono(response -> {
+                if (response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                    return response.releaseBody();
+                }
+                if (!response.statusCode().is2xxSuccessful()) {
+                    return response.createError().then();
+                }
+                return response.bodyToMono(DesiredStateDocument.class).doOnNext(this::apply).then();
+            })
+            .timeout(Duration.ofMillis(properties.getLongPollTimeoutMs()).plusSeconds(5));
+    }
+
+    /**
+     * Applies the routes of the document that differ from the running configuration.
+     */
+    public synchronized void apply(final DesiredStateDocument document) {
+        Map<String, DesiredRoute> routes = document.routes() == null ? Map.of() : document.routes();
+        String documentEpoch = document.epoch() == null ? "" : document.epoch();
+        routes.forEach((routeId, route) -> {
+            try {
+                applyRoute(routeId, route, documentEpoch);
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring desired state of {}: {}", routeId, e.getMessage());
+            }
+        });
+        epoch = documentEpoch;
+        version = document.version();
+    }
+
+    private void applyRoute(final String routeId, final DesiredRoute route, final String documentEpoch) {
+        Integer timeoutMs = route.timeoutMs();
+        if (timeoutMs != null && timeoutMs != timeoutUpdater.timeoutMs(routeId)) {
+            gossip.publishTimeout(routeId, timeoutMs, documentEpoch, route.version());
+        }
+        RetryPolicy retry = route.retry();
+        if (retry != null && !Objects.equals(retry, currentRetry(routeId))) {
+            gossip.publishRetry(routeId, retry, documentEpoch, route.version());
+        }
+    }
+
+    private RetryPolicy currentRetry(final String routeId) {
+        return retryStore.getAll().get(routeId);
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.korovko.starter.state;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "arm.desired-state")
+public class DesiredStateProperties {
+
+    private boolean enabled = true;
+    private String controllerUrl = "http://127.0.0.1:8089";
+    private long longPollTimeoutMs = 30_000;
+    private long errorBackoffMs = 2_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getControllerUrl() {
+        return controllerUrl;
+    }
+
+    public void setControllerUrl(String controllerUrl) {
+        this.controllerUrl = controllerUrl;
+    }
+
+    public long getLongPollTimeoutMs() {
+        return longPollTimeoutMs;
+    }
+
+    public void setLongPollTimeoutMs(long longPollTimeoutMs) {
+        this.longPollTimeoutMs = longPollTimeoutMs;
+    }
+
+    public long getErrorBackoffMs() {
+        return errorBackoffMs;
+    }
+
+    public void setErrorBackoffMs(long errorBackoffMs) {
+        this.errorBackoffMs = errorBackoffMs;
+    }
+
+}
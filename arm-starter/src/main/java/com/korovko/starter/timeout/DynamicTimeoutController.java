@@ -1,9 +1,11 @@
 package com.korovko.starter.timeout;
 
+import com.korovko.starter.gossip.PolicyGossip;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -11,16 +13,19 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/dynamic-timeouts")
 public class DynamicTimeoutController {
 
-    private final DynamicTimeoutUpdater timeLimiterUpdater;
+    private final PolicyGossip gossip;
 
-    public DynamicTimeoutController(DynamicTimeoutUpdater registry) {
-        this.timeLimiterUpdater = registry;
+    public DynamicTimeoutController(PolicyGossip gossip) {
+        this.gossip = gossip;
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void putAll(@RequestBody ChangeTimeoutRequest changeTimeoutRequest) {
-        timeLimiterUpdater.updateTimeout(changeTimeoutRequest.getRouteId(), changeTimeoutRequest.getTimeoutMillis(), true);
+    public void putAll(@RequestBody ChangeTimeoutRequest changeTimeoutRequest,
+                       @RequestParam(required = false) String epoch,
+                       @RequestParam(defaultValue = "0") long version) {
+        gossip.publishTimeout(changeTimeoutRequest.getRouteId(), changeTimeoutRequest.getTimeoutMillis(),
+            epoch, version);
     }
 
 }
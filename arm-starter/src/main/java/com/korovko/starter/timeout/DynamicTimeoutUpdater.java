@@ -3,22 +3,45 @@ package com.korovko.starter.timeout;
 import io.github.resilience4j.timelimiter.TimeLimiter;
 import io.github.resilience4j.timelimiter.TimeLimiterConfig;
 import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class DynamicTimeoutUpdater {
 
+    static final String TIMEOUT_GAUGE = "arm.timeout.current.ms";
+    static final String VERSION_GAUGE = "arm.timeout.version";
+    static final String TIMEOUTS_COUNTER = "arm.timeout.fired";
+
     private static final Logger log = LoggerFactory.getLogger(DynamicTimeoutUpdater.class);
 
     private final TimeLimiterRegistry timeLimiterRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RouteTimeout> routes = new ConcurrentHashMap<>();
 
-    public DynamicTimeoutUpdater(TimeLimiterRegistry timeLimiterRegistry) {
+    public DynamicTimeoutUpdater(TimeLimiterRegistry timeLimiterRegistry, MeterRegistry meterRegistry) {
         this.timeLimiterRegistry = timeLimiterRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Registers the meters of every route with a TimeLimiter, now and whenever one is added, so routes the
+     * controller never changed export their configured timeout too.
+     */
+    @PostConstruct
+    public void registerRoutes() {
+        timeLimiterRegistry.getAllTimeLimiters().forEach(this::track);
+        timeLimiterRegistry.getEventPublisher().onEntryAdded(event -> track(event.getAddedEntry()));
     }
 
     public void updateTimeout(final String name, final long timeoutMs, boolean cancelRunningFuture) {
@@ -36,9 +59,70 @@ public class DynamicTimeoutUpdater {
 
         TimeLimiter newTl = TimeLimiter.of(name, newConfig);
 
-        timeLimiterRegistry.replace(name, newTl);
+        RouteTimeout route = routes.computeIfAbsent(name, this::register);
+        newTl.getEventPublisher().onTimeout(event -> route.timeouts.increment());
+
+        synchronized (route) {
+            timeLimiterRegistry.replace(name, newTl);
+            route.timeoutMs = timeoutMs;
+            route.version++;
+        }
 
         log.info("Updated TimeLimiter [{}]: timeout={}ms, cancelRunningFuture={}",
             name, timeoutMs, cancelRunningFuture);
     }
+
+    /**
+     * Returns the currently applied timeout of the route, or 0 when it has neither been set through this
+     * updater nor had a TimeLimiter when its meters were registered.
+     */
+    public long timeoutMs(final String name) {
+        RouteTimeout route = routes.get(name);
+        return route == null ? 0 : route.timeoutMs;
+    }
+
+    /**
+     * Returns the number of times the timeout of the route has been replaced, or 0 for an unknown route.
+     */
+    public long version(final String name) {
+        RouteTimeout route = routes.get(name);
+        return route == null ? 0 : route.version;
+    }
+
+    private void track(final TimeLimiter timeLimiter) {
+        RouteTimeout route = routes.computeIfAbsent(timeLimiter.getName(), name -> {
+            RouteTimeout registered = register(name);
+            registered.timeoutMs = timeLimiter.getTimeLimiterConfig().getTimeoutDuration().toMillis();
+            return registered;
+        });
+        timeLimiter.getEventPublisher().onTimeout(event -> route.timeouts.increment());
+    }
+
+    private RouteTimeout register(final String name) {
+        RouteTimeout route = new RouteTimeout(Counter.builder(TIMEOUTS_COUNTER)
+            .description("Calls cut off by the TimeLimiter of the route")
+            .tag("routeId", name)
+            .register(meterRegistry));
+        Gauge.builder(TIMEOUT_GAUGE, route, r -> r.timeoutMs)
+            .description("Currently applied TimeLimiter timeout")
+            .tag("routeId", name)
+            .register(meterRegistry);
+        Gauge.builder(VERSION_GAUGE, route, r -> r.version)
+            .description("Version of the applied timeout, incremented on every update")
+            .tag("routeId", name)
+            .register(meterRegistry);
+        return route;
+    }
+
+    private static final class RouteTimeout {
+
+        private final Counter timeouts;
+        private volatile long timeoutMs;
+        private volatile long version;
+
+        private RouteTimeout(final Counter timeouts) {
+            this.timeouts = timeouts;
+        }
+
+    }
 }
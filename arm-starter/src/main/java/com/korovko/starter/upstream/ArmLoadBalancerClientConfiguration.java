@@ -0,0 +1,43 @@
+package com.korovko.starter.upstream;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load balancer client configuration applied to every service. Deliberately not a {@code @Configuration}:
+ * it is instantiated inside each per-service load balancer context, not in the application context.
+ * Both beans back off when a service registers its own supplier or load balancer through
+ * {@code @LoadBalancerClient(configuration = ...)}.
+ */
+public class ArmLoadBalancerClientConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ServiceInstanceListSupplier outlierEjectingServiceInstanceListSupplier(
+        final ConfigurableApplicationContext context) {
+        return ServiceInstanceListSupplier.builder()
+            .withDiscoveryClient()
+            .withCaching()
+            .with((ctx, delegate) -> new OutlierEjectingServiceInstanceListSupplier(delegate,
+                ctx.getBean(OutlierDetector.class), ctx.getBean(InstanceStatsTable.class)))
+            .build(context);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ReactorServiceInstanceLoadBalancer latencyAwareLoadBalancer(
+        final Environment environment,
+        final ObjectProvider<ServiceInstanceListSupplier> supplierProvider,
+        final InstanceStatsTable table,
+        final LoadBalancerTuningStore tuning) {
+        return new LatencyAwareLoadBalancer(supplierProvider, LoadBalancerClientFactory.getName(environment),
+            table, tuning);
+    }
+
+}
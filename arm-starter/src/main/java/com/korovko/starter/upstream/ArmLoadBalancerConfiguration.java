@@ -0,0 +1,9 @@
+package com.korovko.starter.upstream;
+
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@LoadBalancerClients(defaultConfiguration = ArmLoadBalancerClientConfiguration.class)
+public class ArmLoadBalancerConfiguration {
+}
@@ -0,0 +1,91 @@
+package com.korovko.starter.upstream;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instances that already failed an earlier attempt of the current request, stored as a request attribute
+ * so retries can steer away from them. Attempts of one request run one after another, so the set needs no
+ * synchronization; it is allocated only once the first attempt fails.
+ */
+public final class FailedInstances {
+
+    public static final String ATTR = FailedInstances.class.getName();
+
+    private int[] indexes = new int[4];
+    private int count;
+
+    private FailedInstances() {
+    }
+
+    static void add(final ServerWebExchange exchange, final int index) {
+        add(exchange.getAttributes(), index);
+    }
+
+    /**
+     * Marks the instance as failed in the given request attributes.
+     */
+    public static void add(final Map<String, Object> attributes, final int index) {
+        FailedInstances failed = (FailedInstances) attributes.computeIfAbsent(ATTR, key -> new FailedInstances());
+        failed.add(index);
+    }
+
+    public static FailedInstances from(final Request<?> request) {
+        if (request != null && request.getContext() instanceof RequestDataContext context) {
+            RequestData data = context.getClientRequest();
+            Map<String, Object> attributes = data == null ? null : data.getAttributes();
+            if (attributes != null && attributes.get(ATTR) instanceof FailedInstances failed) {
+                return failed;
+            }
+        }
+        return null;
+    }
+
+    void add(final int index) {
+        if (contains(index)) {
+            return;
+        }
+        if (count == indexes.length) {
+            indexes = Arrays.copyOf(indexes, count * 2);
+        }
+        indexes[count++] = index;
+    }
+
+    public boolean contains(final int index) {
+        for (int i = 0; i < count; i++) {
+            if (indexes[i] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the instances that have not failed yet, or the original list when every instance has.
+     */
+    public List<ServiceInstance> exclude(final List<ServiceInstance> instances, final InstanceStatsTable table) {
+        List<ServiceInstance> remaining = null;
+        for (int i = 0; i < instances.size(); i++) {
+            ServiceInstance instance = instances.get(i);
+            boolean failed = contains(table.indexOf(InstanceStatsTable.key(instance.getHost(), instance.getPort())));
+            if (failed && remaining == null) {
+                remaining = new ArrayList<>(instances.subList(0, i));
+            } else if (!failed && remaining != null) {
+                remaining.add(instance);
+            }
+        }
+        if (remaining == null) {
+            return instances;
+        }
+        return remaining.isEmpty() ? instances : remaining;
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.korovko.starter.upstream;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per upstream instance ({@code host:port}) statistics kept in flat lock-free arrays. An instance is
+ * interned to a dense index once; afterwards every update is a single atomic array operation.
+ */
+@Component
+public class InstanceStatsTable {
+
+    public static final int CAPACITY = 4096;
+
+    private static final long DEFAULT_DECAY_NANOS = 10_000_000_000L;
+
+    private final Map<String, Integer> indexByKey = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> keys = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicIntegerArray consecutiveFailures = new AtomicIntegerArray(CAPACITY);
+    private final AtomicIntegerArray ejections = new AtomicIntegerArray(CAPACITY);
+    private final AtomicLongArray ejectedUntilNanos = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray latencyEwmaBits = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray latencyUpdatedAtNanos = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray samples = new AtomicLongArray(CAPACITY);
+    private final AtomicIntegerArray inFlight = new AtomicIntegerArray(CAPACITY);
+
+    private volatile long decayNanos = DEFAULT_DECAY_NANOS;
+
+    public static String key(final String host, final int port) {
+        return host + ":" + port;
+    }
+
+    /**
+     * Returns the index of the instance, interning it on first use, or -1 when the table is full.
+     */
+    public int indexOf(final String key) {
+        Integer index = indexByKey.get(key);
+        if (index != null) {
+            return index;
+        }
+        return indexByKey.computeIfAbsent(key, k -> {
+            int next = size.getAndIncrement();
+            if (next >= CAPACITY) {
+                return -1;
+            }
+            keys.set(next, k);
+            return next;
+        });
+    }
+
+    /**
+     * Upper bound of interned indexes; {@link #keyAt(int)} may still return null for the newest one.
+     */
+    public int size() {
+        return Math.min(size.get(), CAPACITY);
+    }
+
+    public String keyAt(final int index) {
+        return keys.get(index);
+    }
+
+    public int incrementFailures(final int index) {
+        return consecutiveFailures.incrementAndGet(index);
+    }
+
+    public void resetFailures(final int index) {
+        if (consecutiveFailures.get(index) != 0) {
+            consecutiveFailures.set(index, 0);
+        }
+    }
+
+    public int incrementEjections(final int index) {
+        return ejections.incrementAndGet(index);
+    }
+
+    public int ejections(final int index) {
+        return ejections.get(index);
+    }
+
+    /**
+     * Takes one ejection back and moves the expired ejection time forward to {@code nextUntilNanos}, unless
+     * another thread already did so for {@code untilNanos}.
+     */
+    public void decayEjections(final int index, final long untilNanos, final long nextUntilNanos) {
+        if (ejectedUntilNanos.compareAndSet(index, untilNanos, nextUntilNanos)) {
+            ejections.updateAndGet(index, count -> Math.max(0, count - 1));
+        }
+    }
+
+    public void ejectUntil(final int index, final long untilNanos) {
+        ejectedUntilNanos.set(index, untilNanos);
+    }
+
+    public long ejectedUntilNanos(final int index) {
+        return ejectedUntilNanos.get(index);
+    }
+
+    public boolean isEjected(final int index, final long nowNanos) {
+        long until = ejectedUntilNanos.get(index);
+        return until != 0 && until - nowNanos > 0;
+    }
+
+    /**
+     * Folds a latency sample into a time-decayed moving average: the older the previous value,
+     * the less weight it keeps.
+     */
+    public void recordLatency(final int index, final long latencyNanos, final long nowNanos) {
+        long previousAt = latencyUpdatedAtNanos.getAndSet(index, nowNanos);
+        samples.incrementAndGet(index);
+        double weight = previousAt == 0 ? 0.0 : Math.exp(-Math.max(0, nowNanos - previousAt) / (double) decayNanos);
+        while (true) {
+            long bits = latencyEwmaBits.get(index);
+            double current = Double.longBitsToDouble(bits);
+            double next = previousAt == 0 || current == 0.0
+                ? latencyNanos
+                : current * weight + latencyNanos * (1.0 - weight);
+            if (latencyEwmaBits.compareAndSet(index, bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    public double latencyEwmaNanos(final int index) {
+        return Double.longBitsToDouble(latencyEwmaBits.get(index));
+    }
+
+    public long samples(final int index) {
+        return samples.get(index);
+    }
+
+    public void requestStarted(final int index) {
+        inFlight.incrementAndGet(index);
+    }
+
+    public void requestFinished(final int index) {
+        inFlight.decrementAndGet(index);
+    }
+
+    public int inFlight(final int index) {
+        return inFlight.get(index);
+    }
+
+    public long decayNanos() {
+        return decayNanos;
+    }
+
+    public void setDecayNanos(final long decayNanos) {
+        if (decayNanos <= 0) {
+            throw new IllegalArgumentException("decay must be > 0");
+        }
+        this.decayNanos = decayNanos;
+    }
+
+}
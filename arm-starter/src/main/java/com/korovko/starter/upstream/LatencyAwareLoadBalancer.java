@@ -0,0 +1,83 @@
+package com.korovko.starter.upstream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Power of two choices: samples two random instances and sends the request to the cheaper one, where
+ * cost is the decayed average latency multiplied by the requests already in flight. Unlike round-robin,
+ * a slow instance quickly stops receiving its full share of traffic, without being cut off entirely.
+ */
+public class LatencyAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(LatencyAwareLoadBalancer.class);
+
+    private final ObjectProvider<ServiceInstanceListSupplier> supplierProvider;
+    private final String serviceId;
+    private final InstanceStatsTable table;
+    private final LoadBalancerTuningStore tuning;
+
+    public LatencyAwareLoadBalancer(final ObjectProvider<ServiceInstanceListSupplier> supplierProvider,
+                                    final String serviceId, final InstanceStatsTable table,
+                                    final LoadBalancerTuningStore tuning) {
+        this.supplierProvider = supplierProvider;
+        this.serviceId = serviceId;
+        this.table = table;
+        this.tuning = tuning;
+    }
+
+    // The interface declares a raw Request, so Request<?> would not override it
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Mono<Response<ServiceInstance>> choose(final Request request) {
+        ServiceInstanceListSupplier supplier = supplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(this::choose);
+    }
+
+    Response<ServiceInstance> choose(final List<ServiceInstance> instances) {
+        int size = instances.size();
+        if (size == 0) {
+            log.warn("No servers available for service: {}", serviceId);
+            return new EmptyResponse();
+        }
+        if (size == 1) {
+            return new DefaultResponse(instances.get(0));
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = instances.get(first);
+        ServiceInstance b = instances.get(second);
+        return new DefaultResponse(cost(a) <= cost(b) ? a : b);
+    }
+
+    private double cost(final ServiceInstance instance) {
+        int index = table.indexOf(InstanceStatsTable.key(instance.getHost(), instance.getPort()));
+        if (index < 0) {
+            return 0.0;
+        }
+        int inFlight = table.inFlight(index);
+        double latency = table.latencyEwmaNanos(index);
+        if (latency == 0.0 && inFlight > 0) {
+            latency = tuning.penaltyNanos();
+        }
+        return latency * (inFlight + 1);
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.korovko.starter.upstream;
+
+import java.time.Duration;
+
+/**
+ * Tuning of the latency-aware load balancer.
+ *
+ * @param decay   time constant of the latency average; a sample this old keeps ~37% of its weight
+ * @param penalty latency assumed for an instance that has requests in flight but no measurement yet
+ */
+public record LoadBalancerTuning(Duration decay, Duration penalty) {
+
+    public LoadBalancerTuning {
+        if (decay == null || decay.isNegative() || decay.isZero()) {
+            throw new IllegalArgumentException("decay must be > 0");
+        }
+        if (penalty == null || penalty.isNegative()) {
+            throw new IllegalArgumentException("penalty must be >= 0");
+        }
+    }
+
+    public static LoadBalancerTuning defaults() {
+        return new LoadBalancerTuning(Duration.ofSeconds(10), Duration.ofSeconds(1));
+    }
+
+}
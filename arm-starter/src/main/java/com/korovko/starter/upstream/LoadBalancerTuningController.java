@@ -0,0 +1,30 @@
+package com.korovko.starter.upstream;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/internal/resilience/load-balancer")
+public class LoadBalancerTuningController {
+
+    private final LoadBalancerTuningStore store;
+
+    public LoadBalancerTuningController(final LoadBalancerTuningStore store) {
+        this.store = store;
+    }
+
+    @GetMapping
+    public LoadBalancerTuning get() {
+        return store.get();
+    }
+
+    @PostMapping
+    public ResponseEntity<Void> update(@RequestBody final LoadBalancerTuning tuning) {
+        store.update(tuning);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.korovko.starter.upstream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the active {@link LoadBalancerTuning}. Lives in the application context, so the per-service
+ * load balancers all read the same values and pick up updates on their next choice.
+ */
+@Component
+public class LoadBalancerTuningStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadBalancerTuningStore.class);
+
+    private final InstanceStatsTable table;
+    private volatile LoadBalancerTuning tuning;
+    private volatile long penaltyNanos;
+
+    public LoadBalancerTuningStore(final InstanceStatsTable table) {
+        this.table = table;
+        apply(LoadBalancerTuning.defaults());
+    }
+
+    public LoadBalancerTuning get() {
+        return tuning;
+    }
+
+    public long penaltyNanos() {
+        return penaltyNanos;
+    }
+
+    public void update(final LoadBalancerTuning newTuning) {
+        apply(newTuning);
+        log.info("Updated load balancer tuning: {}", newTuning);
+    }
+
+    private synchronized void apply(final LoadBalancerTuning newTuning) {
+        table.setDecayNanos(newTuning.decay().toNanos());
+        penaltyNanos = newTuning.penalty().toNanos();
+        tuning = newTuning;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.korovko.starter.upstream;
+
+import java.time.Duration;
+
+/**
+ * Rules for ejecting misbehaving upstream instances from load balancing.
+ *
+ * @param consecutiveFailures failures in a row (error or 502/503/504) that eject an instance
+ * @param baseEjectionTime    ejection time of the first ejection, doubled on every repeated one
+ * @param maxEjectionTime     upper bound of the ejection time
+ * @param latencyFactor       instance is a latency outlier when its average latency exceeds the median times this factor
+ * @param minSamples          latency samples an instance needs before it is compared with the others
+ * @param maxEjectionPercent  share of a service's instances that may be ejected at the same time
+ */
+public record OutlierDetectionConfig(
+    int consecutiveFailures,
+    Duration baseEjectionTime,
+    Duration maxEjectionTime,
+    double latencyFactor,
+    long minSamples,
+    int maxEjectionPercent
+) {
+
+    public OutlierDetectionConfig {
+        if (consecutiveFailures < 1) {
+            throw new IllegalArgumentException("consecutiveFailures must be >= 1");
+        }
+        if (baseEjectionTime == null || baseEjectionTime.isNegative() || baseEjectionTime.isZero()) {
+            throw new IllegalArgumentException("baseEjectionTime must be > 0");
+        }
+        if (maxEjectionTime == null || maxEjectionTime.compareTo(baseEjectionTime) < 0) {
+            throw new IllegalArgumentException("maxEjectionTime must be >= baseEjectionTime");
+        }
+        if (!(latencyFactor > 1.0)) {
+            throw new IllegalArgumentException("latencyFactor must be > 1");
+        }
+        if (minSamples < 1) {
+            throw new IllegalArgumentException("minSamples must be >= 1");
+        }
+        if (maxEjectionPercent < 0 || maxEjectionPercent > 100) {
+            throw new IllegalArgumentException("maxEjectionPercent must be in [0, 100]");
+        }
+    }
+
+    public static OutlierDetectionConfig defaults() {
+        return new OutlierDetectionConfig(5, Duration.ofSeconds(30), Duration.ofMinutes(5), 3.0, 20, 50);
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.korovko.starter.upstream;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/internal/resilience/outlier-detection")
+public class OutlierDetectionController {
+
+    private final OutlierDetector detector;
+
+    public OutlierDetectionController(final OutlierDetector detector) {
+        this.detector = detector;
+    }
+
+    @GetMapping
+    public OutlierDetectionConfig get() {
+        return detector.config();
+    }
+
+    @PostMapping
+    public ResponseEntity<Void> update(@RequestBody final OutlierDetectionConfig config) {
+        detector.update(config);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/ejected")
+    public Map<String, Long> ejected() {
+        return detector.ejected();
+    }
+}
@@ -0,0 +1,181 @@
+package com.korovko.starter.upstream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ejects upstream instances that fail repeatedly or answer much slower than their siblings. An ejected
+ * instance is skipped by the load balancer until its ejection time passes; each repeated ejection doubles
+ * that time up to {@link OutlierDetectionConfig#maxEjectionTime()}, and every base ejection time the instance
+ * then stays healthy takes one doubling back. Latency outliers are found by a sweep over a service's
+ * instances that runs at most once per {@link #SWEEP_INTERVAL_NANOS}, so balancing a request only looks up
+ * ejection times.
+ */
+@Component
+public class OutlierDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(OutlierDetector.class);
+
+    static final long SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final InstanceStatsTable table;
+    private final Map<String, AtomicLong> sweptAtByService = new ConcurrentHashMap<>();
+    private final AtomicReference<OutlierDetectionConfig> config =
+        new AtomicReference<>(OutlierDetectionConfig.defaults());
+
+    public OutlierDetector(final InstanceStatsTable table) {
+        this.table = table;
+    }
+
+    public OutlierDetectionConfig config() {
+        return config.get();
+    }
+
+    public void update(final OutlierDetectionConfig newConfig) {
+        config.set(newConfig);
+        log.info("Updated outlier detection: {}", newConfig);
+    }
+
+    public void recordSuccess(final int index) {
+        table.resetFailures(index);
+        if (table.ejections(index) == 0) {
+            return;
+        }
+        long until = table.ejectedUntilNanos(index);
+        long base = config.get().baseEjectionTime().toNanos();
+        if (System.nanoTime() - until >= base) {
+            table.decayEjections(index, until, until + base);
+        }
+    }
+
+    public void recordFailure(final int index) {
+        int failures = table.incrementFailures(index);
+        if (failures >= config.get().consecutiveFailures()) {
+            eject(index, System.nanoTime(), "consecutive failures: " + failures);
+        }
+    }
+
+    public boolean isEjected(final int index) {
+        return table.isEjected(index, System.nanoTime());
+    }
+
+    /**
+     * Returns the currently ejected instances with the milliseconds left until they are balanced to again.
+     */
+    public Map<String, Long> ejected() {
+        long now = System.nanoTime();
+        Map<String, Long> result = new TreeMap<>();
+        for (int i = 0; i < table.size(); i++) {
+            String key = table.keyAt(i);
+            if (key != null && table.isEjected(i, now)) {
+                result.put(key, (table.ejectedUntilNanos(i) - now) / 1_000_000L);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes ejected and latency outlier instances, never more than {@code maxEjectionPercent} of the list.
+     * Returns the original list when nothing would be left to balance over.
+     */
+    public List<ServiceInstance> filter(final List<ServiceInstance> instances) {
+        int size = instances.size();
+        if (size <= 1) {
+            return instances;
+        }
+        OutlierDetectionConfig cfg = config.get();
+        int maxEjected = size * cfg.maxEjectionPercent() / 100;
+        if (maxEjected == 0) {
+            return instances;
+        }
+
+        long now = System.nanoTime();
+        if (sweepDue(instances.get(0).getServiceId(), now)) {
+            ejectLatencyOutliers(instances, cfg, now);
+        }
+
+        List<ServiceInstance> healthy = null;
+        int ejected = 0;
+        for (int i = 0; i < size; i++) {
+            ServiceInstance instance = instances.get(i);
+            boolean skip = ejected < maxEjected && isEjected(instance, now);
+            if (skip && healthy == null) {
+                healthy = new ArrayList<>(instances.subList(0, i));
+            }
+            if (skip) {
+                ejected++;
+            } else if (healthy != null) {
+                healthy.add(instance);
+            }
+        }
+        return healthy == null || healthy.isEmpty() ? instances : healthy;
+    }
+
+    private boolean isEjected(final ServiceInstance instance, final long now) {
+        int index = table.indexOf(InstanceStatsTable.key(instance.getHost(), instance.getPort()));
+        return index >= 0 && table.isEjected(index, now);
+    }
+
+    private boolean sweepDue(final String serviceId, final long now) {
+        AtomicLong sweptAt = sweptAtByService.computeIfAbsent(String.valueOf(serviceId), id -> new AtomicLong());
+        long last = sweptAt.get();
+        return (last == 0 || now - last >= SWEEP_INTERVAL_NANOS) && sweptAt.compareAndSet(last, now);
+    }
+
+    private void ejectLatencyOutliers(final List<ServiceInstance> instances, final OutlierDetectionConfig cfg,
+                                      final long now) {
+        int[] indexes = new int[instances.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            ServiceInstance instance = instances.get(i);
+            indexes[i] = table.indexOf(InstanceStatsTable.key(instance.getHost(), instance.getPort()));
+        }
+        double[] latencies = new double[indexes.length];
+        int measured = 0;
+        for (int index : indexes) {
+            if (index >= 0 && table.samples(index) >= cfg.minSamples()) {
+                latencies[measured++] = table.latencyEwmaNanos(index);
+            }
+        }
+        if (measured < 3) {
+            return;
+        }
+        Arrays.sort(latencies, 0, measured);
+        double threshold = latencies[measured / 2] * cfg.latencyFactor();
+        for (int index : indexes) {
+            if (index >= 0 && table.samples(index) >= cfg.minSamples()
+                && table.latencyEwmaNanos(index) > threshold && !table.isEjected(index, now)) {
+                eject(index, now, "latency outlier");
+            }
+        }
+    }
+
+    private void eject(final int index, final long now, final String reason) {
+        if (table.isEjected(index, now)) {
+            return;
+        }
+        OutlierDetectionConfig cfg = config.get();
+        int ejections = table.incrementEjections(index);
+        long base = cfg.baseEjectionTime().toNanos();
+        long max = cfg.maxEjectionTime().toNanos();
+        long duration = ejections > 30 ? max : Math.min(max, base << Math.min(ejections - 1, 30));
+        if (duration <= 0) {
+            duration = max;
+        }
+        table.ejectUntil(index, now + duration);
+        table.resetFailures(index);
+        log.warn("Ejected upstream instance [{}] for {}ms ({}), ejection #{}",
+            table.keyAt(index), duration / 1_000_000L, reason, ejections);
+    }
+
+}
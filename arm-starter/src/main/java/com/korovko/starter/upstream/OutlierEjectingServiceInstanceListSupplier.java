@@ -0,0 +1,42 @@
+package com.korovko.starter.upstream;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.loadbalancer.core.DelegatingServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Hides instances ejected by the {@link OutlierDetector} from the load balancer and, for a retried request,
+ * the instances that failed its earlier attempts.
+ */
+public class OutlierEjectingServiceInstanceListSupplier extends DelegatingServiceInstanceListSupplier {
+
+    private final OutlierDetector detector;
+    private final InstanceStatsTable table;
+
+    public OutlierEjectingServiceInstanceListSupplier(final ServiceInstanceListSupplier delegate,
+                                                      final OutlierDetector detector,
+                                                      final InstanceStatsTable table) {
+        super(delegate);
+        this.detector = detector;
+        this.table = table;
+    }
+
+    @Override
+    public Flux<List<ServiceInstance>> get() {
+        return delegate.get().map(detector::filter);
+    }
+
+    // The interface declares a raw Request, so Request<?> would not override it
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Flux<List<ServiceInstance>> get(final Request request) {
+        Flux<List<ServiceInstance>> instances = delegate.get(request).map(detector::filter);
+        FailedInstances failed = FailedInstances.from(request);
+        return failed == null ? instances : instances.map(list -> failed.exclude(list, table));
+    }
+
+}
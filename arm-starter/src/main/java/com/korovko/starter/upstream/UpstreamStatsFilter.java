@@ -0,0 +1,97 @@
+package com.korovko.starter.upstream;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+
+/**
+ * Records latency and outcome of every upstream call against the instance the load balancer picked.
+ * Runs right after the load balancer filter, so a retried request is attributed to each instance it hit,
+ * and remembers failed instances on the exchange so that the next attempt is balanced to another one.
+ */
+@Component
+public class UpstreamStatsFilter implements GlobalFilter, Ordered {
+
+    public static final int ORDER = ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+
+    private final InstanceStatsTable table;
+    private final OutlierDetector detector;
+
+    public UpstreamStatsFilter(final InstanceStatsTable table, final OutlierDetector detector) {
+        this.table = table;
+        this.detector = detector;
+    }
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+        if (url == null || url.getHost() == null) {
+            return chain.filter(exchange);
+        }
+        int index = table.indexOf(InstanceStatsTable.key(url.getHost(), port(url)));
+        if (index < 0) {
+            return chain.filter(exchange);
+        }
+        long startedAt = System.nanoTime();
+        // Recorded before the terminal signal travels upstream: a retry may resubscribe synchronously
+        // and has to see this attempt's failure already.
+        return chain.filter(exchange)
+            .doOnSubscribe(subscription -> table.requestStarted(index))
+            .doOnSuccess(ignored -> finished(exchange, index, startedAt, SignalType.ON_COMPLETE))
+            .doOnError(error -> finished(exchange, index, startedAt, SignalType.ON_ERROR))
+            .doOnCancel(() -> finished(exchange, index, startedAt, SignalType.CANCEL));
+    }
+
+    private void finished(final ServerWebExchange exchange, final int index, final long startedAt,
+                          final SignalType signal) {
+        table.requestFinished(index);
+        long now = System.nanoTime();
+        table.recordLatency(index, now - startedAt, now);
+        if (signal == SignalType.CANCEL) {
+            // Either the client went away or the route timeout fired: UpstreamTimeoutFilter tells them apart
+            exchange.getAttributes().put(UpstreamTimeoutFilter.CANCELLED_ATTR, index);
+            return;
+        }
+        if (isFailure(exchange, signal)) {
+            detector.recordFailure(index);
+            FailedInstances.add(exchange, index);
+        } else {
+            detector.recordSuccess(index);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    static int port(final URI url) {
+        if (url.getPort() > 0) {
+            return url.getPort();
+        }
+        return "https".equalsIgnoreCase(url.getScheme()) || "wss".equalsIgnoreCase(url.getScheme()) ? 443 : 80;
+    }
+
+    private static boolean isFailure(final ServerWebExchange exchange, final SignalType signal) {
+        if (signal == SignalType.ON_ERROR) {
+            return true;
+        }
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        if (status == null) {
+            return false;
+        }
+        int code = status.value();
+        return code == 502 || code == 503 || code == 504;
+    }
+
+}
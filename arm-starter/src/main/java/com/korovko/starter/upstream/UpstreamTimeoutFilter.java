@@ -0,0 +1,69 @@
+package com.korovko.starter.upstream;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeoutException;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR;
+
+/**
+ * Counts upstream calls cut off by the route timeout as failures of the instance they were waiting for.
+ * The route TimeLimiter wraps the whole filter chain, so {@link UpstreamStatsFilter} only sees a cancel
+ * signal and cannot tell a timeout from a client that went away. This filter runs outside of it and
+ * settles the cancelled call once the timeout surfaces, either as an error or, with a fallback, as the
+ * circuit breaker execution exception. The instance is also remembered as failed, so a retry wrapped around
+ * the timeout is balanced to another one.
+ */
+@Component
+public class UpstreamTimeoutFilter implements GlobalFilter, Ordered {
+
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE;
+
+    static final String CANCELLED_ATTR = UpstreamTimeoutFilter.class.getName() + ".cancelled";
+
+    private final OutlierDetector detector;
+
+    public UpstreamTimeoutFilter(final OutlierDetector detector) {
+        this.detector = detector;
+    }
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        return chain.filter(exchange)
+            .doOnSuccess(ignored -> settle(exchange, exchange.getAttribute(CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR)))
+            .doOnError(error -> settle(exchange, error));
+    }
+
+    private void settle(final ServerWebExchange exchange, final Throwable error) {
+        Integer index = (Integer) exchange.getAttributes().remove(CANCELLED_ATTR);
+        if (index != null && isTimeout(error)) {
+            detector.recordFailure(index);
+            FailedInstances.add(exchange, index);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    private static boolean isTimeout(final Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof TimeoutException) {
+                return true;
+            }
+            if (t instanceof ResponseStatusException e && e.getStatusCode().value() == HttpStatus.GATEWAY_TIMEOUT.value()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,63 @@
+import com.korovko.starter.gossip.GossipDigest;
+import com.korovko.starter.gossip.GossipEntry;
+import com.korovko.starter.gossip.GossipProperties;
+import com.korovko.starter.gossip.GossipReply;
+import com.korovko.starter.gossip.GossipTransport;
+import com.korovko.starter.gossip.PolicyGossip;
+import com.korovko.starter.retry.RetryPolicy;
+import com.korovko.starter.retry.RetryPolicyStore;
+import com.korovko.starter.state.DesiredRoute;
+import com.korovko.starter.state.DesiredStateDocument;
+import com.korovko.starter.state.DesiredStatePoller;
+import com.korovko.starter.state.DesiredStateProperties;
+import com.korovko.starter.timeout.DynamicTimeoutUpdater;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class DesiredStatePollerTest {
+
+    @Test
+    void apply_updatesOnlyChangedPolicies_andRemembersVersion() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RetryPolicyStore store = new RetryPolicyStore(meterRegistry);
+        DynamicTimeoutUpdater updater = new DynamicTimeoutUpdater(TimeLimiterRegistry.ofDefaults(), meterRegistry);
+        GossipTransport transport = new GossipTransport() {
+            @Override
+            public GossipReply exchange(String peer, GossipDigest digest) {
+                return GossipReply.empty();
+            }
+
+            @Override
+            public void push(String peer, List<GossipEntry> entries) {
+            }
+        };
+        PolicyGossip gossip = new PolicyGossip(new GossipProperties(), store, updater, transport);
+        DesiredStatePoller poller = new DesiredStatePoller(new DesiredStateProperties(), store, updater, gossip,
+            WebClient.builder());
+
+        RetryPolicy retry = new RetryPolicy(2, Duration.ofMillis(50), Duration.ofMillis(250), 2, true,
+            Set.of(502, 503), Set.of("GET"), 1.0, true);
+        poller.apply(new DesiredStateDocument("epoch-1", 4, Map.of(
+            "customers_route", new DesiredRoute(3, 900, retry),
+            "vets_route", new DesiredRoute(4, 1100, null))));
+        poller.apply(new DesiredStateDocument("epoch-1", 5, Map.of(
+            "customers_route", new DesiredRoute(5, 900, retry))));
+
+        Assertions.assertEquals(5, poller.version());
+        Assertions.assertEquals(900, updater.timeoutMs("customers_route"));
+        Assertions.assertEquals(1, updater.version("customers_route"));
+        Assertions.assertEquals(1100, updater.timeoutMs("vets_route"));
+        Assertions.assertEquals(1, store.version("customers_route"));
+        Assertions.assertEquals(2, store.get("customers_route").maxAttempts());
+        Assertions.assertEquals(3, gossip.entries().get("RETRY:customers_route").version().stateVersion());
+    }
+
+}
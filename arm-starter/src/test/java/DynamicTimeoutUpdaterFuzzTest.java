@@ -2,6 +2,7 @@ import com.code_intelligence.jazzer.api.FuzzedDataProvider;
 import com.code_intelligence.jazzer.junit.FuzzTest;
 import com.korovko.starter.timeout.DynamicTimeoutUpdater;
 import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.commons.lang3.StringUtils;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -12,7 +13,7 @@ class DynamicTimeoutUpdaterFuzzTest {
     @FuzzTest(maxDuration = "30s")
     void updateTimeout_should_follow_contract(FuzzedDataProvider data) {
         TimeLimiterRegistry registry = TimeLimiterRegistry.ofDefaults();
-        DynamicTimeoutUpdater updater = new DynamicTimeoutUpdater(registry);
+        DynamicTimeoutUpdater updater = new DynamicTimeoutUpdater(registry, new SimpleMeterRegistry());
 
         String routeId = data.consumeBoolean()
             ? null
@@ -1,5 +1,6 @@
 import com.korovko.starter.timeout.DynamicTimeoutUpdater;
 import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,7 +18,7 @@ public class DynamicTimeoutUpdaterLoadTest {
     @BeforeEach
     void setUp() {
         timeLimiterRegistry = TimeLimiterRegistry.ofDefaults();
-        updater = new DynamicTimeoutUpdater(timeLimiterRegistry);
+        updater = new DynamicTimeoutUpdater(timeLimiterRegistry, new SimpleMeterRegistry());
     }
 
     @Test
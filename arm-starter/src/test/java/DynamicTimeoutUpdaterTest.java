@@ -0,0 +1,54 @@
+import com.korovko.starter.timeout.DynamicTimeoutUpdater;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class DynamicTimeoutUpdaterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TimeLimiterRegistry timeLimiterRegistry;
+    private DynamicTimeoutUpdater updater;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        timeLimiterRegistry = TimeLimiterRegistry.ofDefaults();
+        timeLimiterRegistry.timeLimiter("customers_route", config(1500));
+        updater = new DynamicTimeoutUpdater(timeLimiterRegistry, meterRegistry);
+        updater.registerRoutes();
+    }
+
+    @Test
+    void registerRoutes_exportsConfiguredTimeouts_beforeAnyUpdate() {
+        timeLimiterRegistry.timeLimiter("vets_route", config(800));
+
+        Assertions.assertEquals(1500.0, meterRegistry.get("arm.timeout.current.ms")
+            .tag("routeId", "customers_route").gauge().value());
+        Assertions.assertEquals(800.0, meterRegistry.get("arm.timeout.current.ms")
+            .tag("routeId", "vets_route").gauge().value());
+        Assertions.assertEquals(0.0, meterRegistry.get("arm.timeout.version")
+            .tag("routeId", "customers_route").gauge().value());
+        Assertions.assertNotNull(meterRegistry.get("arm.timeout.fired").tag("routeId", "customers_route").counter());
+    }
+
+    @Test
+    void updateTimeout_replacesTheRegisteredMeters() {
+        updater.updateTimeout("customers_route", 900, true);
+
+        Assertions.assertEquals(900, updater.timeoutMs("customers_route"));
+        Assertions.assertEquals(900.0, meterRegistry.get("arm.timeout.current.ms")
+            .tag("routeId", "customers_route").gauge().value());
+        Assertions.assertEquals(1.0, meterRegistry.get("arm.timeout.version")
+            .tag("routeId", "customers_route").gauge().value());
+    }
+
+    private static TimeLimiterConfig config(long timeoutMs) {
+        return TimeLimiterConfig.custom().timeoutDuration(Duration.ofMillis(timeoutMs)).build();
+    }
+
+}
@@ -0,0 +1,97 @@
+import com.korovko.starter.fault.FaultInjectionFilter;
+import com.korovko.starter.fault.FaultInjectionStore;
+import com.korovko.starter.fault.FaultSpec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class FaultInjectionFilterTest {
+
+    private FaultInjectionStore store;
+    private SimpleMeterRegistry registry;
+    private FaultInjectionFilter filter;
+    private AtomicInteger upstreamCalls;
+    private GatewayFilterChain chain;
+
+    @BeforeEach
+    void setUp() {
+        store = new FaultInjectionStore();
+        registry = new SimpleMeterRegistry();
+        filter = new FaultInjectionFilter(store, registry);
+        upstreamCalls = new AtomicInteger();
+        chain = exchange -> Mono.fromRunnable(() -> {
+            upstreamCalls.incrementAndGet();
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+        });
+    }
+
+    @Test
+    void abort_answersWithConfiguredStatus_withoutCallingUpstream() {
+        store.put("route-1", new FaultSpec(0, null, null, 1.0, 503, 0));
+
+        MockServerWebExchange exchange = exchange("route-1");
+        filter.filter(exchange, chain).block(Duration.ofSeconds(5));
+
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exchange.getResponse().getStatusCode());
+        Assertions.assertTrue(ServerWebExchangeUtils.isAlreadyRouted(exchange));
+        Assertions.assertEquals(0, upstreamCalls.get());
+        Assertions.assertEquals(1.0, injected("route-1", "abort"));
+    }
+
+    @Test
+    void delay_holdsTheRequest_thenCallsUpstream() {
+        store.put("route-1", new FaultSpec(1.0, Duration.ofMillis(150), Duration.ofMillis(150), 0, 0, 0));
+
+        MockServerWebExchange exchange = exchange("route-1");
+        long startedAt = System.nanoTime();
+        filter.filter(exchange, chain).block(Duration.ofSeconds(5));
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000L;
+
+        Assertions.assertTrue(elapsedMs >= 150, "elapsed " + elapsedMs + "ms");
+        Assertions.assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        Assertions.assertEquals(1, upstreamCalls.get());
+        Assertions.assertEquals(1.0, injected("route-1", "delay"));
+    }
+
+    @Test
+    void routeWithoutFaults_passesThrough_andCountersAreReused() {
+        store.put("route-1", new FaultSpec(0, null, null, 1.0, 500, 0));
+
+        filter.filter(exchange("route-2"), chain).block(Duration.ofSeconds(5));
+        for (int i = 0; i < 3; i++) {
+            filter.filter(exchange("route-1"), chain).block(Duration.ofSeconds(5));
+        }
+
+        Assertions.assertEquals(1, upstreamCalls.get());
+        Assertions.assertEquals(3.0, injected("route-1", "abort"));
+        Assertions.assertNull(registry.find(FaultInjectionFilter.INJECTED_COUNTER).tag("routeId", "route-2").counter());
+    }
+
+    private double injected(final String routeId, final String type) {
+        return registry.get(FaultInjectionFilter.INJECTED_COUNTER).tag("routeId", routeId).tag("type", type)
+            .counter().count();
+    }
+
+    private static MockServerWebExchange exchange(final String routeId) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/orders"));
+        Route route = Route.async()
+            .id(routeId)
+            .uri("http://localhost:8080")
+            .predicate(e -> true)
+            .build();
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        return exchange;
+    }
+
+}
@@ -0,0 +1,36 @@
+import com.korovko.starter.fault.FaultInjectionStore;
+import com.korovko.starter.fault.FaultSpec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class FaultInjectionStoreTest {
+
+    @Test
+    void putAndRemove_toggleInjectionPerRoute() {
+        FaultInjectionStore store = new FaultInjectionStore();
+        Assertions.assertTrue(store.isEmpty());
+
+        FaultSpec spec = new FaultSpec(0.5, Duration.ofMillis(100), Duration.ofMillis(300), 0.1, 503, 0.0);
+        store.put("route-1", spec);
+        store.put("route-2", spec);
+        store.remove("route-1");
+
+        Assertions.assertNull(store.get("route-1"));
+        Assertions.assertEquals(spec, store.get("route-2"));
+        store.clear();
+        Assertions.assertTrue(store.isEmpty());
+    }
+
+    @Test
+    void spec_rejectsInvalidRatesAndStatuses() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new FaultSpec(1.5, Duration.ZERO, Duration.ZERO, 0, 0, 0));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new FaultSpec(0, null, null, 0.2, 200, 0));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new FaultSpec(0.2, Duration.ofMillis(300), Duration.ofMillis(100), 0, 0, 0));
+    }
+
+}
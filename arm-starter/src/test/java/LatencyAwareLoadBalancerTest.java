@@ -0,0 +1,78 @@
+import com.korovko.starter.upstream.InstanceStatsTable;
+import com.korovko.starter.upstream.LatencyAwareLoadBalancer;
+import com.korovko.starter.upstream.LoadBalancerTuning;
+import com.korovko.starter.upstream.LoadBalancerTuningStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+class LatencyAwareLoadBalancerTest {
+
+    private InstanceStatsTable table;
+    private LoadBalancerTuningStore tuning;
+    private LatencyAwareLoadBalancer balancer;
+
+    @BeforeEach
+    void setUp() {
+        table = new InstanceStatsTable();
+        tuning = new LoadBalancerTuningStore(table);
+        List<ServiceInstance> instances = List.of(instance("fast"), instance("slow"));
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("supplier", new ServiceInstanceListSupplier() {
+            @Override
+            public String getServiceId() {
+                return "customers";
+            }
+
+            @Override
+            public Flux<List<ServiceInstance>> get() {
+                return Flux.just(instances);
+            }
+        });
+        balancer = new LatencyAwareLoadBalancer(beanFactory.getBeanProvider(ServiceInstanceListSupplier.class),
+            "customers", table, tuning);
+    }
+
+    @Test
+    void choose_prefersInstanceWithLowerLatency() {
+        long now = System.nanoTime();
+        table.recordLatency(index("fast"), 10_000_000L, now);
+        table.recordLatency(index("slow"), 200_000_000L, now);
+
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals("fast", chosenHost());
+        }
+    }
+
+    @Test
+    void choose_penalizesUnmeasuredInstanceWithRequestsInFlight() {
+        tuning.update(new LoadBalancerTuning(Duration.ofSeconds(5), Duration.ofSeconds(2)));
+        table.recordLatency(index("slow"), 200_000_000L, System.nanoTime());
+        table.requestStarted(index("fast"));
+
+        Assertions.assertEquals("slow", chosenHost());
+        Assertions.assertEquals(5_000_000_000L, table.decayNanos());
+    }
+
+    private int index(String host) {
+        return table.indexOf(InstanceStatsTable.key(host, 8080));
+    }
+
+    private String chosenHost() {
+        return balancer.choose(new DefaultRequest<>()).block().getServer().getHost();
+    }
+
+    private static ServiceInstance instance(String host) {
+        return new DefaultServiceInstance(host, "customers", host, 8080, false);
+    }
+
+}
@@ -0,0 +1,115 @@
+import com.korovko.starter.upstream.InstanceStatsTable;
+import com.korovko.starter.upstream.OutlierDetectionConfig;
+import com.korovko.starter.upstream.OutlierDetector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.time.Duration;
+import java.util.List;
+
+class OutlierDetectorTest {
+
+    private InstanceStatsTable table;
+    private OutlierDetector detector;
+    private List<ServiceInstance> instances;
+
+    @BeforeEach
+    void setUp() {
+        table = new InstanceStatsTable();
+        detector = new OutlierDetector(table);
+        detector.update(new OutlierDetectionConfig(3, Duration.ofSeconds(10), Duration.ofSeconds(40), 3.0, 5, 50));
+        instances = List.of(instance("a"), instance("b"), instance("c"), instance("d"));
+    }
+
+    @Test
+    void consecutiveFailures_ejectInstance_untilSuccessResetsCounter() {
+        int a = table.indexOf(InstanceStatsTable.key("a", 8080));
+        detector.recordFailure(a);
+        detector.recordFailure(a);
+        detector.recordSuccess(a);
+        detector.recordFailure(a);
+        Assertions.assertFalse(detector.isEjected(a));
+
+        detector.recordFailure(a);
+        detector.recordFailure(a);
+        Assertions.assertTrue(detector.isEjected(a));
+        Assertions.assertEquals(List.of("b", "c", "d"), hosts(detector.filter(instances)));
+        Assertions.assertTrue(detector.ejected().containsKey("a:8080"));
+    }
+
+    @Test
+    void filter_neverEjectsMoreThanMaxEjectionPercent() {
+        for (String host : List.of("a", "b", "c")) {
+            int index = table.indexOf(InstanceStatsTable.key(host, 8080));
+            for (int i = 0; i < 3; i++) {
+                detector.recordFailure(index);
+            }
+        }
+
+        Assertions.assertEquals(List.of("c", "d"), hosts(detector.filter(instances)));
+    }
+
+    @Test
+    void filter_ejectsLatencyOutlier() {
+        long now = System.nanoTime();
+        for (String host : List.of("a", "b", "c", "d")) {
+            int index = table.indexOf(InstanceStatsTable.key(host, 8080));
+            long latency = "d".equals(host) ? 500_000_000L : 20_000_000L;
+            for (int i = 0; i < 5; i++) {
+                table.recordLatency(index, latency, now + i);
+            }
+        }
+
+        Assertions.assertEquals(List.of("a", "b", "c"), hosts(detector.filter(instances)));
+    }
+
+    @Test
+    void recordSuccess_decaysEjectionsOneBaseEjectionTimeAtATime() {
+        int a = table.indexOf(InstanceStatsTable.key("a", 8080));
+        for (int ejection = 0; ejection < 2; ejection++) {
+            table.ejectUntil(a, System.nanoTime() - 1);
+            for (int i = 0; i < 3; i++) {
+                detector.recordFailure(a);
+            }
+        }
+        Assertions.assertEquals(2, table.ejections(a));
+
+        table.ejectUntil(a, System.nanoTime() - 1);
+        detector.recordSuccess(a);
+        Assertions.assertEquals(2, table.ejections(a));
+
+        table.ejectUntil(a, System.nanoTime() - Duration.ofSeconds(10).toNanos());
+        detector.recordSuccess(a);
+        detector.recordSuccess(a);
+        Assertions.assertEquals(1, table.ejections(a));
+    }
+
+    @Test
+    void filter_sweepsLatencyOutliersOncePerInterval() {
+        Assertions.assertEquals(instances, detector.filter(instances));
+
+        long now = System.nanoTime();
+        for (String host : List.of("a", "b", "c", "d")) {
+            int index = table.indexOf(InstanceStatsTable.key(host, 8080));
+            long latency = "d".equals(host) ? 500_000_000L : 20_000_000L;
+            for (int i = 0; i < 5; i++) {
+                table.recordLatency(index, latency, now + i);
+            }
+        }
+
+        Assertions.assertEquals(instances, detector.filter(instances));
+        Assertions.assertTrue(detector.ejected().isEmpty());
+    }
+
+    private static ServiceInstance instance(String host) {
+        return new DefaultServiceInstance(host, "customers", host, 8080, false);
+    }
+
+    private static List<String> hosts(List<ServiceInstance> list) {
+        return list.stream().map(ServiceInstance::getHost).toList();
+    }
+
+}
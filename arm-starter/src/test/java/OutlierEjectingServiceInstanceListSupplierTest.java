@@ -0,0 +1,120 @@
+import com.korovko.starter.upstream.FailedInstances;
+import com.korovko.starter.upstream.InstanceStatsTable;
+import com.korovko.starter.upstream.OutlierDetectionConfig;
+import com.korovko.starter.upstream.OutlierDetector;
+import com.korovko.starter.upstream.OutlierEjectingServiceInstanceListSupplier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.LinkedMultiValueMap;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class OutlierEjectingServiceInstanceListSupplierTest {
+
+    private InstanceStatsTable table;
+    private OutlierDetector detector;
+    private OutlierEjectingServiceInstanceListSupplier supplier;
+
+    @BeforeEach
+    void setUp() {
+        table = new InstanceStatsTable();
+        detector = new OutlierDetector(table);
+        detector.update(new OutlierDetectionConfig(2, Duration.ofMillis(100), Duration.ofMillis(400), 3.0, 5, 50));
+        List<ServiceInstance> instances = List.of(instance("a"), instance("b"), instance("c"), instance("d"));
+        supplier = new OutlierEjectingServiceInstanceListSupplier(new ServiceInstanceListSupplier() {
+            @Override
+            public String getServiceId() {
+                return "customers";
+            }
+
+            @Override
+            public Flux<List<ServiceInstance>> get() {
+                return Flux.just(instances);
+            }
+        }, detector, table);
+    }
+
+    @Test
+    void ejectedInstance_isHidden_untilItsEjectionTimePasses() throws InterruptedException {
+        fail("b", 2);
+
+        Assertions.assertEquals(List.of("a", "c", "d"), hosts(supplier.get().blockFirst()));
+
+        Thread.sleep(150);
+        Assertions.assertEquals(List.of("a", "b", "c", "d"), hosts(supplier.get().blockFirst()));
+    }
+
+    @Test
+    void ejection_neverHidesMoreThanMaxEjectionPercent() {
+        fail("a", 2);
+        fail("b", 2);
+        fail("c", 2);
+
+        List<String> hosts = hosts(supplier.get().blockFirst());
+
+        Assertions.assertEquals(2, hosts.size());
+        Assertions.assertTrue(hosts.contains("d"));
+    }
+
+    @Test
+    void retriedRequest_skipsInstancesThatFailedEarlierAttempts() {
+        Map<String, Object> attributes = new HashMap<>();
+        FailedInstances.add(attributes, index("a"));
+        FailedInstances.add(attributes, index("c"));
+
+        Assertions.assertEquals(List.of("b", "d"), hosts(supplier.get(request(attributes)).blockFirst()));
+        Assertions.assertEquals(List.of("a", "b", "c", "d"), hosts(supplier.get(request(new HashMap<>())).blockFirst()));
+    }
+
+    @Test
+    void failedInstances_fallBackToAllInstances_whenEveryInstanceFailed() {
+        Map<String, Object> attributes = new HashMap<>();
+        for (String host : List.of("a", "b", "c", "d", "a", "e", "f")) {
+            FailedInstances.add(attributes, index(host));
+        }
+        FailedInstances failed = FailedInstances.from(request(attributes));
+
+        Assertions.assertNotNull(failed);
+        Assertions.assertTrue(failed.contains(index("f")));
+        Assertions.assertFalse(failed.contains(index("g")));
+        Assertions.assertEquals(List.of("a", "b", "c", "d"), hosts(supplier.get(request(attributes)).blockFirst()));
+    }
+
+    private void fail(final String host, final int times) {
+        for (int i = 0; i < times; i++) {
+            detector.recordFailure(index(host));
+        }
+    }
+
+    private int index(final String host) {
+        return table.indexOf(InstanceStatsTable.key(host, 8080));
+    }
+
+    private static DefaultRequest<RequestDataContext> request(final Map<String, Object> attributes) {
+        return new DefaultRequest<>(new RequestDataContext(new RequestData(HttpMethod.GET,
+            URI.create("http://customers/orders"), new HttpHeaders(), new LinkedMultiValueMap<>(), attributes)));
+    }
+
+    private static List<String> hosts(final List<ServiceInstance> instances) {
+        return instances.stream().map(ServiceInstance::getHost).toList();
+    }
+
+    private static ServiceInstance instance(final String host) {
+        return new DefaultServiceInstance(host, "customers", host, 8080, false);
+    }
+
+}
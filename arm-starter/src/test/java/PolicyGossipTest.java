@@ -0,0 +1,189 @@
+import com.korovko.starter.gossip.GossipController;
+import com.korovko.starter.gossip.GossipDigest;
+import com.korovko.starter.gossip.GossipEntry;
+import com.korovko.starter.gossip.GossipProperties;
+import com.korovko.starter.gossip.GossipReply;
+import com.korovko.starter.gossip.GossipTransport;
+import com.korovko.starter.gossip.GossipVersion;
+import com.korovko.starter.gossip.PolicyGossip;
+import com.korovko.starter.retry.RetryPolicy;
+import com.korovko.starter.retry.RetryPolicyStore;
+import com.korovko.starter.timeout.DynamicTimeoutUpdater;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class PolicyGossipTest {
+
+    private static final List<String> NODES = List.of("gw-a", "gw-b", "gw-c", "gw-d");
+
+    private final Map<String, PolicyGossip> gossips = new HashMap<>();
+    private final Map<String, RetryPolicyStore> retryStores = new HashMap<>();
+    private final Map<String, DynamicTimeoutUpdater> timeoutUpdaters = new HashMap<>();
+    private int versionExchanges;
+
+    @BeforeEach
+    void setUp() {
+        GossipTransport transport = new GossipTransport() {
+            @Override
+            public GossipReply exchange(String peer, GossipDigest digest) {
+                if (digest.versions() != null) {
+                    versionExchanges++;
+                }
+                return gossips.get(peer).onDigest(digest);
+            }
+
+            @Override
+            public void push(String peer, List<GossipEntry> entries) {
+                gossips.get(peer).onEntries(entries);
+            }
+        };
+        for (String node : NODES) {
+            GossipProperties properties = new GossipProperties();
+            properties.setNodeId(node);
+            List<String> peers = new ArrayList<>(NODES);
+            peers.remove(node);
+            properties.setPeers(peers);
+
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            RetryPolicyStore store = new RetryPolicyStore(meterRegistry);
+            DynamicTimeoutUpdater updater = new DynamicTimeoutUpdater(TimeLimiterRegistry.ofDefaults(), meterRegistry);
+            retryStores.put(node, store);
+            timeoutUpdaters.put(node, updater);
+            gossips.put(node, new PolicyGossip(properties, store, updater, transport));
+        }
+    }
+
+    @Test
+    void changeOnOneReplica_convergesOnAllReplicas() {
+        gossips.get("gw-a").publishRetry("customers_route", policy(3));
+        gossips.get("gw-c").publishTimeout("vets_route", 900);
+
+        runRounds(20);
+
+        for (String node : NODES) {
+            Assertions.assertEquals(3, retryStores.get(node).get("customers_route").maxAttempts(), node);
+            Assertions.assertEquals(900, timeoutUpdaters.get(node).timeoutMs("vets_route"), node);
+            Assertions.assertEquals(gossips.get("gw-a").digest().hash(), gossips.get(node).digest().hash(), node);
+        }
+    }
+
+    @Test
+    void concurrentChanges_resolveToSameWinnerEverywhere() {
+        gossips.get("gw-a").publishTimeout("visits_route", 700);
+        gossips.get("gw-d").publishTimeout("visits_route", 1200);
+
+        runRounds(20);
+
+        for (String node : NODES) {
+            Assertions.assertEquals(1200, timeoutUpdaters.get(node).timeoutMs("visits_route"), node);
+        }
+
+        gossips.get("gw-b").publishTimeout("visits_route", 800);
+        runRounds(20);
+
+        for (String node : NODES) {
+            Assertions.assertEquals(800, timeoutUpdaters.get(node).timeoutMs("visits_route"), node);
+        }
+    }
+
+    @Test
+    void controllerDecisions_areOrderedByStateVersion_notByArrival() {
+        gossips.get("gw-a").publishTimeout("vets_route", 1500, "0000000000001-run", 7);
+        // An older decision reaches another replica later, after its Lamport clock moved on
+        gossips.get("gw-b").publishTimeout("vets_route", 400);
+        gossips.get("gw-b").publishTimeout("vets_route", 900, "0000000000001-run", 6);
+        gossips.get("gw-c").publishTimeout("visits_route", 600, "0000000000001-run", 9);
+        gossips.get("gw-c").publishTimeout("visits_route", 650, "0000000000002-restarted", 1);
+
+        runRounds(20);
+
+        for (String node : NODES) {
+            Assertions.assertEquals(1500, timeoutUpdaters.get(node).timeoutMs("vets_route"), node);
+            Assertions.assertEquals(650, timeoutUpdaters.get(node).timeoutMs("visits_route"), node);
+        }
+
+        // A manual change overrides the current controller decision, the next decision overrides it again
+        gossips.get("gw-d").publishTimeout("vets_route", 300);
+        runRounds(20);
+        for (String node : NODES) {
+            Assertions.assertEquals(300, timeoutUpdaters.get(node).timeoutMs("vets_route"), node);
+        }
+
+        gossips.get("gw-a").publishTimeout("vets_route", 1500, "0000000000001-run", 7);
+        gossips.get("gw-b").publishTimeout("vets_route", 1700, "0000000000001-run", 8);
+        runRounds(20);
+        for (String node : NODES) {
+            Assertions.assertEquals(1700, timeoutUpdaters.get(node).timeoutMs("vets_route"), node);
+        }
+    }
+
+    @Test
+    void receiveEndpoints_rejectEntries_whileGossipIsDisabled() {
+        GossipProperties properties = new GossipProperties();
+        GossipController controller = new GossipController(gossips.get("gw-a"), properties);
+        List<GossipEntry> entries = List.of(
+            new GossipEntry(GossipEntry.Kind.TIMEOUT, "vets_route", null, 900L, new GossipVersion(1, "gw-x")));
+
+        Assertions.assertEquals(404, controller.entries(entries).getStatusCode().value());
+        Assertions.assertTrue(gossips.get("gw-a").entries().isEmpty());
+
+        properties.setEnabled(true);
+        Assertions.assertEquals(204, controller.entries(entries).getStatusCode().value());
+        Assertions.assertEquals(900, timeoutUpdaters.get("gw-a").timeoutMs("vets_route"));
+    }
+
+    @Test
+    void invalidRemoteEntries_areDropped_beforeTouchingClockOrStores() {
+        PolicyGossip gossip = gossips.get("gw-a");
+        gossip.onEntries(List.of(
+            new GossipEntry(GossipEntry.Kind.RETRY, "customers_route", null, null, new GossipVersion(1_000, "gw-x")),
+            new GossipEntry(GossipEntry.Kind.TIMEOUT, "vets_route", null, null, new GossipVersion(1_000, "gw-x")),
+            new GossipEntry(GossipEntry.Kind.TIMEOUT, "vets_route", null, -5L, new GossipVersion(1_000, "gw-x")),
+            new GossipEntry(null, "vets_route", null, 900L, new GossipVersion(1_000, "gw-x"))));
+
+        Assertions.assertTrue(gossip.entries().isEmpty());
+        Assertions.assertEquals(0, timeoutUpdaters.get("gw-a").timeoutMs("vets_route"));
+        Assertions.assertEquals(0, retryStores.get("gw-a").version("customers_route"));
+
+        gossip.publishTimeout("vets_route", 900);
+        Assertions.assertEquals(1, gossip.entries().get("TIMEOUT:vets_route").version().clock());
+    }
+
+    @Test
+    void antiEntropy_sendsVersionsOnlyWhenHashesDiffer() {
+        runRounds(3);
+        Assertions.assertEquals(0, versionExchanges);
+
+        gossips.get("gw-a").publishTimeout("vets_route", 900);
+        runRounds(20);
+
+        Assertions.assertTrue(versionExchanges > 0);
+        int converged = versionExchanges;
+        runRounds(3);
+        Assertions.assertEquals(converged, versionExchanges);
+    }
+
+    private void runRounds(int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            for (String node : NODES) {
+                gossips.get(node).gossipRound();
+            }
+        }
+    }
+
+    private static RetryPolicy policy(int maxAttempts) {
+        return new RetryPolicy(maxAttempts, Duration.ofMillis(50), Duration.ofMillis(250), 2, true,
+            Set.of(502, 503), Set.of("GET"), 1.0, true);
+    }
+
+}
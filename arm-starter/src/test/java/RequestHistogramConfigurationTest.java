@@ -0,0 +1,35 @@
+import com.korovko.starter.metrics.RequestHistogramConfiguration;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RequestHistogramConfigurationTest {
+
+    private final MeterFilter filter = new RequestHistogramConfiguration().gatewayRequestHistogram();
+
+    @Test
+    void gatewayRequestTimer_publishesHistogramBuckets() {
+        DistributionStatisticConfig config = filter.configure(timer(RequestHistogramConfiguration.GATEWAY_REQUESTS),
+            DistributionStatisticConfig.DEFAULT);
+
+        Assertions.assertEquals(Boolean.TRUE, config.isPercentileHistogram());
+        // Everything else keeps what the registry configured
+        Assertions.assertEquals(DistributionStatisticConfig.DEFAULT.getExpiry(), config.getExpiry());
+    }
+
+    @Test
+    void otherTimers_areLeftAlone() {
+        DistributionStatisticConfig config = filter.configure(timer("http.server.requests"),
+            DistributionStatisticConfig.NONE);
+
+        Assertions.assertSame(DistributionStatisticConfig.NONE, config);
+    }
+
+    private static Meter.Id timer(final String name) {
+        return new Meter.Id(name, Tags.of("routeId", "customers_route"), null, null, Meter.Type.TIMER);
+    }
+
+}
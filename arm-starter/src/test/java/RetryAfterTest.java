@@ -0,0 +1,42 @@
+import com.korovko.starter.retry.RetryAfter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+class RetryAfterTest {
+
+    private static final long NOW = Instant.parse("2026-03-02T10:00:00Z").toEpochMilli();
+
+    @Test
+    void delaySeconds_areConvertedToMillis() {
+        Assertions.assertEquals(120_000, RetryAfter.parseMillis("120", NOW));
+        Assertions.assertEquals(0, RetryAfter.parseMillis(" 0 ", NOW));
+    }
+
+    @Test
+    void httpDate_isRelativeToNow_andNeverNegative() {
+        String inThirtySeconds = DateTimeFormatter.RFC_1123_DATE_TIME
+            .format(Instant.ofEpochMilli(NOW + 30_000).atOffset(ZoneOffset.UTC));
+        Assertions.assertEquals(30_000, RetryAfter.parseMillis(inThirtySeconds, NOW));
+
+        Assertions.assertEquals(0, RetryAfter.parseMillis("Mon, 02 Mar 2026 09:59:00 GMT", NOW));
+    }
+
+    @Test
+    void missingOrMalformedHeader_isAbsent() {
+        Assertions.assertEquals(RetryAfter.ABSENT, RetryAfter.parseMillis(null, NOW));
+        Assertions.assertEquals(RetryAfter.ABSENT, RetryAfter.parseMillis("  ", NOW));
+        Assertions.assertEquals(RetryAfter.ABSENT, RetryAfter.parseMillis("1.5", NOW));
+        Assertions.assertEquals(RetryAfter.ABSENT, RetryAfter.parseMillis("tomorrow", NOW));
+        Assertions.assertEquals(RetryAfter.ABSENT, RetryAfter.parseMillis("-5", NOW));
+    }
+
+    @Test
+    void hugeDelaySeconds_saturate() {
+        Assertions.assertEquals(Long.MAX_VALUE, RetryAfter.parseMillis(String.valueOf(Long.MAX_VALUE), NOW));
+    }
+
+}
@@ -0,0 +1,105 @@
+import com.korovko.starter.retry.RetryAfter;
+import com.korovko.starter.retry.RetryBackoff;
+import com.korovko.starter.retry.RetryPolicy;
+import com.korovko.starter.retry.UpstreamPressure;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.Set;
+
+class RetryBackoffTest {
+
+    @Test
+    void exponentialDelay_growsByFactor_upToMaxBackoff() {
+        RetryBackoff backoff = new RetryBackoff(policy(0, false, false));
+
+        Assertions.assertEquals(100, delay(backoff, 1, 0));
+        Assertions.assertEquals(200, delay(backoff, 2, 0));
+        Assertions.assertEquals(400, delay(backoff, 3, 0));
+        Assertions.assertEquals(1_000, delay(backoff, 10, 0));
+    }
+
+    @Test
+    void jitter_staysWithinItsShareOfTheDelay() {
+        RetryBackoff full = new RetryBackoff(policy(1, false, false));
+        RetryBackoff half = new RetryBackoff(policy(0.5, false, false));
+
+        Assertions.assertEquals(400, full.delayMs(3, 0, RetryAfter.ABSENT, RetryBackoff.NO_DEADLINE, 0));
+        Assertions.assertEquals(40, full.delayMs(3, 0, RetryAfter.ABSENT, RetryBackoff.NO_DEADLINE, 0.9));
+        for (double random = 0; random < 1; random += 0.05) {
+            long delay = half.delayMs(3, 0, RetryAfter.ABSENT, RetryBackoff.NO_DEADLINE, random);
+            Assertions.assertTrue(delay > 200 && delay <= 400, "delay " + delay);
+        }
+    }
+
+    @Test
+    void basedOnPreviousValue_multipliesTheDelayActuallyWaited() {
+        RetryBackoff backoff = new RetryBackoff(policy(0, true, true));
+
+        Assertions.assertEquals(100, delay(backoff, 1, 0));
+        // The previous wait was stretched by Retry-After: the next one grows from there
+        Assertions.assertEquals(600, delay(backoff, 2, 300));
+        Assertions.assertEquals(1_000, delay(backoff, 3, 600));
+    }
+
+    @Test
+    void retryAfter_raisesTheDelay_butNotPastTheDeadline() {
+        RetryBackoff backoff = new RetryBackoff(policy(0, false, true));
+
+        Assertions.assertEquals(800, backoff.delayMs(1, 0, 800, 5_000, 0));
+        Assertions.assertEquals(300, backoff.delayMs(1, 0, 800, 300, 0));
+        Assertions.assertTrue(backoff.canWait(800, 5_000));
+        Assertions.assertFalse(backoff.canWait(800, 800));
+    }
+
+    @Test
+    void retryAfter_withoutDeadline_isCappedAtMaxBackoff() {
+        RetryBackoff backoff = new RetryBackoff(policy(0, false, true));
+
+        Assertions.assertEquals(1_000, backoff.delayMs(1, 0, 3_600_000, RetryBackoff.NO_DEADLINE, 0));
+        Assertions.assertTrue(backoff.canWait(1_000, RetryBackoff.NO_DEADLINE));
+        Assertions.assertFalse(backoff.canWait(3_600_000, RetryBackoff.NO_DEADLINE));
+    }
+
+    @Test
+    void retryAfter_isIgnored_whenThePolicyDoesNotHonorIt() {
+        RetryBackoff backoff = new RetryBackoff(policy(0, false, false));
+
+        Assertions.assertEquals(100, backoff.delayMs(1, 0, 800, 5_000, 0));
+    }
+
+    @Test
+    void overloadWindow_opensOn429And503WithRetryAfter_andCloses() throws InterruptedException {
+        UpstreamPressure pressure = new UpstreamPressure();
+
+        pressure.observe(HttpStatus.SERVICE_UNAVAILABLE, RetryAfter.ABSENT, 1_000);
+        pressure.observe(HttpStatus.BAD_GATEWAY, 1_000, 1_000);
+        Assertions.assertFalse(pressure.isOverloaded());
+
+        pressure.observe(HttpStatus.SERVICE_UNAVAILABLE, 50, 1_000);
+        Assertions.assertTrue(pressure.isOverloaded());
+        Thread.sleep(100);
+        Assertions.assertFalse(pressure.isOverloaded());
+
+        pressure.observe(HttpStatus.TOO_MANY_REQUESTS, RetryAfter.ABSENT, 50);
+        Assertions.assertTrue(pressure.isOverloaded());
+        // A shorter window never shrinks the open one
+        pressure.observe(HttpStatus.TOO_MANY_REQUESTS, 0, 0);
+        Assertions.assertTrue(pressure.isOverloaded());
+        Thread.sleep(100);
+        Assertions.assertFalse(pressure.isOverloaded());
+    }
+
+    private static long delay(final RetryBackoff backoff, final long iteration, final long previousDelayMs) {
+        return backoff.delayMs(iteration, previousDelayMs, RetryAfter.ABSENT, RetryBackoff.NO_DEADLINE, 0);
+    }
+
+    private static RetryPolicy policy(final double jitter, final boolean basedOnPreviousValue,
+                                      final boolean honorRetryAfter) {
+        return new RetryPolicy(4, Duration.ofMillis(100), Duration.ofMillis(1_000), 2, basedOnPreviousValue,
+            Set.of(502, 503), Set.of("GET"), jitter, honorRetryAfter);
+    }
+
+}
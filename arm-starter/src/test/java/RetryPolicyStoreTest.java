@@ -0,0 +1,46 @@
+import com.korovko.starter.retry.RetryPolicy;
+import com.korovko.starter.retry.RetryPolicyStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+class RetryPolicyStoreTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RetryPolicyStore store;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new RetryPolicyStore(meterRegistry);
+    }
+
+    @Test
+    void upsert_incrementsVersion_andPublishesGauges() {
+        store.upsert("route-1", policy(1));
+        store.upsert("route-1", policy(3));
+
+        Assertions.assertEquals(2, store.version("route-1"));
+        Assertions.assertEquals(3, store.get("route-1").maxAttempts());
+        Assertions.assertEquals(3.0, meterRegistry.get("arm.retry.policy.max.attempts")
+            .tag("routeId", "route-1").gauge().value());
+        Assertions.assertEquals(2.0, meterRegistry.get("arm.retry.policy.version")
+            .tag("routeId", "route-1").gauge().value());
+    }
+
+    @Test
+    void unknownRoute_hasVersionZero_andGetThrows() {
+        Assertions.assertEquals(0, store.version("missing"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.get("missing"));
+    }
+
+    private static RetryPolicy policy(int maxAttempts) {
+        return new RetryPolicy(maxAttempts, Duration.ofMillis(50), Duration.ofMillis(250), 2, true,
+            Set.of(502, 503), Set.of("GET"), 1.0, true);
+    }
+
+}
@@ -0,0 +1,70 @@
+import com.korovko.starter.pool.RouteConnectionPools;
+import com.korovko.starter.pool.RoutePoolSettings;
+import com.korovko.starter.pool.RoutePoolStats;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class RouteConnectionPoolsTest {
+
+    private final RouteConnectionPools pools = new RouteConnectionPools();
+
+    @AfterEach
+    void tearDown() {
+        pools.dispose();
+    }
+
+    @Test
+    void update_replacesClient_andBumpsVersion() {
+        Assertions.assertNull(pools.client("route-1"));
+
+        pools.update("route-1", settings(10));
+        var first = pools.client("route-1");
+        pools.update("route-1", settings(20));
+
+        Assertions.assertNotNull(pools.client("route-1"));
+        Assertions.assertNotSame(first, pools.client("route-1"));
+        RoutePoolStats stats = pools.stats().get("route-1");
+        Assertions.assertEquals(2, stats.version());
+        Assertions.assertEquals(20, stats.settings().maxConnections());
+        Assertions.assertEquals(0, stats.pendingAcquire());
+    }
+
+    @Test
+    void settings_rejectInvalidValues() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> settings(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RoutePoolSettings(10, 10,
+            Duration.ofSeconds(1), Duration.ofSeconds(30), Duration.ZERO, Duration.ofSeconds(2)));
+    }
+
+    @Test
+    void gatewayDefaults_mirrorTheSharedClient_andBuildAPool() {
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.getPool().setType(HttpClientProperties.Pool.PoolType.FIXED);
+        properties.getPool().setMaxConnections(40);
+        properties.setConnectTimeout(2000);
+
+        RoutePoolSettings defaults = RoutePoolSettings.of(properties);
+
+        Assertions.assertEquals(40, defaults.maxConnections());
+        Assertions.assertEquals(80, defaults.pendingAcquireMaxCount());
+        Assertions.assertEquals(Duration.ofSeconds(2), defaults.connectTimeout());
+        Assertions.assertNull(defaults.maxIdleTime());
+        Assertions.assertNull(defaults.responseTimeout());
+
+        pools.update("route-1", defaults);
+        Assertions.assertNotNull(pools.client("route-1"));
+
+        properties.getPool().setType(HttpClientProperties.Pool.PoolType.ELASTIC);
+        Assertions.assertEquals(Integer.MAX_VALUE, RoutePoolSettings.of(properties).maxConnections());
+    }
+
+    private static RoutePoolSettings settings(int maxConnections) {
+        return new RoutePoolSettings(maxConnections, 100, Duration.ofSeconds(1), Duration.ofSeconds(30),
+            Duration.ofMillis(500), Duration.ofSeconds(2));
+    }
+
+}